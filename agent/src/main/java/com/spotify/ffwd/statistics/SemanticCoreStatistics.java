@@ -31,10 +31,13 @@ import com.spotify.metrics.core.SemanticMetricBuilder;
 import com.spotify.metrics.core.SemanticMetricRegistry;
 import eu.toolchain.async.FutureFinished;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 public class SemanticCoreStatistics implements CoreStatistics {
 
@@ -85,6 +88,22 @@ public class SemanticCoreStatistics implements CoreStatistics {
     };
   }
 
+  @Override
+  public InputPluginStatistics newInputPlugin(final String id) {
+    final MetricId m = metric.tagged("component", "input-plugin", "plugin_id", id);
+
+    return new InputPluginStatistics() {
+      // Time from receiving a sampled metric to handing it over to the output manager, in us
+      private final Histogram handoffLatency =
+          registry.getOrAdd(m.tagged("what", "handoff-latency", "unit", "us"), HISTOGRAM_BUILDER);
+
+      @Override
+      public void reportHandoffLatency(final long nanos) {
+        handoffLatency.update(TimeUnit.NANOSECONDS.toMicros(nanos));
+      }
+    };
+  }
+
   @Override
   public OutputManagerStatistics newOutputManager() {
     final MetricId m = metric.tagged("component", "output-manager");
@@ -99,11 +118,17 @@ public class SemanticCoreStatistics implements CoreStatistics {
           registry.counter(m.tagged("what", "metrics-dropped-by-ratelimit", "unit", "metric"));
       private final Counter metricsDroppedByCardinalityLimit =
           registry.counter(m.tagged("what", "metrics-dropped-by-cardlimit", "unit", "metric"));
+      private final Counter metricsDroppedByCardinalityBudget =
+          registry.counter(m.tagged("what", "metrics-dropped-by-cardbudget", "unit", "metric"));
 
       private final Gauge<Long> metricsCardinalityMetric =
           registry.register(m.tagged("what", "metrics-cardinality"),
               (Gauge<Long>) metricsCardinality::get);
 
+      // Cardinality of the top buckets of every cardinality budget, by budget
+      private final Map<String, Map<MetricId, AtomicLong>> budgetUsage =
+          new ConcurrentHashMap<>();
+
       @Override
       public void reportSentMetrics(int sent) {
         sentMetrics.inc(sent);
@@ -124,10 +149,47 @@ public class SemanticCoreStatistics implements CoreStatistics {
         metricsDroppedByCardinalityLimit.inc(dropped);
       }
 
+      @Override
+      public void reportMetricsDroppedByCardinalityBudget(int dropped) {
+        metricsDroppedByCardinalityBudget.inc(dropped);
+      }
+
       @Override
       public void reportMetricsCardinality(long cardinality) {
         metricsCardinality.set(cardinality);
       }
+
+      @Override
+      public void reportCardinalityBudget(final String budget, final Map<String, Long> top) {
+        final Map<MetricId, AtomicLong> previous =
+            budgetUsage.getOrDefault(budget, Collections.emptyMap());
+        final Map<MetricId, AtomicLong> current = new HashMap<>();
+
+        for (final Map.Entry<String, Long> e : top.entrySet()) {
+          final MetricId id = m.tagged("what", "cardinality-budget-usage", "unit", "series",
+              "budget", budget, "bucket", e.getKey());
+
+          AtomicLong usage = previous.get(id);
+
+          if (usage == null) {
+            final AtomicLong created = new AtomicLong();
+            registry.register(id, (Gauge<Long>) created::get);
+            usage = created;
+          }
+
+          usage.set(e.getValue());
+          current.put(id, usage);
+        }
+
+        // buckets which are no longer at the top are not reported any more
+        for (final MetricId id : previous.keySet()) {
+          if (!current.containsKey(id)) {
+            registry.remove(id);
+          }
+        }
+
+        budgetUsage.put(budget, current);
+      }
     };
   }
 
@@ -160,6 +222,16 @@ public class SemanticCoreStatistics implements CoreStatistics {
   @Override
   public BatchingStatistics newBatching(final String id) {
     final MetricId m = metric.tagged("component", "batching-plugin", "plugin_id", id);
+    final AtomicLong batchSizeTarget = new AtomicLong();
+    final AtomicLong flushIntervalTarget = new AtomicLong();
+    final AtomicLong retryBytes = new AtomicLong();
+
+    registry.register(m.tagged("what", "batch-size-target", "unit", "metric"),
+        (Gauge<Long>) batchSizeTarget::get);
+    registry.register(m.tagged("what", "flush-interval-target", "unit", "ms"),
+        (Gauge<Long>) flushIntervalTarget::get);
+    registry.register(m.tagged("what", "retry-buffer-bytes", "unit", "byte"),
+        (Gauge<Long>) retryBytes::get);
 
     return new BatchingStatistics() {
       private final Meter sentMetrics =
@@ -194,6 +266,23 @@ public class SemanticCoreStatistics implements CoreStatistics {
       private final Meter metricsDroppedByFilter =
           registry.meter(m.tagged("what", "metrics-dropped-by-filter", "unit", "metric"));
 
+      // Time from receiving a sampled metric to enqueueing it in this plugin, in us
+      private final Histogram enqueueLatency =
+          registry.getOrAdd(m.tagged("what", "enqueue-latency", "unit", "us"), HISTOGRAM_BUILDER);
+
+      // Time from receiving a sampled metric to the completion of the write containing it, in us
+      private final Histogram ackLatency =
+          registry.getOrAdd(m.tagged("what", "ack-latency", "unit", "us"), HISTOGRAM_BUILDER);
+
+      private final Meter spooledMetrics =
+          registry.meter(m.tagged("what", "spooled-metrics", "unit", "metric"));
+      private final Meter replayedMetrics =
+          registry.meter(m.tagged("what", "replayed-metrics", "unit", "metric"));
+      private final Meter retryQueuedMetrics =
+          registry.meter(m.tagged("what", "retry-queued-metrics", "unit", "metric"));
+      private final Meter retriedMetrics =
+          registry.meter(m.tagged("what", "retried-metrics", "unit", "metric"));
+
       @Override
       public void reportSentMetrics(final int sent) {
         sentMetrics.mark(sent);
@@ -242,13 +331,173 @@ public class SemanticCoreStatistics implements CoreStatistics {
       public void reportMetricsDroppedByFilter(final int dropped) {
         metricsDroppedByFilter.mark(dropped);
       }
+
+      @Override
+      public void reportEnqueueLatency(final long nanos) {
+        enqueueLatency.update(TimeUnit.NANOSECONDS.toMicros(nanos));
+      }
+
+      @Override
+      public void reportAckLatency(final long nanos) {
+        ackLatency.update(TimeUnit.NANOSECONDS.toMicros(nanos));
+      }
+
+      @Override
+      public void reportSpooled(final int num) {
+        spooledMetrics.mark(num);
+      }
+
+      @Override
+      public void reportReplayed(final int num) {
+        replayedMetrics.mark(num);
+      }
+
+      @Override
+      public void reportFlushTargets(final long batchSizeLimit, final long flushInterval) {
+        batchSizeTarget.set(batchSizeLimit);
+        flushIntervalTarget.set(flushInterval);
+      }
+
+      @Override
+      public void reportRetryQueued(final int num) {
+        retryQueuedMetrics.mark(num);
+      }
+
+      @Override
+      public void reportRetried(final int num) {
+        retriedMetrics.mark(num);
+      }
+
+      @Override
+      public void reportRetryBytes(final long bytes) {
+        retryBytes.set(bytes);
+      }
+    };
+  }
+
+  @Override
+  public QueueStatistics newQueue(final String id) {
+    final MetricId m = metric.tagged("component", "output-queue", "plugin_id", id);
+    final AtomicLong queueDepth = new AtomicLong();
+
+    registry.register(m.tagged("what", "queue-depth", "unit", "count"),
+        (Gauge<Long>) queueDepth::get);
+
+    return new QueueStatistics() {
+      private final Meter dropped =
+          registry.meter(m.tagged("what", "dropped-metrics", "unit", "metric"));
+
+      @Override
+      public void reportQueueDepth(final int depth) {
+        queueDepth.set(depth);
+      }
+
+      @Override
+      public void reportDropped(final int dropped) {
+        this.dropped.mark(dropped);
+      }
+    };
+  }
+
+  @Override
+  public HandoffStatistics newHandoff(final String id) {
+    final MetricId m = metric.tagged("component", "output-handoff", "shard", id);
+    final AtomicLong ringOccupancy = new AtomicLong();
+
+    registry.register(m.tagged("what", "ring-occupancy", "unit", "count"),
+        (Gauge<Long>) ringOccupancy::get);
+
+    return new HandoffStatistics() {
+      // Time input threads waited for room in the ring, in us
+      private final Histogram handoffWait =
+          registry.getOrAdd(m.tagged("what", "handoff-wait", "unit", "us"), HISTOGRAM_BUILDER);
+      private final Meter dropped =
+          registry.meter(m.tagged("what", "dropped-metrics", "unit", "metric"));
+
+      @Override
+      public void reportRingOccupancy(final int occupancy) {
+        ringOccupancy.set(occupancy);
+      }
+
+      @Override
+      public void reportHandoffWait(final long nanos) {
+        handoffWait.update(TimeUnit.NANOSECONDS.toMicros(nanos));
+      }
+
+      @Override
+      public void reportDropped(final int dropped) {
+        this.dropped.mark(dropped);
+      }
+    };
+  }
+
+  @Override
+  public BackpressureStatistics newBackpressure() {
+    final MetricId m = metric.tagged("component", "backpressure");
+    final AtomicLong saturatedOutputs = new AtomicLong();
+    final AtomicLong inputsPaused = new AtomicLong();
+
+    registry.register(m.tagged("what", "saturated-outputs", "unit", "count"),
+        (Gauge<Long>) saturatedOutputs::get);
+    registry.register(m.tagged("what", "inputs-paused", "unit", "boolean"),
+        (Gauge<Long>) inputsPaused::get);
+
+    return new BackpressureStatistics() {
+      private final Meter shedDatagrams =
+          registry.meter(m.tagged("what", "shed-datagrams", "unit", "datagram"));
+
+      @Override
+      public void reportSaturatedOutputs(final int saturated) {
+        saturatedOutputs.set(saturated);
+      }
+
+      @Override
+      public void reportInputsPaused(final boolean paused) {
+        inputsPaused.set(paused ? 1 : 0);
+      }
+
+      @Override
+      public void reportShedDatagrams(final int num) {
+        shedDatagrams.mark(num);
+      }
+    };
+  }
+
+  @Override
+  public MemoryBudgetStatistics newMemoryBudget() {
+    final MetricId m = metric.tagged("component", "memory-budget");
+
+    return new MemoryBudgetStatistics() {
+      @Override
+      public void registerTotal(final LongSupplier reserved) {
+        registry.register(m.tagged("what", "total-reserved-bytes", "unit", "byte"),
+            (Gauge<Long>) reserved::getAsLong);
+      }
+
+      @Override
+      public void registerComponent(final String component, final LongSupplier reserved) {
+        registry.register(
+            m.tagged("what", "reserved-bytes", "unit", "byte", "memory_component", component),
+            (Gauge<Long>) reserved::getAsLong);
+      }
+
+      @Override
+      public void reportRefused(final String component, final long bytes) {
+        registry
+            .meter(m.tagged("what", "refused-bytes", "unit", "byte", "memory_component",
+                component))
+            .mark(bytes);
+      }
     };
   }
 
   @Override
   public HighFrequencyDetectorStatistics newHighFrequency() {
     final MetricId m = metric.tagged("component", "high-freq");
-    final Map<MetricId, Long> highFreqMetricsMap = new ConcurrentHashMap<>();
+    final AtomicLong highFreqMetrics = new AtomicLong();
+
+    registry.register(m.tagged("what", "high-freq-metrics", "unit", "series"),
+        (Gauge<Long>) highFreqMetrics::get);
 
     return new HighFrequencyDetectorStatistics() {
       private final Counter dropped = registry.counter(
@@ -259,29 +508,41 @@ public class SemanticCoreStatistics implements CoreStatistics {
         this.dropped.inc(dropped);
       }
 
+      private Map<MetricId, AtomicLong> offenders = Collections.emptyMap();
+
       @Override
-      public void reportHighFrequencyMetrics(int marked, String... tags) {
-        MetricId gaugeMetric = m.tagged("what", "high-freq-metrics").tagged(tags);
+      public synchronized void reportHighFrequencyMetrics(
+          final int marked, final List<HighFrequencyOffender> top
+      ) {
+        highFreqMetrics.set(marked);
 
-        registerGauge(gaugeMetric);
+        final Map<MetricId, AtomicLong> current = new HashMap<>();
 
-        highFreqMetricsMap.put(gaugeMetric, (long) marked);
-      }
+        for (final HighFrequencyOffender offender : top) {
+          final MetricId id = m.tagged("what", "high-freq-offender", "unit", "trigger",
+              "offender_key", offender.getKey(),
+              "offender_what", String.valueOf(offender.getWhat()));
+
+          AtomicLong triggers = offenders.get(id);
 
-      private void registerGauge(MetricId gauge) {
-        if (highFreqMetricsMap.containsKey(gauge)) {
-          return;
+          if (triggers == null) {
+            final AtomicLong created = new AtomicLong();
+            registry.register(id, (Gauge<Long>) created::get);
+            triggers = created;
+          }
+
+          triggers.set(offender.getTriggers());
+          current.put(id, triggers);
         }
-        try {
-          registry.register(gauge, new Gauge<Long>() {
-            @Override
-            public Long getValue() {
-              return highFreqMetricsMap.get(gauge);
-            }
-          });
-        } catch (IllegalArgumentException e) {
-          // Do nothing as Gauge already registered
+
+        // series which are no longer at the top are not reported any more
+        for (final MetricId id : offenders.keySet()) {
+          if (!current.containsKey(id)) {
+            registry.remove(id);
+          }
         }
+
+        offenders = current;
       }
     };
   }
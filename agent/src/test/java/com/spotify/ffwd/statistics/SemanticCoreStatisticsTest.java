@@ -24,12 +24,14 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.spy;
 
 import com.codahale.metrics.Gauge;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.spotify.metrics.core.MetricId;
 import com.spotify.metrics.core.SemanticMetricRegistry;
 import java.util.Arrays;
-import java.util.List;
-import java.util.SortedMap;
-import java.util.stream.Collectors;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -47,17 +49,45 @@ public class SemanticCoreStatisticsTest {
   @Test
   public void testNewHighFrequency() {
     HighFrequencyDetectorStatistics stats = statistics.newHighFrequency();
-    List<Long> testLongs = Arrays.asList(2L, 70L, 10L);
 
-    stats.reportHighFrequencyMetrics(1, "keys", "key1|key2|key3", "whats", "what,waht,what2");
-    stats.reportHighFrequencyMetrics(2, "keys", "key1|key2|key3|key4", "whats", "waht,what2");
-    stats.reportHighFrequencyMetrics(10, "keys", "key1|key2|key3", "whats", "what,what2");
-    stats.reportHighFrequencyMetrics(70, "keys", "key1|key2|key3", "whats", "what,waht,what2");
+    stats.reportHighFrequencyMetrics(2, Arrays.asList(
+        new HighFrequencyOffender("key1", "what", 3),
+        new HighFrequencyOffender("key2", "waht", 1)));
+    stats.reportHighFrequencyMetrics(70, Arrays.asList(
+        new HighFrequencyOffender("key1", "what", 5),
+        new HighFrequencyOffender("key3", null, 2)));
 
-    SortedMap<MetricId, Gauge> gaugesFinal = registry.getGauges();
+    Map<Map<String, String>, Object> gauges = gauges();
 
-    List<Long> longs = gaugesFinal.entrySet().stream().map(set -> (Long) set.getValue().getValue())
-        .collect(Collectors.toList());
-    assertEquals(testLongs, longs);
+    // the number of marked series and the offenders which are still at the top
+    assertEquals(3, gauges.size());
+    assertEquals(70L, gauges.get(ImmutableMap.of("what", "high-freq-metrics")));
+    assertEquals(5L, gauges.get(ImmutableMap.of("offender_key", "key1", "offender_what", "what")));
+    assertEquals(2L, gauges.get(ImmutableMap.of("offender_key", "key3", "offender_what", "null")));
+
+    stats.reportHighFrequencyMetrics(0, Collections.emptyList());
+
+    assertEquals(ImmutableSet.of(ImmutableMap.of("what", "high-freq-metrics")),
+        gauges().keySet());
+  }
+
+  /**
+   * Values of the registered gauges, by the tags which tell them apart.
+   */
+  private Map<Map<String, String>, Object> gauges() {
+    final Map<Map<String, String>, Object> gauges = new HashMap<>();
+
+    for (final Map.Entry<MetricId, Gauge> e : registry.getGauges().entrySet()) {
+      final Map<String, String> tags = new HashMap<>(e.getKey().getTags());
+      tags.keySet().retainAll(ImmutableSet.of("offender_key", "offender_what"));
+
+      if (tags.isEmpty()) {
+        tags.put("what", e.getKey().getTags().get("what"));
+      }
+
+      gauges.put(tags, e.getValue().getValue());
+    }
+
+    return gauges;
   }
 }
@@ -25,6 +25,7 @@ import com.spotify.ffwd.Initializable;
 import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
 import eu.toolchain.async.AsyncFuture;
+import java.util.List;
 
 public interface InputManager extends Initializable {
 
@@ -33,6 +34,17 @@ public interface InputManager extends Initializable {
    */
   void receiveMetric(Metric metric);
 
+  /**
+   * Receive the metrics decoded during one read from a channel.
+   * <p>
+   * The list is reused by the caller once this returns, it must not be kept.
+   */
+  default void receiveMetrics(List<Metric> metrics) {
+    for (final Metric metric : metrics) {
+      receiveMetric(metric);
+    }
+  }
+
   void receiveBatch(Batch batch);
 
   AsyncFuture<Void> start();
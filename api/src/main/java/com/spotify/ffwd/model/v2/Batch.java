@@ -21,14 +21,17 @@
 package com.spotify.ffwd.model.v2;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableMap;
+import com.spotify.ffwd.statistics.ReceiveStamp;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 /**
  * This class represents a batch of points.
@@ -43,6 +46,14 @@ public class Batch {
   private final Map<String, String> commonResource;
   private final List<Metric> points;
 
+  /**
+   * Set on a sample of received batches to measure the time they spend in the agent, {@code null}
+   * otherwise. This is not part of the batch and is never serialized.
+   */
+  @JsonIgnore
+  @ToString.Exclude
+  private transient ReceiveStamp received;
+
   /**
    * JSON creator.
    */
@@ -0,0 +1,255 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.model.v2;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads metrics and batches token by token from a {@link JsonParser}, without building a tree or
+ * going through data binding.
+ * <p>
+ * The read methods expect the parser to be positioned at the first token of the value, and leave
+ * it at its last token. They accept the same documents as data binding through {@link
+ * com.spotify.ffwd.Mappers#setupApplicationJson()}, except that unknown fields are ignored.
+ */
+public final class JsonMetrics {
+
+  private JsonMetrics() {
+  }
+
+  /**
+   * Create a parser reading the readable bytes of the buffer, without copying them if the buffer
+   * is backed by an array.
+   */
+  public static JsonParser parser(final JsonFactory factory, final ByteBuf buf)
+      throws IOException {
+    if (buf.hasArray()) {
+      return factory.createParser(buf.array(), buf.arrayOffset() + buf.readerIndex(),
+          buf.readableBytes());
+    }
+
+    final InputStream input = new ByteBufInputStream(buf);
+    return factory.createParser(input);
+  }
+
+  public static Batch readBatch(final JsonParser p) throws IOException {
+    expect(p, JsonToken.START_OBJECT);
+
+    Map<String, String> commonTags = ImmutableMap.of();
+    Map<String, String> commonResource = ImmutableMap.of();
+    List<Metric> points = null;
+
+    String field;
+
+    while ((field = p.nextFieldName()) != null) {
+      p.nextToken();
+
+      switch (field) {
+        case "commonTags":
+          commonTags = readOptionalStringMap(p);
+          break;
+        case "commonResource":
+          commonResource = readOptionalStringMap(p);
+          break;
+        case "points":
+          points = readMetrics(p);
+          break;
+        default:
+          p.skipChildren();
+          break;
+      }
+    }
+
+    if (points == null) {
+      throw new JsonParseException(p, "Missing field 'points'");
+    }
+
+    return new Batch(commonTags, commonResource, points);
+  }
+
+  public static Metric readMetric(final JsonParser p) throws IOException {
+    expect(p, JsonToken.START_OBJECT);
+
+    String key = null;
+    Value value = null;
+    Long timestamp = null;
+    Map<String, String> tags = ImmutableMap.of();
+    Map<String, String> resource = ImmutableMap.of();
+
+    String field;
+
+    while ((field = p.nextFieldName()) != null) {
+      final JsonToken token = p.nextToken();
+
+      switch (field) {
+        case "key":
+          key = token == JsonToken.VALUE_NULL ? null : p.getText();
+          break;
+        case "value":
+          value = token == JsonToken.VALUE_NULL ? null : readValue(p);
+          break;
+        case "timestamp":
+          timestamp = token == JsonToken.VALUE_NULL ? null : p.getValueAsLong();
+          break;
+        case "tags":
+          tags = readOptionalStringMap(p);
+          break;
+        case "resource":
+          resource = readOptionalStringMap(p);
+          break;
+        default:
+          p.skipChildren();
+          break;
+      }
+    }
+
+    if (key == null) {
+      throw new JsonParseException(p, "Missing field 'key'");
+    }
+
+    if (value == null) {
+      throw new JsonParseException(p, "Missing field 'value'");
+    }
+
+    if (timestamp == null) {
+      throw new JsonParseException(p, "Missing field 'timestamp'");
+    }
+
+    return new Metric(key, value, timestamp, tags, resource);
+  }
+
+  /**
+   * Read a value, {@code {"doubleValue": <number>}} or {@code {"distributionValue": <base64>}}.
+   * A distribution value takes precedence if both are present.
+   */
+  public static Value readValue(final JsonParser p) throws IOException {
+    expect(p, JsonToken.START_OBJECT);
+
+    Value distribution = null;
+    Value value = null;
+
+    String field;
+
+    while ((field = p.nextFieldName()) != null) {
+      final JsonToken token = p.nextToken();
+
+      if (token == JsonToken.VALUE_NULL) {
+        continue;
+      }
+
+      switch (field) {
+        case "distributionValue":
+          distribution = Value.DistributionValue.create(ByteString.copyFrom(p.getBinaryValue()));
+          break;
+        case "doubleValue":
+          value = Value.DoubleValue.create(p.getValueAsDouble());
+          break;
+        default:
+          p.skipChildren();
+          break;
+      }
+    }
+
+    if (distribution != null) {
+      return distribution;
+    }
+
+    if (value != null) {
+      return value;
+    }
+
+    throw new JsonParseException(p, "Unrecognized value type");
+  }
+
+  /**
+   * Read an object of scalar values into a map, scalars that are not strings are kept as their
+   * text.
+   */
+  public static Map<String, String> readStringMap(final JsonParser p) throws IOException {
+    expect(p, JsonToken.START_OBJECT);
+
+    final Map<String, String> map = new HashMap<>();
+
+    String field;
+
+    while ((field = p.nextFieldName()) != null) {
+      final JsonToken token = p.nextToken();
+
+      if (token == JsonToken.VALUE_NULL) {
+        map.put(field, null);
+        continue;
+      }
+
+      if (!token.isScalarValue()) {
+        throw new JsonParseException(p, "Expected a scalar value for '" + field + "'");
+      }
+
+      map.put(field, p.getText());
+    }
+
+    return map;
+  }
+
+  private static Map<String, String> readOptionalStringMap(final JsonParser p)
+      throws IOException {
+    if (p.currentToken() == JsonToken.VALUE_NULL) {
+      return ImmutableMap.of();
+    }
+
+    return readStringMap(p);
+  }
+
+  private static List<Metric> readMetrics(final JsonParser p) throws IOException {
+    if (p.currentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+
+    expect(p, JsonToken.START_ARRAY);
+
+    final List<Metric> metrics = new ArrayList<>();
+
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      metrics.add(readMetric(p));
+    }
+
+    return metrics;
+  }
+
+  private static void expect(final JsonParser p, final JsonToken expected) throws IOException {
+    if (p.currentToken() != expected) {
+      throw new JsonParseException(p,
+          "Expected " + expected + " but got " + p.currentToken());
+    }
+  }
+}
@@ -21,6 +21,7 @@
 package com.spotify.ffwd.model.v2;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
@@ -28,11 +29,13 @@ import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import com.spotify.ffwd.model.Metrics;
+import com.spotify.ffwd.statistics.ReceiveStamp;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 
 @Data
@@ -47,6 +50,14 @@ public class Metric implements Metrics {
   private final Map<String, String> tags;
   private final Map<String, String> resource;
 
+  /**
+   * Set on a sample of received metrics to measure the time they spend in the agent, {@code null}
+   * otherwise. This is not part of the metric and is never serialized.
+   */
+  @JsonIgnore
+  @ToString.Exclude
+  private transient ReceiveStamp received;
+
   @JsonCreator
   public static Metric create(
       @JsonProperty("key") final String key,
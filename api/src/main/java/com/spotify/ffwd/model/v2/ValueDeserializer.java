@@ -22,9 +22,7 @@ package com.spotify.ffwd.model.v2;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
-import com.google.protobuf.ByteString;
 import java.io.IOException;
 
 /**
@@ -48,20 +46,6 @@ public class ValueDeserializer extends StdDeserializer<Value> {
   @Override
   public Value deserialize(JsonParser jsonParser, DeserializationContext deserializationContext)
       throws IOException, JsonProcessingException {
-
-    JsonNode node = jsonParser.getCodec().readTree(jsonParser);
-
-    if (node.get("distributionValue") != null) {
-      byte[] bytes = node.get("distributionValue").binaryValue();
-      ByteString byteString = ByteString.copyFrom(bytes);
-      return Value.DistributionValue.create(byteString);
-    }
-
-    if (node.get("doubleValue") != null) {
-      double val = node.get("doubleValue").asDouble();
-      return Value.DoubleValue.create(val);
-    }
-
-    throw new RuntimeException("Unrecognized value type");
+    return JsonMetrics.readValue(jsonParser);
   }
 }
@@ -0,0 +1,98 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.module;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Optional;
+import lombok.Data;
+
+/**
+ * Configuration of adaptive flushing for a batching output.
+ * <p>
+ * When configured, the batch size limit and the flush interval are tuned at runtime within these
+ * bounds, from the latency of writes and the number of pending flushes.
+ */
+@Data
+public class AdaptiveBatching {
+
+  public static final long DEFAULT_MIN_BATCH_SIZE = 1000;
+  public static final long DEFAULT_MAX_BATCH_SIZE = 50000;
+  public static final long DEFAULT_MIN_FLUSH_INTERVAL = 1000;
+  public static final long DEFAULT_MAX_FLUSH_INTERVAL = 30000;
+  public static final long DEFAULT_TARGET_LATENCY = 1000;
+
+  /**
+   * Smallest batch size limit, also the step by which it grows.
+   */
+  protected final long minBatchSize;
+
+  /**
+   * Largest batch size limit.
+   */
+  protected final long maxBatchSize;
+
+  /**
+   * Shortest flush interval in milliseconds, also the step by which it changes.
+   */
+  protected final long minFlushInterval;
+
+  /**
+   * Longest flush interval in milliseconds.
+   */
+  protected final long maxFlushInterval;
+
+  /**
+   * Milliseconds a write may take before the output is considered congested.
+   */
+  protected final long targetLatency;
+
+  @JsonCreator
+  public AdaptiveBatching(
+      @JsonProperty("minBatchSize") Optional<Long> minBatchSize,
+      @JsonProperty("maxBatchSize") Optional<Long> maxBatchSize,
+      @JsonProperty("minFlushInterval") Optional<Long> minFlushInterval,
+      @JsonProperty("maxFlushInterval") Optional<Long> maxFlushInterval,
+      @JsonProperty("targetLatency") Optional<Long> targetLatency
+  ) {
+    this.minBatchSize = minBatchSize.orElse(DEFAULT_MIN_BATCH_SIZE);
+    this.maxBatchSize = maxBatchSize.orElse(Math.max(DEFAULT_MAX_BATCH_SIZE, this.minBatchSize));
+    this.minFlushInterval = minFlushInterval.orElse(DEFAULT_MIN_FLUSH_INTERVAL);
+    this.maxFlushInterval =
+        maxFlushInterval.orElse(Math.max(DEFAULT_MAX_FLUSH_INTERVAL, this.minFlushInterval));
+    this.targetLatency = targetLatency.orElse(DEFAULT_TARGET_LATENCY);
+
+    if (this.minBatchSize <= 0 || this.maxBatchSize < this.minBatchSize) {
+      throw new IllegalArgumentException(
+          "adaptive: batch sizes must be positive, and minBatchSize at most maxBatchSize");
+    }
+
+    if (this.minFlushInterval <= 0 || this.maxFlushInterval < this.minFlushInterval) {
+      throw new IllegalArgumentException(
+          "adaptive: flush intervals must be positive, and minFlushInterval at most "
+          + "maxFlushInterval");
+    }
+
+    if (this.targetLatency <= 0) {
+      throw new IllegalArgumentException("adaptive: targetLatency must be positive");
+    }
+  }
+}
@@ -30,27 +30,66 @@ import lombok.Data;
 public class Batching {
 
   public static final boolean DEFAULT_REPORT_STATISTICS = false;
+  public static final boolean DEFAULT_PRESERVE_BATCHES = false;
 
   @Nullable protected final Long flushInterval;
   protected final Optional<Long> batchSizeLimit;
   protected final Optional<Long> maxPendingFlushes;
 
+  /**
+   * Flush once the estimated encoded size of a batch reaches this many bytes, and send it in
+   * requests of at most this size.
+   */
+  protected final Optional<Long> maxBatchBytes;
+
   /**
    * Should batching-specific statistics (metrics) be reported? This adds a number of metrics.
    */
   protected final boolean reportStatistics;
 
+  /**
+   * Spool batches which can not be delivered to disk, instead of dropping them.
+   */
+  protected final Optional<Spooling> spool;
+
+  /**
+   * Forward received batches to the output as they are, instead of flattening them into metrics
+   * which each carry a copy of the common tags and resource.
+   */
+  protected final boolean preserveBatches;
+
+  /**
+   * Tune the batch size limit and flush interval from the observed write latency, instead of
+   * using fixed values.
+   */
+  protected final Optional<AdaptiveBatching> adaptive;
+
+  /**
+   * Keep writes which fail in memory and try them again, before spooling or dropping them.
+   */
+  protected final Optional<Retrying> retry;
+
   @JsonCreator
   public Batching(
       @JsonProperty("flushInterval") @Nullable Long flushInterval,
       @JsonProperty("batchSizeLimit") Optional<Long> batchSizeLimit,
       @JsonProperty("maxPendingFlushes") Optional<Long> maxPendingFlushes,
-      @JsonProperty("reportStatistics") Optional<Boolean> reportStatistics
+      @JsonProperty("reportStatistics") Optional<Boolean> reportStatistics,
+      @JsonProperty("spool") Optional<Spooling> spool,
+      @JsonProperty("preserveBatches") Optional<Boolean> preserveBatches,
+      @JsonProperty("adaptive") Optional<AdaptiveBatching> adaptive,
+      @JsonProperty("maxBatchBytes") Optional<Long> maxBatchBytes,
+      @JsonProperty("retry") Optional<Retrying> retry
   ) {
     this.flushInterval = flushInterval;
     this.batchSizeLimit = batchSizeLimit;
     this.maxPendingFlushes = maxPendingFlushes;
     this.reportStatistics = reportStatistics.orElse(DEFAULT_REPORT_STATISTICS);
+    this.spool = spool;
+    this.preserveBatches = preserveBatches.orElse(DEFAULT_PRESERVE_BATCHES);
+    this.adaptive = adaptive;
+    this.maxBatchBytes = maxBatchBytes;
+    this.retry = retry;
   }
 
   /**
@@ -74,7 +113,9 @@ public class Batching {
       final Optional<Batching> batching
   ) {
     return batching.orElseGet(
-        () -> new Batching(flushInterval, Optional.empty(), Optional.empty(), Optional.empty())
+        () -> new Batching(flushInterval, Optional.empty(), Optional.empty(), Optional.empty(),
+            Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),
+            Optional.empty())
     );
   }
 }
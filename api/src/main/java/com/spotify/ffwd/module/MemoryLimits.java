@@ -0,0 +1,67 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.module;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Optional;
+import lombok.Data;
+
+/**
+ * Configuration of the memory budget shared by all buffering outputs.
+ * <p>
+ * Batching outputs, retry buffers and the clients of outputs reserve the estimated encoded size
+ * of the metrics they buffer. Over the soft limit the least important buffers are refused, over
+ * the hard limit all of them are.
+ */
+@Data
+public class MemoryLimits {
+
+  public static final double DEFAULT_SOFT_FRACTION = 0.8;
+
+  /**
+   * Bytes reserved by all buffers, from which low priority buffers are refused.
+   */
+  protected final long softLimit;
+
+  /**
+   * Bytes reserved by all buffers, from which all buffers are refused.
+   */
+  protected final long hardLimit;
+
+  @JsonCreator
+  public MemoryLimits(
+      @JsonProperty("softLimit") Optional<Long> softLimit,
+      @JsonProperty("hardLimit") Long hardLimit
+  ) {
+    if (hardLimit == null || hardLimit <= 0) {
+      throw new IllegalArgumentException("memory: hardLimit must be set, and positive");
+    }
+
+    this.hardLimit = hardLimit;
+    this.softLimit = softLimit.orElse((long) (hardLimit * DEFAULT_SOFT_FRACTION));
+
+    if (this.softLimit <= 0 || this.softLimit > this.hardLimit) {
+      throw new IllegalArgumentException(
+          "memory: softLimit must be positive, and at most hardLimit");
+    }
+  }
+}
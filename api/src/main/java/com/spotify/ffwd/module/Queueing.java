@@ -0,0 +1,91 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.module;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Optional;
+import lombok.Data;
+
+/**
+ * Configuration of the queue between the output manager and the sink of an output.
+ * <p>
+ * When configured, metrics and batches are handed over to the queue on the input threads, and
+ * sent to the sink by dedicated threads. A slow or blocking sink then only fills up its own queue.
+ */
+@Data
+public class Queueing {
+
+  public static final String DROP_NEWEST = "drop-newest";
+  public static final String DROP_OLDEST = "drop-oldest";
+  public static final String BLOCK = "block";
+
+  public static final int DEFAULT_CAPACITY = 10000;
+  public static final String DEFAULT_OVERFLOW = DROP_NEWEST;
+  public static final long DEFAULT_BLOCK_TIMEOUT = 100;
+  public static final int DEFAULT_THREADS = 1;
+
+  /**
+   * The maximum number of metrics and batches waiting in the queue.
+   */
+  protected final int capacity;
+
+  /**
+   * What to do when the queue is full: {@code drop-newest}, {@code drop-oldest} or {@code block}.
+   */
+  protected final String overflow;
+
+  /**
+   * Milliseconds to wait for room in a full queue before dropping, when blocking.
+   */
+  protected final long blockTimeout;
+
+  /**
+   * Number of threads sending what is queued to the sink.
+   */
+  protected final int threads;
+
+  @JsonCreator
+  public Queueing(
+      @JsonProperty("capacity") Optional<Integer> capacity,
+      @JsonProperty("overflow") Optional<String> overflow,
+      @JsonProperty("blockTimeout") Optional<Long> blockTimeout,
+      @JsonProperty("threads") Optional<Integer> threads
+  ) {
+    this.capacity = capacity.orElse(DEFAULT_CAPACITY);
+    this.overflow = overflow.orElse(DEFAULT_OVERFLOW);
+    this.blockTimeout = blockTimeout.orElse(DEFAULT_BLOCK_TIMEOUT);
+    this.threads = threads.orElse(DEFAULT_THREADS);
+
+    if (this.capacity <= 0) {
+      throw new IllegalArgumentException("queue: capacity must be positive");
+    }
+
+    if (!DROP_NEWEST.equals(this.overflow) && !DROP_OLDEST.equals(this.overflow)
+        && !BLOCK.equals(this.overflow)) {
+      throw new IllegalArgumentException("queue: unsupported overflow: " + this.overflow);
+    }
+
+    if (this.threads <= 0) {
+      throw new IllegalArgumentException("queue: threads must be positive");
+    }
+  }
+}
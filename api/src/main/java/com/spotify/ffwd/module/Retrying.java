@@ -0,0 +1,93 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.module;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.spotify.ffwd.protocol.RetryPolicy;
+import java.util.Optional;
+import lombok.Data;
+
+/**
+ * Configuration of the in-memory retry buffer of a batching output.
+ * <p>
+ * When configured, writes which fail are kept in memory and tried again with a backoff, instead
+ * of being spooled or dropped straight away. Retries are limited by a budget relative to the
+ * metrics written for the first time, so that an output which recovers is not flooded.
+ */
+@Data
+public class Retrying {
+
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+  public static final long DEFAULT_MAX_AGE = 60000;
+  public static final double DEFAULT_BUDGET = 0.2;
+  public static final long DEFAULT_MIN_RETRY_RATE = 100;
+
+  /**
+   * Estimated encoded bytes of failed writes kept for retrying, beyond which they are spooled
+   * or dropped.
+   */
+  protected final long maxBytes;
+
+  /**
+   * Milliseconds a failed write is retried for, after which it is spooled or dropped.
+   */
+  protected final long maxAge;
+
+  /**
+   * Retried metrics, as a fraction of the metrics written for the first time.
+   */
+  protected final double budget;
+
+  /**
+   * Metrics per second which may be retried regardless of the budget, so that retrying goes on
+   * while nothing else is written.
+   */
+  protected final long minRetryRate;
+
+  /**
+   * Delay between the attempts of a failed write.
+   */
+  protected final RetryPolicy policy;
+
+  @JsonCreator
+  public Retrying(
+      @JsonProperty("maxBytes") Optional<Long> maxBytes,
+      @JsonProperty("maxAge") Optional<Long> maxAge,
+      @JsonProperty("budget") Optional<Double> budget,
+      @JsonProperty("minRetryRate") Optional<Long> minRetryRate,
+      @JsonProperty("policy") Optional<RetryPolicy> policy
+  ) {
+    this.maxBytes = maxBytes.orElse(DEFAULT_MAX_BYTES);
+    this.maxAge = maxAge.orElse(DEFAULT_MAX_AGE);
+    this.budget = budget.orElse(DEFAULT_BUDGET);
+    this.minRetryRate = minRetryRate.orElse(DEFAULT_MIN_RETRY_RATE);
+    this.policy = policy.orElseGet(RetryPolicy.Exponential::new);
+
+    if (this.maxBytes <= 0 || this.maxAge <= 0) {
+      throw new IllegalArgumentException("retry: maxBytes and maxAge must be positive");
+    }
+
+    if (this.budget < 0 || this.minRetryRate < 0) {
+      throw new IllegalArgumentException("retry: budget and minRetryRate must not be negative");
+    }
+  }
+}
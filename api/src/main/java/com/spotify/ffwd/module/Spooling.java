@@ -0,0 +1,105 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.module;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import lombok.Data;
+
+/**
+ * Configuration of the on-disk spool of a batching output.
+ * <p>
+ * When configured, batches which can not be delivered are written to the spool instead of being
+ * dropped, and replayed once the output is ready again.
+ */
+@Data
+public class Spooling {
+
+  public static final long DEFAULT_MAX_REPLAY_RATE = 10000;
+  public static final int DEFAULT_MAX_SEGMENT_SIZE = 100000000;
+  public static final SyncPolicy DEFAULT_SYNC = SyncPolicy.INTERVAL;
+  public static final long DEFAULT_SYNC_INTERVAL = 1000;
+
+  /**
+   * Directory of the spool, which must not be shared with any other output.
+   */
+  protected final String path;
+
+  /**
+   * The maximum number of metrics per second replayed from the spool.
+   */
+  protected final long maxReplayRate;
+
+  /**
+   * Size of every segment of the spool, in bytes.
+   */
+  protected final int maxSegmentSize;
+
+  /**
+   * When spooled metrics are forced to disk, configured as {@code none}, {@code interval} or
+   * {@code always}.
+   */
+  protected final SyncPolicy sync;
+
+  /**
+   * Milliseconds between forcing spooled metrics to disk, when syncing at an interval.
+   */
+  protected final long syncInterval;
+
+  @JsonCreator
+  public Spooling(
+      @JsonProperty("path") String path,
+      @JsonProperty("maxReplayRate") Optional<Long> maxReplayRate,
+      @JsonProperty("maxSegmentSize") Optional<Integer> maxSegmentSize,
+      @JsonProperty("sync") Optional<String> sync,
+      @JsonProperty("syncInterval") Optional<Long> syncInterval
+  ) {
+    if (path == null) {
+      throw new IllegalArgumentException("spool: path must be set");
+    }
+
+    this.path = path;
+    this.maxReplayRate = maxReplayRate.orElse(DEFAULT_MAX_REPLAY_RATE);
+    this.maxSegmentSize = maxSegmentSize.orElse(DEFAULT_MAX_SEGMENT_SIZE);
+    this.sync = sync.map(Spooling::parseSync).orElse(DEFAULT_SYNC);
+    this.syncInterval = syncInterval.orElse(DEFAULT_SYNC_INTERVAL);
+  }
+
+  private static SyncPolicy parseSync(final String sync) {
+    for (final SyncPolicy policy : SyncPolicy.values()) {
+      if (policy.name().equalsIgnoreCase(sync)) {
+        return policy;
+      }
+    }
+
+    final String allowed = Arrays
+        .stream(SyncPolicy.values())
+        .map(policy -> policy.name().toLowerCase(Locale.ROOT))
+        .collect(Collectors.joining(", "));
+
+    throw new IllegalArgumentException(
+        "spool: sync must be one of " + allowed + ", but was: " + sync);
+  }
+}
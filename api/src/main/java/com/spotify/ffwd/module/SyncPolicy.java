@@ -0,0 +1,41 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.module;
+
+/**
+ * When entries written to the spool are forced to disk.
+ * <p>
+ * Without forcing, written entries survive a crash of the agent, but not of the host.
+ */
+public enum SyncPolicy {
+  /**
+   * Leave it to the operating system, entries are only forced when the log stops.
+   */
+  NONE,
+  /**
+   * Force at most once per sync interval, committing all entries written since as a group.
+   */
+  INTERVAL,
+  /**
+   * Force after every entry.
+   */
+  ALWAYS
+}
@@ -26,7 +26,10 @@ import com.spotify.ffwd.model.v2.Metric;
 import com.spotify.ffwd.output.BatchablePluginSink;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,6 +67,20 @@ public class NoopPluginSink implements BatchablePluginSink {
     return count(batches.size());
   }
 
+  /**
+   * Nothing is sent, each batch is counted on its own.
+   */
+  @Override
+  public List<AsyncFuture<Void>> sendEachBatch(final List<Batch> batches) {
+    final List<AsyncFuture<Void>> sent = new ArrayList<>();
+
+    for (final Batch batch : batches) {
+      sent.add(sendBatches(Collections.singletonList(batch)));
+    }
+
+    return sent;
+  }
+
   private AsyncFuture<Void> count(int size) {
     final long now = System.currentTimeMillis();
     final long then = this.date.getAndSet(now);
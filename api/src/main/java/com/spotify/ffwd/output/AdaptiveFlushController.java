@@ -0,0 +1,100 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import com.spotify.ffwd.module.AdaptiveBatching;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tunes the batch size limit and flush interval of a batching output, additive increase and
+ * multiplicative decrease style.
+ * <p>
+ * A flush is congested if it failed, took longer than the target latency, or left the maximum
+ * number of flushes pending. On congestion the batch size limit is halved and the flush interval
+ * doubled, so that less is in flight. Otherwise, full batches grow the batch size limit by one
+ * step. Batches flushed at less than half the limit stretch the flush interval by one step, and
+ * larger ones shorten it.
+ * <p>
+ * The targets are read without locking, updates are synchronized.
+ */
+final class AdaptiveFlushController {
+
+  private final long minBatchSize;
+  private final long maxBatchSize;
+  private final long minFlushInterval;
+  private final long maxFlushInterval;
+  private final long targetLatencyNanos;
+  private final long maxPendingFlushes;
+
+  private volatile long batchSizeLimit;
+  private volatile long flushInterval;
+
+  AdaptiveFlushController(final AdaptiveBatching config, final long maxPendingFlushes) {
+    this.minBatchSize = config.getMinBatchSize();
+    this.maxBatchSize = config.getMaxBatchSize();
+    this.minFlushInterval = config.getMinFlushInterval();
+    this.maxFlushInterval = config.getMaxFlushInterval();
+    this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(config.getTargetLatency());
+    this.maxPendingFlushes = maxPendingFlushes;
+
+    this.batchSizeLimit = minBatchSize;
+    this.flushInterval = minFlushInterval;
+  }
+
+  long getBatchSizeLimit() {
+    return batchSizeLimit;
+  }
+
+  long getFlushInterval() {
+    return flushInterval;
+  }
+
+  /**
+   * Adjust the targets after a write completed.
+   *
+   * @param latencyNanos How long the write took.
+   * @param size The number of metrics written.
+   * @param pending The number of pending flushes, including the one which completed.
+   */
+  synchronized void completed(final long latencyNanos, final long size, final int pending) {
+    if (latencyNanos > targetLatencyNanos
+        || (maxPendingFlushes > 0 && pending >= maxPendingFlushes)) {
+      backOff();
+      return;
+    }
+
+    if (size >= batchSizeLimit) {
+      batchSizeLimit = Math.min(maxBatchSize, batchSizeLimit + minBatchSize);
+    } else if (size < batchSizeLimit / 2) {
+      flushInterval = Math.min(maxFlushInterval, flushInterval + minFlushInterval);
+    } else {
+      flushInterval = Math.max(minFlushInterval, flushInterval - minFlushInterval);
+    }
+  }
+
+  /**
+   * Back off after a write failed, or a batch was dropped because too many flushes are pending.
+   */
+  synchronized void backOff() {
+    batchSizeLimit = Math.max(minBatchSize, batchSizeLimit / 2);
+    flushInterval = Math.min(maxFlushInterval, flushInterval * 2);
+  }
+}
@@ -25,6 +25,8 @@ import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
 import eu.toolchain.async.AsyncFuture;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 public interface BatchablePluginSink extends PluginSink {
 
@@ -45,4 +47,20 @@ public interface BatchablePluginSink extends PluginSink {
    * @return A future that will be resolved when the batches have been sent.
    */
   AsyncFuture<Void> sendBatches(Collection<Batch> batches);
+
+  /**
+   * Send the given batches, with the outcome of each batch.
+   * <p>
+   * By default all batches are sent together, and share the same outcome. Sinks which send each
+   * batch in a request of its own should report each request, so that batches which were
+   * delivered are not sent again when another request fails.
+   *
+   * @param batches Batches to send.
+   *
+   * @return A future per batch, in the order of the given batches. Batches which were sent
+   *     together share the same future.
+   */
+  default List<AsyncFuture<Void>> sendEachBatch(List<Batch> batches) {
+    return Collections.nCopies(batches.size(), sendBatches(batches));
+  }
 }
@@ -25,14 +25,18 @@ import com.google.inject.name.Named;
 import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.module.Spooling;
 import com.spotify.ffwd.statistics.BatchingStatistics;
 import com.spotify.ffwd.statistics.OutputPluginStatistics;
+import com.spotify.ffwd.statistics.ReceiveStamp;
 import com.spotify.ffwd.util.BatchMetricConverter;
+import com.spotify.ffwd.util.EncodedSize;
 import com.spotify.ffwd.util.HighFrequencyDetector;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.FutureFinished;
 import eu.toolchain.async.LazyTransform;
+import eu.toolchain.async.ResolvableFuture;
 import eu.toolchain.async.Transform;
 
 import java.util.*;
@@ -40,8 +44,11 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import lombok.Data;
 import org.slf4j.Logger;
 
@@ -57,6 +64,16 @@ public class BatchingPluginSink implements PluginSink {
   public static final long DEFAULT_BATCH_SIZE_LIMIT = 10000;
   public static final long DEFAULT_MAX_PENDING_FLUSHES = 10;
 
+  /**
+   * How often spooled metrics are replayed, in milliseconds.
+   */
+  public static final long REPLAY_INTERVAL = 1000;
+
+  /**
+   * How often failed writes are tried again, in milliseconds.
+   */
+  public static final long RETRY_INTERVAL = 500;
+
   @Inject
   AsyncFramework async;
 
@@ -80,19 +97,109 @@ public class BatchingPluginSink implements PluginSink {
   @Inject(optional = true)
   Filter filter = null;
 
+  /**
+   * spool for batches which can not be delivered, if configured.
+   */
+  @Inject(optional = true)
+  Spool spool = null;
+
+  @Inject(optional = true)
+  Spooling spooling = null;
+
+  /**
+   * failed writes waiting to be tried again, if configured.
+   */
+  @Inject(optional = true)
+  RetryBuffer retries = null;
+
+  /**
+   * forward queued batches to the sink with {@link BatchablePluginSink#sendBatches(Collection)},
+   * instead of flattening them into metrics.
+   */
+  @Named("preserveBatches")
+  @Inject(optional = true)
+  boolean preserveBatches = false;
+
+  /**
+   * flush once the estimated encoded size of the batch reaches this many bytes, and send it in
+   * requests of at most this size. Not imposed if lower than, or equal to {@code 0}.
+   */
+  @Named("maxBatchBytes")
+  @Inject(optional = true)
+  long maxBatchBytes = 0;
+
+  /**
+   * tunes the batch size limit and flush interval at runtime, if configured.
+   */
+  @Inject(optional = true)
+  AdaptiveFlushController adaptive = null;
+
+  /**
+   * pauses inputs while too many outputs have all their pending flush slots taken.
+   */
+  @Inject(optional = true)
+  OutputPressure pressure = null;
+
+  /**
+   * this output, registered with {@link #pressure} when started.
+   */
+  OutputPressure.Output pressured = null;
+
+  /**
+   * memory shared by all buffering outputs, if configured.
+   */
+  @Inject(optional = true)
+  MemoryBudget memory = null;
+
+  @Named("pluginId")
+  @Inject(optional = true)
+  String pluginId = null;
+
+  /**
+   * reservations of the queued metrics, registered with {@link #memory} on init.
+   */
+  MemoryBudget.Account queued = null;
+
+  /**
+   * reservations of the failed writes waiting to be tried again, registered with {@link #memory}
+   * on init.
+   */
+  MemoryBudget.Account retained = null;
+
+  /**
+   * future associated with the periodic replay of the spool.
+   */
+  final AtomicReference<ScheduledFuture<?>> replayer = new AtomicReference<>();
+
+  /**
+   * set while replayed metrics are being sent, only one replay is in flight at a time.
+   */
+  final AtomicBoolean replaying = new AtomicBoolean();
+
+  /**
+   * future associated with the periodic retrying of failed writes.
+   */
+  final AtomicReference<ScheduledFuture<?>> retrier = new AtomicReference<>();
+
+  /**
+   * set while failed writes are being tried again, only one round is in flight at a time.
+   */
+  final AtomicBoolean retrying = new AtomicBoolean();
+
   /**
    * future associated with the timing of the next flush
    */
   final AtomicReference<ScheduledFuture<?>> nextFlush = new AtomicReference<>();
 
   /**
-   * lock that governs access to the current batch
+   * lock that governs swapping the current batch, metrics are queued to the stripes of the batch
+   * without taking it.
    */
   final Object nextBatchLock = new Object();
   /**
    * the next batch to be flushed.
    */
-  Batch nextBatch = new Batch();
+  volatile Batch nextBatch = new Batch();
 
   /**
    * lock that governs access to the pending set of futures, this is preferred over eventually
@@ -105,6 +212,18 @@ public class BatchingPluginSink implements PluginSink {
    */
   final Set<AsyncFuture<Void>> pending = new HashSet<>();
 
+  /**
+   * replays and retries in flight, which use the spool, all access has to be synchronized on
+   * {@link #pendingLock}.
+   */
+  final Set<AsyncFuture<Void>> background = new HashSet<>();
+
+  /**
+   * set once stopping waits for everything in flight, after which no replays or retries are
+   * started. Synchronized on {@link #pendingLock}.
+   */
+  boolean draining = false;
+
   /**
    * The default flush interval in milliseconds.
    * <p>
@@ -148,6 +267,22 @@ public class BatchingPluginSink implements PluginSink {
 
   @Override
   public void init() {
+    if (memory == null) {
+      return;
+    }
+
+    queued = memory.register("batching-" + id(), MemoryBudget.Priority.NORMAL);
+
+    if (retries != null) {
+      retained = memory.register("retry-" + id(), MemoryBudget.Priority.LOW);
+    }
+  }
+
+  /**
+   * Identifies this output, falls back to the type of the sink if no plugin id is bound.
+   */
+  private String id() {
+    return pluginId != null ? pluginId : sink.getClass().getSimpleName();
   }
 
   @Override
@@ -157,47 +292,239 @@ public class BatchingPluginSink implements PluginSink {
       return;
     }
 
+    final int bytes = countsBytes() ? EncodedSize.of(metric) : 0;
+
+    if (!reserve(1, bytes)) {
+      return;
+    }
+
     batchingStatistics.reportQueueSizeInc(1);
-    queueToBatch(batch -> batch.metrics.add(metric));
+    queueToBatch(1, bytes, stripe -> {
+      stripe.metrics.add(metric);
+      stamp(stripe, metric.getReceived());
+    });
+  }
+
+  /**
+   * Queue all metrics to the current batch at once, checking the size limit after the last one.
+   */
+  @Override
+  public void sendMetricBurst(final List<Metric> metrics) {
+    final List<Metric> matching;
+
+    if (filter == null) {
+      matching = metrics;
+    } else {
+      matching = new ArrayList<>(metrics.size());
+
+      for (final Metric metric : metrics) {
+        if (filter.matchesMetric(metric)) {
+          matching.add(metric);
+        }
+      }
+
+      if (matching.size() < metrics.size()) {
+        batchingStatistics.reportMetricsDroppedByFilter(metrics.size() - matching.size());
+      }
+    }
+
+    if (matching.isEmpty()) {
+      return;
+    }
+
+    int bytes = 0;
+
+    if (countsBytes()) {
+      for (final Metric metric : matching) {
+        bytes += EncodedSize.of(metric);
+      }
+    }
+
+    if (!reserve(matching.size(), bytes)) {
+      return;
+    }
+
+    batchingStatistics.reportQueueSizeInc(matching.size());
+    queueToBatch(matching.size(), bytes, stripe -> {
+      stripe.metrics.addAll(matching);
+
+      for (final Metric metric : matching) {
+        stamp(stripe, metric.getReceived());
+      }
+    });
   }
 
   @Override
   public void sendBatch(final com.spotify.ffwd.model.v2.Batch b) {
-    batchingStatistics.reportQueueSizeInc(b.getPoints().size());
-    queueToBatch(batch -> batch.batches.add(b));
+    final int size = b.getPoints().size();
+    final int bytes;
+
+    if (!countsBytes()) {
+      bytes = 0;
+    } else if (preserveBatches) {
+      bytes = EncodedSize.of(b);
+    } else {
+      bytes = EncodedSize.flattened(b);
+    }
+
+    if (!reserve(size, bytes)) {
+      return;
+    }
+
+    batchingStatistics.reportQueueSizeInc(size);
+    queueToBatch(size, bytes, stripe -> {
+      stripe.batches.add(b);
+      stamp(stripe, b.getReceived());
+    });
   }
 
-  private void queueToBatch(final Consumer<Batch> consumer) {
-    synchronized (nextBatchLock) {
+  /**
+   * Queue something to the stripe of the current thread in the next batch.
+   * <p>
+   * The stripe is locked while queueing. If the batch was swapped out by a flush in the meantime,
+   * or already reached the batch size limit, the next batch is tried instead.
+   *
+   * @param size The number of metrics being queued.
+   * @param bytes The estimated encoded size of what is being queued, if bytes are counted.
+   */
+  private void queueToBatch(final int size, final int bytes, final Consumer<Stripe> consumer) {
+    while (true) {
       final Batch batch = nextBatch;
 
       if (batch == null) {
         log.warn("Dropping metrics since we're about to shut down");
+
+        if (queued != null) {
+          queued.release(bytes);
+        }
+
         return;
       }
 
-      consumer.accept(batch);
+      final Stripe stripe = batch.stripe();
+      final boolean claimed;
+
+      synchronized (stripe) {
+        if (stripe.sealed) {
+          continue;
+        }
+
+        claimed = batch.claim(size, currentBatchSizeLimit());
+
+        if (claimed) {
+          consumer.accept(stripe);
+          stripe.bytes += bytes;
+        }
+      }
+
+      // flushes the full batch, or waits for the thread which is flushing it.
       checkBatch(batch);
+
+      if (claimed) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * If the estimated encoded size of what is queued is counted, to limit the bytes of batches or
+   * to reserve memory.
+   */
+  private boolean countsBytes() {
+    return maxBatchBytes > 0 || queued != null;
+  }
+
+  /**
+   * Reserve memory for what is about to be queued, dropping it if the reservation is refused.
+   *
+   * @return {@code true} if it may be queued.
+   */
+  private boolean reserve(final int size, final int bytes) {
+    if (queued == null || queued.reserve(bytes)) {
+      return true;
+    }
+
+    statistics.reportDropped(size);
+    return false;
+  }
+
+  /**
+   * Account for a batch which is no longer queued.
+   */
+  private void dequeued(final Batch batch) {
+    batchingStatistics.reportQueueSizeDec(batch.size());
+
+    if (queued != null) {
+      queued.release(batch.bytes());
+    }
+  }
+
+  /**
+   * Keep the receive stamp of what was queued to the stripe, if it was sampled.
+   */
+  private void stamp(final Stripe stripe, final ReceiveStamp received) {
+    if (received != null) {
+      batchingStatistics.reportEnqueueLatency(received.elapsedNanos());
+      stripe.received.add(received);
     }
   }
 
   void checkBatch(Batch batch) {
+    final long limit = currentBatchSizeLimit();
+    final boolean sizeReached = limit > 0 && batch.size() >= limit;
+
+    if (!sizeReached && (maxBatchBytes <= 0 || batch.bytes() < maxBatchBytes)) {
+      return;
+    }
+
     synchronized (nextBatchLock) {
-      if (batchSizeLimit <= 0) {
+      // another thread reached the limit first and flushed the batch.
+      if (batch.sealed) {
         return;
       }
 
-      if (batch.size() >= batchSizeLimit) {
-        log.debug("Flushing because limit of {} reached", batchSizeLimit);
-        flushNowThenScheduleNext();
+      if (sizeReached) {
+        log.debug("Flushing because limit of {} reached", limit);
+      } else {
+        log.debug("Flushing because limit of {} bytes reached", maxBatchBytes);
       }
+
+      flushNowThenScheduleNext();
     }
   }
 
+  /**
+   * The current batch size limit, tuned at runtime with adaptive flushing.
+   */
+  long currentBatchSizeLimit() {
+    return adaptive != null ? adaptive.getBatchSizeLimit() : batchSizeLimit;
+  }
+
+  /**
+   * The current flush interval, tuned at runtime with adaptive flushing.
+   */
+  long currentFlushInterval() {
+    return adaptive != null ? adaptive.getFlushInterval() : flushInterval;
+  }
+
   @Override
   public AsyncFuture<Void> start() {
-    return sink.start().transform((Transform<Void, Void>) result -> {
+    final AsyncFuture<Void> started = spool != null
+        ? async.collectAndDiscard(Arrays.asList(sink.start(), spool.start()))
+        : sink.start();
+
+    if (pressure != null && maxPendingFlushes > 0) {
+      pressured = pressure.register("batching-" + id());
+    }
+
+    return started.transform((Transform<Void, Void>) result -> {
+      if (adaptive != null) {
+        reportFlushTargets();
+      }
+
       scheduleNext();
+      scheduleReplay();
+      scheduleRetry();
       return null;
     });
   }
@@ -215,6 +542,18 @@ public class BatchingPluginSink implements PluginSink {
           next.cancel(false);
         }
 
+        final ScheduledFuture<?> replay = replayer.getAndSet(null);
+
+        if (replay != null) {
+          replay.cancel(false);
+        }
+
+        final ScheduledFuture<?> retry = retrier.getAndSet(null);
+
+        if (retry != null) {
+          retry.cancel(false);
+        }
+
         return null;
       }
     }).lazyTransform(new LazyTransform<Void, Void>() {
@@ -230,10 +569,37 @@ public class BatchingPluginSink implements PluginSink {
         synchronized (pendingLock) {
           pending.addAll(BatchingPluginSink.this.pending);
           BatchingPluginSink.this.pending.clear();
+          updatePressure();
+
+          // replays and retries commit to, or spool into, the spool which is stopped next.
+          draining = true;
+          pending.addAll(background);
         }
 
         return async.collectAndDiscard(pending);
       }
+    }).lazyTransform(new LazyTransform<Void, Void>() {
+      /**
+       * Stop the spool, after the last flush and the failed writes which were waiting to be
+       * tried again had the chance to spool what could not be sent.
+       */
+      @Override
+      public AsyncFuture<Void> transform(Void result) {
+        if (retries != null) {
+          for (final RetryBuffer.Entry entry : retries.drain()) {
+            released(entry);
+            giveUp(entry);
+          }
+
+          batchingStatistics.reportRetryBytes(0);
+        }
+
+        if (spool == null) {
+          return async.resolved();
+        }
+
+        return spool.stop();
+      }
     }).lazyTransform(new LazyTransform<Void, Void>() {
       /**
        * Stop the underlying sink.
@@ -245,9 +611,12 @@ public class BatchingPluginSink implements PluginSink {
     });
   }
 
+  /**
+   * With a spool, metrics are accepted even if the underlying sink is not ready.
+   */
   @Override
   public boolean isReady() {
-    return sink.isReady();
+    return spool != null || sink.isReady();
   }
 
   /**
@@ -270,6 +639,7 @@ public class BatchingPluginSink implements PluginSink {
         log.debug("Adding pending flush (size: {})", pending.size());
 
         pending.add(flush);
+        updatePressure();
       }
       // when future is done, remove this as a pending task.
       flush.on(new FutureFinished() {
@@ -278,6 +648,7 @@ public class BatchingPluginSink implements PluginSink {
           synchronized (pendingLock) {
             log.debug("Removing pending flush (size: {})", pending.size());
             pending.remove(flush);
+            updatePressure();
           }
         }
       });
@@ -311,13 +682,13 @@ public class BatchingPluginSink implements PluginSink {
       }
     };
 
+    final long interval = currentFlushInterval();
+
     if (log.isDebugEnabled()) {
-      log.debug("Scheduling next flush at {}",
-          new Date(System.currentTimeMillis() + flushInterval));
+      log.debug("Scheduling next flush at {}", new Date(System.currentTimeMillis() + interval));
     }
 
-    final ScheduledFuture<?> next =
-        scheduler.schedule(flusher, flushInterval, TimeUnit.MILLISECONDS);
+    final ScheduledFuture<?> next = scheduler.schedule(flusher, interval, TimeUnit.MILLISECONDS);
 
     final ScheduledFuture<?> prevFlush = nextFlush.getAndSet(next);
 
@@ -326,6 +697,303 @@ public class BatchingPluginSink implements PluginSink {
     }
   }
 
+  /**
+   * Schedule the periodic replay of the spool, if applicable.
+   */
+  void scheduleReplay() {
+    if (spool == null) {
+      return;
+    }
+
+    replayer.set(scheduler.scheduleWithFixedDelay(this::replay, REPLAY_INTERVAL,
+        REPLAY_INTERVAL, TimeUnit.MILLISECONDS));
+  }
+
+  /**
+   * Replay the next spooled metrics, if the sink is ready and no replay is in flight.
+   * <p>
+   * Replayed metrics are committed once they have been sent, metrics which fail to send are
+   * replayed again.
+   */
+  void replay() {
+    if (stopped || !sink.isReady() || !replaying.compareAndSet(false, true)) {
+      return;
+    }
+
+    final ResolvableFuture<Void> done = inBackground();
+
+    if (done == null) {
+      replaying.set(false);
+      return;
+    }
+
+    done.onFinished(() -> replaying.set(false));
+
+    final Spool.Entries entries;
+
+    try {
+      entries = spool.read((int) Math.min(Integer.MAX_VALUE,
+          spooling.getMaxReplayRate() * REPLAY_INTERVAL / 1000));
+    } catch (final Exception e) {
+      log.error("Failed to read from spool", e);
+      done.resolve(null);
+      return;
+    }
+
+    if (entries.getDropped() > 0) {
+      statistics.reportDropped(entries.getDropped());
+    }
+
+    if (entries.getMetrics().isEmpty()) {
+      // move past entries which were skipped.
+      if (entries.getDropped() > 0) {
+        spool.commit(entries);
+      }
+
+      done.resolve(null);
+      return;
+    }
+
+    // callbacks on the same future are not invoked in the order they were added, so the commit
+    // is chained in front of resolving done, which stopping waits for before stopping the spool.
+    sink
+        .sendMetrics(entries.getMetrics())
+        .<Void>directTransform(result -> {
+          spool.commit(entries);
+          batchingStatistics.reportReplayed(entries.getMetrics().size());
+          return null;
+        })
+        .catchFailed(cause -> {
+          log.warn("Failed to replay {} spooled metric(s)", entries.getMetrics().size(), cause);
+          return null;
+        })
+        .onFinished(() -> done.resolve(null));
+  }
+
+  /**
+   * Track a replay or a retry, which stopping waits for before the spool is stopped.
+   *
+   * @return A future to resolve once done, or {@code null} if stopping already waits for
+   *     everything in flight.
+   */
+  private ResolvableFuture<Void> inBackground() {
+    final ResolvableFuture<Void> done = async.future();
+
+    synchronized (pendingLock) {
+      if (draining) {
+        return null;
+      }
+
+      background.add(done);
+    }
+
+    done.onFinished(() -> {
+      synchronized (pendingLock) {
+        background.remove(done);
+      }
+    });
+
+    return done;
+  }
+
+  /**
+   * Schedule the periodic retrying of failed writes, if applicable.
+   */
+  void scheduleRetry() {
+    if (retries == null) {
+      return;
+    }
+
+    retrier.set(scheduler.scheduleWithFixedDelay(this::retry, RETRY_INTERVAL, RETRY_INTERVAL,
+        TimeUnit.MILLISECONDS));
+  }
+
+  /**
+   * Give up on failed writes which are too old, and try again the ones which are due if the
+   * sink is ready and no retry is in flight.
+   */
+  void retry() {
+    final ResolvableFuture<Void> done = inBackground();
+
+    // stopping spools what is left in the retry buffer.
+    if (done == null) {
+      return;
+    }
+
+    final long now = System.currentTimeMillis();
+
+    for (final RetryBuffer.Entry entry : retries.expire(now)) {
+      log.warn("Giving up on retrying {} metric(s) after {} attempt(s)", entry.size,
+          entry.attempt);
+      released(entry);
+      giveUp(entry);
+    }
+
+    if (stopped || !sink.isReady() || !retrying.compareAndSet(false, true)) {
+      batchingStatistics.reportRetryBytes(retries.bytes());
+      done.resolve(null);
+      return;
+    }
+
+    done.onFinished(() -> retrying.set(false));
+
+    final List<RetryBuffer.Entry> due = retries.due(now);
+    batchingStatistics.reportRetryBytes(retries.bytes());
+
+    if (due.isEmpty()) {
+      done.resolve(null);
+      return;
+    }
+
+    final List<AsyncFuture<Void>> futures = new ArrayList<>();
+
+    for (final RetryBuffer.Entry entry : due) {
+      released(entry);
+
+      final AsyncFuture<Void> sent = entry.batches.isEmpty()
+          ? sink.sendMetrics(entry.metrics) : sink.sendBatches(entry.batches);
+
+      // chained, so that the outcome is handled before done is resolved.
+      futures.add(sent
+          .<Void>directTransform(result -> {
+            batchingStatistics.reportRetried(entry.size);
+            return null;
+          })
+          .catchFailed(cause -> {
+            retryLater(entry);
+            return null;
+          }));
+    }
+
+    async.collectAndDiscard(futures).onFinished(() -> done.resolve(null));
+  }
+
+  /**
+   * Handle a write which failed, keeping it to be tried again if possible, otherwise spooling or
+   * dropping it.
+   */
+  private void writeFailed(
+      final List<Metric> metrics, final List<com.spotify.ffwd.model.v2.Batch> batches,
+      final int size
+  ) {
+    if (retries == null) {
+      giveUp(metrics, batches, size);
+      return;
+    }
+
+    long bytes = 0;
+
+    for (final Metric metric : metrics) {
+      bytes += EncodedSize.of(metric);
+    }
+
+    for (final com.spotify.ffwd.model.v2.Batch b : batches) {
+      bytes += EncodedSize.of(b);
+    }
+
+    retryLater(new RetryBuffer.Entry(metrics, batches, size, bytes,
+        System.currentTimeMillis()));
+  }
+
+  private void retryLater(final RetryBuffer.Entry entry) {
+    // failed writes are not kept while shutting down, they could not be tried again.
+    if (stopped || !retain(entry)) {
+      giveUp(entry);
+      return;
+    }
+
+    batchingStatistics.reportRetryQueued(entry.size);
+    batchingStatistics.reportRetryBytes(retries.bytes());
+  }
+
+  /**
+   * Keep a failed write in the retry buffer, if memory can be reserved for it.
+   */
+  private boolean retain(final RetryBuffer.Entry entry) {
+    if (retained != null && !retained.reserve(entry.bytes)) {
+      return false;
+    }
+
+    if (retries.offer(entry, System.currentTimeMillis())) {
+      return true;
+    }
+
+    released(entry);
+    return false;
+  }
+
+  /**
+   * Release the memory of a failed write which left the retry buffer.
+   */
+  private void released(final RetryBuffer.Entry entry) {
+    if (retained != null) {
+      retained.release(entry.bytes);
+    }
+  }
+
+  private void giveUp(final RetryBuffer.Entry entry) {
+    giveUp(entry.metrics, entry.batches, entry.size);
+  }
+
+  /**
+   * Spool a write which will not be tried again, or drop it if it can not be spooled.
+   */
+  private void giveUp(
+      final List<Metric> metrics, final List<com.spotify.ffwd.model.v2.Batch> batches,
+      final int size
+  ) {
+    final List<Metric> all;
+
+    if (batches.isEmpty()) {
+      all = metrics;
+    } else {
+      all = new ArrayList<>(metrics);
+      all.addAll(BatchMetricConverter.convertBatchesToMetrics(batches));
+    }
+
+    if (!spool(all)) {
+      statistics.reportDropped(size);
+    }
+  }
+
+  /**
+   * Write a batch to the spool, instead of sending it.
+   *
+   * @return {@code true} if the batch was spooled.
+   */
+  private boolean spoolBatch(final Batch batch) {
+    final List<Metric> metrics = new ArrayList<>(batch.metrics());
+    metrics.addAll(BatchMetricConverter.convertBatchesToMetrics(batch.batches()));
+
+    if (!spool(metrics)) {
+      return false;
+    }
+
+    dequeued(batch);
+    return true;
+  }
+
+  /**
+   * Write metrics to the spool.
+   *
+   * @return {@code true} if the metrics were spooled.
+   */
+  private boolean spool(final List<Metric> metrics) {
+    if (spool == null) {
+      return false;
+    }
+
+    try {
+      spool.write(metrics);
+    } catch (final Exception e) {
+      log.error("Failed to spool {} metric(s)", metrics.size(), e);
+      return false;
+    }
+
+    batchingStatistics.reportSpooled(metrics.size());
+    return true;
+  }
+
   /**
    * Perform the last flush, setting the nextBatch to null, indicating that we are shutting down.
    */
@@ -354,50 +1022,214 @@ public class BatchingPluginSink implements PluginSink {
       }
 
       nextBatch = newBatch;
+      batch.sealed = true;
     }
 
+    batch.sealStripes();
+
     if (batch.isEmpty()) {
       return async.resolved();
     }
 
+    if (spool != null && !sink.isReady() && spoolBatch(batch)) {
+      return async.resolved();
+    }
+
     if (maxPendingFlushes > 0) {
+      final int pendingFlushes;
+
       synchronized (pendingLock) {
-        if (pending.size() >= maxPendingFlushes) {
-          log.warn(
-              "Max number of pending flushes ({}) reached, dropping {} metric(s) ",
-              pending.size(), batch.size());
-          statistics.reportDropped(batch.size());
-          batchingStatistics.reportQueueSizeDec(batch.size());
+        pendingFlushes = pending.size();
+      }
+
+      if (pendingFlushes >= maxPendingFlushes) {
+        if (spoolBatch(batch)) {
           return async.resolved();
         }
+
+        log.warn(
+            "Max number of pending flushes ({}) reached, dropping {} metric(s) ",
+            pendingFlushes, batch.size());
+        statistics.reportDropped(batch.size());
+        dequeued(batch);
+
+        if (adaptive != null) {
+          adaptive.backOff();
+          reportFlushTargets();
+        }
+
+        return async.resolved();
       }
     }
 
     final List<AsyncFuture<Void>> futures = new ArrayList<>();
     final FutureFinished writeMonitor = batchingStatistics.monitorWrite();
+    final long started = System.nanoTime();
+
+    final List<Metric> batchMetrics = batch.metrics();
+    final List<com.spotify.ffwd.model.v2.Batch> batchBatches = batch.batches();
+
+    if (retries != null) {
+      retries.deposit(batch.size(), System.currentTimeMillis());
+    }
+
+    // only cut into requests if the byte limit was exceeded, estimating again per entry.
+    final boolean cut = maxBatchBytes > 0 && batch.bytes() > maxBatchBytes;
 
-    if (!batch.metrics.isEmpty()) {
-      futures.add(sink
-          .sendMetrics(highFrequencyDetector.detect(batch.metrics))
-          .onFinished(() -> batchingStatistics.reportSentMetrics(batch.metrics.size())));
+    if (!batchMetrics.isEmpty()) {
+      final List<Metric> filteredMetrics = highFrequencyDetector.detect(batchMetrics);
+      futures.add(writeMetrics(filteredMetrics, cut)
+          .onFinished(() -> batchingStatistics.reportSentMetrics(batchMetrics.size())));
     }
 
-    if (!batch.batches.isEmpty()) {
-      final List<Metric> metrics = BatchMetricConverter.convertBatchesToMetrics(batch.batches);
+    if (!batchBatches.isEmpty() && preserveBatches) {
+      // high frequency metrics are detected on flattened metrics, preserved batches skip it.
+      final int points = batchBatches.stream().mapToInt(b -> b.getPoints().size()).sum();
+      futures.add(writeBatches(batchBatches, cut)
+          .onFinished(() -> batchingStatistics.reportSentMetrics(points)));
+    } else if (!batchBatches.isEmpty()) {
+      final List<Metric> metrics = BatchMetricConverter.convertBatchesToMetrics(batchBatches);
 
       final List<Metric> filteredMetrics = highFrequencyDetector.detect(metrics);
-      futures.add(sink
-          .sendMetrics(filteredMetrics)
+      futures.add(writeMetrics(filteredMetrics, cut)
           .onFinished(() -> batchingStatistics.reportSentMetrics(filteredMetrics.size())));
     }
 
+    final AsyncFuture<Void> written = async.collectAndDiscard(futures);
+
+    if (adaptive != null) {
+      written
+          .onResolved(result -> adapt(System.nanoTime() - started, batch.size()))
+          .onFailed(cause -> {
+            adaptive.backOff();
+            reportFlushTargets();
+          });
+    }
+
     // chain into batch future.
-    return async.collectAndDiscard(futures).onFinished(writeMonitor).onFinished(() -> {
-      batchingStatistics.reportQueueSizeDec(batch.size());
+    return written.onFinished(writeMonitor).onFinished(() -> {
+      dequeued(batch);
       batchingStatistics.reportInternalBatchWrite(batch.size());
+
+      for (final ReceiveStamp received : batch.received()) {
+        batchingStatistics.reportAckLatency(received.elapsedNanos());
+      }
     });
   }
 
+  /**
+   * Send metrics to the sink, retrying or spooling them if that fails.
+   *
+   * @param cut Send in requests of at most {@link #maxBatchBytes} estimated bytes.
+   */
+  private AsyncFuture<Void> writeMetrics(final List<Metric> metrics, final boolean cut) {
+    if (!cut) {
+      return failed(sink.sendMetrics(metrics), () -> failedMetrics(metrics));
+    }
+
+    final List<AsyncFuture<Void>> parts = new ArrayList<>();
+
+    for (final List<Metric> part : EncodedSize.partition(metrics, EncodedSize::of,
+        maxBatchBytes)) {
+      parts.add(failed(sink.sendMetrics(part), () -> failedMetrics(part)));
+    }
+
+    return async.collectAndDiscard(parts);
+  }
+
+  /**
+   * Send batches to the sink as they are, retrying them or spooling them flattened if that fails.
+   * <p>
+   * Only the batches which the sink reports as failed are retried or spooled, batches which were
+   * sent in a request of their own are not sent again if another request failed.
+   *
+   * @param cut Send in requests of at most {@link #maxBatchBytes} estimated bytes.
+   */
+  private AsyncFuture<Void> writeBatches(
+      final List<com.spotify.ffwd.model.v2.Batch> batches, final boolean cut
+  ) {
+    final List<List<com.spotify.ffwd.model.v2.Batch>> parts = cut
+        ? EncodedSize.partition(batches, EncodedSize::of, maxBatchBytes)
+        : Collections.singletonList(batches);
+
+    final List<AsyncFuture<Void>> futures = new ArrayList<>();
+
+    for (final List<com.spotify.ffwd.model.v2.Batch> part : parts) {
+      final List<AsyncFuture<Void>> sent = sink.sendEachBatch(part);
+
+      // batches which were sent together share their future, and fail together.
+      int start = 0;
+
+      for (int i = 1; i <= part.size(); i++) {
+        if (i < part.size() && sent.get(i) == sent.get(start)) {
+          continue;
+        }
+
+        final List<com.spotify.ffwd.model.v2.Batch> together =
+            new ArrayList<>(part.subList(start, i));
+
+        futures.add(failed(sent.get(start), () -> writeFailed(Collections.emptyList(),
+            together, together.stream().mapToInt(b -> b.getPoints().size()).sum())));
+
+        start = i;
+      }
+    }
+
+    return futures.size() == 1 ? futures.get(0) : async.collectAndDiscard(futures);
+  }
+
+  /**
+   * Handle a failed write before the returned future fails, so that stopping, which waits for
+   * pending flushes, does not stop the spool before the failed write was retried or spooled.
+   */
+  private AsyncFuture<Void> failed(final AsyncFuture<Void> sent, final Runnable handler) {
+    return sent.lazyCatchFailed(cause -> {
+      handler.run();
+      return async.failed(cause);
+    });
+  }
+
+  private void failedMetrics(final List<Metric> metrics) {
+    writeFailed(metrics, Collections.emptyList(), metrics.size());
+  }
+
+  /**
+   * Mark this output saturated when all pending flush slots are taken, and drained again when at
+   * least half of them are free.
+   * <p>
+   * Must be called while holding {@link #pendingLock}.
+   */
+  private void updatePressure() {
+    if (pressured == null) {
+      return;
+    }
+
+    if (pending.size() >= maxPendingFlushes) {
+      pressured.saturated(true);
+    } else if (pending.size() <= maxPendingFlushes / 2) {
+      pressured.saturated(false);
+    }
+  }
+
+  /**
+   * Tune the adaptive flush targets after a successful write.
+   */
+  private void adapt(final long latencyNanos, final int size) {
+    final int pendingFlushes;
+
+    synchronized (pendingLock) {
+      pendingFlushes = pending.size();
+    }
+
+    adaptive.completed(latencyNanos, size, pendingFlushes);
+    reportFlushTargets();
+  }
+
+  private void reportFlushTargets() {
+    batchingStatistics.reportFlushTargets(adaptive.getBatchSizeLimit(),
+        adaptive.getFlushInterval());
+  }
+
   /**
    * Build a new batch.
    * <p>
@@ -410,28 +1242,182 @@ public class BatchingPluginSink implements PluginSink {
     return new Batch();
   }
 
+  /**
+   * The metrics and batches queued between two flushes.
+   * <p>
+   * Threads queue to their own stripe, under the lock of the stripe, so that they do not contend
+   * with each other. A flush swaps out the whole batch and seals it, after which nothing is queued
+   * to it anymore. The stripes are only read once the batch is sealed.
+   */
   static class Batch {
 
-    private final List<Metric> metrics = new ArrayList<>();
-    private final List<com.spotify.ffwd.model.v2.Batch> batches = new ArrayList<>();
+    private static final int MAX_STRIPES = 16;
+    private static final int STRIPES = Math.min(
+        Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1), MAX_STRIPES);
+
+    private final Stripe[] stripes;
+
+    /**
+     * The number of metrics claimed by threads queueing to the batch, including the points of
+     * queued batches. Only claimed under the lock of a stripe which is not sealed, so everything
+     * claimed has been queued once the stripes are sealed.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Set when the batch is swapped out to be flushed, under {@link #nextBatchLock}.
+     */
+    volatile boolean sealed;
 
     public Batch() {
+      this.stripes = new Stripe[STRIPES];
+
+      for (int i = 0; i < STRIPES; i++) {
+        stripes[i] = new Stripe();
+      }
     }
 
-    private int getBatchesSize() {
-      return batches.stream().mapToInt(batch -> batch.getPoints().size()).sum();
+    Stripe stripe() {
+      return stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
     }
 
+    /**
+     * Claim room for the given number of metrics, unless the batch already reached the size
+     * limit. Whatever brings the batch to the limit is still queued to it, so that every batch
+     * reaches the limit with a single entry more at most.
+     *
+     * @param metrics The number of metrics to claim room for.
+     * @param limit The batch size limit, which is not imposed if lower than or equal to {@code 0}.
+     * @return {@code true} if room was claimed.
+     */
+    boolean claim(final int metrics, final long limit) {
+      while (true) {
+        final int current = size.get();
+
+        if (limit > 0 && current >= limit) {
+          return false;
+        }
+
+        if (size.compareAndSet(current, current + metrics)) {
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Seal every stripe, waiting for threads which are still queueing to them.
+     */
+    void sealStripes() {
+      for (final Stripe stripe : stripes) {
+        synchronized (stripe) {
+          stripe.sealed = true;
+        }
+      }
+    }
+
+    /**
+     * The estimated encoded size of what was queued to the batch, only counted if the batch
+     * bytes are limited or memory is reserved.
+     */
+    long bytes() {
+      long bytes = 0;
+
+      for (final Stripe stripe : stripes) {
+        bytes += stripe.bytes;
+      }
+
+      return bytes;
+    }
+
+    /**
+     * The number of metrics queued to the batch, including the points of queued batches.
+     */
     public int size() {
-      return metrics.size() + getBatchesSize();
+      return size.get();
     }
 
     public boolean isEmpty() {
-      return metrics.isEmpty() && batches.isEmpty();
+      for (final Stripe stripe : stripes) {
+        if (!stripe.metrics.isEmpty() || !stripe.batches.isEmpty()) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+
+    List<Metric> metrics() {
+      return collect(stripe -> stripe.metrics);
+    }
+
+    List<com.spotify.ffwd.model.v2.Batch> batches() {
+      return collect(stripe -> stripe.batches);
+    }
+
+    /**
+     * Receive stamps of the sampled metrics and batches in this batch.
+     */
+    List<ReceiveStamp> received() {
+      return collect(stripe -> stripe.received);
+    }
+
+    /**
+     * Collect a list from every stripe, without copying if only one stripe has any entries.
+     */
+    private <T> List<T> collect(final Function<Stripe, List<T>> list) {
+      List<T> found = null;
+      List<T> all = null;
+
+      for (final Stripe stripe : stripes) {
+        final List<T> entries = list.apply(stripe);
+
+        if (entries.isEmpty()) {
+          continue;
+        }
+
+        if (found == null) {
+          found = entries;
+          continue;
+        }
+
+        if (all == null) {
+          all = new ArrayList<>(found);
+        }
+
+        all.addAll(entries);
+      }
+
+      if (all != null) {
+        return all;
+      }
+
+      return found != null ? found : Collections.emptyList();
     }
 
     public String toString() {
-      return "Batch{metrics=" + metrics.size() + ", batches=" + getBatchesSize() + "}";
+      return "Batch{size=" + size() + "}";
     }
   }
+
+  /**
+   * The part of a batch queued to by a subset of the threads, all access is synchronized on the
+   * stripe.
+   */
+  static final class Stripe {
+
+    private final List<Metric> metrics = new ArrayList<>();
+    private final List<com.spotify.ffwd.model.v2.Batch> batches = new ArrayList<>();
+    private final List<ReceiveStamp> received = new ArrayList<>(0);
+
+    /**
+     * Running estimate of the encoded size of what was queued, read without the lock by
+     * {@link Batch#bytes()}.
+     */
+    private volatile long bytes;
+
+    /**
+     * Set once the batch has been swapped out, threads then queue to the next batch instead.
+     */
+    private boolean sealed;
+  }
 }
@@ -25,6 +25,8 @@ import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
 import eu.toolchain.async.AsyncFuture;
+import java.util.ArrayList;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +56,21 @@ public class FilteringPluginSink implements PluginSink {
     }
   }
 
+  @Override
+  public void sendMetricBurst(final List<Metric> metrics) {
+    final List<Metric> matching = new ArrayList<>(metrics.size());
+
+    for (final Metric metric : metrics) {
+      if (filter.matchesMetric(metric)) {
+        matching.add(metric);
+      }
+    }
+
+    if (!matching.isEmpty()) {
+      sink.sendMetricBurst(matching);
+    }
+  }
+
   @Override
   public void sendBatch(final Batch batch) {
     if (filter.matchesBatch(batch)) {
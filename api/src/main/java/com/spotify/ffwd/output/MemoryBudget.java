@@ -0,0 +1,79 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+/**
+ * Memory shared by every component which buffers metrics, so that all buffers together stay
+ * within a bound.
+ * <p>
+ * Components reserve the estimated encoded size of what they are about to hold on to, see
+ * {@link com.spotify.ffwd.util.EncodedSize}, and release it once it is gone. A reservation which
+ * is refused must not be buffered. Over the soft limit, reservations are refused by priority:
+ * the lower the priority of a component, the sooner it is refused. Over the hard limit, all
+ * reservations are refused.
+ */
+public interface MemoryBudget {
+
+  /**
+   * Register a component which reserves memory. Components registered with the same name share
+   * their reservations.
+   *
+   * @param component Name of the component, which reservations are reported by.
+   * @param priority When reservations of the component are refused.
+   */
+  Account register(String component, Priority priority);
+
+  enum Priority {
+    /**
+     * Refused over the soft limit, for data which can be lost first, such as retries.
+     */
+    LOW,
+    /**
+     * Refused half way between the soft and the hard limit.
+     */
+    NORMAL,
+    /**
+     * Refused over the hard limit only, for data which is already being written.
+     */
+    HIGH
+  }
+
+  /**
+   * Reservations of a single component.
+   */
+  interface Account {
+
+    /**
+     * Reserve memory.
+     *
+     * @param bytes The number of bytes to reserve.
+     * @return {@code false} if the reservation was refused, in which case nothing is reserved.
+     */
+    boolean reserve(long bytes);
+
+    /**
+     * Release memory which was reserved.
+     *
+     * @param bytes The number of bytes to release.
+     */
+    void release(long bytes);
+  }
+}
@@ -24,6 +24,7 @@ import com.spotify.ffwd.Initializable;
 import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
 import eu.toolchain.async.AsyncFuture;
+import java.util.List;
 
 public interface OutputManager extends Initializable {
 
@@ -32,6 +33,16 @@ public interface OutputManager extends Initializable {
    */
   void sendMetric(Metric metric);
 
+  /**
+   * Send metrics received together to all output plugins.
+   * <p>
+   * The list is reused by the caller once this returns, it must not be kept.
+   */
+  default void sendMetrics(List<Metric> metrics) {
+    for (final Metric metric : metrics) {
+      sendMetric(metric);
+    }
+  }
 
   /**
    * Send a batch collection of metrics to all output plugins.
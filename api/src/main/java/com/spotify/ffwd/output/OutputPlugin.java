@@ -26,11 +26,14 @@ import com.google.inject.Key;
 import com.google.inject.Module;
 import com.google.inject.PrivateModule;
 import com.google.inject.Provides;
+import com.google.inject.Scopes;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import com.google.inject.name.Names;
 import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.module.Batching;
+import com.spotify.ffwd.module.Queueing;
+import com.spotify.ffwd.module.Spooling;
 import com.spotify.ffwd.statistics.BatchingStatistics;
 import com.spotify.ffwd.statistics.CoreStatistics;
 import com.spotify.ffwd.statistics.NoopCoreStatistics;
@@ -43,11 +46,17 @@ public abstract class OutputPlugin {
   protected final Batching batching;
   protected final Optional<Filter> filter;
 
+  /**
+   * Queue between the output manager and the sink of this plugin, if configured.
+   */
+  protected final Optional<Queueing> queue;
+
   public OutputPlugin(
-      final Optional<Filter> filter, final Batching batching
+      final Optional<Filter> filter, final Batching batching, final Optional<Queueing> queue
   ) {
     this.filter = filter;
     this.batching = batching;
+    this.queue = queue;
   }
 
   /**
@@ -63,6 +72,9 @@ public abstract class OutputPlugin {
    * <p>
    * <code>output := new FlushingPluginSink(flushInterval, delegator:=output)</code>
    * <p>
+   * If a 'spool' is configured in 'batching', the flushing plugin sink spools what it can not
+   * deliver to disk. If 'retry' is configured, failed writes are first tried again from memory.
+   * <p>
    * The resulting plugin sink type may be further wrapped into com.spotify.ffwd.output
    * .FilteringPluginSink type if 'filter' key is specified in plugin configuration:
    * <p>
@@ -99,6 +111,30 @@ public abstract class OutputPlugin {
           bind(flushingKey).toInstance(
               new BatchingPluginSink(batching.getFlushInterval(),
                   batching.getBatchSizeLimit(), batching.getMaxPendingFlushes()));
+          bind(Boolean.class)
+              .annotatedWith(Names.named("preserveBatches"))
+              .toInstance(batching.isPreserveBatches());
+
+          batching.getMaxBatchBytes().ifPresent(maxBatchBytes -> {
+            bind(Long.class)
+                .annotatedWith(Names.named("maxBatchBytes"))
+                .toInstance(maxBatchBytes);
+          });
+
+          batching.getAdaptive().ifPresent(adaptive -> {
+            bind(AdaptiveFlushController.class).toInstance(new AdaptiveFlushController(adaptive,
+                batching.getMaxPendingFlushes()
+                    .orElse(BatchingPluginSink.DEFAULT_MAX_PENDING_FLUSHES)));
+          });
+
+          batching.getRetry().ifPresent(retrying -> {
+            bind(RetryBuffer.class).toInstance(new RetryBuffer(retrying));
+          });
+
+          batching.getSpool().ifPresent(spooling -> {
+            bind(Spooling.class).toInstance(spooling);
+            bind(Spool.class).toProvider(SpoolProvider.class).in(Scopes.SINGLETON);
+          });
 
           sinkKey = flushingKey;
         }
@@ -134,5 +170,9 @@ public abstract class OutputPlugin {
     };
   }
 
+  public Optional<Queueing> getQueue() {
+    return queue;
+  }
+
   public abstract Module module(Key<PluginSink> key, String id);
 }
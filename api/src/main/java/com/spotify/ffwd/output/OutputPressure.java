@@ -0,0 +1,167 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import com.spotify.ffwd.statistics.BackpressureStatistics;
+import com.spotify.ffwd.statistics.NoopCoreStatistics;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks which outputs are saturated, and tells the inputs to stop reading while a large enough
+ * fraction of them are.
+ * <p>
+ * Outputs register themselves, mark themselves saturated when they go over their high watermark
+ * and drained again when they are back under their low watermark. Inputs listen for when reading
+ * should pause and resume.
+ */
+public class OutputPressure {
+
+  private static final Logger log = LoggerFactory.getLogger(OutputPressure.class);
+
+  private final double fraction;
+  private final BackpressureStatistics statistics;
+  private final List<Consumer<Boolean>> listeners = new CopyOnWriteArrayList<>();
+
+  private int outputs = 0;
+  private int saturated = 0;
+  private volatile boolean paused = false;
+
+  /**
+   * @param fraction The fraction of outputs which have to be saturated for inputs to pause,
+   * {@code 0} disables backpressure.
+   * @param statistics Statistics to report to.
+   */
+  public OutputPressure(final double fraction, final BackpressureStatistics statistics) {
+    if (fraction < 0 || fraction > 1) {
+      throw new IllegalArgumentException("fraction must be between 0 and 1: " + fraction);
+    }
+
+    this.fraction = fraction;
+    this.statistics = statistics;
+  }
+
+  /**
+   * Output pressure which never pauses inputs.
+   */
+  public static OutputPressure disabled() {
+    return new OutputPressure(0, NoopCoreStatistics.get().newBackpressure());
+  }
+
+  public boolean isEnabled() {
+    return fraction > 0;
+  }
+
+  /**
+   * If inputs should currently stop reading.
+   */
+  public boolean isPaused() {
+    return paused;
+  }
+
+  /**
+   * Register an output.
+   *
+   * @param id Identifies the output in logs.
+   */
+  public synchronized Output register(final String id) {
+    outputs++;
+    return new Output(id);
+  }
+
+  /**
+   * Add a listener, which is called with {@code true} when inputs should pause and with
+   * {@code false} when they should resume.
+   * <p>
+   * Listeners are called while holding the lock of this object, and must not block.
+   */
+  public void addListener(final Consumer<Boolean> listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Report datagrams which were dropped since inputs are paused.
+   */
+  public void shed(final int datagrams) {
+    statistics.reportShedDatagrams(datagrams);
+  }
+
+  private synchronized void update(final Output output, final boolean saturated) {
+    if (output.saturated == saturated) {
+      return;
+    }
+
+    output.saturated = saturated;
+    this.saturated += saturated ? 1 : -1;
+    statistics.reportSaturatedOutputs(this.saturated);
+
+    final boolean pause =
+        isEnabled() && this.saturated > 0 && this.saturated >= Math.ceil(fraction * outputs);
+
+    if (pause == paused) {
+      return;
+    }
+
+    if (pause) {
+      log.warn("{} of {} outputs saturated (last: {}), pausing inputs", this.saturated, outputs,
+          output.id);
+    } else {
+      log.info("Outputs drained (last: {}), resuming inputs", output.id);
+    }
+
+    paused = pause;
+    statistics.reportInputsPaused(pause);
+
+    for (final Consumer<Boolean> listener : listeners) {
+      listener.accept(pause);
+    }
+  }
+
+  /**
+   * A registered output.
+   */
+  public final class Output {
+
+    private final String id;
+
+    private volatile boolean saturated = false;
+
+    private Output(final String id) {
+      this.id = id;
+    }
+
+    /**
+     * Mark this output as saturated or drained, this is cheap if nothing changed.
+     */
+    public void saturated(final boolean saturated) {
+      if (this.saturated != saturated) {
+        update(this, saturated);
+      }
+    }
+
+    public boolean isSaturated() {
+      return saturated;
+    }
+  }
+}
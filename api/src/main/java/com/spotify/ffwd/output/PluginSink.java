@@ -24,6 +24,7 @@ import com.spotify.ffwd.Initializable;
 import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
 import eu.toolchain.async.AsyncFuture;
+import java.util.List;
 
 public interface PluginSink extends Initializable {
 
@@ -36,6 +37,21 @@ public interface PluginSink extends Initializable {
    */
   void sendMetric(Metric metric);
 
+  /**
+   * Send metrics received together, so that a sink can take its locks and update its statistics
+   * once for all of them.
+   * <p>
+   * This method is fire-and-forget, like {@link #sendMetric(Metric)}. The list is shared with
+   * other sinks and reused by the caller once this returns, it must not be modified or kept.
+   *
+   * @param metrics Metrics to send.
+   */
+  default void sendMetricBurst(List<Metric> metrics) {
+    for (final Metric metric : metrics) {
+      sendMetric(metric);
+    }
+  }
+
   /**
    * Send the given collection of metrics.
    * <p>
@@ -0,0 +1,300 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.module.Queueing;
+import com.spotify.ffwd.statistics.QueueStatistics;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.Transform;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Plugin sink that isolates the input threads from a sink, by handing metrics and batches over
+ * to a bounded queue which dedicated threads drain into the sink. A burst of metrics takes a
+ * single entry in the queue.
+ * <p>
+ * Sending never waits on the sink. When the queue is full, either the newest or the oldest entry
+ * is dropped, or the sender waits up to a timeout for room before dropping the newest. What is
+ * sent once stopping has begun, or is still queued when stopping times out, is dropped.
+ */
+public class QueueingPluginSink implements PluginSink {
+
+  private static final Logger log = LoggerFactory.getLogger(QueueingPluginSink.class);
+
+  /**
+   * The maximum number of entries taken off the queue at once by a drainer.
+   */
+  static final int DRAIN_LIMIT = 1024;
+
+  /**
+   * How long drainers wait for entries before checking if they should stop, in milliseconds.
+   */
+  static final long POLL_INTERVAL = 100;
+
+  /**
+   * How long stopping waits for the queue to be drained, in milliseconds.
+   */
+  static final long STOP_TIMEOUT = 10000;
+
+  /**
+   * Fractions of the capacity over which the queue is saturated, and under which it is drained
+   * again.
+   */
+  static final double HIGH_WATERMARK = 0.9;
+  static final double LOW_WATERMARK = 0.5;
+
+  private final AsyncFramework async;
+  private final PluginSink sink;
+  private final QueueStatistics statistics;
+  private final String overflow;
+  private final long blockTimeout;
+  private final BlockingQueue<Object> queue;
+  private final OutputPressure.Output pressure;
+  private final int highWatermark;
+  private final int lowWatermark;
+  private final List<Thread> drainers = new ArrayList<>();
+
+  private volatile boolean stopped = false;
+
+  public QueueingPluginSink(
+      final String id, final Queueing queueing, final AsyncFramework async,
+      final PluginSink sink, final QueueStatistics statistics
+  ) {
+    this(id, queueing, async, sink, statistics, OutputPressure.disabled());
+  }
+
+  public QueueingPluginSink(
+      final String id, final Queueing queueing, final AsyncFramework async,
+      final PluginSink sink, final QueueStatistics statistics, final OutputPressure pressure
+  ) {
+    this.async = async;
+    this.sink = sink;
+    this.statistics = statistics;
+    this.overflow = queueing.getOverflow();
+    this.blockTimeout = queueing.getBlockTimeout();
+    this.queue = new ArrayBlockingQueue<>(queueing.getCapacity());
+    this.pressure = pressure.register("queue-" + id);
+    this.highWatermark = (int) Math.ceil(queueing.getCapacity() * HIGH_WATERMARK);
+    this.lowWatermark = (int) (queueing.getCapacity() * LOW_WATERMARK);
+
+    final ThreadFactory threads = new ThreadFactoryBuilder()
+        .setNameFormat("ffwd-output-queue-" + id + "-%d")
+        .setDaemon(true)
+        .build();
+
+    for (int i = 0; i < queueing.getThreads(); i++) {
+      drainers.add(threads.newThread(this::drain));
+    }
+  }
+
+  @Override
+  public void init() {
+    sink.init();
+  }
+
+  @Override
+  public void sendMetric(final Metric metric) {
+    enqueue(metric);
+  }
+
+  /**
+   * Queue the metrics as one entry, which the drainer sends as one burst.
+   */
+  @Override
+  public void sendMetricBurst(final List<Metric> metrics) {
+    if (!metrics.isEmpty()) {
+      // the list is reused by the caller.
+      enqueue(new ArrayList<>(metrics));
+    }
+  }
+
+  @Override
+  public void sendBatch(final Batch batch) {
+    enqueue(batch);
+  }
+
+  @Override
+  public AsyncFuture<Void> start() {
+    return sink.start().directTransform((Transform<Void, Void>) result -> {
+      for (final Thread drainer : drainers) {
+        drainer.start();
+      }
+
+      return null;
+    });
+  }
+
+  @Override
+  public AsyncFuture<Void> stop() {
+    stopped = true;
+
+    return async.<Void>call(() -> {
+      final long deadline = System.currentTimeMillis() + STOP_TIMEOUT;
+
+      for (final Thread drainer : drainers) {
+        drainer.join(Math.max(1, deadline - System.currentTimeMillis()));
+        drainer.interrupt();
+      }
+
+      int dropped = 0;
+      Object entry;
+
+      // entries the drainers did not get to in time.
+      while ((entry = queue.poll()) != null) {
+        dropped += dropped(entry);
+      }
+
+      if (dropped > 0) {
+        log.warn("Dropping {} queued metrics since we're shutting down", dropped);
+      }
+
+      return null;
+    }).lazyTransform(result -> sink.stop());
+  }
+
+  @Override
+  public boolean isReady() {
+    return sink.isReady();
+  }
+
+  private void enqueue(final Object entry) {
+    if (stopped) {
+      dropped(entry);
+      return;
+    }
+
+    if (queue.offer(entry)) {
+      return;
+    }
+
+    pressure.saturated(true);
+
+    switch (overflow) {
+      case Queueing.DROP_OLDEST:
+        while (!queue.offer(entry)) {
+          final Object oldest = queue.poll();
+
+          if (oldest != null) {
+            dropped(oldest);
+          }
+        }
+
+        return;
+      case Queueing.BLOCK:
+        try {
+          if (queue.offer(entry, blockTimeout, TimeUnit.MILLISECONDS)) {
+            return;
+          }
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+
+        dropped(entry);
+        return;
+      default:
+        dropped(entry);
+    }
+  }
+
+  /**
+   * Count an entry as dropped.
+   *
+   * @return The number of metrics dropped.
+   */
+  private int dropped(final Object entry) {
+    final int size;
+
+    if (entry instanceof Batch) {
+      size = ((Batch) entry).getPoints().size();
+    } else if (entry instanceof List) {
+      size = ((List<?>) entry).size();
+    } else {
+      size = 1;
+    }
+
+    statistics.reportDropped(size);
+    return size;
+  }
+
+  private void drain() {
+    final List<Object> entries = new ArrayList<>(DRAIN_LIMIT);
+
+    while (!stopped || !queue.isEmpty()) {
+      try {
+        final Object first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+
+        if (first == null) {
+          pressure.saturated(false);
+          statistics.reportQueueDepth(0);
+          continue;
+        }
+
+        entries.add(first);
+        queue.drainTo(entries, DRAIN_LIMIT - 1);
+
+        final int depth = queue.size();
+
+        if (depth >= highWatermark) {
+          pressure.saturated(true);
+        } else if (depth <= lowWatermark) {
+          pressure.saturated(false);
+        }
+
+        statistics.reportQueueDepth(depth);
+
+        for (final Object entry : entries) {
+          send(entry);
+        }
+      } catch (final InterruptedException e) {
+        return;
+      } finally {
+        entries.clear();
+      }
+    }
+  }
+
+  private void send(final Object entry) {
+    try {
+      if (entry instanceof Metric) {
+        sink.sendMetric((Metric) entry);
+      } else if (entry instanceof List) {
+        @SuppressWarnings("unchecked")
+        final List<Metric> metrics = (List<Metric>) entry;
+        sink.sendMetricBurst(metrics);
+      } else {
+        sink.sendBatch((Batch) entry);
+      }
+    } catch (final RuntimeException e) {
+      log.error("Failed to send to sink", e);
+    }
+  }
+}
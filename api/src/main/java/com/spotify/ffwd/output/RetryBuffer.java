@@ -0,0 +1,232 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.module.Retrying;
+import com.spotify.ffwd.protocol.RetryPolicy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Failed writes of a batching output, waiting to be tried again.
+ * <p>
+ * A failed write is tried again after the delay of the retry policy for its attempt, until it is
+ * older than the maximum age. Writes which do not fit in the maximum number of bytes are
+ * rejected.
+ * <p>
+ * Retries are limited by a budget: every metric written for the first time deposits a fraction
+ * of a token, and a number of tokens is deposited every second regardless. Retrying a write
+ * withdraws a token per metric, and nothing is retried while the budget is spent. Unspent tokens
+ * fade out over {@link #BUDGET_WINDOW}, so that a long healthy period can not be spent all at
+ * once when the output recovers.
+ * <p>
+ * All access is synchronized.
+ */
+final class RetryBuffer {
+
+  /**
+   * Milliseconds over which unspent budget fades out.
+   */
+  static final long BUDGET_WINDOW = 10000;
+
+  private final long maxBytes;
+  private final long maxAge;
+  private final double budget;
+  private final long minRetryRate;
+  private final RetryPolicy policy;
+
+  /**
+   * Waiting writes, in the order they failed.
+   */
+  private final LinkedList<Entry> entries = new LinkedList<>();
+
+  private long bytes = 0;
+  private double tokens = 0;
+  private long refilledAt;
+
+  RetryBuffer(final Retrying config) {
+    this(config, System.currentTimeMillis());
+  }
+
+  RetryBuffer(final Retrying config, final long now) {
+    this.maxBytes = config.getMaxBytes();
+    this.maxAge = config.getMaxAge();
+    this.budget = config.getBudget();
+    this.minRetryRate = config.getMinRetryRate();
+    this.policy = config.getPolicy();
+    this.refilledAt = now;
+  }
+
+  /**
+   * The estimated encoded bytes of the waiting writes.
+   */
+  synchronized long bytes() {
+    return bytes;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Deposit into the budget for metrics written for the first time.
+   */
+  synchronized void deposit(final int metrics, final long now) {
+    refill(now);
+    tokens += metrics * budget;
+  }
+
+  /**
+   * Keep a failed write to be tried again.
+   *
+   * @return {@code false} if the entry is too old, or does not fit.
+   */
+  synchronized boolean offer(final Entry entry, final long now) {
+    if (now - entry.failedAt >= maxAge || bytes + entry.bytes > maxBytes) {
+      return false;
+    }
+
+    entry.nextAttemptAt = now + Math.max(0, policy.delay(entry.attempt));
+    entry.attempt++;
+    entries.add(entry);
+    bytes += entry.bytes;
+    return true;
+  }
+
+  /**
+   * Remove the writes which are older than the maximum age.
+   */
+  synchronized List<Entry> expire(final long now) {
+    List<Entry> expired = null;
+
+    for (final Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+      final Entry entry = it.next();
+
+      if (now - entry.failedAt < maxAge) {
+        continue;
+      }
+
+      if (expired == null) {
+        expired = new ArrayList<>();
+      }
+
+      it.remove();
+      bytes -= entry.bytes;
+      expired.add(entry);
+    }
+
+    return expired != null ? expired : Collections.emptyList();
+  }
+
+  /**
+   * Remove the writes which are due to be tried again, for as long as the budget allows.
+   */
+  synchronized List<Entry> due(final long now) {
+    refill(now);
+
+    List<Entry> due = null;
+
+    for (final Iterator<Entry> it = entries.iterator(); it.hasNext() && tokens > 0; ) {
+      final Entry entry = it.next();
+
+      if (entry.nextAttemptAt > now) {
+        continue;
+      }
+
+      if (due == null) {
+        due = new ArrayList<>();
+      }
+
+      it.remove();
+      bytes -= entry.bytes;
+      // the budget may go into debt for a large write, which is paid back before the next one.
+      tokens -= entry.size;
+      due.add(entry);
+    }
+
+    return due != null ? due : Collections.emptyList();
+  }
+
+  /**
+   * Remove all waiting writes.
+   */
+  synchronized List<Entry> drain() {
+    final List<Entry> drained = new ArrayList<>(entries);
+    entries.clear();
+    bytes = 0;
+    return drained;
+  }
+
+  private void refill(final long now) {
+    final long elapsed = now - refilledAt;
+
+    if (elapsed <= 0) {
+      return;
+    }
+
+    refilledAt = now;
+    tokens = tokens * Math.exp(-(double) elapsed / BUDGET_WINDOW)
+        + minRetryRate * elapsed / 1000.0;
+  }
+
+  /**
+   * A failed write of either metrics or batches.
+   */
+  static final class Entry {
+
+    final List<Metric> metrics;
+    final List<Batch> batches;
+
+    /**
+     * The number of metrics in the write, including the points of batches.
+     */
+    final int size;
+
+    /**
+     * The estimated encoded size of the write.
+     */
+    final long bytes;
+
+    /**
+     * When the write first failed.
+     */
+    final long failedAt;
+
+    int attempt = 0;
+    long nextAttemptAt;
+
+    Entry(
+        final List<Metric> metrics, final List<Batch> batches, final int size, final long bytes,
+        final long failedAt
+    ) {
+      this.metrics = metrics;
+      this.batches = batches;
+      this.size = size;
+      this.bytes = bytes;
+      this.failedAt = failedAt;
+    }
+  }
+}
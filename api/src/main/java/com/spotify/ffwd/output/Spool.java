@@ -0,0 +1,78 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import com.spotify.ffwd.model.v2.Metric;
+import eu.toolchain.async.AsyncFuture;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * Durable storage for metrics which could not be delivered by an output.
+ * <p>
+ * Spooled metrics are read back in the order they were written, from the replay position. The
+ * replay position is only moved by {@link #commit(Entries)}, so metrics which fail to replay are
+ * read again.
+ */
+public interface Spool {
+
+  AsyncFuture<Void> start();
+
+  AsyncFuture<Void> stop();
+
+  /**
+   * Write metrics to the spool.
+   */
+  void write(Collection<Metric> metrics) throws IOException;
+
+  /**
+   * Read metrics from the replay position.
+   * <p>
+   * Entries which can not be decoded are skipped, and counted as dropped.
+   *
+   * @param max Reading stops once at least this many metrics have been read.
+   * @return The metrics read, empty if there is nothing to replay.
+   */
+  Entries read(int max) throws IOException;
+
+  /**
+   * Move the replay position past the given entries.
+   */
+  void commit(Entries entries);
+
+  @Data
+  class Entries {
+
+    private final List<Metric> metrics;
+
+    /**
+     * Number of metrics in the skipped entries, as far as they could be counted.
+     */
+    private final int dropped;
+
+    /**
+     * Replay position following these entries.
+     */
+    private final long next;
+  }
+}
@@ -0,0 +1,37 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import com.spotify.ffwd.module.Spooling;
+
+/**
+ * Creates spools for outputs, this is provided by the agent.
+ */
+public interface SpoolFactory {
+
+  /**
+   * Create a new spool.
+   *
+   * @param id Id of the output plugin the spool belongs to.
+   * @param spooling Configuration of the spool.
+   */
+  Spool newSpool(String id, Spooling spooling);
+}
@@ -0,0 +1,47 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
+import com.spotify.ffwd.module.Spooling;
+
+/**
+ * Provides the spool of a batching output, when one is configured.
+ */
+class SpoolProvider implements Provider<Spool> {
+
+  @Inject
+  SpoolFactory factory;
+
+  @Inject
+  Spooling spooling;
+
+  @Inject
+  @Named("pluginId")
+  String pluginId;
+
+  @Override
+  public Spool get() {
+    return factory.newSpool(pluginId, spooling);
+  }
+}
@@ -29,6 +29,39 @@ public class Protocol {
   private final ProtocolType type;
   private final InetSocketAddress address;
   private final Integer receiveBufferSize;
+  private final Integer sendBufferSize;
+  /**
+   * Accept backlog of TCP servers.
+   */
+  private final int backlog;
+  /**
+   * If SO_KEEPALIVE is set on TCP connections.
+   */
+  private final boolean keepAlive;
+  /**
+   * Number of UDP sockets to bind to the same address with SO_REUSEPORT.
+   */
+  private final int sockets;
+
+  public Protocol(
+      final ProtocolType type, final InetSocketAddress address, final Integer receiveBufferSize
+  ) {
+    this(type, address, receiveBufferSize, null, ProtocolFactory.DEFAULT_BACKLOG,
+        ProtocolFactory.DEFAULT_KEEP_ALIVE, ProtocolFactory.DEFAULT_SOCKETS);
+  }
+
+  public Protocol(
+      final ProtocolType type, final InetSocketAddress address, final Integer receiveBufferSize,
+      final Integer sendBufferSize, final int backlog, final boolean keepAlive, final int sockets
+  ) {
+    this.type = type;
+    this.address = address;
+    this.receiveBufferSize = receiveBufferSize;
+    this.sendBufferSize = sendBufferSize;
+    this.backlog = backlog;
+    this.keepAlive = keepAlive;
+    this.sockets = sockets;
+  }
 
   @Override
   public String toString() {
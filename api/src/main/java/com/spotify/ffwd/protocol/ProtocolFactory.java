@@ -35,22 +35,44 @@ import lombok.Data;
 public class ProtocolFactory {
 
   public static final String DEFAULT_HOST = "127.0.0.1";
+  public static final int DEFAULT_BACKLOG = 128;
+  public static final boolean DEFAULT_KEEP_ALIVE = true;
+  public static final int DEFAULT_SOCKETS = 1;
 
   private final String type;
   private final String host;
   private final Integer port;
   private final Integer receiveBufferSize;
+  private final Integer sendBufferSize;
+  private final Integer backlog;
+  private final Boolean keepAlive;
+  private final Integer sockets;
+
+  public ProtocolFactory(String type, String host, Integer port, Integer receiveBufferSize) {
+    this(type, host, port, receiveBufferSize, null, null, null, null);
+  }
 
   @JsonCreator
   public ProtocolFactory(
       @JsonProperty("type") String type, @JsonProperty("host") String host,
       @JsonProperty("port") Integer port,
-      @JsonProperty("receiveBufferSize") Integer receiveBufferSize
+      @JsonProperty("receiveBufferSize") Integer receiveBufferSize,
+      @JsonProperty("sendBufferSize") Integer sendBufferSize,
+      @JsonProperty("backlog") Integer backlog, @JsonProperty("keepAlive") Boolean keepAlive,
+      @JsonProperty("sockets") Integer sockets
   ) {
+    if (sockets != null && sockets < 1) {
+      throw new IllegalArgumentException("sockets must be at least 1: " + sockets);
+    }
+
     this.type = type;
     this.host = host;
     this.port = port;
     this.receiveBufferSize = receiveBufferSize;
+    this.sendBufferSize = sendBufferSize;
+    this.backlog = backlog;
+    this.keepAlive = keepAlive;
+    this.sockets = sockets;
   }
 
   /**
@@ -77,7 +99,10 @@ public class ProtocolFactory {
   public Protocol protocol(ProtocolType defaultType, int defaultPort, String defaultHost) {
     final ProtocolType t = parseProtocolType(type, defaultType);
     final InetSocketAddress address = parseSocketAddress(host, port, defaultPort, defaultHost);
-    return new Protocol(t, address, receiveBufferSize);
+    return new Protocol(t, address, receiveBufferSize, sendBufferSize,
+        backlog != null ? backlog : DEFAULT_BACKLOG,
+        keepAlive != null ? keepAlive : DEFAULT_KEEP_ALIVE,
+        sockets != null ? sockets : DEFAULT_SOCKETS);
   }
 
   private InetSocketAddress parseSocketAddress(
@@ -37,4 +37,12 @@ public interface Serializer {
    * Serialize a batch of {@link Metric}
    */
   byte[] serialize(Collection<Metric> metrics, WriteCache writeCache) throws Exception;
+
+  /**
+   * If serialized batches are compressed, in which case their size can not be estimated from the
+   * encoded size of their metrics.
+   */
+  default boolean compressesBatches() {
+    return false;
+  }
 }
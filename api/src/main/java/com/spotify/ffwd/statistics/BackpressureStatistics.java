@@ -0,0 +1,48 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.statistics;
+
+public interface BackpressureStatistics {
+
+  /**
+   * Report the number of outputs which are over their watermark.
+   *
+   * @param saturated The number of saturated outputs.
+   */
+  default void reportSaturatedOutputs(int saturated) {
+  }
+
+  /**
+   * Report that inputs stopped or resumed reading.
+   *
+   * @param paused If inputs are paused.
+   */
+  default void reportInputsPaused(boolean paused) {
+  }
+
+  /**
+   * Report datagrams which were dropped since inputs are paused.
+   *
+   * @param num The number of datagrams dropped.
+   */
+  default void reportShedDatagrams(int num) {
+  }
+}
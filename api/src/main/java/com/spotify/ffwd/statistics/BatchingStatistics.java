@@ -84,4 +84,70 @@ public interface BatchingStatistics {
    * @param dropped The number of dropped metrics.
    */
   void reportMetricsDroppedByFilter(int dropped);
+
+  /**
+   * Report the time from when a sampled metric or batch was received to when it was enqueued.
+   *
+   * @param nanos The latency in nanoseconds.
+   */
+  default void reportEnqueueLatency(long nanos) {
+  }
+
+  /**
+   * Report the time from when a sampled metric or batch was received to when the write which
+   * contained it completed.
+   *
+   * @param nanos The latency in nanoseconds.
+   */
+  default void reportAckLatency(long nanos) {
+  }
+
+  /**
+   * Report metrics which could not be delivered, and were written to the spool.
+   *
+   * @param num The number of metrics spooled.
+   */
+  default void reportSpooled(int num) {
+  }
+
+  /**
+   * Report metrics which were replayed from the spool.
+   *
+   * @param num The number of metrics replayed.
+   */
+  default void reportReplayed(int num) {
+  }
+
+  /**
+   * Report the current targets of adaptive flushing.
+   *
+   * @param batchSizeLimit The batch size limit.
+   * @param flushInterval The flush interval, in milliseconds.
+   */
+  default void reportFlushTargets(long batchSizeLimit, long flushInterval) {
+  }
+
+  /**
+   * Report failed writes which were kept to be tried again.
+   *
+   * @param num The number of metrics in the failed writes.
+   */
+  default void reportRetryQueued(int num) {
+  }
+
+  /**
+   * Report failed writes which succeeded when tried again.
+   *
+   * @param num The number of metrics retried.
+   */
+  default void reportRetried(int num) {
+  }
+
+  /**
+   * Report the estimated encoded size of the failed writes waiting to be tried again.
+   *
+   * @param bytes The size in bytes.
+   */
+  default void reportRetryBytes(long bytes) {
+  }
 }
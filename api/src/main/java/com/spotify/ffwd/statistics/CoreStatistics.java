@@ -24,6 +24,8 @@ public interface CoreStatistics {
 
   public InputManagerStatistics newInputManager();
 
+  public InputPluginStatistics newInputPlugin(String id);
+
   public OutputManagerStatistics newOutputManager();
 
   public OutputPluginStatistics newOutputPlugin(String id);
@@ -31,4 +33,12 @@ public interface CoreStatistics {
   public BatchingStatistics newBatching(String id);
 
   public HighFrequencyDetectorStatistics newHighFrequency();
+
+  public QueueStatistics newQueue(String id);
+
+  public HandoffStatistics newHandoff(String id);
+
+  public BackpressureStatistics newBackpressure();
+
+  public MemoryBudgetStatistics newMemoryBudget();
 }
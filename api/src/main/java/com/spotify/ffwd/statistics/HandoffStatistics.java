@@ -0,0 +1,48 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.statistics;
+
+public interface HandoffStatistics {
+
+  /**
+   * Report the number of metrics and batches waiting in the ring of a processing thread.
+   *
+   * @param occupancy The number of entries in the ring.
+   */
+  default void reportRingOccupancy(int occupancy) {
+  }
+
+  /**
+   * Report that an input thread had to wait for room in the full ring of a processing thread.
+   *
+   * @param nanos The time waited, in nanoseconds.
+   */
+  default void reportHandoffWait(long nanos) {
+  }
+
+  /**
+   * Report metrics which were handed off while shutting down, and will not be processed.
+   *
+   * @param dropped The number of metrics dropped.
+   */
+  default void reportDropped(int dropped) {
+  }
+}
@@ -20,14 +20,17 @@
 
 package com.spotify.ffwd.statistics;
 
+import java.util.List;
+
 public interface HighFrequencyDetectorStatistics {
 
   /**
-   * Report that the given number of metrics have been marked as high frequency.
+   * Report the number of series marked as high frequency, and the ones marked the most times.
    *
-   * @param marked The number of metrics marked.
+   * @param marked The number of series marked.
+   * @param top The series marked the most times, most first.
    */
-  void reportHighFrequencyMetrics(int marked, String... tags);
+  void reportHighFrequencyMetrics(int marked, List<HighFrequencyOffender> top);
 
   /**
    * Report that the given number of metrics have been dropped.
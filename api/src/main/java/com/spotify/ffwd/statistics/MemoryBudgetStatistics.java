@@ -0,0 +1,52 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.statistics;
+
+import java.util.function.LongSupplier;
+
+public interface MemoryBudgetStatistics {
+
+  /**
+   * Register the memory reserved by all components.
+   *
+   * @param reserved Supplies the number of bytes reserved.
+   */
+  default void registerTotal(LongSupplier reserved) {
+  }
+
+  /**
+   * Register a component which reserves memory.
+   *
+   * @param component The name of the component.
+   * @param reserved Supplies the number of bytes reserved by the component.
+   */
+  default void registerComponent(String component, LongSupplier reserved) {
+  }
+
+  /**
+   * Report a reservation which was refused.
+   *
+   * @param component The name of the component.
+   * @param bytes The number of bytes which were refused.
+   */
+  default void reportRefused(String component, long bytes) {
+  }
+}
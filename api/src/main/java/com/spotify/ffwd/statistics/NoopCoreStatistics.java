@@ -24,6 +24,7 @@ import com.codahale.metrics.Metric;
 import com.spotify.metrics.core.MetricId;
 import eu.toolchain.async.FutureFinished;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public class NoopCoreStatistics implements CoreStatistics {
@@ -44,6 +45,14 @@ public class NoopCoreStatistics implements CoreStatistics {
     return noopInputManagerStatistics;
   }
 
+  private static final InputPluginStatistics noopInputPluginStatistics = nanos -> {
+  };
+
+  @Override
+  public InputPluginStatistics newInputPlugin(String id) {
+    return noopInputPluginStatistics;
+  }
+
   private static final OutputManagerStatistics noopOutputManagerStatistics =
       new OutputManagerStatistics() {};
 
@@ -120,7 +129,7 @@ public class NoopCoreStatistics implements CoreStatistics {
   private static final HighFrequencyDetectorStatistics noopHighFrequencyDetectorStatistics =
       new HighFrequencyDetectorStatistics() {
         @Override
-        public void reportHighFrequencyMetrics(int marked, String... tags) {
+        public void reportHighFrequencyMetrics(int marked, List<HighFrequencyOffender> top) {
         }
 
         @Override
@@ -128,6 +137,36 @@ public class NoopCoreStatistics implements CoreStatistics {
         }
       };
 
+  private static final QueueStatistics noopQueueStatistics = new QueueStatistics() {};
+
+  @Override
+  public QueueStatistics newQueue(String id) {
+    return noopQueueStatistics;
+  }
+
+  private static final HandoffStatistics noopHandoffStatistics = new HandoffStatistics() {};
+
+  @Override
+  public HandoffStatistics newHandoff(String id) {
+    return noopHandoffStatistics;
+  }
+
+  private static final BackpressureStatistics noopBackpressureStatistics =
+      new BackpressureStatistics() {};
+
+  @Override
+  public BackpressureStatistics newBackpressure() {
+    return noopBackpressureStatistics;
+  }
+
+  private static final MemoryBudgetStatistics noopMemoryBudgetStatistics =
+      new MemoryBudgetStatistics() {};
+
+  @Override
+  public MemoryBudgetStatistics newMemoryBudget() {
+    return noopMemoryBudgetStatistics;
+  }
+
   private static final NoopCoreStatistics instance = new NoopCoreStatistics();
 
   public static NoopCoreStatistics get() {
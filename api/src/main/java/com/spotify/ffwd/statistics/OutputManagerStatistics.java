@@ -20,6 +20,8 @@
 
 package com.spotify.ffwd.statistics;
 
+import java.util.Map;
+
 public interface OutputManagerStatistics {
 
   /**
@@ -60,6 +62,17 @@ public interface OutputManagerStatistics {
   default void reportMetricsDroppedByCardinalityLimit(int dropped) {
   }
 
+  /**
+   * Reported that the given number of metrics were dropped because a metric key or tag value they
+   * have is over its cardinality budget.
+   * <p>
+   * Dropped metrics are <em>not</em> sent to output plugins.
+   *
+   * @param dropped The number of dropped metrics.
+   */
+  default void reportMetricsDroppedByCardinalityBudget(int dropped) {
+  }
+
   /**
    * Report current cardinality of metrics sent to output plugins.
    *
@@ -67,4 +80,13 @@ public interface OutputManagerStatistics {
    */
   default void reportMetricsCardinality(long cardinality) {
   }
+
+  /**
+   * Report the buckets of a cardinality budget which have the highest cardinality.
+   *
+   * @param budget The budget, {@code key} for the budget per metric key or else the tag it is for.
+   * @param top The cardinality of the buckets, by metric key or tag value, highest first.
+   */
+  default void reportCardinalityBudget(String budget, Map<String, Long> top) {
+  }
 }
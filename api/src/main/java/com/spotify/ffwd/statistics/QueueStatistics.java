@@ -0,0 +1,42 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.statistics;
+
+public interface QueueStatistics {
+
+  /**
+   * Report the number of metrics and batches waiting in the queue of an output.
+   *
+   * @param depth The number of queued metrics and batches.
+   */
+  default void reportQueueDepth(int depth) {
+  }
+
+  /**
+   * Report that metrics were dropped because the queue of an output was full.
+   * <p>
+   * Dropped metrics are <em>not</em> sent to the output.
+   *
+   * @param dropped The number of dropped metrics, including the points of dropped batches.
+   */
+  default void reportDropped(int dropped) {
+  }
+}
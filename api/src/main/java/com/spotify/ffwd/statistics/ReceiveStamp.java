@@ -0,0 +1,44 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.statistics;
+
+import lombok.Data;
+
+/**
+ * Monotonic time at which a sampled metric or batch was received, and by which input plugin.
+ * <p>
+ * Stamps are carried along with metrics and batches through the agent, each stage that sees a
+ * stamp reports the time elapsed since it was taken.
+ */
+@Data
+public class ReceiveStamp {
+
+  private final long nanos;
+  private final InputPluginStatistics input;
+
+  public static ReceiveStamp now(final InputPluginStatistics input) {
+    return new ReceiveStamp(System.nanoTime(), input);
+  }
+
+  public long elapsedNanos() {
+    return System.nanoTime() - nanos;
+  }
+}
@@ -0,0 +1,152 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.util;
+
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.model.v2.Value;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * A cheap estimate of the number of bytes metrics take once encoded by an output, computed
+ * without serializing them.
+ * <p>
+ * Strings count as their length plus {@link #FIELD_OVERHEAD} bytes of framing, and values as the
+ * bytes they hold. This is close to length-delimited encodings of ASCII strings, such as the
+ * protobuf based serializers. Compression is not accounted for, it only makes requests smaller.
+ */
+public final class EncodedSize {
+
+  /**
+   * Framing of every string and value, a field tag and a length.
+   */
+  static final int FIELD_OVERHEAD = 2;
+
+  /**
+   * Framing of every metric and its timestamp.
+   */
+  static final int METRIC_OVERHEAD = 2 + 9;
+
+  private static final int DOUBLE_VALUE = FIELD_OVERHEAD + Double.BYTES;
+
+  private EncodedSize() {
+  }
+
+  public static int of(final Metric metric) {
+    return METRIC_OVERHEAD + string(metric.getKey()) + value(metric.getValue())
+        + map(metric.getTags()) + map(metric.getResource());
+  }
+
+  /**
+   * The size of a batch encoded as it is, with its common tags and resource once.
+   */
+  public static int of(final Batch batch) {
+    int size = METRIC_OVERHEAD + map(batch.getCommonTags()) + map(batch.getCommonResource());
+
+    for (final Metric point : batch.getPoints()) {
+      size += of(point);
+    }
+
+    return size;
+  }
+
+  /**
+   * The size of a batch once flattened into metrics, which each carry a copy of the common tags
+   * and resource.
+   * <p>
+   * Common tags which are overridden by a point are counted twice.
+   */
+  public static int flattened(final Batch batch) {
+    final int common = map(batch.getCommonTags()) + map(batch.getCommonResource());
+
+    int size = 0;
+
+    for (final Metric point : batch.getPoints()) {
+      size += of(point) + common;
+    }
+
+    return size;
+  }
+
+  /**
+   * Cut a list into consecutive parts of at most {@code maxBytes} estimated bytes each. An entry
+   * which is larger than that on its own makes up a part by itself.
+   * <p>
+   * The parts are views of the given list, which must not be modified afterwards.
+   */
+  public static <T> List<List<T>> partition(
+      final List<T> entries, final ToIntFunction<T> estimate, final long maxBytes
+  ) {
+    final List<List<T>> parts = new ArrayList<>();
+
+    int start = 0;
+    long bytes = 0;
+
+    for (int i = 0; i < entries.size(); i++) {
+      final int size = estimate.applyAsInt(entries.get(i));
+
+      if (i > start && bytes + size > maxBytes) {
+        parts.add(entries.subList(start, i));
+        start = i;
+        bytes = 0;
+      }
+
+      bytes += size;
+    }
+
+    if (start < entries.size()) {
+      parts.add(entries.subList(start, entries.size()));
+    }
+
+    return parts;
+  }
+
+  private static int value(final Value value) {
+    if (value instanceof Value.DistributionValue) {
+      final Value.DistributionValue distribution = (Value.DistributionValue) value;
+      return FIELD_OVERHEAD
+          + (distribution.getValue() != null ? distribution.getValue().size() : 0);
+    }
+
+    return DOUBLE_VALUE;
+  }
+
+  private static int map(final Map<String, String> map) {
+    if (map == null) {
+      return 0;
+    }
+
+    int size = 0;
+
+    for (final Map.Entry<String, String> e : map.entrySet()) {
+      size += FIELD_OVERHEAD + string(e.getKey()) + string(e.getValue());
+    }
+
+    return size;
+  }
+
+  private static int string(final String string) {
+    return FIELD_OVERHEAD + (string != null ? string.length() : 0);
+  }
+}
@@ -24,28 +24,35 @@ import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.spotify.ffwd.model.v2.Metric;
 import com.spotify.ffwd.statistics.HighFrequencyDetectorStatistics;
+import com.spotify.ffwd.statistics.HighFrequencyOffender;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.IntSummaryStatistics;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import org.slf4j.Logger;
 
 /**
  * Class responsible for high frequency metrics detection.
  * All batched metrics will be examined.
  * If configured will drop metrics marked as high frequency.
+ * <p>
+ * Metrics are tracked by the fingerprint of their series in primitive tables, in a single pass
+ * over every flushed batch. A series is marked as high frequency for a batch if more than
+ * {@link #BURST_THRESHOLD} of its points are less than {@code minFrequencyMillisAllowed} after
+ * the previous point in time. Once a series has been marked {@code minNumberOfTriggers} times,
+ * its metrics are dropped until the marks are recycled.
+ * <p>
+ * Batches are concatenations of stripes filled by different threads, so the points of a series
+ * are in order within a stripe but not across them. The points are not sorted, the number of
+ * close points of a series is a lower bound counted from its earliest and latest points and from
+ * the span between them.
  */
 public class HighFrequencyDetector {
 
   public static final int BURST_THRESHOLD = 15;
 
+  /** The number of series marked the most times which are reported. */
+  public static final int TOP_OFFENDERS = 10;
+
   /** Allow to drop high frequency metrics. */
   @Inject
   @Named("dropHighFrequencyMetric")
@@ -72,116 +79,228 @@ public class HighFrequencyDetector {
   @Inject
   private HighFrequencyDetectorStatistics statistics;
 
-  /** High frequency metrics counter. */
-  final AtomicReference<Map<Metric, Integer>> highFrequencyMetrics =
-      new AtomicReference<>(new HashMap<>());
+  /**
+   * Latest and earliest timestamp, number of close points, number of points and whether to drop
+   * every series in the batch being examined by a thread, reused between its batches so that
+   * tracking neither allocates nor takes the lock.
+   */
+  private final ThreadLocal<SeriesTable> batches = ThreadLocal.withInitial(SeriesTable::new);
+
+  /**
+   * Number of times every series has been marked as high frequency, with a sample metric of the
+   * series. Guarded by {@code this}.
+   */
+  final SeriesTable marked = new SeriesTable();
 
-  final AtomicLong highFrequencyTriggersTS;
+  /** When the marks were last recycled. Guarded by {@code this}. */
+  private long recycledAt;
 
   @Inject
   public HighFrequencyDetector() {
-    this.highFrequencyTriggersTS = new AtomicLong(System.currentTimeMillis());
+    this.recycledAt = System.currentTimeMillis();
   }
 
   /**
-   * Detects high frequency metrics by grouping and calculating
-   * time delta between metric timestamps
+   * Detects high frequency metrics by tracking the time delta between consecutive data points
+   * of every series.
    *
    * @return list of filtered metrics
    */
   public List<Metric> detect(final List<Metric> metrics) {
-    List<Metric> newList = new ArrayList<>();
-
-    // Groups metrics by metric identity and finds times deltas of ordered data points.
-    // {metric1 -> -1, metric2 -> 10}
-    Map<Metric, Integer> groupedMetrics =
-        metrics.stream()
-            .sorted(Comparator.comparing(Metric::getTimestamp))
-            .collect(
-                Collectors.groupingBy(
-                    Function.identity(),
-                    Collectors.collectingAndThen(
-                        Collectors.toList(),
-                        this::computeTimeDelta)));
-
-    updateHighFrequencyMetricsStats(groupedMetrics);
-
-    if (dropHighFrequencyMetric && highFrequencyMetrics.get().size() > 0) {
-      metrics.stream()
-          .filter(
-              metric ->
-                  highFrequencyMetrics.get().getOrDefault(metric, 0)
-                  < minNumberOfTriggers)
-          .forEach(newList::add);
-
-      statistics.reportHighFrequencyMetricsDropped(metrics.size() - newList.size());
-      return newList;
+    final int size = metrics.size();
+    final long[] fingerprints = new long[size];
+    final int markedSeries;
+    final List<HighFrequencyOffender> top;
+    final List<Metric> filtered;
+    final boolean dropping;
+    final boolean flagged;
+    final SeriesTable batch = batches.get();
+
+    batch.clear(size);
+
+    for (int i = 0; i < size; i++) {
+      final Metric metric = metrics.get(i);
+      final long fingerprint = SeriesHash.hash(metric.getKey(), metric.getTags());
+      fingerprints[i] = fingerprint;
+      track(batch, fingerprint, metric);
+    }
+
+    // only the series of the batch are looked at while holding the lock.
+    synchronized (this) {
+      mark(batch);
+
+      markedSeries = marked.size();
+      top = topOffenders();
+      recycle();
+
+      dropping = dropHighFrequencyMetric && marked.size() > 0;
+      flagged = dropping && flagDropped(batch);
+    }
+
+    if (!dropping) {
+      filtered = null;
+    } else if (!flagged) {
+      filtered = metrics;
+    } else {
+      filtered = filter(batch, metrics, fingerprints);
+    }
+
+    statistics.reportHighFrequencyMetrics(markedSeries, top);
+
+    if (filtered == null) {
+      return metrics;
     }
 
-    return metrics;
+    statistics.reportHighFrequencyMetricsDropped(size - filtered.size());
+    return filtered;
   }
 
-  private int computeTimeDelta(List<Metric> list) {
-    int size = list.size();
-    IntSummaryStatistics stats = IntStream.range(1, size)
-        .map(
-            x ->
-                (int)
-                    (list.get(size - x).getTimestamp()
-                     - list.get(size - x - 1).getTimestamp()))
-        .filter(d -> (d >= 0 && d < minFrequencyMillisAllowed))
-        .summaryStatistics();
-
-    int result = -1;
-
-    /**
-     * In order to be marked as high frequency metric the number of points
-     * should be above the BURST_THRESHOLD.
-     * It ignores any small bursts of high frequency metrics.
-     */
-    if (stats.getCount() > BURST_THRESHOLD) {
-      // uses minimal delta time from all consecutive data points
-      result = stats.getMin();
+  /**
+   * Track a point of a series.
+   * <p>
+   * A point after the latest or before the earliest point of its series is next to it in time,
+   * and counted if it is close to it. A point in between is not counted here, its neighbours
+   * are not known. Since adding a point never makes fewer points close, the count is a lower
+   * bound of the number of close points once sorted.
+   */
+  private void track(final SeriesTable batch, final long fingerprint, final Metric metric) {
+    final int slot = batch.add(fingerprint);
+    final long timestamp = metric.getTimestamp();
+    final long latest = batch.timestamps[slot];
+
+    batch.points[slot]++;
+
+    if (latest == SeriesTable.NO_TIMESTAMP) {
+      batch.timestamps[slot] = timestamp;
+      batch.earliest[slot] = timestamp;
+      batch.samples[slot] = metric;
+      return;
+    }
+
+    if (timestamp >= latest) {
+      if (timestamp - latest < minFrequencyMillisAllowed) {
+        batch.counts[slot]++;
+      }
+
+      batch.timestamps[slot] = timestamp;
+    } else if (timestamp <= batch.earliest[slot]) {
+      if (batch.earliest[slot] - timestamp < minFrequencyMillisAllowed) {
+        batch.counts[slot]++;
+      }
+
+      batch.earliest[slot] = timestamp;
     }
-    return result;
   }
 
   /**
-   * Updates internal map of high frequency metrics
+   * Mark the series of the batch which have too many close points.
+   * <p>
+   * Besides the points counted while tracking, at most {@code span / minFrequencyMillisAllowed}
+   * of the gaps between the sorted points of a series can be wide, so all other gaps are close.
+   * This counts the points of interleaved stripes, which are mostly in between.
+   */
+  private void mark(final SeriesTable batch) {
+    if (minFrequencyMillisAllowed <= 0) {
+      return;
+    }
+
+    for (int i = 0; i < batch.size(); i++) {
+      final int slot = batch.slot(i);
+      final long span = batch.timestamps[slot] - batch.earliest[slot];
+      final long close = Math.max(batch.counts[slot],
+          batch.points[slot] - 1 - span / minFrequencyMillisAllowed);
+
+      if (close > BURST_THRESHOLD) {
+        final int markedSlot = marked.add(batch.key(slot));
+        marked.counts[markedSlot]++;
+
+        if (marked.samples[markedSlot] == null) {
+          marked.samples[markedSlot] = batch.samples[slot];
+        }
+      }
+    }
+  }
+
+  /**
+   * Flag the series of the batch which have been marked enough times to be dropped.
    *
-   * @param groupedMetrics - Grouped metrics
+   * @return {@code true} if any series of the batch is dropped.
    */
-  private void updateHighFrequencyMetricsStats(final Map<Metric, Integer> groupedMetrics) {
-    groupedMetrics.entrySet().stream()
-        .filter(x -> x.getValue() >= 0)
-        .forEach(
-            metric ->
-                highFrequencyMetrics
-                    .get()
-                    .compute(metric.getKey(), (key, val) -> (val == null) ? 1 : val + 1));
-
-    String keys =
-        highFrequencyMetrics.get().keySet().stream()
-            .sorted(Comparator.comparing(Metric::hashCode))
-            .map(metric -> metric.getKey())
-            .distinct()
-            .collect(Collectors.joining("|"));
-    String whats =
-        highFrequencyMetrics.get().keySet().stream()
-            .sorted(Comparator.comparing(Metric::hashCode))
-            .map(metric -> metric.getTags().get("what"))
-            .distinct()
-            .collect(Collectors.joining("|"));
-    statistics.reportHighFrequencyMetrics(
-        highFrequencyMetrics.get().size(), "keys", keys, "whats", whats);
-    swapHighFrequencyTriggersData();
+  private boolean flagDropped(final SeriesTable batch) {
+    boolean any = false;
+
+    for (int i = 0; i < batch.size(); i++) {
+      final int slot = batch.slot(i);
+      final int markedSlot = marked.find(batch.key(slot));
+      batch.flags[slot] = markedSlot >= 0 && marked.counts[markedSlot] >= minNumberOfTriggers;
+      any |= batch.flags[slot];
+    }
+
+    return any;
   }
 
-  /** Resets high frequency triggers data hashmap */
-  private synchronized void swapHighFrequencyTriggersData() {
-    if (System.currentTimeMillis() - highFrequencyTriggersTS.get() > highFrequencyDataRecycleMS) {
-      highFrequencyMetrics.set(new HashMap<>());
-      highFrequencyTriggersTS.set(System.currentTimeMillis());
+  private List<Metric> filter(
+      final SeriesTable batch, final List<Metric> metrics, final long[] fingerprints
+  ) {
+    final List<Metric> filtered = new ArrayList<>(metrics.size());
+
+    for (int i = 0; i < fingerprints.length; i++) {
+      if (!batch.flags[batch.find(fingerprints[i])]) {
+        filtered.add(metrics.get(i));
+      }
+    }
+
+    return filtered;
+  }
+
+  /**
+   * The {@link #TOP_OFFENDERS} series marked the most times, most first.
+   */
+  private List<HighFrequencyOffender> topOffenders() {
+    if (marked.size() == 0) {
+      return Collections.emptyList();
+    }
+
+    final int[] top = new int[Math.min(TOP_OFFENDERS, marked.size())];
+    int found = 0;
+
+    for (int n = 0; n < marked.size(); n++) {
+      final int slot = marked.slot(n);
+
+      // insertion into the few slots with the most triggers so far
+      int i = found < top.length ? found++ : top.length;
+
+      while (i > 0 && marked.counts[top[i - 1]] < marked.counts[slot]) {
+        if (i < top.length) {
+          top[i] = top[i - 1];
+        }
+
+        i--;
+      }
+
+      if (i < top.length) {
+        top[i] = slot;
+      }
+    }
+
+    final List<HighFrequencyOffender> offenders = new ArrayList<>(found);
+
+    for (int i = 0; i < found; i++) {
+      final Metric sample = marked.samples[top[i]];
+      offenders.add(new HighFrequencyOffender(sample.getKey(), sample.getTags().get("what"),
+          marked.counts[top[i]]));
+    }
+
+    return offenders;
+  }
+
+  /** Forgets the marks once they are older than the recycle period. */
+  private void recycle() {
+    final long now = System.currentTimeMillis();
+
+    if (now - recycledAt > highFrequencyDataRecycleMS) {
+      marked.clear(0);
+      recycledAt = now;
     }
   }
 }
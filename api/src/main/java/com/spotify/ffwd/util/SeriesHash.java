@@ -0,0 +1,115 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.util;
+
+import java.util.Map;
+
+/**
+ * A 64-bit fingerprint of the identity of a time series, its key and tags.
+ * <p>
+ * Strings are hashed char by char and tags are combined by addition, so the fingerprint does not
+ * depend on the iteration order of the tags and nothing is allocated to compute it. The
+ * fingerprint of a point in a batch is the same as that of the merged metric {@link
+ * BatchMetricConverter} would build from it.
+ */
+public final class SeriesHash {
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final long GOLDEN = 0x9e3779b97f4a7c15L;
+
+  private static final long KEY_SEED = FNV_OFFSET;
+  private static final long TAG_KEY_SEED = FNV_OFFSET * 31;
+  private static final long TAG_VALUE_SEED = FNV_OFFSET * 37;
+  private static final long NULL = 0x5bd1e9955bd1e995L;
+
+  private SeriesHash() {
+  }
+
+  public static long hash(final String key, final Map<String, String> tags) {
+    long sum = 0;
+
+    for (final Map.Entry<String, String> e : tags.entrySet()) {
+      sum += entry(e.getKey(), e.getValue());
+    }
+
+    return combine(key, sum);
+  }
+
+  /**
+   * Fingerprint of the given key with the common tags merged with the tags, where the tags take
+   * precedence over the common tags with the same keys.
+   */
+  public static long hash(
+      final String key, final Map<String, String> commonTags, final Map<String, String> tags
+  ) {
+    long sum = 0;
+
+    for (final Map.Entry<String, String> e : tags.entrySet()) {
+      sum += entry(e.getKey(), e.getValue());
+    }
+
+    for (final Map.Entry<String, String> e : commonTags.entrySet()) {
+      if (!tags.containsKey(e.getKey())) {
+        sum += entry(e.getKey(), e.getValue());
+      }
+    }
+
+    return combine(key, sum);
+  }
+
+  private static long combine(final String key, final long sum) {
+    return fmix64(fmix64(string(key, KEY_SEED)) + sum);
+  }
+
+  private static long entry(final String key, final String value) {
+    return fmix64(string(key, TAG_KEY_SEED) * GOLDEN + string(value, TAG_VALUE_SEED));
+  }
+
+  /**
+   * FNV-1a over the chars of the string.
+   */
+  private static long string(final String s, final long seed) {
+    if (s == null) {
+      return NULL ^ seed;
+    }
+
+    long h = seed;
+
+    for (int i = 0; i < s.length(); i++) {
+      h = (h ^ s.charAt(i)) * FNV_PRIME;
+    }
+
+    return h;
+  }
+
+  /**
+   * The finalizer of MurmurHash3, spreads every input bit over all output bits.
+   */
+  static long fmix64(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -0,0 +1,203 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.util;
+
+import com.spotify.ffwd.model.v2.Metric;
+
+/**
+ * An open addressing table of 64-bit series fingerprints, such as {@link SeriesHash}, with the
+ * latest and earliest timestamps, two counters, a flag and a sample metric for every series.
+ * <p>
+ * Slots are found by linear probing. {@code 0} marks an empty slot, a fingerprint which is
+ * {@code 0} is stored as {@code 1}. The slots in use are listed in the order their series were
+ * added, so that iterating and clearing costs as much as the number of series, not the capacity.
+ * The arrays are kept when cleared, unless they are much larger than needed, so that a table
+ * which is cleared and filled again does not allocate. Not thread safe.
+ */
+final class SeriesTable {
+
+  static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+  private static final int MIN_CAPACITY = 16;
+
+  /**
+   * How many times larger than needed the arrays may be before they are shrunk when cleared.
+   */
+  private static final int SHRINK_FACTOR = 16;
+
+  private long[] keys = new long[MIN_CAPACITY];
+  private int[] used = new int[MIN_CAPACITY / 2];
+  long[] timestamps = new long[MIN_CAPACITY];
+  long[] earliest = new long[MIN_CAPACITY];
+  int[] counts = new int[MIN_CAPACITY];
+  int[] points = new int[MIN_CAPACITY];
+  boolean[] flags = new boolean[MIN_CAPACITY];
+  Metric[] samples = new Metric[MIN_CAPACITY];
+
+  private int size = 0;
+
+  int size() {
+    return size;
+  }
+
+  int capacity() {
+    return keys.length;
+  }
+
+  /**
+   * The slot of a series, by the order in which the series were added.
+   *
+   * @param index From {@code 0} to {@link #size()}, exclusive.
+   */
+  int slot(final int index) {
+    return used[index];
+  }
+
+  /**
+   * Fingerprint stored in the given slot, {@code 0} if the slot is empty.
+   */
+  long key(final int slot) {
+    return keys[slot];
+  }
+
+  /**
+   * Remove all series, making room for at least {@code expected} series without growing.
+   */
+  void clear(final int expected) {
+    final int capacity = capacityFor(expected);
+
+    if (capacity > keys.length || capacity * SHRINK_FACTOR < keys.length) {
+      allocate(capacity);
+    } else {
+      for (int i = 0; i < size; i++) {
+        keys[used[i]] = 0L;
+        samples[used[i]] = null;
+      }
+    }
+
+    size = 0;
+  }
+
+  /**
+   * Find the slot of a series.
+   *
+   * @return The slot, or {@code -1} if the series is not in the table.
+   */
+  int find(final long fingerprint) {
+    final long key = fingerprint == 0 ? 1 : fingerprint;
+    final int mask = keys.length - 1;
+
+    for (int slot = spread(key) & mask; ; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+
+      if (keys[slot] == 0) {
+        return -1;
+      }
+    }
+  }
+
+  /**
+   * Find the slot of a series, adding it if it is not in the table. Added series have no
+   * timestamps, counts of zero, no flag and no sample.
+   */
+  int add(final long fingerprint) {
+    final long key = fingerprint == 0 ? 1 : fingerprint;
+
+    if ((size + 1) * 2 > keys.length) {
+      grow();
+    }
+
+    final int mask = keys.length - 1;
+
+    for (int slot = spread(key) & mask; ; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+
+      if (keys[slot] == 0) {
+        keys[slot] = key;
+        timestamps[slot] = NO_TIMESTAMP;
+        earliest[slot] = NO_TIMESTAMP;
+        counts[slot] = 0;
+        points[slot] = 0;
+        flags[slot] = false;
+        samples[slot] = null;
+        used[size++] = slot;
+        return slot;
+      }
+    }
+  }
+
+  private void grow() {
+    final long[] oldKeys = keys;
+    final int[] oldUsed = used;
+    final long[] oldTimestamps = timestamps;
+    final long[] oldEarliest = earliest;
+    final int[] oldCounts = counts;
+    final int[] oldPoints = points;
+    final boolean[] oldFlags = flags;
+    final Metric[] oldSamples = samples;
+
+    allocate(keys.length * 2);
+
+    final int mask = keys.length - 1;
+
+    for (int i = 0; i < size; i++) {
+      final int old = oldUsed[i];
+      int slot = spread(oldKeys[old]) & mask;
+
+      while (keys[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+
+      keys[slot] = oldKeys[old];
+      used[i] = slot;
+      timestamps[slot] = oldTimestamps[old];
+      earliest[slot] = oldEarliest[old];
+      counts[slot] = oldCounts[old];
+      points[slot] = oldPoints[old];
+      flags[slot] = oldFlags[old];
+      samples[slot] = oldSamples[old];
+    }
+  }
+
+  private void allocate(final int capacity) {
+    keys = new long[capacity];
+    used = new int[capacity / 2];
+    timestamps = new long[capacity];
+    earliest = new long[capacity];
+    counts = new int[capacity];
+    points = new int[capacity];
+    flags = new boolean[capacity];
+    samples = new Metric[capacity];
+  }
+
+  private static int capacityFor(final int expected) {
+    final int wanted = Math.max(MIN_CAPACITY, expected * 2);
+    return wanted > (1 << 30) ? 1 << 30 : Integer.highestOneBit(wanted * 2 - 1);
+  }
+
+  private static int spread(final long key) {
+    return (int) (key ^ (key >>> 32));
+  }
+}
@@ -0,0 +1,104 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.model.v2;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Resources;
+import com.spotify.ffwd.Mappers;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestJsonMetrics {
+
+  private ObjectMapper mapper;
+
+  @Before
+  public void setUp() {
+    this.mapper = Mappers.setupApplicationJson();
+  }
+
+  @Test
+  public void testReadBatchLikeDataBinding() throws Exception {
+    for (final String name : new String[]{"TestBatch.0.json", "TestBatchV2.withoutResource.json"}) {
+      final String value = readResources(name);
+      final Batch expected = mapper.readValue(value, Batch.class);
+      final Batch batch = readBatch(value);
+
+      assertEquals(expected, batch);
+      assertEquals(expected.getPoints(), batch.getPoints());
+
+      for (int i = 0; i < expected.getPoints().size(); i++) {
+        assertEquals(expected.getPoints().get(i).getValue(), batch.getPoints().get(i).getValue());
+        assertEquals(expected.getPoints().get(i).getResource(),
+            batch.getPoints().get(i).getResource());
+      }
+    }
+  }
+
+  @Test
+  public void testReadBatchIgnoresUnknownFields() throws Exception {
+    final Batch batch = readBatch("{\"extra\": {\"a\": [1, 2]}, \"commonTags\": {\"a\": 1}, "
+        + "\"points\": [{\"key\": \"k\", \"extra\": [], \"timestamp\": 10, "
+        + "\"value\": {\"doubleValue\": 2.5}}]}");
+
+    assertEquals(ImmutableMap.of("a", "1"), batch.getCommonTags());
+    assertEquals(ImmutableMap.of(), batch.getCommonResource());
+    assertEquals(1, batch.getPoints().size());
+    assertEquals(Value.DoubleValue.create(2.5), batch.getPoints().get(0).getValue());
+    assertEquals(10L, batch.getPoints().get(0).getTimestamp());
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadBatchBad() throws Exception {
+    readBatch(readResources("TestBatch.bad.json"));
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadMetricWithoutValue() throws Exception {
+    readBatch("{\"points\": [{\"key\": \"k\", \"timestamp\": 10}]}");
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadUnrecognizedValue() throws Exception {
+    readBatch("{\"points\": [{\"key\": \"k\", \"timestamp\": 10, \"value\": 1.0}]}");
+  }
+
+  private Batch readBatch(final String json) throws IOException {
+    final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+    try (final JsonParser p = JsonMetrics.parser(mapper.getFactory(),
+        Unpooled.wrappedBuffer(bytes))) {
+      p.nextToken();
+      return JsonMetrics.readBatch(p);
+    }
+  }
+
+  private String readResources(final String name) throws IOException {
+    return Resources.toString(Resources.getResource(name), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,57 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2016 - 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Optional;
+import org.junit.Test;
+
+public class SpoolingTest {
+
+  @Test
+  public void testDefaultSync() {
+    assertEquals(SyncPolicy.INTERVAL, spooling(Optional.empty()).getSync());
+  }
+
+  @Test
+  public void testParsesSync() {
+    assertEquals(SyncPolicy.NONE, spooling(Optional.of("none")).getSync());
+    assertEquals(SyncPolicy.INTERVAL, spooling(Optional.of("interval")).getSync());
+    assertEquals(SyncPolicy.ALWAYS, spooling(Optional.of("ALWAYS")).getSync());
+  }
+
+  @Test
+  public void testRejectsUnknownSync() {
+    try {
+      spooling(Optional.of("sometimes"));
+      fail("expected sync to be rejected");
+    } catch (final IllegalArgumentException e) {
+      assertEquals("spool: sync must be one of none, interval, always, but was: sometimes",
+          e.getMessage());
+    }
+  }
+
+  private static Spooling spooling(final Optional<String> sync) {
+    return new Spooling("spool", Optional.empty(), Optional.empty(), sync, Optional.empty());
+  }
+}
@@ -0,0 +1,109 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import static org.junit.Assert.assertEquals;
+
+import com.spotify.ffwd.module.AdaptiveBatching;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveFlushControllerTest {
+
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+  private AdaptiveFlushController controller;
+
+  @Before
+  public void setup() {
+    controller = new AdaptiveFlushController(new AdaptiveBatching(Optional.of(100L),
+        Optional.of(400L), Optional.of(1000L), Optional.of(8000L), Optional.of(100L)), 4);
+  }
+
+  @Test
+  public void testStartsAtMinimum() {
+    assertEquals(100, controller.getBatchSizeLimit());
+    assertEquals(1000, controller.getFlushInterval());
+  }
+
+  @Test
+  public void testFullBatchesGrowBatchSizeLimit() {
+    controller.completed(FAST, 100, 1);
+    assertEquals(200, controller.getBatchSizeLimit());
+
+    for (int i = 0; i < 10; i++) {
+      controller.completed(FAST, controller.getBatchSizeLimit(), 1);
+    }
+
+    assertEquals(400, controller.getBatchSizeLimit());
+  }
+
+  @Test
+  public void testSmallBatchesStretchFlushInterval() {
+    controller.completed(FAST, 10, 1);
+    assertEquals(2000, controller.getFlushInterval());
+
+    controller.completed(FAST, 60, 1);
+    assertEquals(1000, controller.getFlushInterval());
+
+    controller.completed(FAST, 60, 1);
+    assertEquals(1000, controller.getFlushInterval());
+  }
+
+  @Test
+  public void testSlowWriteBacksOff() {
+    controller.completed(FAST, 100, 1);
+    controller.completed(FAST, 200, 1);
+    assertEquals(300, controller.getBatchSizeLimit());
+
+    controller.completed(SLOW, 300, 1);
+    assertEquals(150, controller.getBatchSizeLimit());
+    assertEquals(2000, controller.getFlushInterval());
+  }
+
+  @Test
+  public void testPendingFlushesBackOff() {
+    controller.completed(FAST, 100, 1);
+    controller.completed(FAST, 200, 4);
+
+    assertEquals(100, controller.getBatchSizeLimit());
+    assertEquals(2000, controller.getFlushInterval());
+  }
+
+  @Test
+  public void testBackOffIsBounded() {
+    for (int i = 0; i < 10; i++) {
+      controller.backOff();
+    }
+
+    assertEquals(100, controller.getBatchSizeLimit());
+    assertEquals(8000, controller.getFlushInterval());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidBounds() {
+    new AdaptiveBatching(Optional.of(500L), Optional.of(400L), Optional.empty(), Optional.empty(),
+        Optional.empty());
+  }
+}
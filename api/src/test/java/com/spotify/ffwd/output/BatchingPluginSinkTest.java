@@ -21,13 +21,20 @@
 package com.spotify.ffwd.output;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -41,14 +48,24 @@ import com.google.inject.Module;
 import com.google.inject.name.Names;
 import com.spotify.ffwd.model.v2.Metric;
 import com.spotify.ffwd.model.v2.Value;
+import com.spotify.ffwd.module.AdaptiveBatching;
+import com.spotify.ffwd.module.Retrying;
+import com.spotify.ffwd.module.Spooling;
 import com.spotify.ffwd.noop.NoopPluginSink;
+import com.spotify.ffwd.protocol.RetryPolicy;
 import com.spotify.ffwd.statistics.BatchingStatistics;
 import com.spotify.ffwd.statistics.HighFrequencyDetectorStatistics;
+import com.spotify.ffwd.statistics.HighFrequencyOffender;
 import com.spotify.ffwd.statistics.NoopCoreStatistics;
+import com.spotify.ffwd.statistics.InputPluginStatistics;
 import com.spotify.ffwd.statistics.OutputPluginStatistics;
+import com.spotify.ffwd.statistics.ReceiveStamp;
+import com.spotify.ffwd.util.EncodedSize;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.ResolvableFuture;
 import eu.toolchain.async.TinyAsync;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -58,11 +75,13 @@ import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.slf4j.Logger;
@@ -96,6 +115,9 @@ public class BatchingPluginSinkTest {
   @Captor
   private ArgumentCaptor<Collection<Metric>> metricsCaptor;
 
+  @Captor
+  private ArgumentCaptor<List<HighFrequencyOffender>> offendersCaptor;
+
   private final ExecutorService executor = Executors.newFixedThreadPool(2);
 
   @Mock
@@ -172,6 +194,105 @@ public class BatchingPluginSinkTest {
     verify(sink).checkBatch(sink.nextBatch);
   }
 
+  @Test
+  public void testSendMetricBurst() {
+    doNothing().when(sink).checkBatch(sink.nextBatch);
+
+    sink.sendMetricBurst(Lists.newArrayList(metric, metric, metric));
+
+    assertEquals(3, sink.nextBatch.size());
+    verify(sink, times(1)).checkBatch(sink.nextBatch);
+  }
+
+  @Test
+  public void testSendMetricConcurrently() throws InterruptedException {
+    final int threads = 4;
+    final int count = 2500;
+    final List<Thread> writers = new ArrayList<>();
+
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+
+      writers.add(new Thread(() -> {
+        for (int i = 0; i < count; i++) {
+          sink.sendMetric(createMetric("KEY" + thread + "-" + i, i));
+        }
+      }));
+    }
+
+    writers.forEach(Thread::start);
+
+    for (final Thread writer : writers) {
+      writer.join();
+    }
+
+    verify(sink.sink, atLeastOnce()).sendMetrics(metricsCaptor.capture());
+
+    int sum = sink.nextBatch.size();
+
+    for (final Collection<Metric> c : metricsCaptor.getAllValues()) {
+      sum += c.size();
+    }
+
+    // every metric is either flushed or still in the current batch.
+    assertEquals(threads * count, sum);
+  }
+
+  @Test
+  public void testFlushPreservesBatches() {
+    sink.preserveBatches = true;
+    final com.spotify.ffwd.model.v2.Batch b = new com.spotify.ffwd.model.v2.Batch(
+        ImmutableMap.of("common", "tag"), ImmutableMap.of(), Lists.newArrayList(metric, metric));
+
+    sink.sendBatch(b);
+    sink.doFlush(sink.newBatch());
+
+    verify(batchablePluginSink).sendBatches(Collections.singletonList(b));
+    verify(batchablePluginSink, never()).sendMetrics(any());
+  }
+
+  @Test
+  public void testFlushFlattensBatches() {
+    final com.spotify.ffwd.model.v2.Batch b = new com.spotify.ffwd.model.v2.Batch(
+        ImmutableMap.of("common", "tag"), ImmutableMap.of(), Lists.newArrayList(metric, metric));
+
+    sink.sendBatch(b);
+    sink.doFlush(sink.newBatch());
+
+    verify(batchablePluginSink).sendMetrics(metricsCaptor.capture());
+    verify(batchablePluginSink, never()).sendBatches(any());
+    assertEquals(2, metricsCaptor.getValue().size());
+  }
+
+  @Test
+  public void testFlushCutsAtMaxBatchBytes() {
+    final int size = EncodedSize.of(metric);
+    sink.maxBatchBytes = 10 * size;
+
+    sink.sendMetric(metric);
+    sink.sendMetric(metric);
+    sink.sendMetric(metric);
+
+    sink.maxBatchBytes = 2 * size;
+    sink.doFlush(sink.newBatch());
+
+    verify(batchablePluginSink, times(2)).sendMetrics(metricsCaptor.capture());
+    assertEquals(2, metricsCaptor.getAllValues().get(0).size());
+    assertEquals(1, metricsCaptor.getAllValues().get(1).size());
+  }
+
+  @Test
+  public void testCheckBatchFlushesAtMaxBatchBytes() {
+    sink.maxBatchBytes = 1000;
+    doReturn(1).when(batch).size();
+    doReturn(1000L).when(batch).bytes();
+    doNothing().when(sink).flushNowThenScheduleNext();
+
+    sink.checkBatch(batch);
+
+    verify(sink).flushNowThenScheduleNext();
+  }
+
   @Test
   public void testSendMetricDrop() {
     sink.nextBatch = null;
@@ -203,6 +324,169 @@ public class BatchingPluginSinkTest {
     verify(sink, never()).flushNowThenScheduleNext();
   }
 
+  @Test
+  public void testCheckBatchUsesAdaptiveLimit() {
+    sink.adaptive = new AdaptiveFlushController(new AdaptiveBatching(Optional.of(10L),
+        Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()), maxPendingFlushes);
+    doReturn(10).when(batch).size();
+    doNothing().when(sink).flushNowThenScheduleNext();
+
+    sink.checkBatch(batch);
+
+    verify(sink).flushNowThenScheduleNext();
+  }
+
+  @Test
+  public void testFailedWriteIsRetried() {
+    sink.retries = new RetryBuffer(new Retrying(Optional.empty(), Optional.empty(),
+        Optional.empty(), Optional.empty(), Optional.of(new RetryPolicy.Constant(0L))));
+    doReturn(asyncFramework.failed(new RuntimeException("unavailable")))
+        .doCallRealMethod()
+        .when(batchablePluginSink).sendMetrics(any());
+
+    sink.sendMetric(metric);
+    sink.doFlush(sink.newBatch());
+
+    assertEquals(1, sink.retries.size());
+
+    sink.retry();
+
+    verify(batchablePluginSink, times(2)).sendMetrics(metricsCaptor.capture());
+    assertEquals(metricsCaptor.getAllValues().get(0), metricsCaptor.getAllValues().get(1));
+    assertEquals(0, sink.retries.size());
+  }
+
+  @Test
+  public void testOnlyFailedBatchesAreRetried() {
+    sink.preserveBatches = true;
+    sink.retries = new RetryBuffer(new Retrying(Optional.empty(), Optional.empty(),
+        Optional.empty(), Optional.empty(), Optional.of(new RetryPolicy.Constant(0L))));
+    final com.spotify.ffwd.model.v2.Batch delivered = new com.spotify.ffwd.model.v2.Batch(
+        ImmutableMap.of("common", "a"), ImmutableMap.of(), Lists.newArrayList(metric));
+    final com.spotify.ffwd.model.v2.Batch failed = new com.spotify.ffwd.model.v2.Batch(
+        ImmutableMap.of("common", "b"), ImmutableMap.of(), Lists.newArrayList(metric, metric));
+    doReturn(Lists.newArrayList(asyncFramework.resolved(),
+        asyncFramework.failed(new RuntimeException("unavailable"))))
+        .when(batchablePluginSink).sendEachBatch(any());
+
+    sink.sendBatch(delivered);
+    sink.sendBatch(failed);
+    sink.doFlush(sink.newBatch());
+
+    final List<RetryBuffer.Entry> due = sink.retries.due(System.currentTimeMillis());
+
+    assertEquals(1, due.size());
+    assertEquals(Collections.singletonList(failed), due.get(0).batches);
+    assertEquals(2, due.get(0).size);
+  }
+
+  @Test
+  public void testReplaySkipsCorruptEntries() throws Exception {
+    final Spool spool = mock(Spool.class);
+    final OutputPluginStatistics outputStatistics = mock(OutputPluginStatistics.class);
+    final Spool.Entries entries = new Spool.Entries(Collections.emptyList(), 1000, 1);
+    sink.spool = spool;
+    sink.spooling = spooling();
+    sink.statistics = outputStatistics;
+    when(spool.read(anyInt())).thenReturn(entries);
+
+    sink.replay();
+
+    verify(spool).commit(entries);
+    verify(outputStatistics).reportDropped(1000);
+    verify(batchablePluginSink, never()).sendMetrics(any());
+    assertFalse(sink.replaying.get());
+  }
+
+  @Test
+  public void testStopWaitsForReplay() throws Exception {
+    final Spool spool = mock(Spool.class);
+    final Spool.Entries entries = new Spool.Entries(Collections.singletonList(metric), 0, 1);
+    final ResolvableFuture<Void> sent = asyncFramework.future();
+    sink.spool = spool;
+    sink.spooling = spooling();
+    sink.nextFlush.set(mock(ScheduledFuture.class));
+    when(spool.read(anyInt())).thenReturn(entries);
+    when(spool.stop()).thenReturn(asyncFramework.resolved());
+    doReturn(sent).when(batchablePluginSink).sendMetrics(any());
+
+    sink.replay();
+
+    final AsyncFuture<Void> stopped = sink.stop();
+    Thread.sleep(100);
+
+    verify(spool, never()).stop();
+
+    sent.resolve(null);
+    stopped.get();
+
+    final InOrder order = inOrder(spool);
+    order.verify(spool).commit(entries);
+    order.verify(spool).stop();
+  }
+
+  @Test
+  public void testMemoryBudgetRefusesMetrics() throws Exception {
+    final MemoryBudget.Account account = mock(MemoryBudget.Account.class);
+    final int size = EncodedSize.of(metric);
+    sink.queued = account;
+    when(account.reserve(size)).thenReturn(true, false);
+
+    sink.sendMetric(metric);
+    sink.sendMetric(metric);
+
+    // a refused reservation holds on to nothing, so there is nothing to release.
+    assertEquals(1, sink.nextBatch.size());
+    verify(account, never()).release(anyLong());
+
+    // what was queued is released by a callback once the write finished, which may run after
+    // the flush future completed.
+    sink.doFlush(sink.newBatch()).get();
+
+    verify(account, timeout(1000)).release(size);
+  }
+
+  @Test
+  public void testRegistersPressureWithPluginId() throws Exception {
+    final OutputPressure pressure = mock(OutputPressure.class);
+    sink.pressure = pressure;
+    sink.pluginId = "3";
+
+    sink.start().get();
+
+    verify(pressure).register("batching-3");
+  }
+
+  @Test
+  public void testRegistersMemoryWithPluginId() {
+    final MemoryBudget memory = mock(MemoryBudget.class);
+    sink.memory = memory;
+    sink.pluginId = "3";
+
+    sink.init();
+
+    verify(memory).register("batching-3", MemoryBudget.Priority.NORMAL);
+  }
+
+  @Test
+  public void testReportsEnqueueAndAckLatency() {
+    final BatchingStatistics batchingStatistics = mock(BatchingStatistics.class);
+    final ReceiveStamp received = ReceiveStamp.now(mock(InputPluginStatistics.class));
+    when(batchingStatistics.monitorWrite()).thenReturn(() -> {
+    });
+    sink.batchingStatistics = batchingStatistics;
+    metric.setReceived(received);
+
+    sink.sendMetric(metric);
+
+    verify(batchingStatistics).reportEnqueueLatency(anyLong());
+    verify(batchingStatistics, never()).reportAckLatency(anyLong());
+
+    sink.doFlush(sink.newBatch());
+
+    verify(batchingStatistics, timeout(1000)).reportAckLatency(anyLong());
+  }
+
   @Test
   public void testSendMetricHighFrequency() throws InterruptedException {
     //Sends the same metric with different data points
@@ -230,7 +514,10 @@ public class BatchingPluginSinkTest {
     }
 
     verify(statistics, times(10)).reportHighFrequencyMetricsDropped(anyInt());
-    verify(statistics, times(10)).reportHighFrequencyMetrics(1, "keys", "KEY", "whats", "fun");
+    verify(statistics, times(10)).reportHighFrequencyMetrics(eq(1), offendersCaptor.capture());
+
+    final HighFrequencyOffender offender = offendersCaptor.getValue().get(0);
+    assertEquals(new HighFrequencyOffender("KEY", "fun", 10), offender);
 
     // It starts dropping after detection happened 5 times
     assertEquals(400, sum);
@@ -272,7 +559,7 @@ public class BatchingPluginSinkTest {
     }
 
     verify(statistics, never()).reportHighFrequencyMetricsDropped(anyInt());
-    verify(statistics, times(10)).reportHighFrequencyMetrics(0, "keys", "", "whats", "");
+    verify(statistics, times(10)).reportHighFrequencyMetrics(0, Collections.emptyList());
 
     assertEquals(1000, sum);
   }
@@ -309,9 +596,14 @@ public class BatchingPluginSinkTest {
     }
 
     verify(statistics, never()).reportHighFrequencyMetricsDropped(anyInt());
-    verify(statistics, times(10)).reportHighFrequencyMetrics(0, "keys", "", "whats", "");
+    verify(statistics, times(10)).reportHighFrequencyMetrics(0, Collections.emptyList());
 
     // It starts dropping after detection happened 5 times
     assertEquals(1000, sum);
   }
+
+  private static Spooling spooling() {
+    return new Spooling("spool", Optional.empty(), Optional.empty(), Optional.empty(),
+        Optional.empty());
+  }
 }
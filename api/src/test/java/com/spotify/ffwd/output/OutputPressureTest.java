@@ -0,0 +1,107 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+
+import com.spotify.ffwd.statistics.BackpressureStatistics;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OutputPressureTest {
+
+  @Mock
+  private BackpressureStatistics statistics;
+
+  private final List<Boolean> changes = new ArrayList<>();
+
+  private OutputPressure pressure;
+  private OutputPressure.Output a;
+  private OutputPressure.Output b;
+  private OutputPressure.Output c;
+
+  @Before
+  public void setup() {
+    pressure = new OutputPressure(0.5, statistics);
+    pressure.addListener(changes::add);
+    a = pressure.register("a");
+    b = pressure.register("b");
+    c = pressure.register("c");
+  }
+
+  @Test
+  public void testPausesWhenFractionIsSaturated() {
+    a.saturated(true);
+    assertFalse(pressure.isPaused());
+
+    b.saturated(true);
+    assertTrue(pressure.isPaused());
+
+    c.saturated(true);
+    a.saturated(false);
+    assertTrue(pressure.isPaused());
+
+    b.saturated(false);
+    assertFalse(pressure.isPaused());
+
+    assertEquals(2, changes.size());
+    assertTrue(changes.get(0));
+    assertFalse(changes.get(1));
+    verify(statistics).reportInputsPaused(true);
+    verify(statistics).reportInputsPaused(false);
+  }
+
+  @Test
+  public void testRepeatedUpdatesAreIgnored() {
+    a.saturated(true);
+    a.saturated(true);
+    a.saturated(false);
+    a.saturated(false);
+
+    verify(statistics).reportSaturatedOutputs(1);
+    verify(statistics).reportSaturatedOutputs(0);
+  }
+
+  @Test
+  public void testDisabledNeverPauses() {
+    final OutputPressure disabled = OutputPressure.disabled();
+    final OutputPressure.Output output = disabled.register("output");
+
+    output.saturated(true);
+
+    assertTrue(output.isSaturated());
+    assertFalse(disabled.isPaused());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidFraction() {
+    new OutputPressure(1.5, statistics);
+  }
+}
@@ -0,0 +1,286 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.model.v2.Value;
+import com.spotify.ffwd.module.Queueing;
+import com.spotify.ffwd.statistics.NoopCoreStatistics;
+import com.spotify.ffwd.statistics.QueueStatistics;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.TinyAsync;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class QueueingPluginSinkTest {
+
+  @Mock
+  private PluginSink sink;
+
+  @Mock
+  private QueueStatistics statistics;
+
+  private ExecutorService executor;
+  private AsyncFramework async;
+
+  private final Metric m1 = metric("m1");
+  private final Metric m2 = metric("m2");
+  private final Metric m3 = metric("m3");
+
+  @Before
+  public void setup() {
+    executor = Executors.newSingleThreadExecutor();
+    async = TinyAsync.builder().executor(executor).build();
+    doReturn(async.resolved()).when(sink).start();
+    doReturn(async.resolved()).when(sink).stop();
+  }
+
+  @After
+  public void teardown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testSend() throws Exception {
+    final QueueingPluginSink queueing = newSink(10, Queueing.DROP_NEWEST);
+    final Batch batch = batch(2);
+
+    queueing.start().get();
+    queueing.sendMetric(m1);
+    queueing.sendBatch(batch);
+
+    // stopping waits for the drainers to empty the queue.
+    queueing.stop().get();
+
+    final InOrder order = inOrder(sink);
+    order.verify(sink).sendMetric(m1);
+    order.verify(sink).sendBatch(batch);
+    order.verify(sink).stop();
+  }
+
+  @Test
+  public void testDropNewest() throws Exception {
+    final QueueingPluginSink queueing = newSink(2, Queueing.DROP_NEWEST);
+
+    // not started, nothing is drained
+    queueing.sendMetric(m1);
+    queueing.sendMetric(m2);
+    queueing.sendMetric(m3);
+    queueing.sendBatch(batch(5));
+
+    verify(statistics).reportDropped(1);
+    verify(statistics).reportDropped(5);
+
+    queueing.start().get();
+    queueing.stop().get();
+
+    verify(sink).sendMetric(m1);
+    verify(sink).sendMetric(m2);
+    verify(sink, never()).sendMetric(m3);
+    verify(sink, never()).sendBatch(any(Batch.class));
+  }
+
+  @Test
+  public void testDropOldest() throws Exception {
+    final QueueingPluginSink queueing = newSink(2, Queueing.DROP_OLDEST);
+
+    queueing.sendMetric(m1);
+    queueing.sendMetric(m2);
+    queueing.sendMetric(m3);
+
+    verify(statistics).reportDropped(1);
+
+    queueing.start().get();
+    queueing.stop().get();
+
+    verify(sink).sendMetric(m2);
+    verify(sink).sendMetric(m3);
+    verify(sink, never()).sendMetric(m1);
+  }
+
+  @Test
+  public void testBurstIsOneEntry() throws Exception {
+    final QueueingPluginSink queueing = newSink(2, Queueing.DROP_NEWEST);
+    final List<Metric> burst = new ArrayList<>(ImmutableList.of(m1, m2));
+
+    // not started, nothing is drained
+    queueing.sendMetricBurst(burst);
+    queueing.sendMetric(m3);
+    queueing.sendMetricBurst(ImmutableList.of(m1, m2, m3));
+
+    verify(statistics).reportDropped(3);
+
+    // the caller reuses the list.
+    burst.clear();
+
+    queueing.start().get();
+    queueing.stop().get();
+
+    final InOrder order = inOrder(sink);
+    order.verify(sink).sendMetricBurst(ImmutableList.of(m1, m2));
+    order.verify(sink).sendMetric(m3);
+    verify(sink, never()).sendMetric(m1);
+  }
+
+  @Test
+  public void testBlockTimesOut() {
+    final QueueingPluginSink queueing = newSink(1, Queueing.BLOCK);
+
+    queueing.sendMetric(m1);
+    queueing.sendMetric(m2);
+
+    verify(statistics).reportDropped(1);
+  }
+
+  @Test
+  public void testBlockWaitsForRoom() throws Exception {
+    final QueueingPluginSink queueing = newSink(1, Queueing.BLOCK);
+
+    queueing.start().get();
+
+    for (int i = 0; i < 100; i++) {
+      queueing.sendMetric(metric("m" + i));
+    }
+
+    queueing.stop().get();
+
+    final InOrder order = inOrder(sink);
+    order.verify(sink).sendMetric(metric("m0"));
+    order.verify(sink).sendMetric(metric("m99"));
+    verify(statistics, never()).reportDropped(anyInt());
+  }
+
+  @Test
+  public void testDropsWhatIsLeftOnStop() throws Exception {
+    final QueueingPluginSink queueing = newSink(10, Queueing.DROP_NEWEST);
+
+    // not started, nothing is drained
+    queueing.sendMetric(m1);
+    queueing.sendBatch(batch(2));
+    queueing.stop().get();
+
+    verify(statistics).reportDropped(1);
+    verify(statistics).reportDropped(2);
+    verify(sink, never()).sendMetric(any(Metric.class));
+  }
+
+  @Test
+  public void testDropsAfterStop() throws Exception {
+    final QueueingPluginSink queueing = newSink(10, Queueing.DROP_NEWEST);
+
+    queueing.start().get();
+    queueing.stop().get();
+
+    queueing.sendMetric(m1);
+    queueing.sendMetricBurst(ImmutableList.of(m1, m2, m3));
+
+    verify(statistics).reportDropped(1);
+    verify(statistics).reportDropped(3);
+    verify(sink, never()).sendMetric(any(Metric.class));
+    verify(sink, never()).sendMetricBurst(any());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedOverflow() {
+    queueing(10, "drop-everything");
+  }
+
+  @Test
+  public void testOverflowSaturatesOutput() throws Exception {
+    final OutputPressure pressure =
+        new OutputPressure(1.0, NoopCoreStatistics.get().newBackpressure());
+    final QueueingPluginSink queueing = new QueueingPluginSink("test",
+        queueing(2, Queueing.DROP_NEWEST), async, sink, statistics, pressure);
+
+    // not started, nothing is drained
+    queueing.sendMetric(m1);
+    queueing.sendMetric(m2);
+    assertFalse(pressure.isPaused());
+
+    queueing.sendMetric(m3);
+    assertTrue(pressure.isPaused());
+
+    final CountDownLatch drained = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      drained.countDown();
+      return null;
+    }).when(statistics).reportQueueDepth(0);
+
+    queueing.start().get();
+
+    // the queue is drained under the low watermark.
+    assertTrue(drained.await(1, TimeUnit.SECONDS));
+    assertFalse(pressure.isPaused());
+
+    queueing.stop().get();
+    verify(sink).sendMetric(m2);
+  }
+
+  private QueueingPluginSink newSink(final int capacity, final String overflow) {
+    return new QueueingPluginSink("test", queueing(capacity, overflow), async, sink, statistics);
+  }
+
+  private static Queueing queueing(final int capacity, final String overflow) {
+    return new Queueing(Optional.of(capacity), Optional.of(overflow), Optional.of(200L),
+        Optional.empty());
+  }
+
+  private static Metric metric(final String key) {
+    return new Metric(key, Value.DoubleValue.create(42.0), 0L, ImmutableMap.of("what", "test"),
+        ImmutableMap.of());
+  }
+
+  private static Batch batch(final int size) {
+    final ImmutableList.Builder<Metric> points = ImmutableList.builder();
+
+    for (int i = 0; i < size; i++) {
+      points.add(metric("p" + i));
+    }
+
+    return new Batch(ImmutableMap.of(), ImmutableMap.of(), points.build());
+  }
+}
@@ -0,0 +1,100 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.spotify.ffwd.module.Retrying;
+import com.spotify.ffwd.protocol.RetryPolicy;
+import java.util.Collections;
+import java.util.Optional;
+import org.junit.Test;
+
+public class RetryBufferTest {
+
+  private RetryBuffer buffer(
+      final long maxBytes, final double budget, final long minRetryRate, final RetryPolicy policy
+  ) {
+    return new RetryBuffer(new Retrying(Optional.of(maxBytes), Optional.of(1000L),
+        Optional.of(budget), Optional.of(minRetryRate), Optional.of(policy)), 0);
+  }
+
+  private RetryBuffer.Entry entry(final int size, final long bytes, final long failedAt) {
+    return new RetryBuffer.Entry(Collections.emptyList(), Collections.emptyList(), size, bytes,
+        failedAt);
+  }
+
+  @Test
+  public void testBacksOff() {
+    final RetryBuffer buffer = buffer(1000, 0, 1000, new RetryPolicy.Exponential(100L, 1000L));
+    final RetryBuffer.Entry entry = entry(1, 10, 0);
+
+    assertTrue(buffer.offer(entry, 0));
+    assertEquals(0, buffer.due(99).size());
+    assertEquals(Collections.singletonList(entry), buffer.due(100));
+
+    assertTrue(buffer.offer(entry, 100));
+    assertEquals(0, buffer.due(299).size());
+    assertEquals(Collections.singletonList(entry), buffer.due(300));
+    assertEquals(2, entry.attempt);
+  }
+
+  @Test
+  public void testBudgetLimitsRetries() {
+    final RetryBuffer buffer = buffer(1000, 0.5, 0, new RetryPolicy.Constant(0L));
+
+    assertTrue(buffer.offer(entry(10, 10, 0), 0));
+    assertEquals(0, buffer.due(0).size());
+
+    buffer.deposit(10, 0);
+    assertEquals(1, buffer.due(0).size());
+
+    // the budget was spent by the first retry.
+    assertTrue(buffer.offer(entry(10, 10, 0), 0));
+    buffer.deposit(10, 0);
+    assertEquals(0, buffer.due(0).size());
+    assertEquals(1, buffer.size());
+  }
+
+  @Test
+  public void testExpires() {
+    final RetryBuffer buffer = buffer(1000, 0, 0, new RetryPolicy.Constant(0L));
+
+    assertTrue(buffer.offer(entry(1, 10, 0), 0));
+    assertEquals(0, buffer.expire(999).size());
+    assertEquals(1, buffer.expire(1000).size());
+    assertEquals(0, buffer.bytes());
+    assertFalse(buffer.offer(entry(1, 10, 0), 1000));
+  }
+
+  @Test
+  public void testRejectsOverMaxBytes() {
+    final RetryBuffer buffer = buffer(100, 0, 0, new RetryPolicy.Constant(0L));
+
+    assertTrue(buffer.offer(entry(1, 60, 0), 0));
+    assertFalse(buffer.offer(entry(1, 60, 0), 0));
+    assertEquals(60, buffer.bytes());
+    assertEquals(1, buffer.drain().size());
+    assertEquals(0, buffer.bytes());
+  }
+}
@@ -0,0 +1,49 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.protocol;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ProtocolFactoryTest {
+
+  @Test
+  public void testDefaultSockets() {
+    final Protocol protocol = new ProtocolFactory("udp", null, null, null)
+        .protocol(ProtocolType.UDP, 19091);
+
+    assertEquals(ProtocolFactory.DEFAULT_SOCKETS, protocol.getSockets());
+  }
+
+  @Test
+  public void testSockets() {
+    final Protocol protocol = new ProtocolFactory("udp", null, null, null, null, null, null, 4)
+        .protocol(ProtocolType.UDP, 19091);
+
+    assertEquals(4, protocol.getSockets());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsNoSockets() {
+    new ProtocolFactory("udp", null, null, null, null, null, null, 0);
+  }
+}
@@ -0,0 +1,78 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.util;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.ByteString;
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.model.v2.Value;
+import java.util.List;
+import org.junit.Test;
+
+public class EncodedSizeTest {
+
+  private final Metric metric = new Metric("key", Value.DoubleValue.create(42), 0L,
+      ImmutableMap.of("a", "bc"), ImmutableMap.of());
+
+  @Test
+  public void testMetric() {
+    // framing and timestamp, key, double and one tag.
+    assertEquals(11 + 5 + 10 + 9, EncodedSize.of(metric));
+  }
+
+  @Test
+  public void testDistribution() {
+    final Metric distribution = new Metric("key",
+        Value.DistributionValue.create(ByteString.copyFrom(new byte[100])), 0L,
+        ImmutableMap.of(), ImmutableMap.of("r", "s"));
+
+    assertEquals(11 + 5 + 102 + 8, EncodedSize.of(distribution));
+  }
+
+  @Test
+  public void testBatch() {
+    final Batch batch =
+        new Batch(ImmutableMap.of("c", "d"), ImmutableMap.of(), ImmutableList.of(metric, metric));
+
+    assertEquals(11 + 8 + 2 * 35, EncodedSize.of(batch));
+    assertEquals(2 * (35 + 8), EncodedSize.flattened(batch));
+  }
+
+  @Test
+  public void testPartition() {
+    final List<Integer> sizes = ImmutableList.of(4, 4, 3, 12, 1);
+
+    final List<List<Integer>> parts = EncodedSize.partition(sizes, size -> size, 10);
+
+    assertEquals(ImmutableList.of(ImmutableList.of(4, 4), ImmutableList.of(3),
+        ImmutableList.of(12), ImmutableList.of(1)), parts);
+  }
+
+  @Test
+  public void testPartitionEmpty() {
+    assertEquals(ImmutableList.of(),
+        EncodedSize.partition(ImmutableList.<Integer>of(), size -> size, 10));
+  }
+}
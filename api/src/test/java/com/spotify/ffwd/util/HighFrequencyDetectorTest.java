@@ -21,6 +21,7 @@
 package com.spotify.ffwd.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.verify;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -32,7 +33,9 @@ import com.google.inject.name.Names;
 import com.spotify.ffwd.model.v2.Metric;
 import com.spotify.ffwd.model.v2.Value;
 import com.spotify.ffwd.statistics.HighFrequencyDetectorStatistics;
+import com.spotify.ffwd.statistics.HighFrequencyOffender;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -120,6 +123,11 @@ public class HighFrequencyDetectorTest {
     return new Metric(key, value, System.currentTimeMillis(), tagval, ImmutableMap.of());
   }
 
+  private Metric createMetric(final String key, final long timestamp) {
+    return new Metric(key, Value.DoubleValue.create(42.0), timestamp,
+        ImmutableMap.of("tag1", "value1", "what", "fun"), ImmutableMap.of());
+  }
+
   @Test
   public void testLargeNumberOfHighFreqMetrics() {
     // verifies if high frequency metrics are captured and sortable - up to 1k
@@ -160,4 +168,45 @@ public class HighFrequencyDetectorTest {
     }
     assertEquals(280, finalList.size());
   }
+
+  @Test
+  public void testInterleavedStripes() {
+    // two stripes of ten points each, in order within a stripe but interleaved in time.
+    final long now = System.currentTimeMillis();
+    final List<Metric> list = new ArrayList<>();
+
+    for (int stripe = 0; stripe < 2; stripe++) {
+      for (int i = 0; i < 10; i++) {
+        list.add(createMetric("KEY0", now + i * 20 + stripe * 10));
+        // far enough apart once sorted.
+        list.add(createMetric("KEY1", now + (i * 2 + stripe) * minFrequencyMillisAllowed));
+      }
+    }
+
+    detector.detect(list);
+
+    assertEquals(1, detector.marked.size());
+    assertEquals(-1, detector.marked.find(SeriesHash.hash("KEY1", list.get(1).getTags())));
+  }
+
+  @Test
+  public void testReportsTopOffenders() {
+    // KEY0 is marked in every batch, KEY1 in every other one and the rest never
+    for (int x = 0; x < 4; x++) {
+      List<Metric> list = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        list.add(createMetric("KEY0", 42.0 + i));
+        if (x % 2 == 0 || i < 10) {
+          list.add(createMetric("KEY1", 42.0 + i));
+        }
+        list.add(createMetric("KEY2" + i, 42.0 + i));
+      }
+
+      detector.detect(list);
+    }
+
+    verify(statistics).reportHighFrequencyMetrics(2, Arrays.asList(
+        new HighFrequencyOffender("KEY0", "fun", 4),
+        new HighFrequencyOffender("KEY1", "fun", 2)));
+  }
 }
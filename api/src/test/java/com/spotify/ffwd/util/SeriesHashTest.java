@@ -0,0 +1,72 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class SeriesHashTest {
+
+  @Test
+  public void testOrderIndependent() {
+    final Map<String, String> a = new LinkedHashMap<>();
+    a.put("what", "cpu");
+    a.put("host", "a");
+
+    final Map<String, String> b = new LinkedHashMap<>();
+    b.put("host", "a");
+    b.put("what", "cpu");
+
+    assertEquals(SeriesHash.hash("key", a), SeriesHash.hash("key", b));
+  }
+
+  @Test
+  public void testDistinct() {
+    final Map<String, String> tags = ImmutableMap.of("what", "cpu");
+
+    assertNotEquals(SeriesHash.hash("key", tags), SeriesHash.hash("other", tags));
+    assertNotEquals(SeriesHash.hash("key", tags),
+        SeriesHash.hash("key", ImmutableMap.of("what", "mem")));
+    assertNotEquals(SeriesHash.hash("key", tags),
+        SeriesHash.hash("key", ImmutableMap.of("cpu", "what")));
+    assertNotEquals(SeriesHash.hash("key", ImmutableMap.of("a", "b", "c", "d")),
+        SeriesHash.hash("key", ImmutableMap.of("a", "d", "c", "b")));
+    assertNotEquals(SeriesHash.hash(null, ImmutableMap.of()),
+        SeriesHash.hash("", ImmutableMap.of()));
+  }
+
+  @Test
+  public void testCommonTags() {
+    final Map<String, String> common = ImmutableMap.of("host", "a", "site", "lon");
+    final Map<String, String> tags = ImmutableMap.of("what", "cpu", "host", "b");
+
+    final Map<String, String> merged = new HashMap<>(common);
+    merged.putAll(tags);
+
+    assertEquals(SeriesHash.hash("key", merged), SeriesHash.hash("key", common, tags));
+  }
+}
@@ -0,0 +1,115 @@
+/*-
+ * -\-\-
+ * FastForward API
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class SeriesTableTest {
+
+  @Test
+  public void testAddAndFind() {
+    final SeriesTable table = new SeriesTable();
+
+    final int slot = table.add(42L);
+    table.counts[slot]++;
+
+    assertEquals(slot, table.add(42L));
+    assertEquals(slot, table.find(42L));
+    assertEquals(1, table.counts[slot]);
+    assertEquals(SeriesTable.NO_TIMESTAMP, table.timestamps[slot]);
+    assertNull(table.samples[slot]);
+    assertEquals(-1, table.find(43L));
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  public void testZeroFingerprint() {
+    final SeriesTable table = new SeriesTable();
+
+    final int slot = table.add(0L);
+
+    assertEquals(slot, table.find(0L));
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  public void testGrowKeepsSeries() {
+    final SeriesTable table = new SeriesTable();
+
+    for (long i = 1; i <= 1000; i++) {
+      // the arrays are replaced when growing, so they are only read once the slot is known.
+      final int slot = table.add(i * 0x9E3779B97F4A7C15L);
+      table.counts[slot] = (int) i;
+    }
+
+    assertEquals(1000, table.size());
+
+    for (long i = 1; i <= 1000; i++) {
+      assertEquals(i, table.counts[table.find(i * 0x9E3779B97F4A7C15L)]);
+    }
+  }
+
+  @Test
+  public void testClear() {
+    final SeriesTable table = new SeriesTable();
+    table.add(1L);
+    table.add(2L);
+
+    table.clear(100);
+
+    assertEquals(0, table.size());
+    assertEquals(-1, table.find(1L));
+    assertEquals(256, table.capacity());
+  }
+
+  @Test
+  public void testSlotsInOrderAdded() {
+    final SeriesTable table = new SeriesTable();
+
+    for (long i = 1; i <= 100; i++) {
+      table.add(i * 0x9E3779B97F4A7C15L);
+    }
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals((i + 1) * 0x9E3779B97F4A7C15L, table.key(table.slot(i)));
+    }
+  }
+
+  @Test
+  public void testClearShrinksAfterLargeBatch() {
+    final SeriesTable table = new SeriesTable();
+    table.clear(10000);
+
+    for (long i = 1; i <= 10000; i++) {
+      table.add(i);
+    }
+
+    table.clear(10000);
+    assertEquals(32768, table.capacity());
+    assertEquals(-1, table.find(1L));
+
+    table.clear(10);
+    assertEquals(32, table.capacity());
+  }
+}
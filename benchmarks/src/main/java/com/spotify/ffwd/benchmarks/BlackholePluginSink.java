@@ -0,0 +1,81 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.benchmarks;
+
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.output.BatchablePluginSink;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.util.Collection;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A sink that consumes everything it is given into a JMH {@link Blackhole}, so that work done
+ * upstream of it can not be eliminated by the JIT.
+ */
+public class BlackholePluginSink implements BatchablePluginSink {
+
+  private final AsyncFramework async;
+  private final Blackhole blackhole;
+
+  public BlackholePluginSink(final AsyncFramework async, final Blackhole blackhole) {
+    this.async = async;
+    this.blackhole = blackhole;
+  }
+
+  @Override
+  public void sendMetric(final Metric metric) {
+    blackhole.consume(metric);
+  }
+
+  @Override
+  public void sendBatch(final Batch batch) {
+    blackhole.consume(batch);
+  }
+
+  @Override
+  public AsyncFuture<Void> sendMetrics(final Collection<Metric> metrics) {
+    blackhole.consume(metrics);
+    return async.resolved();
+  }
+
+  @Override
+  public AsyncFuture<Void> sendBatches(final Collection<Batch> batches) {
+    blackhole.consume(batches);
+    return async.resolved();
+  }
+
+  @Override
+  public AsyncFuture<Void> start() {
+    return async.resolved();
+  }
+
+  @Override
+  public AsyncFuture<Void> stop() {
+    return async.resolved();
+  }
+
+  @Override
+  public boolean isReady() {
+    return true;
+  }
+}
@@ -0,0 +1,159 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.benchmarks;
+
+import com.google.common.collect.ImmutableMap;
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.model.v2.Value;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metric fixtures shaped like the traffic a production agent sees.
+ * <p>
+ * Every metric belongs to one of {@code series} distinct time series. A series is identified by
+ * its key and tags, and the tags are modelled after what semantic-metrics clients emit: a small
+ * set of {@code what} names fanned out over a larger set of endpoints, with a tail of low
+ * cardinality tags (unit, stat, component, ...) to reach the requested tag count.
+ * <p>
+ * Consecutive metrics of the same series are {@code intervalMs} apart, which is what the high
+ * frequency detector looks at.
+ */
+public final class Fixtures {
+
+  /**
+   * Default number of pre-built metrics to cycle through in per-metric benchmarks.
+   */
+  public static final int POOL_SIZE = 1 << 14;
+
+  public static final long BASE_TIMESTAMP = 1600000000000L;
+
+  public static final String KEY = "ffwd-benchmark";
+
+  private static final String[] WHATS = {
+      "request-rate", "request-latency", "error-rate", "cache-hit-ratio",
+      "queue-size", "thread-pool-active", "gc-pause", "heap-used",
+      "connections-open", "bytes-sent", "bytes-received", "retry-rate",
+      "db-query-latency", "db-pool-usage", "circuit-breaker-state", "payload-size",
+  };
+
+  private static final String[] EXTRA_TAG_NAMES = {
+      "unit", "stat", "component", "application", "region", "pod", "status-code", "method",
+      "consumer", "version",
+  };
+
+  private static final String[][] EXTRA_TAG_VALUES = {
+      {"request/s", "ms", "B", "percent"},
+      {"1m", "5m", "p50", "p75", "p99", "count"},
+      {"http-server", "grpc-client", "jdbc", "cache"},
+      {"playlist", "metadata", "search", "user-info", "ads"},
+      {"europe-west1", "us-central1", "asia-east1"},
+      {"pod-a", "pod-b", "pod-c", "pod-d", "pod-e", "pod-f", "pod-g", "pod-h"},
+      {"200", "201", "204", "400", "404", "500", "503"},
+      {"GET", "POST", "PUT", "DELETE"},
+      {"android", "ios", "web", "desktop", "partner"},
+      {"1.0.0", "1.1.0", "1.2.0", "2.0.0"},
+  };
+
+  /**
+   * Tags added to every metric by the agent itself, or carried as common tags in batches.
+   */
+  public static final Map<String, String> COMMON_TAGS =
+      ImmutableMap.of("host", "bench-host-1.example.net", "site", "lon", "role", "bench");
+
+  public static final Map<String, String> COMMON_RESOURCE =
+      ImmutableMap.of("gke_pod", "bench-6f5d8c7b9-x2k4q");
+
+  /**
+   * The minimum number of tags every fixture metric has.
+   */
+  public static final int MIN_TAGS = 2;
+
+  private Fixtures() {
+  }
+
+  /**
+   * Build the tags of a single series.
+   *
+   * @param series Index of the series, two indexes yield the same tags if and only if they are
+   *     equal.
+   * @param tagCount Number of tags to generate, at least {@link #MIN_TAGS}.
+   */
+  public static Map<String, String> tags(final int series, final int tagCount) {
+    final Map<String, String> tags = new HashMap<>();
+    tags.put("what", WHATS[series % WHATS.length]);
+    tags.put("endpoint", "/api/v1/resource-" + (series / WHATS.length));
+
+    final int extra = Math.min(tagCount - MIN_TAGS, EXTRA_TAG_NAMES.length);
+
+    for (int i = 0; i < extra; i++) {
+      final String[] values = EXTRA_TAG_VALUES[i];
+      tags.put(EXTRA_TAG_NAMES[i], values[(series * 31 + i) % values.length]);
+    }
+
+    return tags;
+  }
+
+  public static Metric metric(
+      final int series, final int tagCount, final long timestamp, final double value
+  ) {
+    return new Metric(KEY, Value.DoubleValue.create(value), timestamp, tags(series, tagCount),
+        ImmutableMap.of());
+  }
+
+  /**
+   * Build a list of metrics cycling round-robin over {@code series} time series.
+   */
+  public static List<Metric> metrics(
+      final int count, final int series, final int tagCount, final long intervalMs
+  ) {
+    final List<Metric> metrics = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      final long timestamp = BASE_TIMESTAMP + (i / series) * intervalMs;
+      metrics.add(metric(i % series, tagCount, timestamp, i));
+    }
+
+    return metrics;
+  }
+
+  /**
+   * Build batches of {@code batchSize} points each, carrying {@link #COMMON_TAGS} and {@link
+   * #COMMON_RESOURCE} as common tags and resource.
+   */
+  public static List<Batch> batches(
+      final int count, final int batchSize, final int series, final int tagCount,
+      final long intervalMs
+  ) {
+    final List<Batch> batches = new ArrayList<>(count);
+    final List<Metric> points = metrics(count * batchSize, series, tagCount, intervalMs);
+
+    for (int i = 0; i < count; i++) {
+      batches.add(new Batch(COMMON_TAGS, COMMON_RESOURCE,
+          points.subList(i * batchSize, (i + 1) * batchSize)));
+    }
+
+    return batches;
+  }
+}
@@ -0,0 +1,35 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+/**
+ * Sends plaintext carbon lines to the carbon input.
+ */
+public class CarbonTcpDriver extends LineTcpDriver {
+
+  public CarbonTcpDriver(final int port, final double rate, final int series, final int tagCount) {
+    super("carbon", port, rate, series, tagCount);
+  }
+
+  @Override
+  protected String line(final int series, final double stamp) {
+    return path(series) + " " + stamp + " " + System.currentTimeMillis() / 1000;
+  }
+}
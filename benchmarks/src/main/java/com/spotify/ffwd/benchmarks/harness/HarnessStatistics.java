@@ -0,0 +1,251 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import com.codahale.metrics.Metric;
+import com.spotify.ffwd.statistics.BackpressureStatistics;
+import com.spotify.ffwd.statistics.BatchingStatistics;
+import com.spotify.ffwd.statistics.CoreStatistics;
+import com.spotify.ffwd.statistics.HandoffStatistics;
+import com.spotify.ffwd.statistics.HighFrequencyDetectorStatistics;
+import com.spotify.ffwd.statistics.HighFrequencyOffender;
+import com.spotify.ffwd.statistics.InputManagerStatistics;
+import com.spotify.ffwd.statistics.InputPluginStatistics;
+import com.spotify.ffwd.statistics.MemoryBudgetStatistics;
+import com.spotify.ffwd.statistics.NoopCoreStatistics;
+import com.spotify.ffwd.statistics.OutputManagerStatistics;
+import com.spotify.ffwd.statistics.OutputPluginStatistics;
+import com.spotify.ffwd.statistics.QueueStatistics;
+import com.spotify.ffwd.statistics.SemanticCacheStatistics;
+import com.spotify.metrics.core.MetricId;
+import eu.toolchain.async.FutureFinished;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Core statistics which count everything the harness reports on.
+ * <p>
+ * Counters are shared between all plugins, the harness is interested in the totals of the agent.
+ */
+public class HarnessStatistics implements CoreStatistics {
+
+  final AtomicLong received = new AtomicLong();
+  final AtomicLong inputDroppedByFilter = new AtomicLong();
+  final AtomicLong sent = new AtomicLong();
+  final AtomicLong droppedByFilter = new AtomicLong();
+  final AtomicLong droppedByRateLimit = new AtomicLong();
+  final AtomicLong droppedByCardinalityLimit = new AtomicLong();
+  final AtomicLong cardinality = new AtomicLong();
+  final AtomicLong outputDropped = new AtomicLong();
+  final AtomicLong batchingSent = new AtomicLong();
+  final AtomicLong batchingQueued = new AtomicLong();
+  final AtomicLong batchingDroppedByFilter = new AtomicLong();
+  final AtomicLong batchingRetried = new AtomicLong();
+  final AtomicLong pendingWrites = new AtomicLong();
+  final AtomicLong highFrequencyDropped = new AtomicLong();
+  final AtomicLong queueDropped = new AtomicLong();
+  final AtomicLong shedDatagrams = new AtomicLong();
+
+  private final InputManagerStatistics input = new InputManagerStatistics() {
+    @Override
+    public void reportReceivedMetrics(final int num) {
+      received.addAndGet(num);
+    }
+
+    @Override
+    public void reportMetricsDroppedByFilter(final int dropped) {
+      inputDroppedByFilter.addAndGet(dropped);
+    }
+  };
+
+  private final OutputManagerStatistics output = new OutputManagerStatistics() {
+    @Override
+    public void reportSentMetrics(final int num) {
+      sent.addAndGet(num);
+    }
+
+    @Override
+    public void reportMetricsDroppedByFilter(final int dropped) {
+      droppedByFilter.addAndGet(dropped);
+    }
+
+    @Override
+    public void reportMetricsDroppedByRateLimit(final int dropped) {
+      droppedByRateLimit.addAndGet(dropped);
+    }
+
+    @Override
+    public void reportMetricsDroppedByCardinalityLimit(final int dropped) {
+      droppedByCardinalityLimit.addAndGet(dropped);
+    }
+
+    @Override
+    public void reportMetricsCardinality(final long value) {
+      cardinality.set(value);
+    }
+  };
+
+  private final OutputPluginStatistics outputPlugin = new OutputPluginStatistics() {
+    @Override
+    public Map<MetricId, Metric> getMetrics() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public void reportDropped(final int dropped) {
+      outputDropped.addAndGet(dropped);
+    }
+
+    @Override
+    public void registerCacheStats(final SemanticCacheStatistics stats) {
+    }
+  };
+
+  private final BatchingStatistics batching = new BatchingStatistics() {
+    @Override
+    public void reportSentMetrics(final int num) {
+      batchingSent.addAndGet(num);
+    }
+
+    @Override
+    public void reportSentBatches(final int num, final int contentSize) {
+    }
+
+    @Override
+    public void reportInternalBatchCreate(final int num) {
+    }
+
+    @Override
+    public void reportInternalBatchWrite(final int size) {
+    }
+
+    @Override
+    public void reportQueueSizeInc(final int num) {
+      batchingQueued.addAndGet(num);
+    }
+
+    @Override
+    public void reportQueueSizeDec(final int num) {
+      batchingQueued.addAndGet(-num);
+    }
+
+    @Override
+    public FutureFinished monitorWrite() {
+      pendingWrites.incrementAndGet();
+      return pendingWrites::decrementAndGet;
+    }
+
+    @Override
+    public void reportMetricsDroppedByFilter(final int dropped) {
+      batchingDroppedByFilter.addAndGet(dropped);
+    }
+
+    @Override
+    public void reportRetried(final int num) {
+      batchingRetried.addAndGet(num);
+    }
+  };
+
+  private final HighFrequencyDetectorStatistics highFrequency =
+      new HighFrequencyDetectorStatistics() {
+        @Override
+        public void reportHighFrequencyMetrics(
+            final int marked, final List<HighFrequencyOffender> top
+        ) {
+        }
+
+        @Override
+        public void reportHighFrequencyMetricsDropped(final int dropped) {
+          highFrequencyDropped.addAndGet(dropped);
+        }
+      };
+
+  private final QueueStatistics queue = new QueueStatistics() {
+    @Override
+    public void reportDropped(final int dropped) {
+      queueDropped.addAndGet(dropped);
+    }
+  };
+
+  private final BackpressureStatistics backpressure = new BackpressureStatistics() {
+    @Override
+    public void reportShedDatagrams(final int num) {
+      shedDatagrams.addAndGet(num);
+    }
+  };
+
+  @Override
+  public InputManagerStatistics newInputManager() {
+    return input;
+  }
+
+  /**
+   * The harness measures latency end-to-end through the stand-ins.
+   */
+  @Override
+  public InputPluginStatistics newInputPlugin(final String id) {
+    return NoopCoreStatistics.get().newInputPlugin(id);
+  }
+
+  @Override
+  public OutputManagerStatistics newOutputManager() {
+    return output;
+  }
+
+  @Override
+  public OutputPluginStatistics newOutputPlugin(final String id) {
+    return outputPlugin;
+  }
+
+  @Override
+  public BatchingStatistics newBatching(final String id) {
+    return batching;
+  }
+
+  @Override
+  public HighFrequencyDetectorStatistics newHighFrequency() {
+    return highFrequency;
+  }
+
+  @Override
+  public QueueStatistics newQueue(final String id) {
+    return queue;
+  }
+
+  @Override
+  public HandoffStatistics newHandoff(final String id) {
+    return NoopCoreStatistics.get().newHandoff(id);
+  }
+
+  @Override
+  public BackpressureStatistics newBackpressure() {
+    return backpressure;
+  }
+
+  /**
+   * Metrics refused by the memory budget are counted as dropped where they were refused.
+   */
+  @Override
+  public MemoryBudgetStatistics newMemoryBudget() {
+    return NoopCoreStatistics.get().newMemoryBudget();
+  }
+}
@@ -0,0 +1,108 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.ffwd.Mappers;
+import com.spotify.ffwd.benchmarks.Fixtures;
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.model.v2.Value;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Posts batches of points to the {@code v2/batch} endpoint of the http input.
+ */
+public class HttpDriver extends LoadDriver {
+
+  private final ObjectMapper mapper = Mappers.setupApplicationJson();
+  private final URL url;
+  private final int batchSize;
+  private final List<Map<String, String>> tags;
+  private final List<Metric> points;
+
+  public HttpDriver(
+      final int port, final double rate, final int series, final int tagCount, final int batchSize
+  ) throws IOException {
+    super("http", port, rate, series, tagCount);
+    this.url = new URL("http://127.0.0.1:" + port + "/v2/batch");
+    this.batchSize = batchSize;
+    this.tags = new ArrayList<>(series);
+    this.points = new ArrayList<>(batchSize);
+
+    for (int s = 0; s < series; s++) {
+      tags.add(Fixtures.tags(s, tagCount));
+    }
+  }
+
+  @Override
+  protected void send(final int series, final double stamp) throws IOException {
+    points.add(new Metric(Fixtures.KEY, Value.DoubleValue.create(stamp),
+        System.currentTimeMillis(), tags.get(series), ImmutableMap.of()));
+
+    if (points.size() >= batchSize) {
+      flush();
+    }
+  }
+
+  @Override
+  protected void flush() throws IOException {
+    if (points.isEmpty()) {
+      return;
+    }
+
+    final byte[] body = mapper.writeValueAsBytes(
+        new Batch(Fixtures.COMMON_TAGS, Fixtures.COMMON_RESOURCE, points));
+    points.clear();
+
+    final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+    try {
+      connection.setRequestMethod("POST");
+      connection.setRequestProperty("Content-Type", "application/json");
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(body.length);
+
+      try (final OutputStream output = connection.getOutputStream()) {
+        output.write(body);
+      }
+
+      final int status = connection.getResponseCode();
+
+      if (status / 100 != 2) {
+        throw new IOException("unexpected response status: " + status);
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Override
+  protected void close() {
+    points.clear();
+  }
+}
@@ -0,0 +1,155 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.ffwd.Mappers;
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stands in for a server implementing the {@code v2/batch} endpoint used by the http output
+ * plugin.
+ */
+public class HttpStandIn extends StandIn {
+
+  private static final int MAX_CONTENT_LENGTH = 64 * 1024 * 1024;
+
+  private final ObjectMapper mapper = Mappers.setupApplicationJson();
+
+  private EventLoopGroup group;
+  private Channel channel;
+
+  public HttpStandIn(final StandInBehaviour behaviour) {
+    super("http", behaviour);
+  }
+
+  @Override
+  public int start() throws Exception {
+    group = new NioEventLoopGroup(2);
+
+    channel = new ServerBootstrap()
+        .group(group)
+        .channel(NioServerSocketChannel.class)
+        .childHandler(new ChannelInitializer<Channel>() {
+          @Override
+          protected void initChannel(final Channel ch) {
+            ch.pipeline().addLast(new HttpServerCodec(),
+                new HttpObjectAggregator(MAX_CONTENT_LENGTH), new Handler());
+          }
+        })
+        .bind(new InetSocketAddress("127.0.0.1", 0))
+        .sync()
+        .channel();
+
+    return ((InetSocketAddress) channel.localAddress()).getPort();
+  }
+
+  @Override
+  public void stop() throws Exception {
+    channel.close().sync();
+    group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+  }
+
+  @Override
+  public Map<String, Object> outputConfig(final int port) {
+    return ImmutableMap.of("type", "http", "discovery",
+        ImmutableMap.of("type", "static", "servers", ImmutableList.of("127.0.0.1:" + port)));
+  }
+
+  private class Handler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    @Override
+    protected void channelRead0(final ChannelHandlerContext ctx, final FullHttpRequest request)
+        throws IOException {
+      final boolean keepAlive = HttpUtil.isKeepAlive(request);
+
+      if (request.method() == HttpMethod.GET && request.uri().endsWith("/ping")) {
+        respond(ctx, HttpResponseStatus.OK, keepAlive);
+        return;
+      }
+
+      if (request.method() != HttpMethod.POST || !request.uri().endsWith("/v2/batch")) {
+        respond(ctx, HttpResponseStatus.NOT_FOUND, keepAlive);
+        return;
+      }
+
+      final Batch batch;
+
+      try (final InputStream input = new ByteBufInputStream(request.content())) {
+        batch = mapper.readValue(input, Batch.class);
+      }
+
+      ctx.executor().schedule(() -> {
+        if (behaviour.shouldFail()) {
+          failed.incrementAndGet();
+          respond(ctx, HttpResponseStatus.SERVICE_UNAVAILABLE, keepAlive);
+          return;
+        }
+
+        for (final Metric point : batch.getPoints()) {
+          deliver((double) point.getValue().getValue());
+        }
+
+        respond(ctx, HttpResponseStatus.OK, keepAlive);
+      }, behaviour.delayMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private void respond(
+        final ChannelHandlerContext ctx, final HttpResponseStatus status, final boolean keepAlive
+    ) {
+      final FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status);
+      HttpUtil.setContentLength(response, 0);
+      HttpUtil.setKeepAlive(response, keepAlive);
+
+      if (keepAlive) {
+        ctx.writeAndFlush(response);
+      } else {
+        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+      }
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.spotify.ffwd.benchmarks.Fixtures;
+import java.util.Map;
+
+/**
+ * Sends json metrics, one per line, to the json input.
+ */
+public class JsonTcpDriver extends LineTcpDriver {
+
+  /**
+   * Everything but the time and value of each series, as an unterminated json object.
+   */
+  private final String[] prefixes;
+
+  public JsonTcpDriver(final int port, final double rate, final int series, final int tagCount)
+      throws JsonProcessingException {
+    super("json", port, rate, series, tagCount);
+
+    final ObjectMapper mapper = new ObjectMapper();
+    this.prefixes = new String[series];
+
+    for (int s = 0; s < series; s++) {
+      final ObjectNode frame = mapper.createObjectNode();
+      frame.put("type", "metric");
+      frame.put("key", Fixtures.KEY);
+      frame.put("host", "harness");
+
+      final ObjectNode attributes = frame.putObject("attributes");
+
+      for (final Map.Entry<String, String> e : Fixtures.tags(s, tagCount).entrySet()) {
+        attributes.put(e.getKey(), e.getValue());
+      }
+
+      final String json = mapper.writeValueAsString(frame);
+      prefixes[s] = json.substring(0, json.length() - 1);
+    }
+  }
+
+  @Override
+  protected String line(final int series, final double stamp) {
+    return prefixes[series] + ",\"time\":" + System.currentTimeMillis() + ",\"value\":" + stamp
+           + "}";
+  }
+}
@@ -0,0 +1,101 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free log-linear histogram of latencies in microseconds.
+ * <p>
+ * Every power of two is split into {@value #SUB_BUCKETS} linear buckets, which bounds the error
+ * of reported percentiles to about 6%.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+
+  public void record(final long micros) {
+    counts.incrementAndGet(index(Math.max(0, micros)));
+  }
+
+  /**
+   * Forget everything recorded so far, e.g. at the end of a warmup period.
+   */
+  public void reset() {
+    for (int i = 0; i < counts.length(); i++) {
+      counts.set(i, 0);
+    }
+  }
+
+  public long count() {
+    long total = 0;
+
+    for (int i = 0; i < counts.length(); i++) {
+      total += counts.get(i);
+    }
+
+    return total;
+  }
+
+  /**
+   * Get the given percentile.
+   *
+   * @param quantile Quantile between {@code 0} and {@code 1}.
+   * @return The lower bound of the bucket holding the percentile, or {@code 0} if nothing has
+   *     been recorded.
+   */
+  public long percentile(final double quantile) {
+    final long target = (long) Math.ceil(quantile * count());
+    long seen = 0;
+
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+
+      if (seen > 0 && seen >= target) {
+        return lowerBound(i);
+      }
+    }
+
+    return 0;
+  }
+
+  static int index(final long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    final int exponent = 63 - Long.numberOfLeadingZeros(value);
+    final int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  static long lowerBound(final int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+
+    final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    final long sub = index % SUB_BUCKETS;
+    return (1L << exponent) + (sub << (exponent - SUB_BUCKET_BITS));
+  }
+}
@@ -0,0 +1,122 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import com.google.common.collect.ImmutableMap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stands in for a TCP line receiver, as written to by the template output plugin through a
+ * {@link com.spotify.ffwd.protocol.ProtocolPluginSink}.
+ * <p>
+ * Latency and stalls are applied by pausing reads, which pushes back on the agent through TCP
+ * flow control. Errors close the connection, which exercises the reconnect path of the sink.
+ */
+public class LineStandIn extends StandIn {
+
+  private static final int MAX_LINE = 1024 * 1024;
+  private static final Pattern VALUE = Pattern.compile("DoubleValue\\(value=([^)]+)\\)");
+
+  private EventLoopGroup group;
+  private Channel channel;
+
+  public LineStandIn(final StandInBehaviour behaviour) {
+    super("line", behaviour);
+  }
+
+  @Override
+  public int start() throws Exception {
+    group = new NioEventLoopGroup(2);
+
+    channel = new ServerBootstrap()
+        .group(group)
+        .channel(NioServerSocketChannel.class)
+        .childHandler(new ChannelInitializer<Channel>() {
+          @Override
+          protected void initChannel(final Channel ch) {
+            ch.pipeline().addLast(new LineBasedFrameDecoder(MAX_LINE), new StringDecoder(),
+                new Handler());
+          }
+        })
+        .bind(new InetSocketAddress("127.0.0.1", 0))
+        .sync()
+        .channel();
+
+    return ((InetSocketAddress) channel.localAddress()).getPort();
+  }
+
+  @Override
+  public void stop() throws Exception {
+    channel.close().sync();
+    group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+  }
+
+  @Override
+  public Map<String, Object> outputConfig(final int port) {
+    return ImmutableMap.of("type", "template", "protocol",
+        ImmutableMap.of("type", "tcp", "host", "127.0.0.1", "port", port));
+  }
+
+  private class Handler extends SimpleChannelInboundHandler<String> {
+
+    @Override
+    protected void channelRead0(final ChannelHandlerContext ctx, final String line) {
+      if (behaviour.shouldFail()) {
+        failed.incrementAndGet();
+        ctx.close();
+        return;
+      }
+
+      final Matcher m = VALUE.matcher(line);
+
+      while (m.find()) {
+        deliver(Double.parseDouble(m.group(1)));
+      }
+    }
+
+    @Override
+    public void channelReadComplete(final ChannelHandlerContext ctx) {
+      final long delay = behaviour.delayMs();
+
+      if (delay > 0) {
+        ctx.channel().config().setAutoRead(false);
+        ctx.executor().schedule(() -> {
+          ctx.channel().config().setAutoRead(true);
+        }, delay, TimeUnit.MILLISECONDS);
+      }
+
+      ctx.fireChannelReadComplete();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sends newline delimited metrics over a single TCP connection, used for the json and carbon
+ * inputs.
+ */
+public abstract class LineTcpDriver extends LoadDriver {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private Socket socket;
+  private OutputStream output;
+
+  protected LineTcpDriver(
+      final String name, final int port, final double rate, final int series, final int tagCount
+  ) {
+    super(name, port, rate, series, tagCount);
+  }
+
+  /**
+   * Format a single line, without the trailing newline.
+   */
+  protected abstract String line(int series, double stamp);
+
+  @Override
+  protected void send(final int series, final double stamp) throws IOException {
+    if (output == null) {
+      socket = new Socket("127.0.0.1", port);
+      socket.setTcpNoDelay(true);
+      output = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+    }
+
+    output.write((line(series, stamp) + "\n").getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  protected void flush() throws IOException {
+    if (output != null) {
+      output.flush();
+    }
+  }
+
+  @Override
+  protected void close() {
+    if (socket != null) {
+      try {
+        socket.close();
+      } catch (final IOException ignored) {
+        // nothing to do
+      }
+    }
+
+    socket = null;
+    output = null;
+  }
+}
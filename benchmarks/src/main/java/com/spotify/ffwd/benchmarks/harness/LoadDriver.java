@@ -0,0 +1,127 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends metrics to one input plugin of the agent at a fixed rate.
+ * <p>
+ * The value of every metric is its send stamp, see {@link Stamps}. Metrics cycle round-robin over
+ * the configured number of series.
+ */
+public abstract class LoadDriver implements Runnable {
+
+  /**
+   * Upper bound of metrics sent between two flushes, so that a driver which has fallen behind
+   * catches up in bounded chunks.
+   */
+  private static final int MAX_CHUNK = 1000;
+
+  private static final long IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+  private static final long RECONNECT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  protected final String name;
+  protected final int port;
+  protected final int series;
+  protected final int tagCount;
+
+  private final double rate;
+
+  final AtomicLong sent = new AtomicLong();
+  final AtomicLong errors = new AtomicLong();
+
+  private volatile boolean running = true;
+  private int next;
+
+  protected LoadDriver(
+      final String name, final int port, final double rate, final int series, final int tagCount
+  ) {
+    this.name = name;
+    this.port = port;
+    this.rate = rate;
+    this.series = series;
+    this.tagCount = tagCount;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void stop() {
+    running = false;
+  }
+
+  @Override
+  public void run() {
+    final long started = System.nanoTime();
+    long scheduled = 0;
+
+    while (running) {
+      final long due = (long) (rate * (System.nanoTime() - started) / 1e9);
+
+      if (due <= scheduled) {
+        LockSupport.parkNanos(IDLE_NANOS);
+        continue;
+      }
+
+      final int chunk = (int) Math.min(due - scheduled, MAX_CHUNK);
+      scheduled += chunk;
+
+      try {
+        for (int i = 0; i < chunk; i++) {
+          send(next, Stamps.now());
+          next = (next + 1) % series;
+        }
+
+        flush();
+        sent.addAndGet(chunk);
+      } catch (final IOException e) {
+        errors.addAndGet(chunk);
+        close();
+        LockSupport.parkNanos(RECONNECT_NANOS);
+      }
+    }
+
+    close();
+  }
+
+  /**
+   * Send, or buffer, a single metric.
+   */
+  protected abstract void send(int series, double stamp) throws IOException;
+
+  /**
+   * Flush anything buffered by {@link #send(int, double)}.
+   */
+  protected abstract void flush() throws IOException;
+
+  /**
+   * Close the underlying connection, if any. The next send is expected to re-establish it.
+   */
+  protected abstract void close();
+
+  protected static String path(final int series) {
+    return "ffwd-benchmark.series-" + series;
+  }
+}
@@ -0,0 +1,398 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.ffwd.AgentCore;
+import com.spotify.ffwd.module.FastForwardModule;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end throughput harness.
+ * <p>
+ * Boots a complete agent in-process, drives its inputs at a fixed rate and forwards to in-process
+ * stand-ins of the downstreams. Reports the sustained rate, the latency from send to delivery
+ * for each output and every place where metrics were dropped on the way.
+ * <p>
+ * Options are given as {@code --name=value}, see {@link #DEFAULTS}.
+ */
+public class LoadHarness {
+
+  private static final Map<String, String> DEFAULTS = ImmutableMap.<String, String>builder()
+      // seconds to run for, after warmup
+      .put("duration", "60")
+      // seconds to run for before measurements are reset
+      .put("warmup", "10")
+      // total metrics per second, spread evenly over all inputs
+      .put("rate", "100000")
+      .put("series", "10000")
+      .put("tags", "6")
+      // any of: protobuf, json, carbon, http
+      .put("inputs", "protobuf,json,carbon,http")
+      // any of: http, line, otlp
+      .put("outputs", "http,line")
+      // number of points per request to the http input
+      .put("http-batch-size", "500")
+      // batching of the outputs
+      .put("flush-interval", "100")
+      .put("batch-size-limit", "10000")
+      .put("max-pending-flushes", "10")
+      // behaviour of the stand-in downstreams
+      .put("latency-ms", "0")
+      .put("error-rate", "0")
+      .put("stall-every-ms", "0")
+      .put("stall-for-ms", "0")
+      // output manager limits, 0 disables them
+      .put("rate-limit", "0")
+      .put("cardinality-limit", "0")
+      .build();
+
+  private final Map<String, String> options;
+  private final HarnessStatistics statistics = new HarnessStatistics();
+  private final List<StandIn> standIns = new ArrayList<>();
+  private final List<LoadDriver> drivers = new ArrayList<>();
+
+  LoadHarness(final Map<String, String> options) {
+    this.options = options;
+  }
+
+  public static void main(final String[] argv) throws Exception {
+    // same as the agent, see FastForwardAgent
+    System.setProperty("io.netty.noJdkZlibDecoder", "false");
+
+    final Map<String, String> options = new HashMap<>(DEFAULTS);
+
+    for (final String arg : argv) {
+      if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+        throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+      }
+
+      final String name = arg.substring(2, arg.indexOf('='));
+
+      if (!DEFAULTS.containsKey(name)) {
+        throw new IllegalArgumentException("Unknown option: " + name + ", expected one of: "
+                                           + DEFAULTS.keySet());
+      }
+
+      options.put(name, arg.substring(arg.indexOf('=') + 1));
+    }
+
+    new LoadHarness(options).run();
+    System.exit(0);
+  }
+
+  void run() throws Exception {
+    final StandInBehaviour behaviour = new StandInBehaviour(integer("latency-ms"),
+        Double.parseDouble(options.get("error-rate")), integer("stall-every-ms"),
+        integer("stall-for-ms"));
+
+    final List<Object> outputs = new ArrayList<>();
+
+    for (final String output : list("outputs")) {
+      final StandIn standIn = standIn(output, behaviour);
+      final Map<String, Object> config = new LinkedHashMap<>(standIn.outputConfig(standIn.start()));
+      config.put("batching", ImmutableMap.of(
+          "flushInterval", integer("flush-interval"),
+          "batchSizeLimit", integer("batch-size-limit"),
+          "maxPendingFlushes", integer("max-pending-flushes"),
+          "reportStatistics", true));
+      outputs.add(config);
+      standIns.add(standIn);
+    }
+
+    final List<String> inputNames = list("inputs");
+    final double ratePerInput = Double.parseDouble(options.get("rate")) / inputNames.size();
+    final List<Object> inputs = new ArrayList<>();
+
+    for (final String input : inputNames) {
+      final int port = freePort();
+      final String type = "protobuf".equals(input) ? "udp" : "tcp";
+      inputs.add(ImmutableMap.of("type", input, "protocol",
+          ImmutableMap.of("type", type, "host", "127.0.0.1", "port", port)));
+      drivers.add(driver(input, port, ratePerInput));
+    }
+
+    final Map<String, Object> output = new LinkedHashMap<>();
+    output.put("plugins", outputs);
+
+    if (integer("rate-limit") > 0) {
+      output.put("ratelimit", integer("rate-limit"));
+    }
+
+    if (integer("cardinality-limit") > 0) {
+      output.put("cardinalitylimit", integer("cardinality-limit"));
+    }
+
+    final Map<String, Object> config = ImmutableMap.of("input",
+        ImmutableMap.of("plugins", inputs), "output", output);
+
+    // json is valid yaml
+    final Path configPath = Files.createTempFile("ffwd-harness", ".yaml");
+    configPath.toFile().deleteOnExit();
+    new ObjectMapper().writeValue(configPath.toFile(), config);
+
+    final AgentCore agent = AgentCore
+        .builder()
+        .configPath(configPath)
+        .modules(modules())
+        .statistics(statistics)
+        .build();
+
+    agent.start();
+
+    System.out.println("Options: " + options);
+    System.out.println("Downstreams: " + behaviour);
+
+    final List<Thread> threads = new ArrayList<>();
+
+    for (final LoadDriver driver : drivers) {
+      final Thread thread = new Thread(driver, "harness-" + driver.getName());
+      thread.start();
+      threads.add(thread);
+    }
+
+    final int warmup = integer("warmup");
+    final int duration = integer("duration");
+
+    final Report report = new Report();
+    report.start();
+
+    for (int second = 1; second <= warmup + duration; second++) {
+      Thread.sleep(TimeUnit.SECONDS.toMillis(1));
+
+      if (second == warmup) {
+        report.reset();
+        System.out.println("-- warmup done --");
+      }
+
+      report.second(second);
+    }
+
+    for (final LoadDriver driver : drivers) {
+      driver.stop();
+    }
+
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+
+    report.summary(duration);
+
+    agent.stop();
+
+    for (final StandIn standIn : standIns) {
+      standIn.stop();
+    }
+  }
+
+  private StandIn standIn(final String name, final StandInBehaviour behaviour) {
+    switch (name) {
+      case "http":
+        return new HttpStandIn(behaviour);
+      case "line":
+        return new LineStandIn(behaviour);
+      case "otlp":
+        return new OtlpStandIn(behaviour);
+      default:
+        throw new IllegalArgumentException("Unknown output: " + name);
+    }
+  }
+
+  private LoadDriver driver(final String name, final int port, final double rate)
+      throws IOException {
+    final int series = integer("series");
+    final int tags = integer("tags");
+
+    switch (name) {
+      case "protobuf":
+        return new ProtobufUdpDriver(port, rate, series, tags);
+      case "json":
+        return new JsonTcpDriver(port, rate, series, tags);
+      case "carbon":
+        return new CarbonTcpDriver(port, rate, series, tags);
+      case "http":
+        return new HttpDriver(port, rate, series, tags, integer("http-batch-size"));
+      default:
+        throw new IllegalArgumentException("Unknown input: " + name);
+    }
+  }
+
+  private static List<Class<? extends FastForwardModule>> modules() {
+    return ImmutableList.of(
+        com.spotify.ffwd.debug.DebugModule.class,
+        com.spotify.ffwd.json.JsonModule.class,
+        com.spotify.ffwd.protobuf.ProtobufModule.class,
+        com.spotify.ffwd.serializer.BuiltInSerializers.class,
+        com.spotify.ffwd.noop.NoopModule.class,
+        com.spotify.ffwd.carbon.CarbonModule.class,
+        com.spotify.ffwd.template.TemplateOutputModule.class,
+        com.spotify.ffwd.http.HttpModule.class,
+        com.spotify.ffwd.opentelemetry.OpenTelemetryOutputModule.class);
+  }
+
+  private int integer(final String name) {
+    return Integer.parseInt(options.get(name));
+  }
+
+  private List<String> list(final String name) {
+    return Splitter.on(',').omitEmptyStrings().trimResults().splitToList(options.get(name));
+  }
+
+  private static int freePort() throws IOException {
+    try (final ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  /**
+   * Prints a line per second while running and a summary at the end.
+   */
+  private class Report {
+
+    private long lastSent;
+    private long lastReceived;
+    private final Map<StandIn, Long> lastDelivered = new HashMap<>();
+
+    private long startSent;
+    private long startReceived;
+    private final Map<StandIn, Long> startDelivered = new HashMap<>();
+
+    /**
+     * Start the first interval, so that the first line is per second like the ones after it.
+     */
+    void start() {
+      lastSent = sent();
+      lastReceived = statistics.received.get();
+
+      for (final StandIn standIn : standIns) {
+        lastDelivered.put(standIn, standIn.delivered.get());
+      }
+
+      reset();
+    }
+
+    /**
+     * Start the measurements of the summary.
+     */
+    void reset() {
+      startSent = sent();
+      startReceived = statistics.received.get();
+
+      for (final StandIn standIn : standIns) {
+        startDelivered.put(standIn, standIn.delivered.get());
+        standIn.latency.reset();
+      }
+    }
+
+    void second(final int second) {
+      final long sent = sent();
+      final long received = statistics.received.get();
+
+      final StringBuilder line = new StringBuilder(String.format(
+          "[%4ds] sent %9d/s received %9d/s", second, sent - lastSent, received - lastReceived));
+
+      for (final StandIn standIn : standIns) {
+        final long delivered = standIn.delivered.get();
+        line.append(String.format(" %s %9d/s", standIn.getName(),
+            delivered - lastDelivered.getOrDefault(standIn, 0L)));
+        lastDelivered.put(standIn, delivered);
+      }
+
+      line.append(String.format(" queued %d pending-writes %d", statistics.batchingQueued.get(),
+          statistics.pendingWrites.get()));
+
+      System.out.println(line);
+
+      lastSent = sent;
+      lastReceived = received;
+    }
+
+    void summary(final int duration) {
+      System.out.println();
+      System.out.println(String.format("Sustained over %ds:", duration));
+      System.out.println(String.format("  sent      %12.0f metrics/s",
+          (double) (sent() - startSent) / duration));
+      System.out.println(String.format("  received  %12.0f metrics/s",
+          (double) (statistics.received.get() - startReceived) / duration));
+
+      for (final StandIn standIn : standIns) {
+        final long delivered = standIn.delivered.get() - startDelivered.get(standIn);
+        System.out.println(String.format(
+            "  %-9s %12.0f metrics/s, latency p50 %dus p99 %dus p999 %dus, %d failed requests",
+            standIn.getName(), (double) delivered / duration, standIn.latency.percentile(0.5),
+            standIn.latency.percentile(0.99), standIn.latency.percentile(0.999),
+            standIn.failed.get()));
+      }
+
+      System.out.println();
+      System.out.println("Drops (total, including warmup):");
+
+      for (final LoadDriver driver : drivers) {
+        System.out.println(String.format("  %-40s %d", "send errors (" + driver.getName() + ")",
+            driver.errors.get()));
+      }
+
+      System.out.println(String.format("  %-40s %d", "input filter",
+          statistics.inputDroppedByFilter.get()));
+      System.out.println(String.format("  %-40s %d", "output filter",
+          statistics.droppedByFilter.get()));
+      System.out.println(String.format("  %-40s %d", "rate limit",
+          statistics.droppedByRateLimit.get()));
+      System.out.println(String.format("  %-40s %d", "cardinality limit",
+          statistics.droppedByCardinalityLimit.get()));
+      System.out.println(String.format("  %-40s %d", "high frequency",
+          statistics.highFrequencyDropped.get()));
+      System.out.println(String.format("  %-40s %d", "batching filter",
+          statistics.batchingDroppedByFilter.get()));
+      System.out.println(String.format("  %-40s %d", "output queues",
+          statistics.queueDropped.get()));
+      System.out.println(String.format("  %-40s %d", "shed datagrams (backpressure)",
+          statistics.shedDatagrams.get()));
+      System.out.println(String.format("  %-40s %d", "output plugins",
+          statistics.outputDropped.get()));
+      System.out.println(String.format("  %-40s %d", "still queued in batching",
+          statistics.batchingQueued.get()));
+      System.out.println(String.format("  %-40s %d", "recovered by retrying (not dropped)",
+          statistics.batchingRetried.get()));
+    }
+
+    private long sent() {
+      long sent = 0;
+
+      for (final LoadDriver driver : drivers) {
+        sent += driver.sent.get();
+      }
+
+      return sent;
+    }
+  }
+}
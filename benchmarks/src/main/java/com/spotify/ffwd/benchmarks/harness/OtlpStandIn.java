@@ -0,0 +1,100 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import com.google.common.collect.ImmutableMap;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsServiceRequest;
+import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsServiceResponse;
+import io.opentelemetry.proto.collector.metrics.v1.MetricsServiceGrpc;
+import io.opentelemetry.proto.metrics.v1.DoubleDataPoint;
+import io.opentelemetry.proto.metrics.v1.InstrumentationLibraryMetrics;
+import io.opentelemetry.proto.metrics.v1.Metric;
+import io.opentelemetry.proto.metrics.v1.ResourceMetrics;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stands in for an OpenTelemetry collector, as written to by the opentelemetry output plugin.
+ */
+public class OtlpStandIn extends StandIn {
+
+  private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+
+  private Server server;
+
+  public OtlpStandIn(final StandInBehaviour behaviour) {
+    super("otlp", behaviour);
+  }
+
+  @Override
+  public int start() throws Exception {
+    server = ServerBuilder.forPort(0).addService(new MetricsService()).build().start();
+    return server.getPort();
+  }
+
+  @Override
+  public void stop() throws Exception {
+    server.shutdownNow().awaitTermination(1, TimeUnit.SECONDS);
+    scheduler.shutdownNow();
+  }
+
+  @Override
+  public Map<String, Object> outputConfig(final int port) {
+    return ImmutableMap.of("type", "opentelemetry", "endpoint", "127.0.0.1:" + port, "plaintext",
+        true);
+  }
+
+  private class MetricsService extends MetricsServiceGrpc.MetricsServiceImplBase {
+
+    @Override
+    public void export(
+        final ExportMetricsServiceRequest request,
+        final StreamObserver<ExportMetricsServiceResponse> observer
+    ) {
+      scheduler.schedule(() -> {
+        if (behaviour.shouldFail()) {
+          failed.incrementAndGet();
+          observer.onError(Status.UNAVAILABLE.withDescription("injected error").asException());
+          return;
+        }
+
+        for (final ResourceMetrics resource : request.getResourceMetricsList()) {
+          for (final InstrumentationLibraryMetrics library : resource
+              .getInstrumentationLibraryMetricsList()) {
+            for (final Metric metric : library.getMetricsList()) {
+              for (final DoubleDataPoint point : metric.getDoubleGauge().getDataPointsList()) {
+                deliver(point.getValue());
+              }
+            }
+          }
+        }
+
+        observer.onNext(ExportMetricsServiceResponse.getDefaultInstance());
+        observer.onCompleted();
+      }, behaviour.delayMs(), TimeUnit.MILLISECONDS);
+    }
+  }
+}
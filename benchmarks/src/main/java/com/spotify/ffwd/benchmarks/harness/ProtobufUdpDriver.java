@@ -0,0 +1,113 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import com.spotify.ffwd.benchmarks.Fixtures;
+import com.spotify.ffwd.protocol1.Protocol1;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+
+/**
+ * Sends protobuf frames over UDP, packing as many frames as fit into each datagram.
+ */
+public class ProtobufUdpDriver extends LoadDriver {
+
+  private static final int HEADER_SIZE = 8;
+  private static final int MAX_DATAGRAM = 1024;
+
+  private final Protocol1.Metric[] templates;
+  private final ByteBuffer datagram = ByteBuffer.allocate(MAX_DATAGRAM);
+  private final InetSocketAddress target;
+
+  private DatagramChannel channel;
+
+  public ProtobufUdpDriver(
+      final int port, final double rate, final int series, final int tagCount
+  ) {
+    super("protobuf", port, rate, series, tagCount);
+    this.target = new InetSocketAddress("127.0.0.1", port);
+    this.templates = new Protocol1.Metric[series];
+
+    for (int s = 0; s < series; s++) {
+      final Protocol1.Metric.Builder metric =
+          Protocol1.Metric.newBuilder().setKey(Fixtures.KEY).setHost("harness");
+
+      for (final Map.Entry<String, String> e : Fixtures.tags(s, tagCount).entrySet()) {
+        metric.addAttributes(
+            Protocol1.Attribute.newBuilder().setKey(e.getKey()).setValue(e.getValue()));
+      }
+
+      templates[s] = metric.build();
+    }
+  }
+
+  @Override
+  protected void send(final int series, final double stamp) throws IOException {
+    final byte[] body = Protocol1.Message
+        .newBuilder()
+        .setMetric(templates[series]
+            .toBuilder()
+            .setTime(System.currentTimeMillis())
+            .setValue(Protocol1.Value.newBuilder().setDoubleValue(stamp)))
+        .build()
+        .toByteArray();
+
+    if (datagram.remaining() < HEADER_SIZE + body.length) {
+      flush();
+    }
+
+    datagram.putInt(1);
+    datagram.putInt(HEADER_SIZE + body.length);
+    datagram.put(body);
+  }
+
+  @Override
+  protected void flush() throws IOException {
+    if (datagram.position() == 0) {
+      return;
+    }
+
+    if (channel == null) {
+      channel = DatagramChannel.open();
+    }
+
+    datagram.flip();
+    channel.send(datagram, target);
+    datagram.clear();
+  }
+
+  @Override
+  protected void close() {
+    datagram.clear();
+
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (final IOException ignored) {
+        // nothing to do
+      }
+
+      channel = null;
+    }
+  }
+}
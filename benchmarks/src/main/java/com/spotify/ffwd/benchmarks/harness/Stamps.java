@@ -0,0 +1,48 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Send stamps, carried through the agent as the value of every generated metric.
+ * <p>
+ * Stamps are microseconds since the harness was loaded, which a double represents exactly and
+ * which survives every input and output format unchanged.
+ */
+final class Stamps {
+
+  /**
+   * Shifted one second into the past, so that stamps are always positive. Metrics with a value
+   * of zero are dropped as invalid.
+   */
+  private static final long ORIGIN = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+
+  private Stamps() {
+  }
+
+  static double now() {
+    return (System.nanoTime() - ORIGIN) / 1000;
+  }
+
+  static long latencyMicros(final double stamp) {
+    return (long) (now() - stamp);
+  }
+}
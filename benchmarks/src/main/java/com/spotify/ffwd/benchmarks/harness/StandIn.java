@@ -0,0 +1,70 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process server standing in for a real downstream of an output plugin.
+ * <p>
+ * Stand-ins pick the send stamp out of every metric they receive and record how long it took the
+ * metric to make it through the agent.
+ */
+public abstract class StandIn {
+
+  protected final String name;
+  protected final StandInBehaviour behaviour;
+
+  final LatencyHistogram latency = new LatencyHistogram();
+  final AtomicLong delivered = new AtomicLong();
+  final AtomicLong failed = new AtomicLong();
+
+  protected StandIn(final String name, final StandInBehaviour behaviour) {
+    this.name = name;
+    this.behaviour = behaviour;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Start the stand-in.
+   *
+   * @return The port the stand-in is listening on.
+   */
+  public abstract int start() throws Exception;
+
+  public abstract void stop() throws Exception;
+
+  /**
+   * The output plugin configuration which sends to this stand-in.
+   */
+  public abstract Map<String, Object> outputConfig(int port);
+
+  /**
+   * Record the delivery of a single metric.
+   */
+  protected void deliver(final double stamp) {
+    delivered.incrementAndGet();
+    latency.record(Stamps.latencyMicros(stamp));
+  }
+}
@@ -0,0 +1,85 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.benchmarks.harness;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How a stand-in downstream misbehaves.
+ */
+public class StandInBehaviour {
+
+  /**
+   * Milliseconds added to every response.
+   */
+  private final long latencyMs;
+
+  /**
+   * Fraction of requests, between {@code 0} and {@code 1}, which fail.
+   */
+  private final double errorRate;
+
+  /**
+   * The downstream stops responding for {@code stallForMs} at the end of every period of {@code
+   * stallEveryMs}. Stalls are disabled if either is {@code 0}.
+   */
+  private final long stallEveryMs;
+  private final long stallForMs;
+
+  private final long origin = System.nanoTime();
+
+  public StandInBehaviour(
+      final long latencyMs, final double errorRate, final long stallEveryMs, final long stallForMs
+  ) {
+    this.latencyMs = latencyMs;
+    this.errorRate = errorRate;
+    this.stallEveryMs = stallEveryMs;
+    this.stallForMs = Math.min(stallForMs, stallEveryMs);
+  }
+
+  public boolean shouldFail() {
+    return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+  }
+
+  /**
+   * Milliseconds to hold on to a request which arrives now, including any ongoing stall.
+   */
+  public long delayMs() {
+    if (stallEveryMs <= 0 || stallForMs <= 0) {
+      return latencyMs;
+    }
+
+    final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin);
+    final long intoPeriod = elapsed % stallEveryMs;
+
+    if (intoPeriod < stallEveryMs - stallForMs) {
+      return latencyMs;
+    }
+
+    return latencyMs + stallEveryMs - intoPeriod;
+  }
+
+  @Override
+  public String toString() {
+    return "latency=" + latencyMs + "ms, errors=" + errorRate + ", stall=" + stallForMs + "ms every "
+           + stallEveryMs + "ms";
+  }
+}
@@ -0,0 +1,77 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.carbon;
+
+import com.spotify.ffwd.benchmarks.Fixtures;
+import com.spotify.ffwd.model.v2.Metric;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures decoding a single framed carbon line into a metric.
+ * <p>
+ * The decoder does not move the reader index of the frame, so the same frames are reused.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CarbonDecoderBenchmark {
+
+  private final CarbonDecoder decoder = new CarbonDecoder(Fixtures.KEY);
+  private final List<Object> out = new ArrayList<>(1);
+
+  private List<ByteBuf> lines;
+  private int index;
+
+  @Setup
+  public void setup() {
+    lines = new ArrayList<>(Fixtures.POOL_SIZE);
+
+    for (final Metric m : Fixtures.metrics(Fixtures.POOL_SIZE, Fixtures.POOL_SIZE, 2, 10_000L)) {
+      final String path = m.getTags().get("what") + m.getTags().get("endpoint").replace('/', '.');
+      final String line = path + " " + m.getValue().getValue() + " " + m.getTimestamp() / 1000;
+      lines.add(Unpooled.copiedBuffer(line, StandardCharsets.UTF_8));
+    }
+  }
+
+  @Benchmark
+  public Object decode() throws Exception {
+    out.clear();
+    decoder.decode(null, lines.get(index++ & (Fixtures.POOL_SIZE - 1)), out);
+    return out.get(0);
+  }
+}
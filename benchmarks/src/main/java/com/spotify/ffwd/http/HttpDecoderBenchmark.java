@@ -0,0 +1,127 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.name.Names;
+import com.spotify.ffwd.Mappers;
+import com.spotify.ffwd.benchmarks.Fixtures;
+import com.spotify.ffwd.model.v2.Batch;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures decoding a whole HTTP batch request, for both the v1 and the v2 batch endpoints.
+ * <p>
+ * The decoder responds on, and closes, the channel of every request, so each invocation runs
+ * through a fresh {@link EmbeddedChannel}. The reported time is for a whole request of
+ * {@code batchSize} points.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpDecoderBenchmark {
+
+  @Param({"100", "1000"})
+  public int batchSize;
+
+  @Param({"4", "12"})
+  public int tagCount;
+
+  @Param({"/v1/batch", "/v2/batch"})
+  public String endpoint;
+
+  private HttpDecoder decoder;
+  private FullHttpRequest request;
+
+  @Setup
+  public void setup() throws Exception {
+    final ObjectMapper mapper = Mappers.setupApplicationJson();
+
+    decoder = new HttpDecoder();
+    Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(ObjectMapper.class)
+            .annotatedWith(Names.named("application/json"))
+            .toInstance(mapper);
+      }
+    }).injectMembers(decoder);
+
+    final Batch batch = Fixtures.batches(1, batchSize, batchSize, tagCount, 10_000L).get(0);
+    final byte[] body;
+
+    if ("/v2/batch".equals(endpoint)) {
+      body = mapper.writeValueAsBytes(batch);
+    } else {
+      final List<com.spotify.ffwd.model.Batch.Point> points = batch
+          .getPoints()
+          .stream()
+          .map(p -> new com.spotify.ffwd.model.Batch.Point(p.getKey(), p.getTags(),
+              p.getResource(), (double) p.getValue().getValue(), p.getTimestamp()))
+          .collect(Collectors.toList());
+
+      body = mapper.writeValueAsBytes(
+          new com.spotify.ffwd.model.Batch(batch.getCommonTags(), batch.getCommonResource(),
+              points));
+    }
+
+    request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, endpoint,
+        Unpooled.wrappedBuffer(body));
+    request.headers().set("Content-Type", "application/json");
+  }
+
+  @Benchmark
+  public Object decode() {
+    final EmbeddedChannel channel = new EmbeddedChannel(decoder);
+
+    // the decoder releases the request once decoded.
+    request.retain();
+    request.content().readerIndex(0);
+    channel.writeInbound(request);
+
+    final Object batch = channel.readInbound();
+    channel.finishAndReleaseAll();
+    return batch;
+  }
+}
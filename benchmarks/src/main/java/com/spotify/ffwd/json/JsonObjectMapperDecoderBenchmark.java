@@ -0,0 +1,110 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.name.Names;
+import com.spotify.ffwd.Mappers;
+import com.spotify.ffwd.benchmarks.Fixtures;
+import com.spotify.ffwd.model.v2.Metric;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures decoding a single JSON frame into a metric, as received by the json input plugin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonObjectMapperDecoderBenchmark {
+
+  @Param({"4", "12"})
+  public int tagCount;
+
+  private final List<Object> out = new ArrayList<>(1);
+
+  private JsonObjectMapperDecoder decoder;
+  private List<ByteBuf> frames;
+  private int index;
+
+  @Setup
+  public void setup() throws Exception {
+    final ObjectMapper mapper = Mappers.setupApplicationJson();
+
+    decoder = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(ObjectMapper.class)
+            .annotatedWith(Names.named("application/json"))
+            .toInstance(mapper);
+      }
+    }).getInstance(JsonObjectMapperDecoder.class);
+
+    frames = new ArrayList<>(Fixtures.POOL_SIZE);
+
+    for (final Metric m : Fixtures.metrics(Fixtures.POOL_SIZE, Fixtures.POOL_SIZE, tagCount,
+        10_000L)) {
+      final ObjectNode frame = mapper.createObjectNode();
+      frame.put("type", "metric");
+      frame.put("key", m.getKey());
+      frame.put("value", (double) m.getValue().getValue());
+      frame.put("time", m.getTimestamp());
+      frame.put("host", "bench-host");
+
+      final ObjectNode attributes = frame.putObject("attributes");
+
+      for (final Map.Entry<String, String> e : m.getTags().entrySet()) {
+        attributes.put(e.getKey(), e.getValue());
+      }
+
+      frames.add(Unpooled.wrappedBuffer(mapper.writeValueAsBytes(frame)));
+    }
+  }
+
+  @Benchmark
+  public Object decode() {
+    final ByteBuf frame = frames.get(index++ & (Fixtures.POOL_SIZE - 1));
+    frame.readerIndex(0);
+    out.clear();
+    decoder.decode(null, frame, out);
+    return out.get(0);
+  }
+}
@@ -0,0 +1,70 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.model.v2;
+
+import com.spotify.ffwd.benchmarks.Fixtures;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the two ways the identity of a {@link Metric} is hashed: {@link Metric#generateHash()}
+ * used by the output write cache, and {@link Metric#hashCode()} used by cardinality tracking and
+ * the high frequency detector.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricBenchmark {
+
+  @Param({"4", "12"})
+  public int tagCount;
+
+  private List<Metric> metrics;
+  private int index;
+
+  @Setup
+  public void setup() {
+    metrics = Fixtures.metrics(Fixtures.POOL_SIZE, Fixtures.POOL_SIZE, tagCount, 10_000L);
+  }
+
+  @Benchmark
+  public String generateHash() {
+    return metrics.get(index++ & (Fixtures.POOL_SIZE - 1)).generateHash();
+  }
+
+  @Benchmark
+  public int seriesHashCode() {
+    return metrics.get(index++ & (Fixtures.POOL_SIZE - 1)).hashCode();
+  }
+}
@@ -0,0 +1,174 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.name.Names;
+import com.spotify.ffwd.benchmarks.BlackholePluginSink;
+import com.spotify.ffwd.benchmarks.Fixtures;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.statistics.BatchingStatistics;
+import com.spotify.ffwd.statistics.HighFrequencyDetectorStatistics;
+import com.spotify.ffwd.statistics.NoopCoreStatistics;
+import com.spotify.ffwd.statistics.OutputPluginStatistics;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.TinyAsync;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the cost per metric of {@link BatchingPluginSink}, from enqueueing a metric into the
+ * current batch to handing the flushed batch over to the delegate sink.
+ * <p>
+ * {@code sendMetric} flushes whenever the batch size limit is reached, which is what happens under
+ * sustained load, so its time per metric includes its share of the flush. {@code flush} isolates
+ * the cost of {@link BatchingPluginSink#doFlush(BatchingPluginSink.Batch)} for a full batch.
+ * {@code sendMetricContended} enqueues from four threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchingPluginSinkBenchmark {
+
+  @Param({"100", "100000"})
+  public int series;
+
+  @Param({"4", "12"})
+  public int tagCount;
+
+  @Param({"1000", "10000"})
+  public int batchSizeLimit;
+
+  private ExecutorService executor;
+  private ScheduledExecutorService scheduler;
+  private BatchingPluginSink sink;
+  private List<Metric> metrics;
+  private int index;
+
+  @Setup
+  public void setup(final Blackhole blackhole) {
+    executor = Executors.newSingleThreadExecutor();
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    final AsyncFramework async = TinyAsync.builder().executor(executor).build();
+
+    sink = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        // no time based flushes, only the batch size limit triggers them.
+        bind(BatchingPluginSink.class)
+            .toInstance(new BatchingPluginSink(0, batchSizeLimit, 0));
+        bind(AsyncFramework.class).toInstance(async);
+        bind(ScheduledExecutorService.class).toInstance(scheduler);
+        bind(Logger.class).toInstance(LoggerFactory.getLogger(BatchingPluginSink.class));
+        bind(BatchablePluginSink.class)
+            .annotatedWith(BatchingDelegate.class)
+            .toInstance(new BlackholePluginSink(async, blackhole));
+        bind(Boolean.class).annotatedWith(Names.named("dropHighFrequencyMetric"))
+            .toInstance(false);
+        bind(Integer.class).annotatedWith(Names.named("minFrequencyMillisAllowed"))
+            .toInstance(1000);
+        bind(Integer.class).annotatedWith(Names.named("minNumberOfTriggers"))
+            .toInstance(5);
+        bind(Long.class).annotatedWith(Names.named("highFrequencyDataRecycleMS"))
+            .toInstance(3_600_000L);
+        bind(BatchingStatistics.class).toInstance(NoopCoreStatistics.noopBatchingStatistics);
+        bind(HighFrequencyDetectorStatistics.class)
+            .toInstance(NoopCoreStatistics.get().newHighFrequency());
+        bind(OutputPluginStatistics.class)
+            .toInstance(NoopCoreStatistics.get().newOutputPlugin("benchmark"));
+      }
+    }).getInstance(BatchingPluginSink.class);
+
+    metrics = Fixtures.metrics(Fixtures.POOL_SIZE, series, tagCount, 10_000L);
+  }
+
+  @TearDown
+  public void teardown() {
+    scheduler.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public void sendMetric() {
+    sink.sendMetric(metrics.get(index++ & (Fixtures.POOL_SIZE - 1)));
+  }
+
+  /**
+   * Enqueue from several threads at once, the way the input threads feed a shared output.
+   */
+  @Benchmark
+  @Threads(4)
+  public void sendMetricContended(final Position position) {
+    sink.sendMetric(metrics.get(position.index++ & (Fixtures.POOL_SIZE - 1)));
+  }
+
+  /**
+   * Flush a batch which has been filled up to, but not over, the size limit.
+   * <p>
+   * The reported time is for the whole batch, divide by {@code batchSizeLimit} for the cost per
+   * metric.
+   */
+  @Benchmark
+  public Object flush(final FullBatch fullBatch) {
+    return sink.doFlush(sink.newBatch());
+  }
+
+  @State(Scope.Thread)
+  public static class Position {
+
+    int index;
+  }
+
+  @State(Scope.Thread)
+  public static class FullBatch {
+
+    @Setup(Level.Invocation)
+    public void fill(final BatchingPluginSinkBenchmark benchmark) {
+      for (int i = 1; i < benchmark.batchSizeLimit; i++) {
+        benchmark.sendMetric();
+      }
+    }
+  }
+}
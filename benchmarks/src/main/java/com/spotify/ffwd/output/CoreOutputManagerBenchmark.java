@@ -0,0 +1,169 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+import com.google.inject.util.Providers;
+import com.spotify.ffwd.benchmarks.BlackholePluginSink;
+import com.spotify.ffwd.benchmarks.Fixtures;
+import com.spotify.ffwd.debug.DebugServer;
+import com.spotify.ffwd.debug.NoopDebugServer;
+import com.spotify.ffwd.filter.Filter;
+import com.spotify.ffwd.filter.TrueFilter;
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.statistics.NoopCoreStatistics;
+import com.spotify.ffwd.statistics.OutputManagerStatistics;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.TinyAsync;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link CoreOutputManager}, the single point every received metric passes through on
+ * its way to the output plugins: filtering, tag enrichment, cardinality tracking and limits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoreOutputManagerBenchmark {
+
+  private static final int BATCH_SIZE = 100;
+
+  @Param({"100", "100000"})
+  public int series;
+
+  @Param({"4", "12"})
+  public int tagCount;
+
+  /**
+   * Cardinality limit, {@code 0} disables it.
+   */
+  @Param({"0", "1000000"})
+  public long cardinalityLimit;
+
+  private ExecutorService executor;
+  private OutputManager outputManager;
+  private List<Metric> metrics;
+  private List<Batch> batches;
+  private int index;
+
+  @Setup
+  public void setup(final Blackhole blackhole) {
+    executor = Executors.newSingleThreadExecutor();
+    final AsyncFramework async = TinyAsync.builder().executor(executor).build();
+
+    final Map<String, String> tags = new HashMap<>(Fixtures.COMMON_TAGS);
+    final Map<String, String> tagsToResource = ImmutableMap.of("pod", "pod");
+    final Map<String, String> resource = new HashMap<>(Fixtures.COMMON_RESOURCE);
+    final PluginSink sink = new BlackholePluginSink(async, blackhole);
+
+    outputManager = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(new TypeLiteral<List<PluginSink>>() {
+        }).toInstance(ImmutableList.of(sink));
+        bind(AsyncFramework.class).toInstance(async);
+        bind(new TypeLiteral<Map<String, String>>() {
+        }).annotatedWith(Names.named("tags")).toInstance(tags);
+        bind(new TypeLiteral<Map<String, String>>() {
+        }).annotatedWith(Names.named("tagsToResource")).toInstance(tagsToResource);
+        bind(new TypeLiteral<Map<String, String>>() {
+        }).annotatedWith(Names.named("resource")).toInstance(resource);
+        bind(new TypeLiteral<Set<String>>() {
+        }).annotatedWith(Names.named("riemannTags")).toInstance(ImmutableSet.of());
+        bind(new TypeLiteral<Set<String>>() {
+        }).annotatedWith(Names.named("skipTagsForKeys")).toInstance(ImmutableSet.of());
+        bind(Boolean.class).annotatedWith(Names.named("automaticHostTag")).toInstance(true);
+        bind(String.class).annotatedWith(Names.named("host")).toInstance("bench-host");
+        bind(long.class).annotatedWith(Names.named("ttl")).toInstance(0L);
+        bind(Integer.class).annotatedWith(Names.named("rateLimit"))
+            .toProvider(Providers.<Integer>of(null));
+        bind(Long.class).annotatedWith(Names.named("cardinalityLimit"))
+            .toProvider(Providers.<Long>of(cardinalityLimit > 0 ? cardinalityLimit : null));
+        bind(Long.class).annotatedWith(Names.named("hyperLogLogPlusSwapPeriodMS"))
+            .toProvider(Providers.<Long>of(null));
+        bind(Long.class).annotatedWith(Names.named("cardinalityKeyLimit"))
+            .toProvider(Providers.<Long>of(null));
+        bind(new TypeLiteral<Map<String, Long>>() {
+        }).annotatedWith(Names.named("cardinalityTagLimits")).toInstance(ImmutableMap.of());
+        bind(String.class).annotatedWith(Names.named("dynamicTagsFile")).toInstance("");
+        bind(DebugServer.class).to(NoopDebugServer.class);
+        bind(OutputManagerStatistics.class)
+            .toInstance(NoopCoreStatistics.get().newOutputManager());
+        bind(Filter.class).toInstance(new TrueFilter());
+        bind(OutputManager.class).to(CoreOutputManager.class);
+      }
+    }).getInstance(OutputManager.class);
+
+    metrics = Fixtures.metrics(Fixtures.POOL_SIZE, series, tagCount, 10_000L);
+    batches = Fixtures.batches(Fixtures.POOL_SIZE / BATCH_SIZE, BATCH_SIZE, series, tagCount,
+        10_000L);
+  }
+
+  @TearDown
+  public void teardown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public void sendMetric() {
+    outputManager.sendMetric(metrics.get(index++ & (Fixtures.POOL_SIZE - 1)));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void sendBatch() {
+    if (index >= batches.size()) {
+      index = 0;
+    }
+
+    outputManager.sendBatch(batches.get(index++));
+  }
+}
@@ -0,0 +1,101 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.protobuf;
+
+import com.spotify.ffwd.benchmarks.Fixtures;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.protocol1.Protocol1;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures decoding a single version 1 protobuf frame into a metric, as received by the protobuf
+ * input plugin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtobufDecoderBenchmark {
+
+  private static final int HEADER_SIZE = 8;
+
+  @Param({"4", "12"})
+  public int tagCount;
+
+  private final ProtobufDecoder decoder = new ProtobufDecoder();
+  private final List<Object> out = new ArrayList<>(1);
+
+  private List<ByteBuf> frames;
+  private int index;
+
+  @Setup
+  public void setup() {
+    frames = new ArrayList<>(Fixtures.POOL_SIZE);
+
+    for (final Metric m : Fixtures.metrics(Fixtures.POOL_SIZE, Fixtures.POOL_SIZE, tagCount,
+        10_000L)) {
+      final Protocol1.Metric.Builder metric = Protocol1.Metric.newBuilder()
+          .setKey(m.getKey())
+          .setHost("bench-host")
+          .setTime(m.getTimestamp())
+          .setValue(Protocol1.Value.newBuilder()
+              .setDoubleValue((double) m.getValue().getValue()));
+
+      for (final Map.Entry<String, String> e : m.getTags().entrySet()) {
+        metric.addAttributes(
+            Protocol1.Attribute.newBuilder().setKey(e.getKey()).setValue(e.getValue()));
+      }
+
+      final byte[] body = Protocol1.Message.newBuilder().setMetric(metric).build().toByteArray();
+      final ByteBuf frame = Unpooled.buffer(HEADER_SIZE + body.length);
+      frame.writeInt(1);
+      frame.writeInt(HEADER_SIZE + body.length);
+      frame.writeBytes(body);
+      frames.add(frame);
+    }
+  }
+
+  @Benchmark
+  public Object decode() throws Exception {
+    final ByteBuf frame = frames.get(index++ & (Fixtures.POOL_SIZE - 1));
+    frame.readerIndex(0);
+    out.clear();
+    decoder.decode(null, frame, out);
+    return out.get(0);
+  }
+}
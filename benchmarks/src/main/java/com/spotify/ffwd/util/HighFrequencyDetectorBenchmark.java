@@ -0,0 +1,104 @@
+/*-
+ * -\-\-
+ * FastForward Benchmarks
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+package com.spotify.ffwd.util;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.name.Names;
+import com.spotify.ffwd.benchmarks.Fixtures;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.statistics.HighFrequencyDetectorStatistics;
+import com.spotify.ffwd.statistics.NoopCoreStatistics;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures {@link HighFrequencyDetector#detect(List)}, which runs over every batch flushed by a
+ * batching output plugin.
+ * <p>
+ * The reported time is for a whole batch of {@code batchSize} metrics.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HighFrequencyDetectorBenchmark {
+
+  @Param({"100", "10000"})
+  public int series;
+
+  @Param({"4", "12"})
+  public int tagCount;
+
+  @Param({"1000", "10000"})
+  public int batchSize;
+
+  /**
+   * Milliseconds between two points of the same series, {@code 10} is well below the default
+   * {@code minFrequencyMillisAllowed} and causes series to be marked and eventually dropped.
+   */
+  @Param({"10", "10000"})
+  public long intervalMs;
+
+  private HighFrequencyDetector detector;
+  private List<Metric> metrics;
+
+  @Setup
+  public void setup() {
+    detector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Logger.class).toInstance(LoggerFactory.getLogger(HighFrequencyDetector.class));
+        bind(Boolean.class).annotatedWith(Names.named("dropHighFrequencyMetric"))
+            .toInstance(true);
+        bind(Integer.class).annotatedWith(Names.named("minFrequencyMillisAllowed"))
+            .toInstance(1000);
+        bind(Integer.class).annotatedWith(Names.named("minNumberOfTriggers"))
+            .toInstance(5);
+        bind(Long.class).annotatedWith(Names.named("highFrequencyDataRecycleMS"))
+            .toInstance(3_600_000L);
+        bind(HighFrequencyDetectorStatistics.class)
+            .toInstance(NoopCoreStatistics.get().newHighFrequency());
+      }
+    }).getInstance(HighFrequencyDetector.class);
+
+    metrics = Fixtures.metrics(batchSize, series, tagCount, intervalMs);
+  }
+
+  @Benchmark
+  public List<Metric> detect() {
+    return detector.detect(metrics);
+  }
+}
@@ -38,6 +38,8 @@ class AgentConfig(val config: Config) {
     fun hasDebug(): Boolean = config.contains(Debug.host) or config.contains(Debug.port)
 
     val debugLocalAddress = config[Debug.localAddress]
+    val capturePath = config[Capture.path]
+    val captureQueueSize = config[Capture.queueSize]
     val host = config[AgentConfig.host]
     val tags = config[AgentConfig.tags]
     val tagsToResource = config[AgentConfig.tagsToResource]
@@ -51,6 +53,7 @@ class AgentConfig(val config: Config) {
     val schedulerThreads = config[AgentConfig.schedulerThreads]
     val bossThreads = config[AgentConfig.bossThreads]
     val workerThreads = config[AgentConfig.workerThreads]
+    val nativeTransport = config[AgentConfig.nativeTransport]
     val ttl = config[AgentConfig.ttl]
 
     companion object : ConfigSpec("") {
@@ -60,6 +63,12 @@ class AgentConfig(val config: Config) {
             val localAddress by lazy { InetSocketAddress(it[host], it[port]) }
         }
 
+        // Raw input traffic is captured to this file when set, see CaptureReplay.
+        object Capture : ConfigSpec() {
+            val path by optional<String?>(null)
+            val queueSize by optional(65536)
+        }
+
         val host by lazy { buildDefaultHost() }
         val tags by optional(emptyMap<String, String>())
         val tagsToResource by optional(emptyMap<String, String>())
@@ -74,6 +83,9 @@ class AgentConfig(val config: Config) {
         val schedulerThreads by optional(4)
         val bossThreads by optional(2)
         val workerThreads by optional(4)
+        // Use the native epoll transport when available, required for SO_REUSEPORT. Off by
+        // default, so that existing deployments keep using NIO until they opt in.
+        val nativeTransport by optional(false)
         val ttl by optional(0)
 
         @JvmStatic
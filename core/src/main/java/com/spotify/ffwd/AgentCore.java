@@ -32,8 +32,10 @@ import com.google.inject.Module;
 import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
 import com.google.inject.name.Named;
 import com.google.inject.name.Names;
+import com.spotify.ffwd.capture.TrafficCapture;
 import com.spotify.ffwd.debug.DebugServer;
 import com.spotify.ffwd.debug.NettyDebugServer;
 import com.spotify.ffwd.debug.NoopDebugServer;
@@ -52,10 +54,13 @@ import com.spotify.ffwd.module.FastForwardModule;
 import com.spotify.ffwd.module.PluginContext;
 import com.spotify.ffwd.module.PluginContextImpl;
 import com.spotify.ffwd.output.OutputManager;
+import com.spotify.ffwd.output.SpoolFactory;
 import com.spotify.ffwd.protocol.ProtocolClients;
 import com.spotify.ffwd.protocol.ProtocolClientsImpl;
 import com.spotify.ffwd.protocol.ProtocolServers;
 import com.spotify.ffwd.protocol.ProtocolServersImpl;
+import com.spotify.ffwd.protocol.Transport;
+import com.spotify.ffwd.qlog.QLogSpoolFactory;
 import com.spotify.ffwd.serializer.Serializer;
 import com.spotify.ffwd.serializer.ToStringSerializer;
 import com.spotify.ffwd.statistics.CoreStatistics;
@@ -67,7 +72,6 @@ import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.DirectAsyncCaller;
 import eu.toolchain.async.TinyAsync;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.Timer;
 import java.io.IOException;
@@ -93,6 +97,10 @@ public class AgentCore {
   private static final Path DEFAULT_CONFIG_PATH = Paths.get("ffwd.yaml");
   private static final Logger log = LoggerFactory.getLogger(AgentCore.class);
 
+  private static final Key<Optional<TrafficCapture>> CAPTURE =
+      Key.get(new TypeLiteral<Optional<TrafficCapture>>() {
+      }, Names.named("capture"));
+
   private final List<Class<? extends FastForwardModule>> modules;
   private final Optional<Path> configPath;
   private final CoreStatistics statistics;
@@ -125,6 +133,23 @@ public class AgentCore {
     log.info("Stopped, Bye Bye!");
   }
 
+  /**
+   * Start all components without waiting for the agent to be stopped.
+   * <p>
+   * This is used when the agent is embedded, e.g. by the load test harness. Use {@link #stop()}
+   * to stop it again.
+   */
+  public void start() throws Exception {
+    start(primaryInjector);
+  }
+
+  /**
+   * Stop all components of an agent started with {@link #start()}.
+   */
+  public void stop() throws Exception {
+    stop(primaryInjector);
+  }
+
   private Optional<String> lookupSearchDomain(final AgentConfig config) {
     log.info("Looking up domain using {}", config.getSearchDomain());
     final Optional<String> domain = config.getSearchDomain().discover();
@@ -166,6 +191,13 @@ public class AgentCore {
     final AsyncFramework async = primary.getInstance(AsyncFramework.class);
     final ArrayList<AsyncFuture<Void>> startup = Lists.newArrayList();
 
+    final Optional<TrafficCapture> capture = primary.getInstance(CAPTURE);
+
+    // must be running before the inputs are bound.
+    if (capture.isPresent()) {
+      capture.get().start();
+    }
+
     log.info("Waiting for all components to start...");
 
     startup.add(output.start());
@@ -200,6 +232,12 @@ public class AgentCore {
       log.error("All components did not stop in a timely fashion", e);
       all.cancel();
     }
+
+    final Optional<TrafficCapture> capture = primary.getInstance(CAPTURE);
+
+    if (capture.isPresent()) {
+      capture.get().stop();
+    }
   }
 
   /**
@@ -320,22 +358,28 @@ public class AgentCore {
         return TinyAsync.builder().executor(executor).caller(caller).build();
       }
 
+      @Singleton
+      @Provides
+      public Transport transport() {
+        return Transport.select(config.getNativeTransport());
+      }
+
       @Singleton
       @Provides
       @Named("boss")
-      public EventLoopGroup bosses() {
+      public EventLoopGroup bosses(final Transport transport) {
         final ThreadFactory factory =
             new ThreadFactoryBuilder().setNameFormat("ffwd-boss-%d").build();
-        return new NioEventLoopGroup(config.getBossThreads(), factory);
+        return transport.eventLoopGroup(config.getBossThreads(), factory);
       }
 
       @Singleton
       @Provides
       @Named("worker")
-      public EventLoopGroup workers() {
+      public EventLoopGroup workers(final Transport transport) {
         final ThreadFactory factory =
             new ThreadFactoryBuilder().setNameFormat("ffwd-worker-%d").build();
-        return new NioEventLoopGroup(config.getWorkerThreads(), factory);
+        return transport.eventLoopGroup(config.getWorkerThreads(), factory);
       }
 
       @Singleton
@@ -352,6 +396,14 @@ public class AgentCore {
         return searchDomain;
       }
 
+      @Singleton
+      @Provides
+      @Named("capture")
+      public Optional<TrafficCapture> capture() {
+        return Optional.ofNullable(config.getCapturePath())
+            .map(path -> new TrafficCapture(Paths.get(path), config.getCaptureQueueSize()));
+      }
+
       @Singleton
       @Provides
       public AgentConfig config() {
@@ -366,6 +418,7 @@ public class AgentCore {
         bind(Timer.class).to(HashedWheelTimer.class).in(Scopes.SINGLETON);
         bind(ProtocolServers.class).to(ProtocolServersImpl.class).in(Scopes.SINGLETON);
         bind(ProtocolClients.class).to(ProtocolClientsImpl.class).in(Scopes.SINGLETON);
+        bind(SpoolFactory.class).to(QLogSpoolFactory.class).in(Scopes.SINGLETON);
       }
     });
 
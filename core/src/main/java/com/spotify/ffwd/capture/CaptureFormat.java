@@ -0,0 +1,172 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.capture;
+
+import com.spotify.ffwd.protocol.ProtocolType;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The binary format of capture files.
+ * <p>
+ * A capture starts with {@link #MAGIC}, followed by records until the end of the file. Every
+ * record is its kind as a single byte, the nanoseconds since the previous record and the id of
+ * its input, followed by a kind specific body. All integers are unsigned varints.
+ * <ul>
+ * <li>{@code INPUT}: protocol byte, host, port and label. Strings are length prefixed UTF-8.</li>
+ * <li>{@code OPEN} and {@code CLOSE}: the connection id.</li>
+ * <li>{@code DATA}: the connection id and the length prefixed payload.</li>
+ * </ul>
+ */
+final class CaptureFormat {
+
+  static final byte[] MAGIC = {'F', 'F', 'W', 'D', 'C', 'A', 'P', 1};
+
+  private CaptureFormat() {
+  }
+
+  static void writeHeader(final DataOutput out) throws IOException {
+    out.write(MAGIC);
+  }
+
+  static void readHeader(final DataInput in) throws IOException {
+    final byte[] magic = new byte[MAGIC.length];
+    in.readFully(magic);
+
+    if (!Arrays.equals(magic, MAGIC)) {
+      throw new IOException("Not a capture file, or unsupported version");
+    }
+  }
+
+  static void write(final DataOutput out, final CaptureRecord record, final long deltaNanos)
+      throws IOException {
+    out.writeByte(record.getKind().ordinal());
+    writeVarLong(out, deltaNanos);
+    writeVarLong(out, record.getInput());
+
+    switch (record.getKind()) {
+      case INPUT:
+        final CaptureRecord.Input input = record.getDeclared();
+        out.writeByte(input.getProtocol().ordinal());
+        writeString(out, input.getHost());
+        writeVarLong(out, input.getPort());
+        writeString(out, input.getLabel());
+        break;
+      case OPEN:
+      case CLOSE:
+        writeVarLong(out, record.getConnection());
+        break;
+      case DATA:
+        writeVarLong(out, record.getConnection());
+        writeVarLong(out, record.getData().length);
+        out.write(record.getData());
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported record: " + record.getKind());
+    }
+  }
+
+  /**
+   * Read the next record.
+   *
+   * @param offsetNanos Offset of the previous record.
+   * @return The next record, or {@code null} at the end of the capture.
+   */
+  static CaptureRecord read(final DataInput in, final long offsetNanos) throws IOException {
+    final int kindByte;
+
+    try {
+      kindByte = in.readUnsignedByte();
+    } catch (final EOFException e) {
+      return null;
+    }
+
+    final CaptureRecord.Kind[] kinds = CaptureRecord.Kind.values();
+
+    if (kindByte >= kinds.length) {
+      throw new IOException("Corrupt capture, unknown record kind: " + kindByte);
+    }
+
+    final CaptureRecord.Kind kind = kinds[kindByte];
+    final long offset = offsetNanos + readVarLong(in);
+    final int input = (int) readVarLong(in);
+
+    switch (kind) {
+      case INPUT:
+        final ProtocolType protocol = ProtocolType.values()[in.readUnsignedByte()];
+        final String host = readString(in);
+        final int port = (int) readVarLong(in);
+        final String label = readString(in);
+        return new CaptureRecord(kind, offset, input, 0, null,
+            new CaptureRecord.Input(protocol, host, port, label));
+      case OPEN:
+      case CLOSE:
+        return new CaptureRecord(kind, offset, input, readVarLong(in), null, null);
+      case DATA:
+        final long connection = readVarLong(in);
+        final byte[] data = new byte[(int) readVarLong(in)];
+        in.readFully(data);
+        return new CaptureRecord(kind, offset, input, connection, data, null);
+      default:
+        throw new IOException("Unsupported record: " + kind);
+    }
+  }
+
+  static void writeVarLong(final DataOutput out, long value) throws IOException {
+    while ((value & ~0x7fL) != 0) {
+      out.writeByte((int) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+
+    out.writeByte((int) value);
+  }
+
+  static long readVarLong(final DataInput in) throws IOException {
+    long value = 0;
+
+    for (int shift = 0; shift < 64; shift += 7) {
+      final int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7f) << shift;
+
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+
+    throw new IOException("Corrupt capture, varint too long");
+  }
+
+  private static void writeString(final DataOutput out, final String value) throws IOException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarLong(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(final DataInput in) throws IOException {
+    final byte[] bytes = new byte[(int) readVarLong(in)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
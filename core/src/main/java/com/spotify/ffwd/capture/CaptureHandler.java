@@ -0,0 +1,92 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.capture;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.AttributeKey;
+
+/**
+ * Records everything read from a channel before passing it on untouched.
+ */
+@Sharable
+class CaptureHandler extends ChannelInboundHandlerAdapter {
+
+  private static final AttributeKey<Long> CONNECTION =
+      AttributeKey.valueOf(CaptureHandler.class, "connection");
+
+  private final TrafficCapture capture;
+  private final int input;
+
+  CaptureHandler(final TrafficCapture capture, final int input) {
+    this.capture = capture;
+    this.input = input;
+  }
+
+  @Override
+  public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+    // only accepted TCP connections carry an id, datagram channels are bound and not connected.
+    if (!(ctx.channel() instanceof DatagramChannel)) {
+      final long connection = capture.nextConnection();
+      ctx.channel().attr(CONNECTION).set(connection);
+      capture.record(CaptureRecord.Kind.OPEN, input, connection, null);
+    }
+
+    super.channelActive(ctx);
+  }
+
+  @Override
+  public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+    final Long connection = ctx.channel().attr(CONNECTION).get();
+
+    if (connection != null) {
+      capture.record(CaptureRecord.Kind.CLOSE, input, connection, null);
+    }
+
+    super.channelInactive(ctx);
+  }
+
+  @Override
+  public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+    final ByteBuf content;
+
+    if (msg instanceof DatagramPacket) {
+      content = ((DatagramPacket) msg).content();
+    } else if (msg instanceof ByteBuf) {
+      content = (ByteBuf) msg;
+    } else {
+      content = null;
+    }
+
+    if (content != null) {
+      final Long connection = ctx.channel().attr(CONNECTION).get();
+      capture.record(CaptureRecord.Kind.DATA, input, connection == null ? 0 : connection,
+          ByteBufUtil.getBytes(content));
+    }
+
+    super.channelRead(ctx, msg);
+  }
+}
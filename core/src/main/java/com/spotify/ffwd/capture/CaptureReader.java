@@ -0,0 +1,64 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.capture;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads a capture written by {@link TrafficCapture}, one record at a time.
+ */
+public class CaptureReader implements Closeable {
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private final DataInputStream in;
+  private long offsetNanos = 0;
+
+  public CaptureReader(final Path path) throws IOException {
+    this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+    CaptureFormat.readHeader(in);
+  }
+
+  /**
+   * Read the next record.
+   *
+   * @return The next record, or {@code null} at the end of the capture.
+   */
+  public CaptureRecord next() throws IOException {
+    final CaptureRecord record = CaptureFormat.read(in, offsetNanos);
+
+    if (record != null) {
+      offsetNanos = record.getOffsetNanos();
+    }
+
+    return record;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
@@ -0,0 +1,96 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.capture;
+
+import com.spotify.ffwd.protocol.ProtocolType;
+import javax.annotation.Nullable;
+import lombok.Data;
+
+/**
+ * A single record of a traffic capture.
+ */
+@Data
+public class CaptureRecord {
+
+  public enum Kind {
+    /**
+     * Declares an input, all following records refer to inputs by the id declared here.
+     */
+    INPUT,
+    /**
+     * A TCP connection was accepted.
+     */
+    OPEN,
+    /**
+     * Raw bytes were received, a datagram for UDP or whatever a single read returned for TCP.
+     */
+    DATA,
+    /**
+     * A TCP connection was closed.
+     */
+    CLOSE
+  }
+
+  private final Kind kind;
+
+  /**
+   * Nanoseconds since the capture was started.
+   */
+  private final long offsetNanos;
+
+  private final int input;
+
+  /**
+   * Id of the TCP connection, {@code 0} for UDP.
+   */
+  private final long connection;
+
+  /**
+   * Payload of {@link Kind#DATA} records.
+   */
+  @Nullable
+  private final byte[] data;
+
+  /**
+   * The declared input of {@link Kind#INPUT} records.
+   */
+  @Nullable
+  private final Input declared;
+
+  @Data
+  public static class Input {
+
+    private final ProtocolType protocol;
+    private final String host;
+    private final int port;
+
+    /**
+     * Where the input was configured, for humans.
+     */
+    private final String label;
+
+    @Override
+    public String toString() {
+      return String.format("%s://%s:%d (%s)", protocol.toString().toLowerCase(), host, port,
+          label);
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.capture;
+
+import com.spotify.ffwd.protocol.ProtocolType;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Re-injects a capture written by {@link TrafficCapture} into a running agent.
+ * <p>
+ * Datagrams are sent as they were received and every captured TCP connection is replayed over
+ * a connection of its own, so that framing and the mix of inputs are preserved. Anything the
+ * agent responds with, e.g. HTTP responses, is read and discarded.
+ * <p>
+ * Usage: {@code CaptureReplay [--speed=<factor>|max] [--host=<host>] [--port-offset=<n>] <file>}
+ */
+public class CaptureReplay {
+
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final Path path;
+  private final double speed;
+  private final String host;
+  private final int portOffset;
+
+  private final Map<Integer, CaptureRecord.Input> inputs = new HashMap<>();
+  private final Map<Integer, DatagramChannel> datagrams = new HashMap<>();
+  private final Map<Long, SocketChannel> connections = new HashMap<>();
+  private final ByteBuffer discard = ByteBuffer.allocate(64 * 1024);
+
+  private long records = 0;
+  private long bytes = 0;
+  private long failed = 0;
+
+  /**
+   * @param speed Replay speed relative to the capture, {@code 0} to replay as fast as possible.
+   * @param host Host to send to, {@code null} to use the host of the captured input.
+   * @param portOffset Offset added to the port of every captured input.
+   */
+  public CaptureReplay(final Path path, final double speed, final String host,
+      final int portOffset) {
+    this.path = path;
+    this.speed = speed;
+    this.host = host;
+    this.portOffset = portOffset;
+  }
+
+  public static void main(final String[] argv) throws Exception {
+    double speed = 1.0;
+    String host = null;
+    int portOffset = 0;
+    Path path = null;
+
+    for (final String arg : argv) {
+      if (arg.startsWith("--speed=")) {
+        final String value = arg.substring("--speed=".length());
+        speed = "max".equals(value) ? 0 : Double.parseDouble(value);
+      } else if (arg.startsWith("--host=")) {
+        host = arg.substring("--host=".length());
+      } else if (arg.startsWith("--port-offset=")) {
+        portOffset = Integer.parseInt(arg.substring("--port-offset=".length()));
+      } else if (!arg.startsWith("--") && path == null) {
+        path = Paths.get(arg);
+      } else {
+        throw new IllegalArgumentException("Unexpected argument: " + arg);
+      }
+    }
+
+    if (path == null) {
+      System.err.println(
+          "Usage: CaptureReplay [--speed=<factor>|max] [--host=<host>] [--port-offset=<n>] <file>");
+      System.exit(1);
+    }
+
+    new CaptureReplay(path, speed, host, portOffset).run();
+  }
+
+  public void run() throws IOException {
+    final long started = System.nanoTime();
+
+    try (final CaptureReader reader = new CaptureReader(path)) {
+      CaptureRecord record;
+
+      while ((record = reader.next()) != null) {
+        pace(started, record.getOffsetNanos());
+        replay(record);
+        records++;
+      }
+    } finally {
+      for (final SocketChannel channel : connections.values()) {
+        channel.close();
+      }
+
+      for (final DatagramChannel channel : datagrams.values()) {
+        channel.close();
+      }
+    }
+
+    final double seconds = (System.nanoTime() - started) / 1e9;
+    System.out.println(String.format("Replayed %d records (%d bytes) in %.2fs, %d failed",
+        records, bytes, seconds, failed));
+  }
+
+  private void pace(final long started, final long offsetNanos) {
+    if (speed <= 0) {
+      return;
+    }
+
+    final long due = started + (long) (offsetNanos / speed);
+
+    while (System.nanoTime() < due) {
+      LockSupport.parkNanos(Math.min(PARK_NANOS, due - System.nanoTime()));
+    }
+  }
+
+  private void replay(final CaptureRecord record) throws IOException {
+    switch (record.getKind()) {
+      case INPUT:
+        inputs.put(record.getInput(), record.getDeclared());
+        System.out.println("Input #" + record.getInput() + ": " + record.getDeclared()
+                           + " -> " + target(record.getDeclared()));
+        break;
+      case OPEN:
+        try {
+          final SocketChannel channel = SocketChannel.open(target(inputs.get(record.getInput())));
+          channel.configureBlocking(false);
+          connections.put(record.getConnection(), channel);
+        } catch (final IOException e) {
+          failed++;
+        }
+        break;
+      case CLOSE:
+        final SocketChannel closed = connections.remove(record.getConnection());
+
+        if (closed != null) {
+          closed.close();
+        }
+        break;
+      case DATA:
+        bytes += record.getData().length;
+        send(record);
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void send(final CaptureRecord record) throws IOException {
+    final CaptureRecord.Input input = inputs.get(record.getInput());
+    final ByteBuffer data = ByteBuffer.wrap(record.getData());
+
+    if (input.getProtocol() == ProtocolType.UDP) {
+      DatagramChannel channel = datagrams.get(record.getInput());
+
+      if (channel == null) {
+        channel = DatagramChannel.open();
+        datagrams.put(record.getInput(), channel);
+      }
+
+      channel.send(data, target(input));
+      return;
+    }
+
+    final SocketChannel channel = connections.get(record.getConnection());
+
+    if (channel == null) {
+      // the connection could not be opened, or was accepted before the capture started.
+      failed++;
+      return;
+    }
+
+    try {
+      while (data.hasRemaining()) {
+        if (channel.write(data) == 0) {
+          drain(channel);
+          LockSupport.parkNanos(PARK_NANOS);
+        }
+      }
+
+      drain(channel);
+    } catch (final IOException e) {
+      failed++;
+      connections.remove(record.getConnection());
+      channel.close();
+    }
+  }
+
+  /**
+   * Discard anything the agent has responded with, so that it never blocks writing to us.
+   */
+  private void drain(final SocketChannel channel) throws IOException {
+    do {
+      discard.clear();
+    } while (channel.read(discard) > 0);
+  }
+
+  private InetSocketAddress target(final CaptureRecord.Input input) {
+    String targetHost = host != null ? host : input.getHost();
+
+    if ("0.0.0.0".equals(targetHost) || "::".equals(targetHost)) {
+      targetHost = "127.0.0.1";
+    }
+
+    return new InetSocketAddress(targetHost, input.getPort() + portOffset);
+  }
+}
@@ -0,0 +1,153 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.capture;
+
+import com.spotify.ffwd.protocol.ProtocolType;
+import io.netty.channel.ChannelHandler;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Captures raw traffic received by the input plugins to a file, see {@link CaptureFormat}.
+ * <p>
+ * Records are handed over to a dedicated writer thread through a bounded queue, so that a slow
+ * disk never blocks the event loops. Records which do not fit in the queue are dropped and
+ * counted, a capture with drops will not replay TCP streams faithfully.
+ */
+public class TrafficCapture {
+
+  private static final Logger log = LoggerFactory.getLogger(TrafficCapture.class);
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+  private static final int DRAIN_SIZE = 1024;
+
+  private final Path path;
+  private final BlockingQueue<CaptureRecord> queue;
+  private final long started = System.nanoTime();
+
+  private final AtomicInteger inputs = new AtomicInteger();
+  private final AtomicLong connections = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+
+  private final Thread writer;
+  private volatile boolean stopped = false;
+
+  public TrafficCapture(final Path path, final int queueSize) {
+    this.path = path;
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    this.writer = new Thread(this::writeAll, "ffwd-capture");
+  }
+
+  public void start() throws IOException {
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+
+    log.info("Capturing input traffic to {}", path);
+    writer.start();
+  }
+
+  public void stop() throws InterruptedException {
+    stopped = true;
+    writer.join();
+
+    if (dropped.get() > 0) {
+      log.warn("Capture dropped {} record(s) because the writer could not keep up",
+          dropped.get());
+    }
+  }
+
+  /**
+   * Declare an input and build the handler that captures its traffic. The handler must be first
+   * in the pipeline to see the raw bytes.
+   */
+  public ChannelHandler handler(
+      final ProtocolType protocol, final String host, final int port, final String label
+  ) throws InterruptedException {
+    final int input = inputs.incrementAndGet();
+    queue.put(new CaptureRecord(CaptureRecord.Kind.INPUT, offset(), input, 0, null,
+        new CaptureRecord.Input(protocol, host, port, label)));
+    return new CaptureHandler(this, input);
+  }
+
+  long nextConnection() {
+    return connections.incrementAndGet();
+  }
+
+  void record(
+      final CaptureRecord.Kind kind, final int input, final long connection, final byte[] data
+  ) {
+    if (!queue.offer(new CaptureRecord(kind, offset(), input, connection, data, null))) {
+      dropped.incrementAndGet();
+    }
+  }
+
+  private long offset() {
+    return System.nanoTime() - started;
+  }
+
+  private void writeAll() {
+    final List<CaptureRecord> batch = new ArrayList<>(DRAIN_SIZE);
+    long last = 0;
+
+    try (final DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE))) {
+      CaptureFormat.writeHeader(out);
+
+      while (!stopped || !queue.isEmpty()) {
+        final CaptureRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+
+        if (first == null) {
+          out.flush();
+          continue;
+        }
+
+        batch.add(first);
+        queue.drainTo(batch, DRAIN_SIZE - 1);
+
+        for (final CaptureRecord record : batch) {
+          // records from different event loops might be enqueued slightly out of order.
+          final long offset = Math.max(last, record.getOffsetNanos());
+          CaptureFormat.write(out, record, offset - last);
+          last = offset;
+        }
+
+        batch.clear();
+      }
+    } catch (final IOException e) {
+      log.error("Failed to write capture to {}, capture stopped", path, e);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
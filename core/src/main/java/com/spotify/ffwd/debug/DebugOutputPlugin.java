@@ -28,6 +28,7 @@ import com.google.inject.Scopes;
 import com.google.inject.name.Names;
 import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.module.Batching;
+import com.spotify.ffwd.module.Queueing;
 import com.spotify.ffwd.output.OutputPlugin;
 import com.spotify.ffwd.output.OutputPluginModule;
 import com.spotify.ffwd.output.PluginSink;
@@ -43,9 +44,10 @@ public class DebugOutputPlugin extends OutputPlugin {
   public DebugOutputPlugin(
       @JsonProperty("flushInterval") Optional<Long> flushInterval,
       @JsonProperty("batching") Optional<Batching> batching,
+      @JsonProperty("queue") Optional<Queueing> queue,
       @JsonProperty("filter") Optional<Filter> filter
   ) {
-    super(filter, Batching.from(flushInterval.orElse(DEFAULT_FLUSH_INTERVAL), batching));
+    super(filter, Batching.from(flushInterval.orElse(DEFAULT_FLUSH_INTERVAL), batching), queue);
   }
 
   @Override
@@ -26,6 +26,7 @@ import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.protocol.Transport;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.ResolvableFuture;
@@ -39,7 +40,6 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.ChannelGroupFutureListener;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
@@ -73,6 +73,9 @@ public class NettyDebugServer implements DebugServer {
   @Named("application/json")
   private ObjectMapper mapper;
 
+  @Inject
+  private Transport transport;
+
   private final ChannelGroup connected = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
 
   public NettyDebugServer(InetSocketAddress localAddress) {
@@ -117,7 +120,7 @@ public class NettyDebugServer implements DebugServer {
 
     final ServerBootstrap s = new ServerBootstrap();
 
-    s.channel(NioServerSocketChannel.class);
+    s.channel(transport.serverChannel());
     s.group(boss, worker);
 
     s.childHandler(new ChannelInitializer<Channel>() {
@@ -0,0 +1,65 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.generated;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Optional;
+import lombok.Data;
+
+/**
+ * A bursty traffic profile: for {@code duration} milliseconds at the start of every {@code
+ * period}, the rate is multiplied by {@code factor}.
+ */
+@Data
+public class Burst {
+
+  public static final double DEFAULT_FACTOR = 10.0;
+  public static final long DEFAULT_PERIOD = 60000L;
+  public static final long DEFAULT_DURATION = 5000L;
+
+  private final double factor;
+  private final long period;
+  private final long duration;
+
+  @JsonCreator
+  public Burst(
+      @JsonProperty("factor") Optional<Double> factor,
+      @JsonProperty("period") Optional<Long> period,
+      @JsonProperty("duration") Optional<Long> duration
+  ) {
+    this.factor = factor.orElse(DEFAULT_FACTOR);
+    this.period = period.orElse(DEFAULT_PERIOD);
+    this.duration = Math.min(duration.orElse(DEFAULT_DURATION), this.period);
+
+    if (this.factor <= 0 || this.period <= 0) {
+      throw new IllegalArgumentException("burst factor and period must be positive");
+    }
+  }
+
+  /**
+   * Time spent bursting during the first {@code elapsedMillis} milliseconds.
+   */
+  double burstMillis(final double elapsedMillis) {
+    final long periods = (long) (elapsedMillis / period);
+    return periods * duration + Math.min(elapsedMillis - periods * period, duration);
+  }
+}
@@ -31,16 +31,40 @@ import java.util.Optional;
 
 public class GeneratedInputPlugin implements InputPlugin {
 
+  public static final int DEFAULT_COUNT = 10000;
+  public static final double DEFAULT_RATE = 100.0;
+  public static final int DEFAULT_THREADS = 1;
+  public static final int DEFAULT_TAG_VALUE_SIZE = 8;
+
   private final boolean sameHost;
-  private final int count;
+  private final LoadProfile profile;
 
   @JsonCreator
   public GeneratedInputPlugin(
       @JsonProperty("sameHost") Optional<Boolean> sameHost,
-      @JsonProperty("count") Optional<Integer> count
+      @JsonProperty("count") Optional<Integer> count,
+      @JsonProperty("rate") Optional<Double> rate,
+      @JsonProperty("threads") Optional<Integer> threads,
+      @JsonProperty("churn") Optional<Double> churn,
+      @JsonProperty("tagCount") Optional<Integer> tagCount,
+      @JsonProperty("tagValueSize") Optional<Integer> tagValueSize,
+      @JsonProperty("batchSize") Optional<Integer> batchSize,
+      @JsonProperty("distributionRate") Optional<Double> distributionRate,
+      @JsonProperty("burst") Optional<Burst> burst
   ) {
     this.sameHost = sameHost.orElse(false);
-    this.count = count.orElse(10000);
+    this.profile = new LoadProfile(rate.orElse(DEFAULT_RATE), threads.orElse(DEFAULT_THREADS),
+        count.orElse(DEFAULT_COUNT), churn.orElse(0.0), tagCount.orElse(0),
+        tagValueSize.orElse(DEFAULT_TAG_VALUE_SIZE), batchSize.orElse(0),
+        distributionRate.orElse(0.0), burst);
+
+    if (profile.getRate() <= 0 || profile.getThreads() <= 0) {
+      throw new IllegalArgumentException("rate and threads must be positive");
+    }
+
+    if (profile.getSeries() < profile.getThreads()) {
+      throw new IllegalArgumentException("count must be at least the number of threads");
+    }
   }
 
   @Override
@@ -48,7 +72,7 @@ public class GeneratedInputPlugin implements InputPlugin {
     return new PrivateModule() {
       @Override
       protected void configure() {
-        bind(key).toInstance(new GeneratedPluginSource(sameHost, count));
+        bind(key).toInstance(new GeneratedPluginSource(sameHost, profile));
         expose(key);
       }
     };
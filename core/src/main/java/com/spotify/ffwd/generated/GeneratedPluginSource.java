@@ -20,76 +20,111 @@
 
 package com.spotify.ffwd.generated;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import com.google.protobuf.ByteString;
 import com.spotify.ffwd.input.InputManager;
 import com.spotify.ffwd.input.PluginSource;
+import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
 import com.spotify.ffwd.model.v2.Value;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Generates metrics at a fixed rate, as described by a {@link LoadProfile}.
+ * <p>
+ * Every thread owns a disjoint slice of the series and paces itself against the time it was
+ * started, so that the configured rate is met on average even if a thread falls behind.
+ */
 public class GeneratedPluginSource implements PluginSource {
 
+  /**
+   * Upper bound of individual metrics emitted in one go when catching up.
+   */
+  private static final int MAX_CHUNK = 1000;
+
+  private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private static final int DISTRIBUTION_SIZE = 64;
+  private static final int DISTRIBUTIONS = 16;
+
   @Inject
   private AsyncFramework async;
   @Inject
   private InputManager input;
 
   private volatile AsyncFuture<Void> task;
-  private volatile List<Metric> metrics;
   private volatile boolean stopped = false;
 
-  private final Random random = new Random();
-  private final ExecutorService single = Executors.newSingleThreadExecutor();
-
   private final boolean sameHost;
-  private final int count;
+  private final LoadProfile profile;
+  private final List<ByteString> distributions;
+
+  private ExecutorService executor;
 
-  GeneratedPluginSource(boolean sameHost, int count) {
+  GeneratedPluginSource(boolean sameHost, LoadProfile profile) {
     this.sameHost = sameHost;
-    this.count = count;
+    this.profile = profile;
+    this.distributions = generateDistributions();
   }
 
   @Override
   public void init() {
-    task = async.call(() -> {
-      generate();
-      return null;
-    }, single);
   }
 
   @Override
   public AsyncFuture<Void> start() {
-    return async.call(() -> {
-      metrics = generateMetrics();
-      return null;
-    });
+    executor = Executors.newFixedThreadPool(profile.getThreads(),
+        new ThreadFactoryBuilder().setNameFormat("ffwd-generated-%d").build());
+
+    final List<AsyncFuture<Void>> workers = new ArrayList<>();
+
+    for (int thread = 0; thread < profile.getThreads(); thread++) {
+      final Worker worker = new Worker(thread);
+      workers.add(async.call(() -> {
+        worker.run();
+        return null;
+      }, executor));
+    }
+
+    task = async.collectAndDiscard(workers);
+    return async.resolved();
   }
 
-  private List<Metric> generateMetrics() {
-    final List<Metric> metrics = new ArrayList<>(count);
+  @Override
+  public AsyncFuture<Void> stop() {
+    stopped = true;
+
+    if (task == null) {
+      return async.resolved();
+    }
+
+    return task.onFinished(executor::shutdown);
+  }
 
-    for (int i = 0; i < count; i++) {
-      final String key = "generated";
-      final Value value = Value.DoubleValue.create(0.42 * i);
-      final String host = generateHost(i);
-      final Map<String, String> tags = ImmutableMap.of(
-          "what", "metric-" + i,
-          "host", host
-      );
-      final Map<String, String> resource = ImmutableMap.of();
+  private List<ByteString> generateDistributions() {
+    final List<ByteString> distributions = new ArrayList<>(DISTRIBUTIONS);
 
-      metrics.add(new Metric(key, value, System.currentTimeMillis(), tags, resource));
+    for (int i = 0; i < DISTRIBUTIONS; i++) {
+      final byte[] bytes = new byte[DISTRIBUTION_SIZE];
+      ThreadLocalRandom.current().nextBytes(bytes);
+      distributions.add(ByteString.copyFrom(bytes));
     }
 
-    return metrics;
+    return distributions;
   }
 
   private String generateHost(int i) {
@@ -100,20 +135,122 @@ public class GeneratedPluginSource implements PluginSource {
     return "host" + i;
   }
 
-  @Override
-  public AsyncFuture<Void> stop() {
-    stopped = true;
-    return task;
-  }
+  private class Worker {
+
+    private final int thread;
+    private final int slots;
+    private final double churnPerSecond;
+    private final long parkNanos;
+
+    /**
+     * Tags and generation of every series owned by this thread. A series gets a new generation,
+     * and thereby new tags, every time it is churned.
+     */
+    private final List<Map<String, String>> tags;
+    private final long[] generations;
+
+    private int next = 0;
+
+    Worker(final int thread) {
+      this.thread = thread;
+      this.slots = (profile.getSeries() - thread + profile.getThreads() - 1)
+                   / profile.getThreads();
+      this.churnPerSecond = profile.getChurn() / profile.getThreads();
+
+      final double threadRate = profile.getRate() / profile.getThreads();
+      this.parkNanos = Math.max(MIN_PARK_NANOS,
+          Math.min(MAX_PARK_NANOS, (long) (TimeUnit.SECONDS.toNanos(1) / threadRate)));
 
-  private void generate() throws InterruptedException {
-    while (!stopped) {
-      input.receiveMetric(randomMetric());
-      Thread.sleep(10);
+      this.tags = new ArrayList<>(slots);
+      this.generations = new long[slots];
+
+      for (int slot = 0; slot < slots; slot++) {
+        tags.add(generateTags(slot, 0));
+      }
     }
-  }
 
-  private Metric randomMetric() {
-    return metrics.get(random.nextInt(metrics.size()));
+    void run() {
+      final long started = System.nanoTime();
+      final int unit = Math.max(1, profile.getBatchSize());
+      long emitted = 0;
+
+      while (!stopped) {
+        final long elapsed = System.nanoTime() - started;
+        final long due = profile.due(elapsed);
+
+        if (due - emitted < unit) {
+          LockSupport.parkNanos(parkNanos);
+          continue;
+        }
+
+        final long replaced = (long) (churnPerSecond * elapsed / TimeUnit.SECONDS.toNanos(1));
+
+        if (profile.getBatchSize() > 0) {
+          input.receiveBatch(new Batch(ImmutableMap.of(), ImmutableMap.of(),
+              generatePoints(unit, replaced)));
+          emitted += unit;
+          continue;
+        }
+
+        final int chunk = (int) Math.min(due - emitted, MAX_CHUNK);
+
+        for (int i = 0; i < chunk; i++) {
+          input.receiveMetric(generateMetric(replaced));
+        }
+
+        emitted += chunk;
+      }
+    }
+
+    private List<Metric> generatePoints(final int count, final long replaced) {
+      final List<Metric> points = new ArrayList<>(count);
+
+      for (int i = 0; i < count; i++) {
+        points.add(generateMetric(replaced));
+      }
+
+      return points;
+    }
+
+    private Metric generateMetric(final long replaced) {
+      final int slot = next;
+      next = (next + 1) % slots;
+
+      // the first (replaced % slots) slots have been churned once more than the rest.
+      final long generation = replaced / slots + (slot < replaced % slots ? 1 : 0);
+
+      if (generations[slot] != generation) {
+        generations[slot] = generation;
+        tags.set(slot, generateTags(slot, generation));
+      }
+
+      final ThreadLocalRandom random = ThreadLocalRandom.current();
+      final Value value;
+
+      if (random.nextDouble() < profile.getDistributionRate()) {
+        value = Value.DistributionValue.create(distributions.get(random.nextInt(DISTRIBUTIONS)));
+      } else {
+        value = Value.DoubleValue.create(1 + random.nextDouble() * 1000);
+      }
+
+      return new Metric("generated", value, System.currentTimeMillis(), tags.get(slot),
+          ImmutableMap.of());
+    }
+
+    private Map<String, String> generateTags(final int slot, final long generation) {
+      final int series = slot * profile.getThreads() + thread;
+      final Map<String, String> tags = new HashMap<>();
+
+      final String what = "metric-" + series;
+      tags.put("what", generation == 0 ? what : what + "-" + generation);
+      tags.put("host", generateHost(series));
+
+      for (int i = 0; i < profile.getTagCount(); i++) {
+        final String value = "v" + (series % (i + 2));
+        tags.put("tag-" + i, Strings.padEnd(value, profile.getTagValueSize(), 'x'));
+      }
+
+      return tags;
+    }
   }
 }
@@ -0,0 +1,83 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.generated;
+
+import java.util.Optional;
+import lombok.Data;
+
+/**
+ * Describes the traffic produced by the generated input.
+ */
+@Data
+public class LoadProfile {
+
+  /**
+   * Metrics per second, summed over all threads. Bursts come on top of this.
+   */
+  private final double rate;
+
+  private final int threads;
+
+  /**
+   * Number of distinct time series being generated at any one time.
+   */
+  private final int series;
+
+  /**
+   * Number of series replaced by new ones every second.
+   */
+  private final double churn;
+
+  /**
+   * Number of tags in addition to {@code what} and {@code host}, and the length of their values.
+   */
+  private final int tagCount;
+  private final int tagValueSize;
+
+  /**
+   * Emit points in batches of this size, {@code 0} to emit individual metrics.
+   */
+  private final int batchSize;
+
+  /**
+   * Fraction of points, between {@code 0} and {@code 1}, which carry a distribution.
+   */
+  private final double distributionRate;
+
+  private final Optional<Burst> burst;
+
+  /**
+   * Number of metrics a single thread should have emitted after the given time.
+   */
+  long due(final long elapsedNanos) {
+    final double elapsedMillis = elapsedNanos / 1e6;
+    final double threadRate = rate / threads / 1000;
+
+    double due = threadRate * elapsedMillis;
+
+    if (burst.isPresent()) {
+      final Burst b = burst.get();
+      due += threadRate * (b.getFactor() - 1) * b.burstMillis(elapsedMillis);
+    }
+
+    return (long) due;
+  }
+}
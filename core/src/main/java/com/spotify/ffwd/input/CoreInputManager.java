@@ -81,6 +81,42 @@ public class CoreInputManager implements InputManager {
     output.sendMetric(metric);
   }
 
+  @Override
+  public void receiveMetrics(List<Metric> metrics) {
+    // only copied once a metric is dropped by the filter
+    List<Metric> matching = null;
+    int index = 0;
+
+    for (final Metric metric : metrics) {
+      if (!filter.matchesMetric(metric)) {
+        if (matching == null) {
+          matching = new ArrayList<>(metrics.subList(0, index));
+        }
+      } else {
+        debug.inspectMetric(DEBUG_ID, metric);
+
+        if (matching != null) {
+          matching.add(metric);
+        }
+      }
+
+      index++;
+    }
+
+    final List<Metric> received = matching != null ? matching : metrics;
+
+    if (received.size() < metrics.size()) {
+      statistics.reportMetricsDroppedByFilter(metrics.size() - received.size());
+    }
+
+    if (received.isEmpty()) {
+      return;
+    }
+
+    statistics.reportReceivedMetrics(received.size());
+    output.sendMetrics(received);
+  }
+
   @Override
   public void receiveBatch(Batch batch) {
     // TODO: consider filtering
@@ -21,31 +21,90 @@
 package com.spotify.ffwd.input;
 
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.statistics.InputPluginStatistics;
+import com.spotify.ffwd.statistics.ReceiveStamp;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Hands decoded metrics and batches over to the input manager.
+ * <p>
+ * Metrics decoded during one read from a channel are collected and received together once the
+ * read is complete, or once {@code burstSize} of them have been collected.
+ */
 @Sharable
 public class InputChannelInboundHandler extends ChannelInboundHandlerAdapter {
 
   private static final Logger log = LoggerFactory.getLogger(InputChannelInboundHandler.class);
 
+  private static final AttributeKey<List<Metric>> BURST =
+      AttributeKey.valueOf(InputChannelInboundHandler.class, "burst");
+
   @Inject
   private InputManager input;
 
+  @Inject
+  private InputPluginStatistics statistics;
+
+  /**
+   * Stamp one in this many received metrics or batches with their receive time, 0 disables it.
+   */
+  @Inject
+  @Named("latencySampling")
+  private Integer latencySampling;
+
+  /**
+   * The most metrics received together, 1 or less receives every metric on its own.
+   */
+  @Inject
+  @Named("burstSize")
+  private Integer burstSize;
+
   @Override
   public void channelRead(ChannelHandlerContext ctx, Object msg) {
     if (msg instanceof Metric) {
-      input.receiveMetric((Metric) msg);
+      final Metric metric = (Metric) msg;
+
+      if (sampled()) {
+        metric.setReceived(ReceiveStamp.now(statistics));
+      }
+
+      if (burstSize <= 1) {
+        input.receiveMetric(metric);
+        return;
+      }
+
+      final List<Metric> burst = burst(ctx);
+      burst.add(metric);
+
+      if (burst.size() >= burstSize) {
+        receive(burst);
+      }
+
       return;
     }
 
     if (msg instanceof Batch) {
-      input.receiveBatch((Batch) msg);
+      final Batch batch = (Batch) msg;
+
+      if (sampled()) {
+        batch.setReceived(ReceiveStamp.now(statistics));
+      }
+
+      // keep the order in which metrics and batches were read
+      receive(ctx);
+      input.receiveBatch(batch);
       return;
     }
 
@@ -53,6 +112,50 @@ public class InputChannelInboundHandler extends ChannelInboundHandlerAdapter {
     ctx.channel().close();
   }
 
+  @Override
+  public void channelReadComplete(ChannelHandlerContext ctx) {
+    receive(ctx);
+    ctx.fireChannelReadComplete();
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) {
+    receive(ctx);
+    ctx.fireChannelInactive();
+  }
+
+  private List<Metric> burst(final ChannelHandlerContext ctx) {
+    final Attribute<List<Metric>> attribute = ctx.channel().attr(BURST);
+    List<Metric> burst = attribute.get();
+
+    if (burst == null) {
+      burst = new ArrayList<>();
+      attribute.set(burst);
+    }
+
+    return burst;
+  }
+
+  private void receive(final ChannelHandlerContext ctx) {
+    final List<Metric> burst = ctx.channel().attr(BURST).get();
+
+    if (burst != null && !burst.isEmpty()) {
+      receive(burst);
+    }
+  }
+
+  private void receive(final List<Metric> burst) {
+    try {
+      input.receiveMetrics(burst);
+    } finally {
+      burst.clear();
+    }
+  }
+
+  private boolean sampled() {
+    return latencySampling > 0 && ThreadLocalRandom.current().nextInt(latencySampling) == 0;
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
     log.info("{}: Error in channel, closing", ctx.channel(), cause);
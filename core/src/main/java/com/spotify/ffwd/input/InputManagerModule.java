@@ -35,6 +35,7 @@ import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.filter.TrueFilter;
 import com.spotify.ffwd.statistics.CoreStatistics;
 import com.spotify.ffwd.statistics.InputManagerStatistics;
+import com.spotify.ffwd.statistics.InputPluginStatistics;
 import io.netty.channel.ChannelInboundHandler;
 import java.util.List;
 import java.util.Optional;
@@ -45,15 +46,32 @@ public class InputManagerModule {
 
   private static final List<InputPlugin> DEFAULT_PLUGINS = Lists.newArrayList();
 
+  /**
+   * Measure the latency of one in this many received metrics or batches.
+   */
+  public static final int DEFAULT_LATENCY_SAMPLING = 1000;
+
+  /**
+   * Receive at most this many metrics read from a channel together.
+   */
+  public static final int DEFAULT_BURST_SIZE = 256;
+
   private final List<InputPlugin> plugins;
   private final Filter filter;
+  private final int latencySampling;
+  private final int burstSize;
 
   @JsonCreator
   public InputManagerModule(
-      @JsonProperty("plugins") List<InputPlugin> plugins, @JsonProperty("filter") Filter filter
+      @JsonProperty("plugins") List<InputPlugin> plugins, @JsonProperty("filter") Filter filter,
+      @JsonProperty("latencySampling") Integer latencySampling,
+      @JsonProperty("burstSize") Integer burstSize
   ) {
     this.plugins = Optional.ofNullable(plugins).orElse(DEFAULT_PLUGINS);
     this.filter = Optional.ofNullable(filter).orElseGet(TrueFilter::new);
+    this.latencySampling =
+        Optional.ofNullable(latencySampling).orElse(DEFAULT_LATENCY_SAMPLING);
+    this.burstSize = Optional.ofNullable(burstSize).orElse(DEFAULT_BURST_SIZE);
   }
 
   public Module module() {
@@ -78,8 +96,6 @@ public class InputManagerModule {
 
       @Override
       protected void configure() {
-        bind(ChannelInboundHandler.class).to(InputChannelInboundHandler.class);
-
         bind(InputManager.class).to(CoreInputManager.class).in(Scopes.SINGLETON);
         expose(InputManager.class);
 
@@ -94,14 +110,39 @@ public class InputManagerModule {
         for (final InputPlugin p : plugins) {
           final String id = String.valueOf(++i);
           final Key<PluginSource> k = Key.get(PluginSource.class, Names.named(id));
-          install(p.module(k, String.valueOf(id)));
+          install(pluginModule(p, k, id));
           sources.addBinding().to(k);
         }
       }
     };
   }
 
+  /**
+   * Wrap the module of an input plugin, so that every plugin gets its own statistics.
+   */
+  private Module pluginModule(final InputPlugin p, final Key<PluginSource> k, final String id) {
+    return new PrivateModule() {
+      @Provides
+      @Singleton
+      public InputPluginStatistics statistics(CoreStatistics statistics) {
+        return statistics.newInputPlugin(id);
+      }
+
+      @Override
+      protected void configure() {
+        bind(Integer.class)
+            .annotatedWith(Names.named("latencySampling"))
+            .toInstance(latencySampling);
+        bind(Integer.class).annotatedWith(Names.named("burstSize")).toInstance(burstSize);
+        bind(ChannelInboundHandler.class).to(InputChannelInboundHandler.class);
+
+        install(p.module(k, id));
+        expose(k);
+      }
+    };
+  }
+
   public static Supplier<InputManagerModule> supplyDefault() {
-    return () -> new InputManagerModule(null, null);
+    return () -> new InputManagerModule(null, null, null, null);
   }
 }
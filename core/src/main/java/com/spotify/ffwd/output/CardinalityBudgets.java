@@ -0,0 +1,257 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import com.spotify.ffwd.statistics.OutputManagerStatistics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Cardinality budgets for the series of a single metric key, or of a single value of a tag.
+ * <p>
+ * Every budget keeps a small HyperLogLog sketch per bucket, that is per metric key or per value
+ * of its tag, so that a single key or tag value with too many series can be throttled without
+ * affecting the others. Buckets past {@link #MAX_BUCKETS} in a budget are not tracked.
+ * <p>
+ * Each sketch is made of two generations of half the window each, the oldest of which is cleared
+ * and reused when its time has passed. Whether a bucket is over its budget is only decided in
+ * {@link #refresh(long, OutputManagerStatistics)}, which also reports the buckets with the highest
+ * cardinality of each budget.
+ */
+final class CardinalityBudgets {
+
+  /**
+   * The name of the budget per metric key, budgets per tag are named after the tag.
+   */
+  static final String KEY_BUDGET = "key";
+
+  /**
+   * Number of buckets with the highest cardinality reported per budget.
+   */
+  static final int TOP_BUCKETS = 10;
+
+  static final int MAX_BUCKETS = 4096;
+
+  private static final int LOG2M = 8;
+  private static final int M = 1 << LOG2M;
+  private static final int GENERATIONS = 2;
+
+  private final List<Budget> budgets = new ArrayList<>();
+  private final Budget keyBudget;
+  private final Budget[] tagBudgets;
+  private final long generationMS;
+  private final byte[] merged = new byte[M];
+
+  private long rotatedAt;
+
+  CardinalityBudgets(
+      @Nullable final Long keyLimit, final Map<String, Long> tagLimits, final long windowMS,
+      final long now
+  ) {
+    if (keyLimit != null && keyLimit > 0) {
+      keyBudget = new Budget(KEY_BUDGET, keyLimit);
+      budgets.add(keyBudget);
+    } else {
+      keyBudget = null;
+    }
+
+    final List<Budget> tagBudgets = new ArrayList<>();
+
+    for (final Map.Entry<String, Long> e : tagLimits.entrySet()) {
+      if (e.getValue() != null && e.getValue() > 0) {
+        tagBudgets.add(new Budget(e.getKey(), e.getValue()));
+      }
+    }
+
+    this.tagBudgets = tagBudgets.toArray(new Budget[0]);
+    this.budgets.addAll(tagBudgets);
+    this.generationMS = Math.max(1, windowMS / GENERATIONS);
+    this.rotatedAt = now;
+  }
+
+  boolean isEmpty() {
+    return budgets.isEmpty();
+  }
+
+  /**
+   * Add a series to the buckets it belongs to.
+   *
+   * @param key Key of the series.
+   * @param commonTags Tags shared with other series, overridden by {@code tags}.
+   * @param tags Tags of the series.
+   * @param hash 64-bit hash of the series.
+   * @return {@code true} if none of the buckets of the series are over their budget.
+   */
+  boolean add(
+      @Nullable final String key, final Map<String, String> commonTags,
+      final Map<String, String> tags, final long hash
+  ) {
+    boolean allowed = true;
+
+    if (keyBudget != null) {
+      allowed = keyBudget.add(key, hash);
+    }
+
+    for (final Budget budget : tagBudgets) {
+      String value = tags.get(budget.name);
+
+      if (value == null) {
+        value = commonTags.get(budget.name);
+      }
+
+      allowed &= budget.add(value, hash);
+    }
+
+    return allowed;
+  }
+
+  /**
+   * Expire old generations, estimate the cardinality of every bucket and report the buckets with
+   * the highest cardinality.
+   */
+  synchronized void refresh(final long now, final OutputManagerStatistics statistics) {
+    final long generations = (now - rotatedAt) / generationMS;
+    final int steps = (int) Math.min(Math.max(generations, 0), GENERATIONS);
+
+    if (generations > 0) {
+      rotatedAt += generations * generationMS;
+    }
+
+    for (final Budget budget : budgets) {
+      statistics.reportCardinalityBudget(budget.name, budget.refresh(steps, merged));
+    }
+  }
+
+  private static final class Budget {
+
+    private final String name;
+    private final long limit;
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private Budget(final String name, final long limit) {
+      this.name = name;
+      this.limit = limit;
+    }
+
+    private boolean add(@Nullable final String value, final long hash) {
+      if (value == null) {
+        return true;
+      }
+
+      Bucket bucket = buckets.get(value);
+
+      if (bucket == null) {
+        if (buckets.size() >= MAX_BUCKETS) {
+          return true;
+        }
+
+        final Bucket created = new Bucket();
+        bucket = buckets.putIfAbsent(value, created);
+
+        if (bucket == null) {
+          bucket = created;
+        }
+      }
+
+      CardinalityEstimator.add(bucket.generations[bucket.current], LOG2M, hash);
+      return !bucket.over;
+    }
+
+    /**
+     * Rotate and estimate every bucket, forget the ones which are empty.
+     *
+     * @return The buckets with the highest cardinality, highest first.
+     */
+    private Map<String, Long> refresh(final int steps, final byte[] merged) {
+      final PriorityQueue<Map.Entry<String, Bucket>> top =
+          new PriorityQueue<>(TOP_BUCKETS + 1, (a, b) -> Long.compare(
+              a.getValue().cardinality, b.getValue().cardinality));
+
+      final Iterator<Map.Entry<String, Bucket>> it = buckets.entrySet().iterator();
+
+      while (it.hasNext()) {
+        final Map.Entry<String, Bucket> e = it.next();
+        final Bucket bucket = e.getValue();
+
+        bucket.rotate(steps);
+
+        Arrays.fill(merged, (byte) 0);
+
+        for (final byte[] registers : bucket.generations) {
+          CardinalityEstimator.merge(merged, registers);
+        }
+
+        final long cardinality = CardinalityEstimator.estimate(merged);
+
+        if (cardinality == 0) {
+          it.remove();
+          continue;
+        }
+
+        bucket.cardinality = cardinality;
+        bucket.over = cardinality > limit;
+
+        top.add(e);
+
+        if (top.size() > TOP_BUCKETS) {
+          top.poll();
+        }
+      }
+
+      final List<Map.Entry<String, Bucket>> sorted = new ArrayList<>(top);
+      sorted.sort((a, b) -> Long.compare(b.getValue().cardinality, a.getValue().cardinality));
+
+      final Map<String, Long> result = new LinkedHashMap<>();
+
+      for (final Map.Entry<String, Bucket> e : sorted) {
+        result.put(e.getKey(), e.getValue().cardinality);
+      }
+
+      return result;
+    }
+  }
+
+  private static final class Bucket {
+
+    private final byte[][] generations = new byte[GENERATIONS][M];
+    private volatile int current;
+    private volatile boolean over;
+    private long cardinality;
+
+    private void rotate(final int steps) {
+      int next = current;
+
+      for (int i = 0; i < steps; i++) {
+        next = (next + 1) % GENERATIONS;
+        Arrays.fill(generations[next], (byte) 0);
+      }
+
+      current = next;
+    }
+  }
+}
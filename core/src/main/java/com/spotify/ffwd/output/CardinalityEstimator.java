@@ -0,0 +1,195 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog estimate of the number of distinct series seen during a sliding window.
+ * <p>
+ * Writers never coordinate with each other: every thread updates the registers of its own stripe,
+ * picked from the thread id, with plain reads and writes. Two threads which end up on the same
+ * stripe may race on a register and lose an update, which only makes the estimate a little low.
+ * The stripes are merged when estimating.
+ * <p>
+ * The window is split into {@link #WINDOWS} sub-sketches. Writers add to the current one, and
+ * every time a sub-window has passed the oldest sub-sketch is cleared and becomes the current one.
+ * The estimate therefore covers the last {@code windowMS}, give or take one sub-window, and does
+ * not fall back to zero when the oldest series expire.
+ * <p>
+ * The registers and the estimator are the same as a FULL {@code net.agkn.hll.HLL} with log2m 14,
+ * fed with 64-bit hashes such as {@link com.spotify.ffwd.util.SeriesHash}.
+ */
+final class CardinalityEstimator {
+
+  static final int WINDOWS = 4;
+  private static final int MAX_STRIPES = 16;
+
+  private static final int LOG2M = 14;
+  private static final int M = 1 << LOG2M;
+
+  private static final double[] INVERSE_POWERS = new double[Long.SIZE];
+
+  static {
+    for (int i = 0; i < INVERSE_POWERS.length; i++) {
+      INVERSE_POWERS[i] = 1.0 / (1L << i);
+    }
+  }
+
+  /**
+   * Registers, indexed by sub-window, stripe and register.
+   */
+  private final byte[][][] sketches;
+  private final int stripeMask;
+  private final long slotMS;
+  private final byte[] merged = new byte[M];
+
+  private volatile int current;
+  private long rotatedAt;
+
+  CardinalityEstimator(final long windowMS) {
+    this(windowMS, defaultStripes(), System.currentTimeMillis());
+  }
+
+  CardinalityEstimator(final long windowMS, final int stripes, final long now) {
+    if (Integer.bitCount(stripes) != 1) {
+      throw new IllegalArgumentException("stripes must be a power of two: " + stripes);
+    }
+
+    this.sketches = new byte[WINDOWS][stripes][M];
+    this.stripeMask = stripes - 1;
+    this.slotMS = Math.max(1, windowMS / WINDOWS);
+    this.rotatedAt = now;
+  }
+
+  /**
+   * Add the 64-bit hash of a series.
+   */
+  void add(final long hash) {
+    add(sketches[current][(int) Thread.currentThread().getId() & stripeMask], LOG2M, hash);
+  }
+
+  /**
+   * Expire the sub-windows which have passed and estimate the number of distinct series in the
+   * remaining ones.
+   * <p>
+   * This goes over every register of every stripe, it is meant to be called periodically and not
+   * for every added series.
+   */
+  synchronized long estimate(final long now) {
+    rotate(now);
+
+    Arrays.fill(merged, (byte) 0);
+
+    for (final byte[][] stripes : sketches) {
+      for (final byte[] registers : stripes) {
+        merge(merged, registers);
+      }
+    }
+
+    return estimate(merged);
+  }
+
+  private void rotate(final long now) {
+    final long slots = (now - rotatedAt) / slotMS;
+
+    if (slots <= 0) {
+      return;
+    }
+
+    final int steps = (int) Math.min(slots, WINDOWS);
+    int next = current;
+
+    for (int i = 0; i < steps; i++) {
+      next = (next + 1) % WINDOWS;
+
+      for (final byte[] registers : sketches[next]) {
+        Arrays.fill(registers, (byte) 0);
+      }
+    }
+
+    current = next;
+    rotatedAt += slots * slotMS;
+  }
+
+  /**
+   * Add a 64-bit hash to HyperLogLog registers, the low {@code log2m} bits of the hash select the
+   * register.
+   */
+  static void add(final byte[] registers, final int log2m, final long hash) {
+    final long w = hash >>> log2m;
+
+    if (w == 0) {
+      return;
+    }
+
+    final int index = (int) (hash & (registers.length - 1));
+    final byte rank = (byte) (Long.numberOfTrailingZeros(w) + 1);
+
+    if (registers[index] < rank) {
+      registers[index] = rank;
+    }
+  }
+
+  /**
+   * Merge the registers of another sketch of the same size into {@code into}.
+   */
+  static void merge(final byte[] into, final byte[] registers) {
+    for (int j = 0; j < into.length; j++) {
+      if (registers[j] > into[j]) {
+        into[j] = registers[j];
+      }
+    }
+  }
+
+  /**
+   * Estimate the number of distinct hashes added to HyperLogLog registers, of which there are at
+   * least 128.
+   */
+  static long estimate(final byte[] registers) {
+    final int m = registers.length;
+
+    double sum = 0;
+    int zeros = 0;
+
+    for (int j = 0; j < m; j++) {
+      sum += INVERSE_POWERS[registers[j]];
+
+      if (registers[j] == 0) {
+        zeros++;
+      }
+    }
+
+    double estimate = 0.7213 / (1.0 + 1.079 / m) * m * m / sum;
+
+    if (zeros != 0 && estimate < m * 5.0 / 2.0) {
+      // linear counting
+      estimate = m * Math.log((double) m / zeros);
+    }
+
+    return (long) Math.ceil(estimate);
+  }
+
+  private static int defaultStripes() {
+    final int processors = Runtime.getRuntime().availableProcessors();
+    return Math.min(Integer.highestOneBit(processors * 2 - 1), MAX_STRIPES);
+  }
+}
@@ -0,0 +1,127 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import com.spotify.ffwd.module.MemoryLimits;
+import com.spotify.ffwd.statistics.MemoryBudgetStatistics;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A memory budget which accounts for the reservations of every component in a single counter.
+ * <p>
+ * Reservations are added to the counter first, and taken back if that went over the limit of the
+ * component, so that reserving never blocks. Competing reservations close to a limit may
+ * therefore both be refused, where one of them would have fit.
+ */
+public class CoreMemoryBudget implements MemoryBudget {
+
+  private final long softLimit;
+  private final long hardLimit;
+  private final MemoryBudgetStatistics statistics;
+
+  private final AtomicLong reserved = new AtomicLong();
+
+  /**
+   * Registered components by name, guarded by {@code this}.
+   */
+  private final Map<String, Component> components = new HashMap<>();
+
+  public CoreMemoryBudget(final MemoryLimits limits, final MemoryBudgetStatistics statistics) {
+    this.softLimit = limits.getSoftLimit();
+    this.hardLimit = limits.getHardLimit();
+    this.statistics = statistics;
+
+    statistics.registerTotal(reserved::get);
+  }
+
+  @Override
+  public synchronized Account register(final String component, final Priority priority) {
+    final Component existing = components.get(component);
+
+    if (existing != null) {
+      return existing;
+    }
+
+    final Component created = new Component(component, limit(priority));
+    components.put(component, created);
+    statistics.registerComponent(component, created.reserved::sum);
+    return created;
+  }
+
+  /**
+   * The number of bytes reserved by all components.
+   */
+  long reserved() {
+    return reserved.get();
+  }
+
+  long limit(final Priority priority) {
+    switch (priority) {
+      case LOW:
+        return softLimit;
+      case NORMAL:
+        return softLimit + (hardLimit - softLimit) / 2;
+      default:
+        return hardLimit;
+    }
+  }
+
+  private final class Component implements Account {
+
+    private final String name;
+    private final long limit;
+    private final LongAdder reserved = new LongAdder();
+
+    private Component(final String name, final long limit) {
+      this.name = name;
+      this.limit = limit;
+    }
+
+    @Override
+    public boolean reserve(final long bytes) {
+      if (bytes <= 0) {
+        return true;
+      }
+
+      if (CoreMemoryBudget.this.reserved.addAndGet(bytes) > limit) {
+        CoreMemoryBudget.this.reserved.addAndGet(-bytes);
+        statistics.reportRefused(name, bytes);
+        return false;
+      }
+
+      reserved.add(bytes);
+      return true;
+    }
+
+    @Override
+    public void release(final long bytes) {
+      if (bytes <= 0) {
+        return;
+      }
+
+      reserved.add(-bytes);
+      CoreMemoryBudget.this.reserved.addAndGet(-bytes);
+    }
+  }
+}
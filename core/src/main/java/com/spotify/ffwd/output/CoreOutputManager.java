@@ -22,7 +22,6 @@ package com.spotify.ffwd.output;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
-import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
@@ -31,17 +30,17 @@ import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
 import com.spotify.ffwd.statistics.OutputManagerStatistics;
-import com.spotify.ffwd.util.BatchMetricConverter;
+import com.spotify.ffwd.statistics.ReceiveStamp;
+import com.spotify.ffwd.util.SeriesHash;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -49,14 +48,10 @@ import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
-import net.agkn.hll.HLL;
-import net.agkn.hll.HLLType;
 import org.isomorphism.util.TokenBucket;
 import org.isomorphism.util.TokenBuckets;
 import org.slf4j.Logger;
@@ -65,11 +60,9 @@ import org.slf4j.LoggerFactory;
 public class CoreOutputManager implements OutputManager {
 
   private static final String DEBUG_ID = "core.output";
-  private static final String HOST = "host";
   private static final Logger log = LoggerFactory.getLogger(CoreOutputManager.class);
   private static final String[] KEYS_NEVER_TO_DROP = { "ffwd-java", "ffwd-java.ffwd-java" };
-  private static final int HYPER_LOG_LOG_LOG2M = 14;
-  private static final int HYPER_LOG_LOG_REG_WIDTH = 5;
+  private static final long CARDINALITY_ESTIMATE_INTERVAL_MS = 1000;
 
   private final TokenBucket rateLimiter;
   private final Long cardinalityLimit;
@@ -137,12 +130,19 @@ public class CoreOutputManager implements OutputManager {
   @Inject
   private String dynamicTagsFile;
 
-  private AtomicReference<HLL> hyperLog;
-  private AtomicLong hyperLogSwapTS;
-  private AtomicBoolean hyperLogSwapLock;
+  private final CardinalityEstimator cardinalityEstimator;
+  private final CardinalityBudgets budgets;
   private Long hyperLogLogPlusSwapPeriodMS;
+  private final AtomicLong cardinalityEstimateTS = new AtomicLong();
+  private volatile long cardinality;
+  private long cardinalityEstimateIntervalMS = CARDINALITY_ESTIMATE_INTERVAL_MS;
   private ScheduledExecutorService tagRefreshingThread = null;
 
+  /**
+   * Global tags and resource merged into every metric, rebuilt when the tags are refreshed.
+   */
+  private volatile TagEnrichment enrichment;
+
   public final Long getRateLimit() {
     if (rateLimiter == null) {
       return null;
@@ -162,6 +162,8 @@ public class CoreOutputManager implements OutputManager {
   CoreOutputManager(@Named("rateLimit") @Nullable Integer rateLimit,
                     @Named("cardinalityLimit") @Nullable Long cardinalityLimit,
                     @Named("hyperLogLogPlusSwapPeriodMS") @Nullable Long hyperLogLogPlusSwapPeriodMS,
+                    @Named("cardinalityKeyLimit") @Nullable Long cardinalityKeyLimit,
+                    @Named("cardinalityTagLimits") Map<String, Long> cardinalityTagLimits,
                     @Named("dynamicTagsFile") @Nullable String dynamicTagsFile) {
 
     if (rateLimit != null && rateLimit > 0) {
@@ -177,25 +179,30 @@ public class CoreOutputManager implements OutputManager {
       rateLimiter = null;
     }
 
-    hyperLog = new AtomicReference<>(new HLL(
-        HYPER_LOG_LOG_LOG2M,
-        HYPER_LOG_LOG_REG_WIDTH,
-        -1, false, HLLType.FULL));
-    hyperLogSwapTS = new AtomicLong(System.currentTimeMillis());
-    hyperLogSwapLock = new AtomicBoolean(false);
     this.hyperLogLogPlusSwapPeriodMS =
         Optional.ofNullable(hyperLogLogPlusSwapPeriodMS).orElse(3_600_000L);
+    this.cardinalityEstimator = new CardinalityEstimator(this.hyperLogLogPlusSwapPeriodMS);
 
     if (cardinalityLimit != null && cardinalityLimit > 0) {
       // Use cardinalityLimit to limit cardinality
       log.info("Initializing cardinality limit: {}", cardinalityLimit);
-      log.info("Initializing HyperLogLogPlus swap time: {} ms",
-          this.hyperLogLogPlusSwapPeriodMS);
+      log.info("Initializing cardinality window: {} ms", this.hyperLogLogPlusSwapPeriodMS);
       this.cardinalityLimit = cardinalityLimit;
     } else {
       this.cardinalityLimit = null;
     }
 
+    final CardinalityBudgets budgets = new CardinalityBudgets(cardinalityKeyLimit,
+        cardinalityTagLimits, this.hyperLogLogPlusSwapPeriodMS, System.currentTimeMillis());
+
+    if (!budgets.isEmpty()) {
+      log.info("Initializing cardinality budgets: {} per key, {} per tag", cardinalityKeyLimit,
+          cardinalityTagLimits);
+      this.budgets = budgets;
+    } else {
+      this.budgets = null;
+    }
+
     if (!Strings.isNullOrEmpty(dynamicTagsFile)) {
       final File file = new File(dynamicTagsFile);
       if (file.exists() && file.canRead()) {
@@ -221,6 +228,8 @@ public class CoreOutputManager implements OutputManager {
           tags.put(labelParts[0], labelParts[1].replace("\"", ""));
         }
       });
+
+      enrichment = newEnrichment();
     } catch (IOException e) {
       // Ignore
     }
@@ -237,47 +246,139 @@ public class CoreOutputManager implements OutputManager {
 
   @Override
   public void sendMetric(Metric metric) {
-    if (!filter.matchesMetric(metric)) {
-      statistics.reportMetricsDroppedByFilter(1);
+    final Metric accepted = accept(metric);
+
+    if (accepted == null) {
       return;
     }
 
-    final Metric filtered = filter(metric);
+    sinks.stream()
+        .filter(PluginSink::isReady)
+        .forEach(s -> s.sendMetric(accepted));
 
-    debug.inspectMetric(DEBUG_ID, filtered);
+    statistics.reportSentMetrics(1);
+  }
 
-    hyperLog.get().addRaw(metric.hashCode());
-    statistics.reportMetricsCardinality(hyperLog.get().cardinality());
+  @Override
+  public void sendMetrics(List<Metric> metrics) {
+    final List<Metric> accepted = new ArrayList<>(metrics.size());
 
-    if (isDroppable(1, metric.getKey())) {
+    for (final Metric metric : metrics) {
+      final Metric a = accept(metric);
+
+      if (a != null) {
+        accepted.add(a);
+      }
+    }
+
+    if (accepted.isEmpty()) {
       return;
     }
 
     sinks.stream()
         .filter(PluginSink::isReady)
-        .forEach(s -> s.sendMetric(filtered));
+        .forEach(s -> s.sendMetricBurst(accepted));
 
-    statistics.reportSentMetrics(1);
+    statistics.reportSentMetrics(accepted.size());
+  }
+
+  /**
+   * Run a metric through the filter, tag enrichment, cardinality tracking and limits.
+   *
+   * @return The enriched metric to send, or {@code null} if it was dropped.
+   */
+  private Metric accept(final Metric metric) {
+    if (!filter.matchesMetric(metric)) {
+      statistics.reportMetricsDroppedByFilter(1);
+      return null;
+    }
+
+    final Metric filtered = filter(metric);
+
+    debug.inspectMetric(DEBUG_ID, filtered);
+
+    final long hash = SeriesHash.hash(metric.getKey(), metric.getTags());
+    cardinalityEstimator.add(hash);
+    final long cardinality = cardinality();
+
+    if (budgets != null
+        && !budgets.add(metric.getKey(), Collections.emptyMap(), metric.getTags(), hash)
+        && canDrop(metric.getKey())) {
+      statistics.reportMetricsDroppedByCardinalityBudget(1);
+      return null;
+    }
+
+    if (isDroppable(1, metric.getKey(), cardinality)) {
+      return null;
+    }
+
+    final ReceiveStamp received = metric.getReceived();
+
+    if (received != null) {
+      reportHandoff(received);
+      filtered.setReceived(received);
+    }
+
+    return filtered;
   }
 
   @Override
   public void sendBatch(Batch batch) {
-    final Batch filtered = filter(batch);
+    final List<Metric> points = batch.getPoints();
+    // points within their cardinality budgets, only built once a point is over its budget
+    List<Metric> withinBudget = null;
+    int index = 0;
+
+    for (final Metric point : points) {
+      final long hash = SeriesHash.hash(point.getKey(), batch.getCommonTags(), point.getTags());
+      cardinalityEstimator.add(hash);
+
+      if (budgets != null
+          && !budgets.add(point.getKey(), batch.getCommonTags(), point.getTags(), hash)
+          && canDrop(point.getKey())) {
+        if (withinBudget == null) {
+          withinBudget = new ArrayList<>(points.subList(0, index));
+        }
+      } else if (withinBudget != null) {
+        withinBudget.add(point);
+      }
 
-    debug.inspectBatch(DEBUG_ID, filtered);
+      index++;
+    }
 
-    int batchSize = batch.getPoints().size();
+    final long cardinality = cardinality();
 
-    BatchMetricConverter
-        .convertBatchesToMetrics(Collections.singletonList(batch))
-        .stream().forEach(metric -> hyperLog.get().addRaw(metric.hashCode()));
+    final Batch accepted;
 
-    statistics.reportMetricsCardinality(hyperLog.get().cardinality());
+    if (withinBudget != null) {
+      statistics.reportMetricsDroppedByCardinalityBudget(points.size() - withinBudget.size());
 
-    if (batch.getPoints().size() > 0) {
-      if (isDroppable(batchSize, batch.getPoints().get(0).getKey())) {
+      if (withinBudget.isEmpty()) {
         return;
       }
+
+      accepted = new Batch(batch.getCommonTags(), batch.getCommonResource(), withinBudget);
+    } else {
+      accepted = batch;
+    }
+
+    final Batch filtered = filter(accepted);
+
+    debug.inspectBatch(DEBUG_ID, filtered);
+
+    int batchSize = accepted.getPoints().size();
+
+    if (batchSize > 0) {
+      if (isDroppable(batchSize, accepted.getPoints().get(0).getKey(), cardinality)) {
+        return;
+      }
+    }
+
+    final ReceiveStamp received = batch.getReceived();
+
+    if (received != null) {
+      reportHandoff(received);
+      filtered.setReceived(received);
     }
 
     sinks.stream()
@@ -305,6 +406,10 @@ public class CoreOutputManager implements OutputManager {
     return async.collectAndDiscard(futures);
   }
 
+  private void reportHandoff(final ReceiveStamp received) {
+    received.getInput().reportHandoffLatency(received.elapsedNanos());
+  }
+
   private boolean rateLimitAllowed(int permits) {
     if (rateLimiter == null) {
       return true;
@@ -322,18 +427,34 @@ public class CoreOutputManager implements OutputManager {
   }
 
   /**
-   * To reset cardinality this will swap HLL++ if it was tripped after configured period of ms
+   * The estimated number of distinct series.
+   * <p>
+   * Estimating has to go over all registers of the estimator, so it is done at most once per
+   * interval and the last estimate is used in between.
    */
-  private void swapHyperLogLogPlus() {
-    if (System.currentTimeMillis() - hyperLogSwapTS.get() > hyperLogLogPlusSwapPeriodMS
-        && hyperLogSwapLock.compareAndSet(false, true)) {
-      hyperLog.set(new HLL(
-          HYPER_LOG_LOG_LOG2M,
-          HYPER_LOG_LOG_REG_WIDTH,
-          -1, false, HLLType.FULL));
-      hyperLogSwapTS.set(System.currentTimeMillis());
-      hyperLogSwapLock.set(false);
+  private long cardinality() {
+    final long now = System.currentTimeMillis();
+    final long last = cardinalityEstimateTS.get();
+
+    if (now - last >= cardinalityEstimateIntervalMS
+        && cardinalityEstimateTS.compareAndSet(last, now)) {
+      final long estimate = cardinalityEstimator.estimate(now);
+
+      if (budgets != null) {
+        budgets.refresh(now, statistics);
+      }
+
+      cardinality = estimate;
+      statistics.reportMetricsCardinality(estimate);
+      return estimate;
     }
+
+    return cardinality;
+  }
+
+  @VisibleForTesting
+  void setCardinalityEstimateInterval(final long intervalMS) {
+    this.cardinalityEstimateIntervalMS = intervalMS;
   }
 
   /**
@@ -341,27 +462,30 @@ public class CoreOutputManager implements OutputManager {
    * 1. by rate limit
    * 2. by cardinality limit
    */
-  private boolean isDroppable(final int batchSize, String key) {
-    if (!Arrays.asList(KEYS_NEVER_TO_DROP).contains(key)) {
+  private boolean isDroppable(final int batchSize, String key, final long cardinality) {
+    if (canDrop(key)) {
       if (batchSize > 0 && !rateLimitAllowed(batchSize)) {
         log.debug("Dropping {} metrics due to rate limiting", batchSize);
         statistics.reportMetricsDroppedByRateLimit(batchSize);
         return true;
       }
 
-      if (!cardinalityLimitAllowed(hyperLog.get().cardinality())) {
+      if (!cardinalityLimitAllowed(cardinality)) {
         log.debug(
             "Dropping {} metrics due to cardinality limiting; cardinality {}",
             batchSize,
-            hyperLog.get().cardinality());
+            cardinality);
         statistics.reportMetricsDroppedByCardinalityLimit(batchSize);
-        swapHyperLogLogPlus();
         return true;
       }
     }
     return false;
   }
 
+  private static boolean canDrop(final String key) {
+    return !Arrays.asList(KEYS_NEVER_TO_DROP).contains(key);
+  }
+
   /**
    * Filter the provided Metric and complete fields.
    */
@@ -369,98 +493,28 @@ public class CoreOutputManager implements OutputManager {
     final long time = metric.getTimestamp() != 0 ?
                       metric.getTimestamp() : System.currentTimeMillis();
 
-    final Map<String, String> tags = selectTags(metric);
-    final Map<String, String> commonResource = Maps.newHashMap(resource);
-    commonResource.putAll(metric.getResource());
-
-    final SimpleImmutableEntry<Map<String, String>, Map<String, String>>
-        tagsAndResources = processTagsToResource(tags, commonResource);
-    final Map<String, String> mergedTags = tagsAndResources.getKey();
-    final Map<String, String> mergedResource = tagsAndResources.getValue();
-
-    return new Metric(metric.getKey(), metric.getValue(), time,
-        mergedTags, mergedResource);
+    return enrichment().metric(metric, time, skipTagsForKeys.contains(metric.getKey()));
   }
 
   /**
    * Filter the provided Batch and complete fields.
    */
   private Batch filter(final Batch batch) {
-    final Map<String, String> commonTags = Maps.newHashMap(tags);
-    commonTags.putAll(batch.getCommonTags());
-
-    final Map<String, String> commonResource = Maps.newHashMap(resource);
-    commonResource.putAll(batch.getCommonResource());
-
-    final SimpleImmutableEntry<Map<String, String>, Map<String, String>>
-        tagsAndResources = processTagsToResource(commonTags, commonResource);
-    final Map<String, String> mergedCommonTags = tagsAndResources.getKey();
-    final Map<String, String> mergedCommonResource = tagsAndResources.getValue();
-
-    final List<Metric> points = batch.getPoints().stream().map(point -> {
-      final Map<String, String> pointTags = point.getTags();
-      final Map<String, String> pointResource = point.getResource();
-
-      final SimpleImmutableEntry<Map<String, String>, Map<String, String>>
-          pointTagsAndResources = processTagsToResource(pointTags, pointResource);
-      final Map<String, String> mergedTags = pointTagsAndResources.getKey();
-      final Map<String, String> mergedResource = pointTagsAndResources.getValue();
-
-      return Metric.builder()
-          .setKey(point.getKey())
-          .setTags(mergedTags)
-          .setResource(mergedResource)
-          .setValue(point.getValue())
-          .setTimestamp(point.getTimestamp())
-          .build();
-    }).collect(Collectors.toList());
-
-    return new Batch(mergedCommonTags, mergedCommonResource, points);
+    return enrichment().batch(batch);
   }
 
-  private Map<String, String> selectTags(Metric metric) {
-    if (skipTagsForKeys.contains(metric.getKey())) {
-      return metric.getTags();
-    }
-
-    final Map<String, String> mergedTags;
-    mergedTags = Maps.newHashMap(tags);
-    mergedTags.putAll(metric.getTags());
+  private TagEnrichment enrichment() {
+    TagEnrichment enrichment = this.enrichment;
 
-    if (automaticHostTag) {
-      mergedTags.putIfAbsent(HOST, this.host);
+    if (enrichment == null) {
+      enrichment = newEnrichment();
+      this.enrichment = enrichment;
     }
 
-    return mergedTags;
+    return enrichment;
   }
 
-  /**
-   * Potentially convert some tags to resource identifiers - i.e. tags in tagsToResource conf.
-   *
-   * If there are conflicts, the existing resource identifiers takes precedence over tags.
-   *
-   * @param tags     Map of tags that will be used when constructing a metric
-   * @param resource Map of resource identifiers that will be used when constructing a metric
-   */
-  private SimpleImmutableEntry<Map<String, String>, Map<String, String>> processTagsToResource(
-      final Map<String, String> tags, final Map<String, String> resource
-  ) {
-    if (tagsToResource.isEmpty()) {
-      return new SimpleImmutableEntry<>(tags, resource);
-    }
-
-    final Map<String, String> mergedResources = new HashMap<>(resource);
-    final Map<String, String> strippedTags = new HashMap<>(tags);
-
-    tagsToResource.forEach((fromTag, toResource) -> {
-      final String tag = strippedTags.remove(fromTag);
-      // Set as resource if the tag exists and there were not already a resource with the
-      // wanted name
-      if (tag != null) {
-        mergedResources.putIfAbsent(toResource, tag);
-      }
-    });
-
-    return new SimpleImmutableEntry<>(strippedTags, mergedResources);
+  private TagEnrichment newEnrichment() {
+    return new TagEnrichment(tags, resource, tagsToResource, automaticHostTag ? host : null);
   }
 }
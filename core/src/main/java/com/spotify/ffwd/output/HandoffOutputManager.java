@@ -0,0 +1,354 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.statistics.CoreStatistics;
+import com.spotify.ffwd.statistics.HandoffStatistics;
+import com.spotify.ffwd.util.SeriesHash;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands metrics and batches over from the input threads to a fixed number of processing threads,
+ * which run them through the {@link CoreOutputManager}.
+ * <p>
+ * Every processing thread consumes its own {@link HandoffRing}. Metrics and the points of batches
+ * are sharded by the {@link SeriesHash} of their series, with the common tags of a batch merged
+ * in, so that all points of a series are processed by the same thread and in the order they were
+ * received. A batch with points in several shards is split into one batch per shard, and metrics
+ * received together are handed off as one entry per shard.
+ * <p>
+ * An input thread only waits if the ring of the shard is full, which is reported as the handoff
+ * wait. What is handed off once stopping has begun is dropped and counted.
+ */
+public class HandoffOutputManager implements OutputManager {
+
+  private static final Logger log = LoggerFactory.getLogger(HandoffOutputManager.class);
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+  private static final int FULL_SPINS = 100;
+  private static final int REPORT_INTERVAL = 1024;
+  private static final long STOP_TIMEOUT_MS = 10000;
+
+  private final CoreOutputManager delegate;
+  private final AsyncFramework async;
+  private final Shard[] shards;
+
+  private volatile boolean stopped = false;
+
+  @Inject
+  public HandoffOutputManager(
+      final CoreOutputManager delegate, final AsyncFramework async,
+      final CoreStatistics statistics, @Named("handoffThreads") final int threads,
+      @Named("handoffRingSize") final int ringSize
+  ) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("handoffThreads must be positive: " + threads);
+    }
+
+    this.delegate = delegate;
+    this.async = async;
+    this.shards = new Shard[threads];
+
+    for (int i = 0; i < threads; i++) {
+      final String id = String.valueOf(i);
+      shards[i] = new Shard(id, new HandoffRing(ringSize), statistics.newHandoff(id));
+    }
+  }
+
+  @Override
+  public void init() {
+    delegate.init();
+  }
+
+  @Override
+  public void sendMetric(final Metric metric) {
+    handoff(shards[shard(SeriesHash.hash(metric.getKey(), metric.getTags()))], metric);
+  }
+
+  /**
+   * Hand off the metrics of each shard as one entry, instead of one entry per metric.
+   */
+  @Override
+  public void sendMetrics(final List<Metric> metrics) {
+    if (metrics.isEmpty()) {
+      return;
+    }
+
+    // the list is reused by the caller, every part is a copy.
+    final List<List<Metric>> parts = split(metrics, Collections.emptyMap());
+
+    for (int s = 0; s < shards.length; s++) {
+      final List<Metric> part = parts.get(s);
+
+      if (part != null) {
+        handoff(shards[s], part);
+      }
+    }
+  }
+
+  @Override
+  public void sendBatch(final Batch batch) {
+    final List<Metric> points = batch.getPoints();
+
+    if (shards.length == 1 || points.isEmpty()) {
+      handoff(shards[0], batch);
+      return;
+    }
+
+    final List<List<Metric>> parts = split(points, batch.getCommonTags());
+
+    for (int s = 0; s < shards.length; s++) {
+      final List<Metric> part = parts.get(s);
+
+      if (part != null && part.size() == points.size()) {
+        handoff(shards[s], batch);
+        return;
+      }
+    }
+
+    boolean stamped = false;
+
+    for (int s = 0; s < shards.length; s++) {
+      final List<Metric> part = parts.get(s);
+
+      if (part == null) {
+        continue;
+      }
+
+      final Batch b = new Batch(batch.getCommonTags(), batch.getCommonResource(), part);
+
+      // the latency of a sampled batch is only measured once.
+      if (!stamped) {
+        b.setReceived(batch.getReceived());
+        stamped = true;
+      }
+
+      handoff(shards[s], b);
+    }
+  }
+
+  @Override
+  public AsyncFuture<Void> start() {
+    log.info("Starting {} handoff threads", shards.length);
+
+    for (final Shard shard : shards) {
+      shard.thread.start();
+    }
+
+    return delegate.start();
+  }
+
+  @Override
+  public AsyncFuture<Void> stop() {
+    stopped = true;
+
+    return async.call(() -> {
+      for (final Shard shard : shards) {
+        LockSupport.unpark(shard.thread);
+        shard.thread.join(STOP_TIMEOUT_MS);
+      }
+
+      int dropped = 0;
+
+      // entries handed off while the processing threads were exiting.
+      for (final Shard shard : shards) {
+        if (!shard.thread.isAlive()) {
+          dropped += shard.drain();
+        }
+      }
+
+      if (dropped > 0) {
+        log.warn("Dropping {} metrics handed off while shutting down", dropped);
+      }
+
+      return null;
+    }).lazyTransform(ignore -> delegate.stop());
+  }
+
+  private int shard(final long hash) {
+    return (int) ((hash >>> 1) % shards.length);
+  }
+
+  /**
+   * Group metrics by the shard of their series, keeping their order.
+   *
+   * @return The metrics of every shard, {@code null} for shards without any.
+   */
+  private List<List<Metric>> split(
+      final List<Metric> metrics, final Map<String, String> commonTags
+  ) {
+    final List<List<Metric>> parts = new ArrayList<>(shards.length);
+
+    for (int s = 0; s < shards.length; s++) {
+      parts.add(null);
+    }
+
+    for (final Metric metric : metrics) {
+      final int index =
+          shard(SeriesHash.hash(metric.getKey(), commonTags, metric.getTags()));
+      List<Metric> part = parts.get(index);
+
+      if (part == null) {
+        part = new ArrayList<>();
+        parts.set(index, part);
+      }
+
+      part.add(metric);
+    }
+
+    return parts;
+  }
+
+  private void handoff(final Shard shard, final Object entry) {
+    if (stopped) {
+      shard.dropped(entry);
+      return;
+    }
+
+    if (shard.ring.offer(entry)) {
+      return;
+    }
+
+    final long start = System.nanoTime();
+    int attempts = 0;
+
+    while (!shard.ring.offer(entry)) {
+      if (stopped) {
+        shard.dropped(entry);
+        return;
+      }
+
+      if (++attempts < FULL_SPINS) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(this, FULL_PARK_NANOS);
+      }
+    }
+
+    shard.statistics.reportHandoffWait(System.nanoTime() - start);
+  }
+
+  private void process(final Object entry) {
+    try {
+      if (entry instanceof Metric) {
+        delegate.sendMetric((Metric) entry);
+      } else if (entry instanceof List) {
+        @SuppressWarnings("unchecked")
+        final List<Metric> metrics = (List<Metric>) entry;
+        delegate.sendMetrics(metrics);
+      } else {
+        delegate.sendBatch((Batch) entry);
+      }
+    } catch (final RuntimeException e) {
+      log.error("Failed to process {}", entry, e);
+    }
+  }
+
+  private class Shard implements Runnable {
+
+    private final HandoffRing ring;
+    private final HandoffStatistics statistics;
+    private final Thread thread;
+
+    Shard(final String id, final HandoffRing ring, final HandoffStatistics statistics) {
+      this.ring = ring;
+      this.statistics = statistics;
+      this.thread = new Thread(this, "ffwd-handoff-" + id);
+      this.thread.setDaemon(true);
+    }
+
+    /**
+     * Drop what is left in the ring, must only be called once the thread has exited.
+     *
+     * @return The number of metrics dropped.
+     */
+    int drain() {
+      int dropped = 0;
+      Object entry;
+
+      while ((entry = ring.poll()) != null) {
+        dropped += dropped(entry);
+      }
+
+      return dropped;
+    }
+
+    /**
+     * Count an entry as dropped.
+     *
+     * @return The number of metrics dropped.
+     */
+    int dropped(final Object entry) {
+      final int size;
+
+      if (entry instanceof Batch) {
+        size = ((Batch) entry).getPoints().size();
+      } else if (entry instanceof List) {
+        size = ((List<?>) entry).size();
+      } else {
+        size = 1;
+      }
+
+      statistics.reportDropped(size);
+      return size;
+    }
+
+    @Override
+    public void run() {
+      int processed = 0;
+
+      while (true) {
+        final Object entry = ring.poll();
+
+        if (entry == null) {
+          statistics.reportRingOccupancy(0);
+
+          if (stopped) {
+            return;
+          }
+
+          ring.await(IDLE_PARK_NANOS);
+          continue;
+        }
+
+        process(entry);
+
+        if (++processed % REPORT_INTERVAL == 0) {
+          statistics.reportRingOccupancy(ring.size());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded ring buffer handing entries over from any number of producers to a single consumer
+ * thread.
+ * <p>
+ * Producers claim a slot by advancing the tail, and publish the entry by setting the sequence of
+ * the slot, so that they never take a lock. The consumer parks when the ring is empty, and is
+ * woken up by the next producer.
+ */
+final class HandoffRing {
+
+  private static final int AWAIT_YIELDS = 64;
+
+  private final Object[] entries;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * Next sequence to consume, only accessed by the consumer.
+   */
+  private long head;
+
+  private volatile Thread consumer;
+  private volatile boolean sleeping;
+
+  HandoffRing(final int capacity) {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+    }
+
+    this.entries = new Object[capacity];
+    this.sequences = new AtomicLongArray(capacity);
+    this.mask = capacity - 1;
+
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Publish an entry.
+   *
+   * @return {@code false} if the ring is full.
+   */
+  boolean offer(final Object entry) {
+    long position = tail.get();
+
+    while (true) {
+      final int index = (int) position & mask;
+      final long available = sequences.get(index) - position;
+
+      if (available == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          entries[index] = entry;
+          sequences.set(index, position + 1);
+
+          if (sleeping) {
+            LockSupport.unpark(consumer);
+          }
+
+          return true;
+        }
+      } else if (available < 0) {
+        return false;
+      }
+
+      position = tail.get();
+    }
+  }
+
+  /**
+   * Take the next entry, must only be called by the consumer.
+   *
+   * @return The next entry, or {@code null} if the ring is empty.
+   */
+  Object poll() {
+    final int index = (int) head & mask;
+
+    if (sequences.get(index) != head + 1) {
+      return null;
+    }
+
+    final Object entry = entries[index];
+    entries[index] = null;
+    sequences.lazySet(index, head + mask + 1);
+    head++;
+    return entry;
+  }
+
+  /**
+   * Park the consumer until an entry is published, or at most the given time.
+   * <p>
+   * The consumer yields a few times first, since waking up a parked thread costs the producer a
+   * system call.
+   */
+  void await(final long nanos) {
+    for (int i = 0; i < AWAIT_YIELDS; i++) {
+      if (sequences.get((int) head & mask) == head + 1) {
+        return;
+      }
+
+      Thread.yield();
+    }
+
+    consumer = Thread.currentThread();
+    sleeping = true;
+
+    try {
+      if (sequences.get((int) head & mask) != head + 1) {
+        LockSupport.parkNanos(this, nanos);
+      }
+    } finally {
+      sleeping = false;
+    }
+  }
+
+  /**
+   * The number of entries in the ring, must only be called by the consumer.
+   */
+  int size() {
+    return (int) (tail.get() - head);
+  }
+
+  int capacity() {
+    return entries.length;
+  }
+}
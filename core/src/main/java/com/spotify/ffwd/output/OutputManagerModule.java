@@ -22,10 +22,12 @@ package com.spotify.ffwd.output;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.inject.Key;
 import com.google.inject.Module;
 import com.google.inject.PrivateModule;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.google.inject.Singleton;
@@ -35,9 +37,12 @@ import com.google.inject.name.Names;
 import com.spotify.ffwd.AgentConfig;
 import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.filter.TrueFilter;
+import com.spotify.ffwd.module.MemoryLimits;
+import com.spotify.ffwd.module.Queueing;
 import com.spotify.ffwd.statistics.CoreStatistics;
 import com.spotify.ffwd.statistics.HighFrequencyDetectorStatistics;
 import com.spotify.ffwd.statistics.OutputManagerStatistics;
+import eu.toolchain.async.AsyncFramework;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -60,18 +65,29 @@ public class OutputManagerModule {
   private static final Long DEFAULT_HIGH_FREQUENCY_DATA_RECYCLE_MS = 3_600_000L;
   // Limit amount of input metrics to serialize
   public static final Integer DEFAULT_MAX_INPUT_METRICS = 500_000;
+  // Metrics are processed on the input threads unless handoff threads are configured
+  private static final Integer DEFAULT_HANDOFF_THREADS = 0;
+  private static final Integer DEFAULT_HANDOFF_RING_SIZE = 8192;
+  // Inputs keep reading however saturated the outputs are unless backpressure is configured
+  private static final Double DEFAULT_BACKPRESSURE = 0.0;
 
   private final List<OutputPlugin> plugins;
   private final Filter filter;
   @Nullable private final Integer rateLimit;
   @Nullable private final Long cardinalityLimit;
   @Nullable private final Long hyperLogLogPlusSwapPeriodMS;
+  @Nullable private final Long cardinalityKeyLimit;
+  private final Map<String, Long> cardinalityTagLimits;
   private final boolean dropHighFrequencyMetric;
   private final int minFrequencyMillisAllowed;
   private final int minNumberOfTriggers;
   private final long highFrequencyDataRecycleMS;
   @Nullable private final String dynamicTagsFile;
   @Nullable private final int maxInputMetrics;
+  private final int handoffThreads;
+  private final int handoffRingSize;
+  private final double backpressure;
+  private final Optional<MemoryLimits> memory;
 
   @JsonCreator
   public OutputManagerModule(
@@ -80,17 +96,26 @@ public class OutputManagerModule {
       @JsonProperty("ratelimit") @Nullable Integer rateLimit,
       @JsonProperty("cardinalitylimit") @Nullable Long cardinalityLimit,
       @JsonProperty("cardinalityttl") @Nullable Long hyperLogLogPlusSwapPeriodMS,
+      @JsonProperty("cardinalitykeylimit") @Nullable Long cardinalityKeyLimit,
+      @JsonProperty("cardinalitytaglimits") @Nullable Map<String, Long> cardinalityTagLimits,
       @JsonProperty("dropHighFrequencyMetric") @Nullable Boolean dropHighFrequencyMetric,
       @JsonProperty("minFrequencyMillisAllowed") @Nullable Integer minFrequencyMillisAllowed,
       @JsonProperty("minNumberOfTriggers") @Nullable Integer minNumberOfTriggers,
       @JsonProperty("highFrequencyDataRecycleMS") @Nullable Long highFrequencyDataRecycleMS,
       @JsonProperty("dynamicTagsFile") @Nullable String dynamicTagsFile,
-      @JsonProperty("maxInputMetrics") @Nullable Integer maxInputMetrics) {
+      @JsonProperty("maxInputMetrics") @Nullable Integer maxInputMetrics,
+      @JsonProperty("handoffThreads") @Nullable Integer handoffThreads,
+      @JsonProperty("handoffRingSize") @Nullable Integer handoffRingSize,
+      @JsonProperty("backpressure") @Nullable Double backpressure,
+      @JsonProperty("memory") @Nullable MemoryLimits memory) {
     this.plugins = Optional.ofNullable(plugins).orElse(DEFAULT_PLUGINS);
     this.filter = Optional.ofNullable(filter).orElseGet(TrueFilter::new);
     this.rateLimit = rateLimit;
     this.cardinalityLimit = cardinalityLimit;
     this.hyperLogLogPlusSwapPeriodMS = hyperLogLogPlusSwapPeriodMS;
+    this.cardinalityKeyLimit = cardinalityKeyLimit;
+    this.cardinalityTagLimits =
+        Optional.ofNullable(cardinalityTagLimits).orElseGet(ImmutableMap::of);
     this.dropHighFrequencyMetric =
         Optional.ofNullable(dropHighFrequencyMetric).orElse(DEFAULT_DROP_HIGH_FREQUENCY);
     this.minFrequencyMillisAllowed =
@@ -102,6 +127,10 @@ public class OutputManagerModule {
             .orElse(DEFAULT_HIGH_FREQUENCY_DATA_RECYCLE_MS);
     this.dynamicTagsFile = dynamicTagsFile;
     this.maxInputMetrics = Optional.ofNullable(maxInputMetrics).orElse(DEFAULT_MAX_INPUT_METRICS);
+    this.handoffThreads = Optional.ofNullable(handoffThreads).orElse(DEFAULT_HANDOFF_THREADS);
+    this.handoffRingSize = Optional.ofNullable(handoffRingSize).orElse(DEFAULT_HANDOFF_RING_SIZE);
+    this.backpressure = Optional.ofNullable(backpressure).orElse(DEFAULT_BACKPRESSURE);
+    this.memory = Optional.ofNullable(memory);
   }
 
   //CHECKSTYLE:OFF:MethodLength
@@ -219,6 +248,21 @@ public class OutputManagerModule {
         return hyperLogLogPlusSwapPeriodMS;
       }
 
+      @Provides
+      @Singleton
+      @Named("cardinalityKeyLimit")
+      @Nullable
+      public Long cardinalityKeyLimit() {
+        return cardinalityKeyLimit;
+      }
+
+      @Provides
+      @Singleton
+      @Named("cardinalityTagLimits")
+      public Map<String, Long> cardinalityTagLimits() {
+        return cardinalityTagLimits;
+      }
+
       @Provides
       @Singleton
       @Named("dropHighFrequencyMetric")
@@ -259,10 +303,50 @@ public class OutputManagerModule {
       @Named("maxInputMetrics")
       public int maxInputMetrics() { return maxInputMetrics; }
 
+      @Provides
+      @Singleton
+      @Named("handoffThreads")
+      public int handoffThreads() {
+        return handoffThreads;
+      }
+
+      @Provides
+      @Singleton
+      @Named("handoffRingSize")
+      public int handoffRingSize() {
+        return handoffRingSize;
+      }
+
+      @Provides
+      @Singleton
+      public OutputPressure outputPressure(CoreStatistics statistics) {
+        if (backpressure <= 0) {
+          return OutputPressure.disabled();
+        }
+
+        return new OutputPressure(backpressure, statistics.newBackpressure());
+      }
+
       @Override
       protected void configure() {
-        bind(OutputManager.class).to(CoreOutputManager.class).in(Scopes.SINGLETON);
+        if (handoffThreads > 0) {
+          bind(CoreOutputManager.class).in(Scopes.SINGLETON);
+          bind(OutputManager.class).to(HandoffOutputManager.class).in(Scopes.SINGLETON);
+        } else {
+          bind(OutputManager.class).to(CoreOutputManager.class).in(Scopes.SINGLETON);
+        }
+
         expose(OutputManager.class);
+        expose(OutputPressure.class);
+
+        // buffers are only limited by the heap unless a memory budget is configured
+        memory.ifPresent(limits -> {
+          final Provider<CoreStatistics> statistics = getProvider(CoreStatistics.class);
+
+          bind(MemoryBudget.class).toProvider((Provider<MemoryBudget>) () ->
+              new CoreMemoryBudget(limits, statistics.get().newMemoryBudget()))
+              .in(Scopes.SINGLETON);
+        });
 
         bindPlugins();
       }
@@ -277,7 +361,23 @@ public class OutputManagerModule {
           final String id = String.valueOf(++i);
           final Key<PluginSink> k = Key.get(PluginSink.class, Names.named(id));
           install(p.module(k, id));
-          sinks.addBinding().to(k);
+
+          if (!p.getQueue().isPresent()) {
+            sinks.addBinding().to(k);
+            continue;
+          }
+
+          final Queueing queueing = p.getQueue().get();
+          final Key<PluginSink> queued = Key.get(PluginSink.class, Names.named(id + "-queued"));
+          final Provider<PluginSink> sink = getProvider(k);
+          final Provider<AsyncFramework> async = getProvider(AsyncFramework.class);
+          final Provider<CoreStatistics> statistics = getProvider(CoreStatistics.class);
+          final Provider<OutputPressure> pressure = getProvider(OutputPressure.class);
+
+          bind(queued).toProvider((Provider<PluginSink>) () ->
+              new QueueingPluginSink(id, queueing, async.get(), sink.get(),
+                  statistics.get().newQueue(id), pressure.get())).in(Scopes.SINGLETON);
+          sinks.addBinding().to(queued);
         }
       }
     };
@@ -336,6 +436,6 @@ public class OutputManagerModule {
 
   public static Supplier<OutputManagerModule> supplyDefault() {
     return () -> new OutputManagerModule(null, null, null, null, null, null, null, null, null,
-        null, null);
+        null, null, null, null, null, null, null, null);
   }
 }
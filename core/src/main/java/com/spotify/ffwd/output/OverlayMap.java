@@ -0,0 +1,164 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only view of two maps, where the entries of the overlay take precedence over the
+ * entries of the base with the same keys.
+ * <p>
+ * Neither map is copied and the entries of the underlying maps are handed out as they are, so
+ * neither map must be modified, directly or through the view, while the view is in use.
+ */
+final class OverlayMap<K, V> extends AbstractMap<K, V> {
+
+  private final Map<K, V> base;
+  private final Map<K, V> overlay;
+  private final int size;
+
+  private Set<Entry<K, V>> entrySet;
+
+  private OverlayMap(final Map<K, V> base, final Map<K, V> overlay) {
+    this.base = base;
+    this.overlay = overlay;
+
+    int size = overlay.size();
+
+    for (final K key : base.keySet()) {
+      if (!overlay.containsKey(key)) {
+        size++;
+      }
+    }
+
+    this.size = size;
+  }
+
+  /**
+   * Build a view of the given maps, or return one of them as is if the other one is empty.
+   */
+  static <K, V> Map<K, V> of(final Map<K, V> base, final Map<K, V> overlay) {
+    if (overlay.isEmpty()) {
+      return base;
+    }
+
+    if (base.isEmpty()) {
+      return overlay;
+    }
+
+    return new OverlayMap<>(base, overlay);
+  }
+
+  @Override
+  public V get(final Object key) {
+    final V value = overlay.get(key);
+
+    if (value != null || overlay.containsKey(key)) {
+      return value;
+    }
+
+    return base.get(key);
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return overlay.containsKey(key) || base.containsKey(key);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+
+    return entrySet;
+  }
+
+  private class EntrySet extends AbstractSet<Entry<K, V>> {
+    @Override
+    public Iterator<Entry<K, V>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  /**
+   * Iterates over the overlay, then over the entries of the base which are not shadowed by it.
+   */
+  private class EntryIterator implements Iterator<Entry<K, V>> {
+    private final Iterator<Entry<K, V>> overlayEntries = overlay.entrySet().iterator();
+    private final Iterator<Entry<K, V>> baseEntries = base.entrySet().iterator();
+    private Entry<K, V> next;
+
+    @Override
+    public boolean hasNext() {
+      if (next != null) {
+        return true;
+      }
+
+      if (overlayEntries.hasNext()) {
+        next = overlayEntries.next();
+        return true;
+      }
+
+      while (baseEntries.hasNext()) {
+        final Entry<K, V> e = baseEntries.next();
+
+        if (!overlay.containsKey(e.getKey())) {
+          next = e;
+          return true;
+        }
+      }
+
+      return false;
+    }
+
+    @Override
+    public Entry<K, V> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      final Entry<K, V> e = next;
+      next = null;
+      return e;
+    }
+  }
+}
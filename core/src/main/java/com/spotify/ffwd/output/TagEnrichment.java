@@ -0,0 +1,214 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import com.google.common.collect.ImmutableMap;
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the global tags and resource of the agent into metrics and batches.
+ * <p>
+ * Everything which only depends on the configuration is computed once, when the tags are loaded
+ * or refreshed. Merging a metric is then an {@link OverlayMap} of its own tags and resource over
+ * the precomputed ones. Only metrics carrying a tag that is moved to the resource (see
+ * tagsToResource) have their tags and resource copied.
+ * <p>
+ * Global tags and resource with null values are ignored.
+ */
+class TagEnrichment {
+
+  private static final String HOST = "host";
+
+  private final Map<String, String> tagsToResource;
+
+  /**
+   * Global tags, including the host tag, for single metrics.
+   */
+  private final Layer metric;
+
+  /**
+   * Global resource only, for single metrics whose keys skip the global tags.
+   */
+  private final Layer skipTags;
+
+  /**
+   * Global tags, without the host tag, for the common tags of batches.
+   */
+  private final Layer batch;
+
+  /**
+   * Nothing, the points of a batch only have their tags moved to the resource.
+   */
+  private final Layer point;
+
+  /**
+   * @param tags Global tags.
+   * @param resource Global resource.
+   * @param tagsToResource Tags to move to the resource, and the resource they are moved to.
+   * @param host Host tag to add to single metrics if they do not have one, may be {@code null}.
+   */
+  TagEnrichment(
+      final Map<String, String> tags, final Map<String, String> resource,
+      final Map<String, String> tagsToResource, final String host
+  ) {
+    this.tagsToResource = ImmutableMap.copyOf(tagsToResource);
+
+    final Map<String, String> tagsWithHost = new HashMap<>(tags);
+
+    if (host != null) {
+      tagsWithHost.putIfAbsent(HOST, host);
+    }
+
+    this.metric = new Layer(tagsWithHost, resource);
+    this.skipTags = new Layer(ImmutableMap.of(), resource);
+    this.batch = new Layer(tags, resource);
+    this.point = new Layer(ImmutableMap.of(), ImmutableMap.of());
+  }
+
+  /**
+   * Merge the global tags and resource into a single metric.
+   *
+   * @param skipTags If the global tags should be skipped for this metric.
+   */
+  Metric metric(final Metric m, final long time, final boolean skipTags) {
+    final Layer layer = skipTags ? this.skipTags : this.metric;
+    final SimpleImmutableEntry<Map<String, String>, Map<String, String>> merged =
+        layer.merge(m.getTags(), m.getResource());
+    return new Metric(m.getKey(), m.getValue(), time, merged.getKey(), merged.getValue());
+  }
+
+  Batch batch(final Batch b) {
+    final SimpleImmutableEntry<Map<String, String>, Map<String, String>> common =
+        batch.merge(b.getCommonTags(), b.getCommonResource());
+    return new Batch(common.getKey(), common.getValue(), points(b.getPoints()));
+  }
+
+  private List<Metric> points(final List<Metric> points) {
+    if (tagsToResource.isEmpty()) {
+      return points;
+    }
+
+    final List<Metric> result = new ArrayList<>(points.size());
+
+    for (final Metric p : points) {
+      if (!movesTags(p.getTags())) {
+        result.add(p);
+        continue;
+      }
+
+      final SimpleImmutableEntry<Map<String, String>, Map<String, String>> merged =
+          point.merge(p.getTags(), p.getResource());
+      result.add(new Metric(p.getKey(), p.getValue(), p.getTimestamp(), merged.getKey(),
+          merged.getValue()));
+    }
+
+    return result;
+  }
+
+  private boolean movesTags(final Map<String, String> tags) {
+    for (final String fromTag : tagsToResource.keySet()) {
+      if (tags.containsKey(fromTag)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Move the tags in tagsToResource to the resource. If there are conflicts, the existing
+   * resource identifiers take precedence over tags.
+   */
+  private void moveTagsToResource(
+      final Map<String, String> tags, final Map<String, String> resource
+  ) {
+    tagsToResource.forEach((fromTag, toResource) -> {
+      final String tag = tags.remove(fromTag);
+
+      if (tag != null) {
+        resource.putIfAbsent(toResource, tag);
+      }
+    });
+  }
+
+  private static Map<String, String> immutable(final Map<String, String> map) {
+    final ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+
+    map.forEach((k, v) -> {
+      if (k != null && v != null) {
+        builder.put(k, v);
+      }
+    });
+
+    return builder.build();
+  }
+
+  /**
+   * Global tags and resource, and what is left of them after moving tags to the resource.
+   */
+  private class Layer {
+    private final Map<String, String> tags;
+    private final Map<String, String> resource;
+    private final Map<String, String> strippedTags;
+    private final Map<String, String> movedResource;
+
+    Layer(final Map<String, String> tags, final Map<String, String> resource) {
+      this.tags = immutable(tags);
+      this.resource = immutable(resource);
+
+      final Map<String, String> strippedTags = new HashMap<>(this.tags);
+      final Map<String, String> movedResource = new HashMap<>(this.resource);
+      moveTagsToResource(strippedTags, movedResource);
+
+      this.strippedTags = immutable(strippedTags);
+      this.movedResource = immutable(movedResource);
+    }
+
+    /**
+     * Merge the given tags and resource over this layer, they take precedence over it.
+     */
+    SimpleImmutableEntry<Map<String, String>, Map<String, String>> merge(
+        final Map<String, String> tags, final Map<String, String> resource
+    ) {
+      // Tags moved from the global tags have already been moved, and since none of the given
+      // tags are moved the given resource is merged over the result of that.
+      if (!movesTags(tags)) {
+        return new SimpleImmutableEntry<>(OverlayMap.of(strippedTags, tags),
+            OverlayMap.of(movedResource, resource));
+      }
+
+      final Map<String, String> mergedTags = new HashMap<>(this.tags);
+      mergedTags.putAll(tags);
+
+      final Map<String, String> mergedResource = new HashMap<>(this.resource);
+      mergedResource.putAll(resource);
+
+      moveTagsToResource(mergedTags, mergedResource);
+      return new SimpleImmutableEntry<>(mergedTags, mergedResource);
+    }
+  }
+}
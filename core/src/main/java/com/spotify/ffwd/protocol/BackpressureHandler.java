@@ -0,0 +1,88 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.protocol;
+
+import com.spotify.ffwd.output.OutputPressure;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+/**
+ * Stops reading from the channels of an input while the outputs are saturated.
+ * <p>
+ * Stream channels, which includes HTTP keep-alive connections, have auto read turned off. Their
+ * socket buffers fill up and the senders are slowed down without anything being lost. Datagram
+ * senders can not be slowed down, datagrams are shed and counted instead.
+ */
+@ChannelHandler.Sharable
+class BackpressureHandler extends ChannelInboundHandlerAdapter {
+
+  private final OutputPressure pressure;
+  private final boolean datagrams;
+  private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+  BackpressureHandler(final OutputPressure pressure, final boolean datagrams) {
+    this.pressure = pressure;
+    this.datagrams = datagrams;
+
+    if (!datagrams) {
+      pressure.addListener(this::setPaused);
+    }
+  }
+
+  @Override
+  public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+    if (!datagrams) {
+      synchronized (this) {
+        channels.add(ctx.channel());
+        ctx.channel().config().setAutoRead(!pressure.isPaused());
+      }
+    }
+
+    super.channelActive(ctx);
+  }
+
+  @Override
+  public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+    if (datagrams && pressure.isPaused()) {
+      ReferenceCountUtil.release(msg);
+      pressure.shed(1);
+      return;
+    }
+
+    super.channelRead(ctx, msg);
+  }
+
+  /**
+   * Pause or resume reading from all open stream channels, closed channels leave the group by
+   * themselves.
+   */
+  private synchronized void setPaused(final boolean paused) {
+    for (final Channel channel : channels) {
+      channel.config().setAutoRead(!paused);
+    }
+  }
+}
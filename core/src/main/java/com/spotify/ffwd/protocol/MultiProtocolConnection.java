@@ -0,0 +1,81 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.protocol;
+
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A connection made up of several connections to, or bindings of, the same address.
+ * <p>
+ * Messages are sent through the first of the connections.
+ */
+public class MultiProtocolConnection implements ProtocolConnection {
+
+  private final AsyncFramework async;
+  private final List<ProtocolConnection> connections;
+
+  public MultiProtocolConnection(
+      final AsyncFramework async, final Collection<ProtocolConnection> connections
+  ) {
+    if (connections.isEmpty()) {
+      throw new IllegalArgumentException("connections must not be empty");
+    }
+
+    this.async = async;
+    this.connections = new ArrayList<>(connections);
+  }
+
+  @Override
+  public void send(final Object message) {
+    connections.get(0).send(message);
+  }
+
+  @Override
+  public AsyncFuture<Void> stop() {
+    final List<AsyncFuture<Void>> futures = new ArrayList<>();
+
+    for (final ProtocolConnection c : connections) {
+      futures.add(c.stop());
+    }
+
+    return async.collectAndDiscard(futures);
+  }
+
+  @Override
+  public AsyncFuture<Void> sendAll(final Collection<? extends Object> batch) {
+    return connections.get(0).sendAll(batch);
+  }
+
+  @Override
+  public boolean isConnected() {
+    for (final ProtocolConnection c : connections) {
+      if (!c.isConnected()) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+}
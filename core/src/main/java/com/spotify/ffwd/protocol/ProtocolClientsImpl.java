@@ -28,7 +28,6 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.util.Timer;
 import org.slf4j.Logger;
 
@@ -44,6 +43,9 @@ public class ProtocolClientsImpl implements ProtocolClients {
   @Inject
   private Timer timer;
 
+  @Inject
+  private Transport transport;
+
   @Override
   public AsyncFuture<ProtocolConnection> connect(
       Logger log, Protocol protocol, ProtocolClient client, RetryPolicy policy
@@ -65,10 +67,18 @@ public class ProtocolClientsImpl implements ProtocolClients {
     final Bootstrap b = new Bootstrap();
 
     b.group(worker);
-    b.channel(NioSocketChannel.class);
+    b.channel(transport.socketChannel());
     b.handler(client.initializer());
 
-    b.option(ChannelOption.SO_KEEPALIVE, true);
+    b.option(ChannelOption.SO_KEEPALIVE, protocol.isKeepAlive());
+
+    if (protocol.getReceiveBufferSize() != null) {
+      b.option(ChannelOption.SO_RCVBUF, protocol.getReceiveBufferSize());
+    }
+
+    if (protocol.getSendBufferSize() != null) {
+      b.option(ChannelOption.SO_SNDBUF, protocol.getSendBufferSize());
+    }
 
     final String host = protocol.getAddress().getHostString();
     final int port = protocol.getAddress().getPort();
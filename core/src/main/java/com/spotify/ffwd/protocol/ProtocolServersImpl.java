@@ -22,16 +22,23 @@ package com.spotify.ffwd.protocol;
 
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import com.spotify.ffwd.capture.TrafficCapture;
+import com.spotify.ffwd.output.OutputPressure;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.socket.nio.NioDatagramChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.util.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import org.slf4j.Logger;
 
 public class ProtocolServersImpl implements ProtocolServers {
@@ -50,6 +57,16 @@ public class ProtocolServersImpl implements ProtocolServers {
   @Inject
   private Timer timer;
 
+  @Inject
+  private Transport transport;
+
+  @Inject
+  @Named("capture")
+  private Optional<TrafficCapture> capture;
+
+  @Inject
+  private OutputPressure pressure;
+
   @Override
   public AsyncFuture<ProtocolConnection> bind(
       Logger log, Protocol protocol, ProtocolServer server, RetryPolicy policy
@@ -71,16 +88,20 @@ public class ProtocolServersImpl implements ProtocolServers {
     final ServerBootstrap b = new ServerBootstrap();
 
     b.group(boss, worker);
-    b.channel(NioServerSocketChannel.class);
-    b.childHandler(server.initializer());
+    b.channel(transport.serverChannel());
+    b.childHandler(initializer(log, protocol, server));
 
-    b.option(ChannelOption.SO_BACKLOG, 128);
+    b.option(ChannelOption.SO_BACKLOG, protocol.getBacklog());
 
     if (protocol.getReceiveBufferSize() != null) {
       b.childOption(ChannelOption.SO_RCVBUF, protocol.getReceiveBufferSize());
     }
 
-    b.childOption(ChannelOption.SO_KEEPALIVE, true);
+    if (protocol.getSendBufferSize() != null) {
+      b.childOption(ChannelOption.SO_SNDBUF, protocol.getSendBufferSize());
+    }
+
+    b.childOption(ChannelOption.SO_KEEPALIVE, protocol.isKeepAlive());
 
     final String host = protocol.getAddress().getHostString();
     final int port = protocol.getAddress().getPort();
@@ -107,29 +128,105 @@ public class ProtocolServersImpl implements ProtocolServers {
     final Bootstrap b = new Bootstrap();
 
     b.group(worker);
-    b.channel(NioDatagramChannel.class);
-    b.handler(server.initializer());
+    b.channel(transport.datagramChannel());
+    b.handler(initializer(log, protocol, server));
 
     if (protocol.getReceiveBufferSize() != null) {
       b.option(ChannelOption.SO_RCVBUF, protocol.getReceiveBufferSize());
     }
 
+    if (protocol.getSendBufferSize() != null) {
+      b.option(ChannelOption.SO_SNDBUF, protocol.getSendBufferSize());
+    }
+
+    int sockets = protocol.getSockets();
+
+    if (sockets > 1) {
+      if (transport.isEpoll()) {
+        // every socket gets its own slice of the datagrams from the kernel, and with that its
+        // own worker thread.
+        b.option(EpollChannelOption.SO_REUSEPORT, true);
+      } else {
+        log.warn("{}: {} sockets requested, but SO_REUSEPORT requires the native epoll "
+            + "transport, binding a single socket", protocol, sockets);
+        sockets = 1;
+      }
+    }
+
     final String host = protocol.getAddress().getHostString();
     final int port = protocol.getAddress().getPort();
 
-    final RetryingProtocolConnection connection =
-        new RetryingProtocolConnection(async, timer, log, policy, new ProtocolChannelSetup() {
-          @Override
-          public ChannelFuture setup() {
-            return b.bind(host, port);
-          }
+    final List<AsyncFuture<ProtocolConnection>> connections = new ArrayList<>();
 
-          @Override
-          public String toString() {
-            return String.format("bind udp://%s:%d", host, port);
-          }
-        });
+    for (int i = 0; i < sockets; i++) {
+      final int socket = i;
 
-    return connection.getInitialFuture();
+      final RetryingProtocolConnection connection =
+          new RetryingProtocolConnection(async, timer, log, policy, new ProtocolChannelSetup() {
+            @Override
+            public ChannelFuture setup() {
+              return b.bind(host, port);
+            }
+
+            @Override
+            public String toString() {
+              if (socket == 0) {
+                return String.format("bind udp://%s:%d", host, port);
+              }
+
+              return String.format("bind udp://%s:%d (socket #%d)", host, port, socket);
+            }
+          });
+
+      connections.add(connection.getInitialFuture());
+    }
+
+    if (connections.size() == 1) {
+      return connections.get(0);
+    }
+
+    return async
+        .collect(connections)
+        .directTransform(bound -> new MultiProtocolConnection(async, bound));
+  }
+
+  /**
+   * The initializer of the given server, preceded by a backpressure handler if backpressure is
+   * enabled, and a capture handler if traffic is captured.
+   */
+  private ChannelInitializer<Channel> initializer(
+      final Logger log, final Protocol protocol, final ProtocolServer server
+  ) {
+    final List<ChannelHandler> handlers = new ArrayList<>();
+
+    if (pressure.isEnabled()) {
+      handlers.add(new BackpressureHandler(pressure, protocol.getType() == ProtocolType.UDP));
+    }
+
+    if (capture.isPresent()) {
+      try {
+        handlers.add(capture.get().handler(protocol.getType(),
+            protocol.getAddress().getHostString(), protocol.getAddress().getPort(),
+            log.getName()));
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while declaring captured input", e);
+      }
+    }
+
+    if (handlers.isEmpty()) {
+      return server.initializer();
+    }
+
+    return new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(final Channel ch) {
+        for (final ChannelHandler handler : handlers) {
+          ch.pipeline().addLast(handler);
+        }
+
+        ch.pipeline().addLast(server.initializer());
+      }
+    };
   }
 }
@@ -0,0 +1,102 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.protocol;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import java.util.concurrent.ThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The netty transport of the agent.
+ * <p>
+ * Event loop groups and channels have to come from the same transport, so everything which
+ * binds or connects on the boss and worker groups has to use the channel types of this.
+ */
+@Slf4j
+public class Transport {
+
+  private final boolean epoll;
+
+  private Transport(final boolean epoll) {
+    this.epoll = epoll;
+  }
+
+  /**
+   * Select a transport.
+   * <p>
+   * NIO is the default, epoll is only used when {@code nativeTransport: true} is configured.
+   *
+   * @param nativeTransport Use the native epoll transport, if it is available.
+   */
+  public static Transport select(final boolean nativeTransport) {
+    if (!nativeTransport) {
+      return new Transport(false);
+    }
+
+    if (!Epoll.isAvailable()) {
+      log.info("Native epoll transport not available, using NIO: {}",
+          Epoll.unavailabilityCause().getMessage());
+      return new Transport(false);
+    }
+
+    log.info("Using native epoll transport");
+    return new Transport(true);
+  }
+
+  /**
+   * If this is the native epoll transport, which supports {@code SO_REUSEPORT}.
+   */
+  public boolean isEpoll() {
+    return epoll;
+  }
+
+  public EventLoopGroup eventLoopGroup(final int threads, final ThreadFactory factory) {
+    if (epoll) {
+      return new EpollEventLoopGroup(threads, factory);
+    }
+
+    return new NioEventLoopGroup(threads, factory);
+  }
+
+  public Class<? extends ServerChannel> serverChannel() {
+    return epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+  }
+
+  public Class<? extends SocketChannel> socketChannel() {
+    return epoll ? EpollSocketChannel.class : NioSocketChannel.class;
+  }
+
+  public Class<? extends DatagramChannel> datagramChannel() {
+    return epoll ? EpollDatagramChannel.class : NioDatagramChannel.class;
+  }
+}
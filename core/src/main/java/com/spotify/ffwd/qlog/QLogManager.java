@@ -41,6 +41,29 @@ public interface QLogManager {
 
   public void update(String id, long position);
 
+  /**
+   * Get the position of a consumer.
+   *
+   * @param id The id of the consumer.
+   * @return The last position updated for the consumer, or the head of the log if the consumer is
+   *     not known.
+   */
+  public long offset(String id);
+
+  /**
+   * Read entries from the log.
+   *
+   * @param position The position of the first entry to read.
+   * @return A reader positioned at the given entry, or at the end of the log if it has not been
+   *     written yet.
+   */
+  public QLogReader reader(long position);
+
+  /**
+   * Force all written entries to disk.
+   */
+  public void sync();
+
   public AsyncFuture<Void> start();
 
   public AsyncFuture<Void> stop();
@@ -20,59 +20,84 @@
 
 package com.spotify.ffwd.qlog;
 
-import com.google.common.collect.Lists;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import com.spotify.ffwd.module.SyncPolicy;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
-import java.io.DataInput;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import lombok.RequiredArgsConstructor;
-import lombok.ToString;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * A log of memory-mapped segment files.
+ * <p>
+ * Every segment is mapped in full when it is created, and entries are appended in place. The
+ * size of an entry is written after its content, so an entry which was not completely written
+ * reads as the end of the segment. Entries reach the disk according to the {@link SyncPolicy}, or
+ * when {@link #sync()} is called. With {@link SyncPolicy#INTERVAL}, a background thread forces
+ * written entries every interval, so that they reach the disk even if no more are written.
+ */
 @Slf4j
 public class QLogManagerImpl implements QLogManager {
 
   private static final Charset UTF8 = Charset.forName("UTF-8");
   private static final int MINIMUM_MAX_LOG_SIZE = 10000;
   private static final int DEFAULT_MAX_LOG_SIZE = 100000000;
+  private static final long DEFAULT_SYNC_INTERVAL = 1000;
   private static final String QLOG_FORMAT = "%016x";
+  private static final Pattern QLOG_NAME = Pattern.compile("[0-9a-f]{16}");
   private static final String INDEX = "index";
+  private static final String INDEX_TEMP = "index.tmp";
 
   // 'FFLG'
   private static final byte[] MAGIC = new byte[]{ 0x46, 0x46, 0x4c, 0x47 };
-  private static final int HEADER_BASE_SIZE = MAGIC.length + 8;
-  private static final int BUFFER_SIZE = 4096;
   private static final int CURRENT_VERSION = 0;
+  // magic, version and the offset of the segment.
+  private static final int HEADER_SIZE = MAGIC.length + 4 + 8;
+  // every entry is prefixed with its size.
+  private static final int ENTRY_HEADER_SIZE = 4;
 
   private final Path path;
   private final AsyncFramework async;
   private final int maxLogSize;
+  private final SyncPolicy syncPolicy;
+  private final long syncIntervalNanos;
 
   private final Object lock = new Object();
   private volatile boolean setup = false;
 
-  // buffer to the tail log.
-  private List<Header> headers;
+  // all access has to be synchronized on lock.
+  private List<Segment> segments;
   private Map<String, Long> offsets;
   private long position;
-  private ByteBuffer tail;
+  private Segment tail;
+  private long lastSync;
+  private boolean dirty;
+  private ScheduledExecutorService syncer;
 
   @Inject
   public QLogManagerImpl(@Named("path") final Path path, final AsyncFramework async) {
@@ -80,6 +105,19 @@ public class QLogManagerImpl implements QLogManager {
   }
 
   public QLogManagerImpl(final Path path, final AsyncFramework async, int maxLogSize) {
+    this(path, async, maxLogSize, SyncPolicy.INTERVAL, DEFAULT_SYNC_INTERVAL);
+  }
+
+  /**
+   * @param maxLogSize Size of every segment, in bytes.
+   * @param syncPolicy When written entries are forced to disk.
+   * @param syncInterval Milliseconds between forcing entries to disk, for {@link
+   *     SyncPolicy#INTERVAL}.
+   */
+  public QLogManagerImpl(
+      final Path path, final AsyncFramework async, int maxLogSize, final SyncPolicy syncPolicy,
+      final long syncInterval
+  ) {
     if (maxLogSize < MINIMUM_MAX_LOG_SIZE) {
       throw new IllegalArgumentException("maxLogSize");
     }
@@ -87,10 +125,14 @@ public class QLogManagerImpl implements QLogManager {
     this.path = path;
     this.async = async;
     this.maxLogSize = maxLogSize;
+    this.syncPolicy = syncPolicy;
+    this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncInterval);
   }
 
   /**
    * Trim the head of the on-disk log (if necessary).
+   * <p>
+   * Only whole segments are removed, the segment containing the given position is kept.
    *
    * @param position The position to trim to.
    */
@@ -101,30 +143,13 @@ public class QLogManagerImpl implements QLogManager {
     }
 
     synchronized (lock) {
-      final Iterator<Header> iter = headers.iterator();
-
-      final List<Header> unlink = Lists.newArrayList();
-
-      Header current = iter.next();
-
-      while (iter.hasNext()) {
-        final Header next = iter.next();
-
-        if (next.offset() >= position) {
-          break;
-        }
-
-        unlink.add(current);
-        current = next;
-      }
-
-      for (final Header m : unlink) {
-        headers.remove(m);
+      while (segments.size() > 1 && segments.get(1).offset <= position) {
+        final Segment m = segments.remove(0);
 
         log.info("Unlinking {}", m);
 
         try {
-          Files.delete(m.path());
+          Files.delete(m.path);
         } catch (IOException e) {
           log.error("Failed to unlink {}", m, e);
         }
@@ -143,6 +168,11 @@ public class QLogManagerImpl implements QLogManager {
     }
   }
 
+  /**
+   * Update the position of a consumer.
+   * <p>
+   * The index is rewritten on every update, so that positions survive a crash.
+   */
   @Override
   public void update(String id, long position) {
     if (!setup) {
@@ -151,7 +181,73 @@ public class QLogManagerImpl implements QLogManager {
 
     synchronized (lock) {
       offsets.put(id, position);
+
+      try {
+        writeIndex();
+      } catch (IOException e) {
+        log.error("Failed to write index", e);
+      }
+    }
+  }
+
+  @Override
+  public long offset(final String id) {
+    if (!setup) {
+      throw new IllegalStateException("not setup");
+    }
+
+    synchronized (lock) {
+      final Long offset = offsets.get(id);
+
+      if (offset != null) {
+        return offset;
+      }
+
+      return segments.get(0).offset;
+    }
+  }
+
+  /**
+   * Create a reader positioned at the given entry.
+   * <p>
+   * Entries before it in its segment are skipped one at a time, the lock is only held for each
+   * entry so that writers are not blocked while skipping. Consumers should keep the reader, rather
+   * than creating a new one for every read.
+   */
+  @Override
+  public QLogReader reader(final long position) {
+    if (!setup) {
+      throw new IllegalStateException("not setup");
+    }
+
+    final Reader reader;
+
+    synchronized (lock) {
+      if (position < segments.get(0).offset) {
+        throw new IllegalArgumentException("position has been trimmed: " + position);
+      }
+
+      Segment start = segments.get(0);
+
+      for (final Segment s : segments) {
+        if (s.offset > position) {
+          break;
+        }
+
+        start = s;
+      }
+
+      reader = new Reader(start);
     }
+
+    // skip entries up to the requested position.
+    while (reader.position < position) {
+      if (reader.next() == null) {
+        break;
+      }
+    }
+
+    return reader;
   }
 
   /**
@@ -179,12 +275,44 @@ public class QLogManagerImpl implements QLogManager {
       throw new IllegalStateException("not setup");
     }
 
+    final int size = input.remaining();
+
+    if (size <= 0) {
+      throw new IllegalArgumentException("empty entry");
+    }
+
     synchronized (lock) {
-      writeEntry(position++, input.asReadOnlyBuffer());
+      if (!tail.fits(size)) {
+        roll();
+
+        if (!tail.fits(size)) {
+          throw new IOException("entry too large");
+        }
+      }
+
+      tail.append(input.asReadOnlyBuffer());
+      position++;
+      dirty = true;
+
+      if (isSyncDue()) {
+        sync0();
+      }
+
       return position;
     }
   }
 
+  @Override
+  public void sync() {
+    if (!setup) {
+      throw new IllegalStateException("not setup");
+    }
+
+    synchronized (lock) {
+      sync0();
+    }
+  }
+
   @Override
   public AsyncFuture<Void> start() {
     if (setup) {
@@ -205,6 +333,10 @@ public class QLogManagerImpl implements QLogManager {
 
           start0();
           setup = true;
+
+          if (syncPolicy == SyncPolicy.INTERVAL && syncIntervalNanos > 0) {
+            startSyncer();
+          }
         }
 
         return null;
@@ -226,6 +358,11 @@ public class QLogManagerImpl implements QLogManager {
             return null;
           }
 
+          if (syncer != null) {
+            syncer.shutdown();
+            syncer = null;
+          }
+
           stop0();
           setup = false;
         }
@@ -245,348 +382,381 @@ public class QLogManagerImpl implements QLogManager {
     return offset;
   }
 
-  private void writeEntry(final long position, final ByteBuffer input) throws IOException {
-    final Header header = tail();
-
-    if (header == null) {
-      throw new IllegalStateException("header");
+  private boolean isSyncDue() {
+    switch (syncPolicy) {
+      case ALWAYS:
+        return true;
+      case INTERVAL:
+        return System.nanoTime() - lastSync >= syncIntervalNanos;
+      default:
+        return false;
     }
+  }
 
-    final Header writeTo;
-
-    // expand the log with another on-disk entry.
-    if (tail.position() + input.remaining() > tail.capacity()) {
-      flush(header);
-      tail.rewind();
-
-      writeTo = appendHeader(position);
-
-      if (tail.position() + input.remaining() > tail.capacity()) {
-        throw new IOException("entry too large");
+  /**
+   * Force written entries every sync interval, on a thread of its own.
+   */
+  private void startSyncer() {
+    syncer = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("ffwd-qlog-sync-%d").setDaemon(true).build());
+
+    syncer.scheduleWithFixedDelay(() -> {
+      synchronized (lock) {
+        if (setup) {
+          sync0();
+        }
       }
-    } else {
-      writeTo = header;
-    }
-
-    writeTo.writeEntry(tail, input);
+    }, syncIntervalNanos, syncIntervalNanos, TimeUnit.NANOSECONDS);
   }
 
-  private void stop0() throws IOException {
-    final Header header = tail();
-
-    if (header == null) {
-      throw new IllegalStateException("header");
+  /**
+   * If entries have been written since they were last forced to disk.
+   */
+  @VisibleForTesting
+  boolean isDirty() {
+    synchronized (lock) {
+      return dirty;
     }
-
-    flushIndex();
-    flush(header);
   }
 
-  private Map<String, Long> readIndex() throws IOException {
-    final Map<String, Long> offsets = new HashMap<>();
-
-    final Path index = this.path.resolve(INDEX);
-
-    if (!Files.isReadable(index)) {
-      return offsets;
+  private void sync0() {
+    if (dirty) {
+      tail.buffer.force();
+      dirty = false;
     }
 
-    final ByteBuffer reader = ByteBuffer.allocate(12);
-
-    try (final InputStream input = Files.newInputStream(index)) {
-      while (true) {
-        reader.rewind();
-
-        final int read = input.read(reader.array(), 0, 12);
-
-        if (read < 12) {
-          break;
-        }
+    lastSync = System.nanoTime();
+  }
 
-        final int length = reader.getInt();
-        final long offset = reader.getLong();
-        final byte[] idBytes = new byte[length];
-        input.read(idBytes);
-        final String id = new String(idBytes, UTF8);
-        offsets.put(id, offset);
-      }
+  /**
+   * Continue writing in a new segment.
+   */
+  private void roll() throws IOException {
+    if (syncPolicy != SyncPolicy.NONE) {
+      sync0();
     }
 
-    return offsets;
+    tail = createSegment(position);
+    segments.add(tail);
   }
 
-  private void flushIndex() throws IOException {
-    final Path index = this.path.resolve(INDEX);
+  private void stop0() throws IOException {
+    tail.buffer.force();
+    dirty = false;
+    writeIndex();
+  }
 
-    final ByteBuffer writer = ByteBuffer.allocate(12);
+  private void start0() throws IOException {
+    final List<Segment> segments = readSegments();
 
-    try (final OutputStream output = Files.newOutputStream(index)) {
-      for (final Map.Entry<String, Long> e : offsets.entrySet()) {
-        writer.rewind();
+    this.offsets = readIndex();
+    this.lastSync = System.nanoTime();
 
-        final byte[] idBytes = e.getKey().getBytes(UTF8);
-        writer.putInt(idBytes.length);
-        writer.putLong(e.getValue());
-        writer.flip();
-        output.write(writer.array(), 0, writer.remaining());
-        output.write(idBytes);
-      }
+    // initializing
+    if (segments.isEmpty()) {
+      log.info("initializing {}", path);
+
+      this.segments = segments;
+      this.position = 0;
+      this.tail = createSegment(0);
+      segments.add(tail);
+      return;
     }
-  }
 
-  private void flush(final Header header) throws IOException {
-    final ByteBuffer source = tail.asReadOnlyBuffer();
-    source.flip();
+    final Segment last = segments.remove(segments.size() - 1);
+    final Segment tail = openTail(last.path, last.offset);
 
-    log.info("Saving: {}", header.path());
+    final ByteBuffer source = tail.reader();
+    long count = 0;
 
-    final byte[] buffer = new byte[BUFFER_SIZE];
+    while (readEntry(source) != null) {
+      count++;
+    }
 
-    final ByteBuffer segment = ByteBuffer.allocate(12);
+    tail.buffer.position(source.position());
+    segments.add(tail);
 
-    // copy tail buffer into file.
-    try (final OutputStream output = Files.newOutputStream(header.path())) {
-      while (source.remaining() > 0) {
-        int size = Math.min(BUFFER_SIZE, source.remaining());
-        source.get(buffer, 0, size);
-        output.write(buffer, 0, size);
-      }
-    }
+    this.segments = segments;
+    this.position = tail.offset + count;
+    this.tail = tail;
   }
 
-  private Header tail() {
-    if (headers.isEmpty()) {
-      return null;
-    }
+  private Segment createSegment(final long offset) throws IOException {
+    final Path path = this.path.resolve(String.format(QLOG_FORMAT, offset)).toAbsolutePath();
 
-    return headers.get(headers.size() - 1);
-  }
+    final MappedByteBuffer buffer;
 
-  private void start0() throws IOException {
-    final List<Header> headers = readAllHeaders();
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, maxLogSize);
+    }
 
-    this.offsets = readIndex();
+    buffer.put(MAGIC);
+    buffer.putInt(CURRENT_VERSION);
+    buffer.putLong(offset);
 
-    // initializing
-    if (headers.isEmpty()) {
-      log.info("initializing {}", path);
+    return new Segment(path, offset, buffer);
+  }
 
-      this.tail = ByteBuffer.allocate(maxLogSize);
-      this.position = 0;
-      this.headers = headers;
+  /**
+   * Map the last segment for writing, growing it to the maximum log size.
+   */
+  private Segment openTail(final Path path, final long offset) throws IOException {
+    final long logSize = Files.size(path);
 
-      appendHeader(0);
-      return;
+    if (logSize > Integer.MAX_VALUE) {
+      throw new IllegalStateException("file too large: " + path);
     }
 
-    final Header header = headers.get(headers.size() - 1);
-
-    final ByteBuffer tail = readPath(header.path());
-    final ByteBuffer source = tail.asReadOnlyBuffer();
+    final int actual = Math.max((int) logSize, maxLogSize);
 
-    source.flip();
+    if (actual > maxLogSize) {
+      log.warn("grew max to {} since tail file larger than maximum {}", actual, maxLogSize);
+    }
 
-    final long position = countEntries(header, source);
+    final MappedByteBuffer buffer;
 
-    tail.position(source.position());
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, actual);
+    }
 
-    this.tail = tail;
-    this.position = header.offset() + position;
-    this.headers = headers;
+    buffer.position(HEADER_SIZE);
+    return new Segment(path, offset, buffer);
   }
 
-  private List<Header> readAllHeaders() throws IOException {
-    final List<Header> headers = Lists.newLinkedList();
+  private List<Segment> readSegments() throws IOException {
+    final List<Segment> segments = new ArrayList<>();
 
     try (final DirectoryStream<Path> files = Files.newDirectoryStream(path)) {
       for (final Path f : files) {
-        final String name = f.getFileName().toString();
+        if (!QLOG_NAME.matcher(f.getFileName().toString()).matches()) {
+          continue;
+        }
+
         final Path abs = f.toAbsolutePath();
 
         log.info("Loading metadata from: {}", abs);
 
-        try (final InputStream input = Files.newInputStream(abs)) {
-          headers.add(readHeader(name, abs, input));
+        try {
+          segments.add(readSegment(abs));
         } catch (Exception e) {
           log.error("Failed to read log file: {}", abs, e);
-          continue;
         }
       }
     }
 
-    Collections.sort(headers);
-    return headers;
+    Collections.sort(segments);
+    return segments;
   }
 
-  private long countEntries(final Header header, final ByteBuffer source) {
-    long offset = 0;
-
-    // skip header
-    source.position(HEADER_BASE_SIZE + header.size());
-
-    while (source.remaining() > 0) {
-      // break on corrupt entry.
-      if (header.read(source) == null) {
-        break;
-      }
+  private Segment readSegment(final Path path) throws IOException {
+    final MappedByteBuffer buffer;
 
-      offset += 1;
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
     }
 
-    return offset;
-  }
-
-  private ByteBuffer readPath(final Path path) throws IOException {
-    final long logSize = Files.size(path);
-
-    if (logSize > Integer.MAX_VALUE) {
-      throw new IllegalStateException("file too large: " + path);
+    if (buffer.remaining() < HEADER_SIZE) {
+      throw new IllegalStateException("File too small for a header");
     }
 
-    final int actual = Math.max((int) logSize, maxLogSize);
+    final byte[] magic = new byte[MAGIC.length];
+    buffer.get(magic);
 
-    if (actual > maxLogSize) {
-      log.warn("grew max to {} since tail file larger than maximum {}", actual, maxLogSize);
+    if (!Arrays.equals(MAGIC, magic)) {
+      throw new IllegalStateException("Magic bytes do not match");
     }
 
-    final ByteBuffer buffer = ByteBuffer.allocate(actual);
-
-    try (final InputStream input = Files.newInputStream(path)) {
-      final byte[] local = new byte[4096];
+    final int version = buffer.getInt();
 
-      while (true) {
-        final int read = input.read(local);
+    if (version != CURRENT_VERSION) {
+      throw new IllegalStateException("Unsupported log version: " + version);
+    }
 
-        if (read <= 0) {
-          break;
-        }
+    return new Segment(path, buffer.getLong(), buffer);
+  }
 
-        buffer.put(local, 0, read);
+  private Segment segmentAfter(final Segment segment) {
+    for (final Segment s : segments) {
+      if (s.offset > segment.offset) {
+        return s;
       }
     }
 
-    return buffer;
+    return null;
   }
 
-  private Header appendHeader(final long offset) throws IOException {
-    final Path path = this.path.resolve(String.format(QLOG_FORMAT, offset)).toAbsolutePath();
+  private Map<String, Long> readIndex() throws IOException {
+    final Map<String, Long> offsets = new HashMap<>();
+
+    final Path index = this.path.resolve(INDEX);
 
-    if (tail.position() != 0) {
-      throw new IllegalStateException("tail should be in position zero");
+    if (!Files.isReadable(index)) {
+      return offsets;
     }
 
-    final Header0 header0 = new Header0(path, offset);
+    final ByteBuffer reader = ByteBuffer.allocate(12);
 
-    tail.put(MAGIC);
-    tail.putInt(CURRENT_VERSION);
-    header0.write(tail);
+    try (final InputStream input = Files.newInputStream(index)) {
+      while (true) {
+        reader.rewind();
 
-    headers.add(header0);
+        final int read = input.read(reader.array(), 0, 12);
 
-    return header0;
-  }
+        if (read < 12) {
+          break;
+        }
 
-  private Header readHeader(String name, Path path, InputStream source) throws IOException {
-    try (final DataInputStream d = new DataInputStream(source)) {
-      final byte[] magic = new byte[4];
+        final int length = reader.getInt();
+        final long offset = reader.getLong();
+        final byte[] idBytes = new byte[length];
+        input.read(idBytes);
+        final String id = new String(idBytes, UTF8);
+        offsets.put(id, offset);
+      }
+    }
 
-      d.read(magic);
+    return offsets;
+  }
 
-      if (!Arrays.equals(MAGIC, magic)) {
-        throw new IllegalStateException("Magic bytes do not match");
-      }
+  /**
+   * Write the index to a temporary file, and move it in place.
+   */
+  private void writeIndex() throws IOException {
+    final Path index = this.path.resolve(INDEX);
+    final Path temp = this.path.resolve(INDEX_TEMP);
 
-      final int version = d.readInt();
+    final ByteBuffer writer = ByteBuffer.allocate(12);
 
-      if (version == 0) {
-        return readHeader0(name, path, d);
-      }
+    try (final OutputStream output = Files.newOutputStream(temp)) {
+      for (final Map.Entry<String, Long> e : offsets.entrySet()) {
+        writer.rewind();
 
-      throw new IllegalStateException("Unsupported log version: " + version);
+        final byte[] idBytes = e.getKey().getBytes(UTF8);
+        writer.putInt(idBytes.length);
+        writer.putLong(e.getValue());
+        writer.flip();
+        output.write(writer.array(), 0, writer.remaining());
+        output.write(idBytes);
+      }
     }
-  }
 
-  private Header readHeader0(String name, Path path, DataInput source) throws IOException {
-    final long offset = source.readLong();
-    return new Header0(path, offset);
+    Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
   }
 
-  private static interface Header extends Comparable<Header> {
-
-    public Path path();
-
-    public long offset();
+  /**
+   * Read the entry at the position of the source, and move the source past it.
+   *
+   * @return A read-only view of the entry, or {@code null} at the end of the segment.
+   */
+  private static ByteBuffer readEntry(final ByteBuffer source) {
+    if (source.remaining() < ENTRY_HEADER_SIZE) {
+      return null;
+    }
 
-    public int size();
+    final int at = source.position();
+    final int size = source.getInt(at);
 
-    public ByteBuffer read(ByteBuffer source);
+    if (size <= 0 || size > source.remaining() - ENTRY_HEADER_SIZE) {
+      return null;
+    }
 
-    public void writeEntry(ByteBuffer buffer, ByteBuffer input);
+    final ByteBuffer entry = source.duplicate();
+    entry.position(at + ENTRY_HEADER_SIZE);
+    entry.limit(at + ENTRY_HEADER_SIZE + size);
 
-    public void write(ByteBuffer target);
+    source.position(at + ENTRY_HEADER_SIZE + size);
+    return entry.slice();
   }
 
-  @RequiredArgsConstructor
-  @ToString(of = { "path", "offset" })
-  private static class Header0 implements Header {
+  private static class Segment implements Comparable<Segment> {
 
     private final Path path;
     private final long offset;
+    private final MappedByteBuffer buffer;
 
-    @Override
-    public Path path() {
-      return path;
+    private Segment(final Path path, final long offset, final MappedByteBuffer buffer) {
+      this.path = path;
+      this.offset = offset;
+      this.buffer = buffer;
     }
 
-    @Override
-    public long offset() {
-      return offset;
+    /**
+     * A read-only view of the segment, positioned at its first entry.
+     */
+    private ByteBuffer reader() {
+      final ByteBuffer source = buffer.asReadOnlyBuffer();
+      source.limit(source.capacity());
+      source.position(HEADER_SIZE);
+      return source;
     }
 
-    @Override
-    public int size() {
-      return 4;
+    private boolean fits(final int size) {
+      return buffer.position() + ENTRY_HEADER_SIZE + size <= buffer.capacity();
     }
 
-    @Override
-    public ByteBuffer read(ByteBuffer source) {
-      final ByteBuffer slice = source.slice();
+    private void append(final ByteBuffer input) {
+      final int at = buffer.position();
+      final int size = input.remaining();
 
-      // buffer to short.
-      if (slice.remaining() < size()) {
-        return null;
-      }
+      buffer.position(at + ENTRY_HEADER_SIZE);
+      buffer.put(input);
+      // the size is written last, an entry only becomes visible once it has been written.
+      buffer.putInt(at, size);
+    }
 
-      // each entry prefixed with its length.
-      final int size = slice.getInt();
+    @Override
+    public int compareTo(final Segment o) {
+      return Long.compare(offset, o.offset);
+    }
 
-      final ByteBuffer result = slice.slice();
+    @Override
+    public String toString() {
+      return "Segment(path=" + path + ", offset=" + offset + ")";
+    }
+  }
 
-      if (result.remaining() < size) {
-        return null;
-      }
+  private class Reader implements QLogReader {
 
-      result.limit(size);
+    private Segment segment;
+    private ByteBuffer source;
+    private long position;
 
-      // update source position
-      source.position(source.position() + 4 + size);
-      return result;
+    private Reader(final Segment segment) {
+      this.segment = segment;
+      this.source = segment.reader();
+      this.position = segment.offset;
     }
 
     @Override
-    public void writeEntry(final ByteBuffer buffer, final ByteBuffer input) {
-      buffer.putInt(input.remaining());
-      buffer.put(input);
+    public long position() {
+      return position;
     }
 
     @Override
-    public void write(ByteBuffer target) {
-      target.putLong(offset);
-    }
+    public ByteBuffer next() {
+      synchronized (lock) {
+        while (true) {
+          final ByteBuffer entry = readEntry(source);
+
+          if (entry != null) {
+            position++;
+            return entry;
+          }
 
-    @Override
-    public int compareTo(Header o) {
-      return Long.compare(offset, o.offset());
+          final Segment next = segmentAfter(segment);
+
+          if (next == null) {
+            return null;
+          }
+
+          segment = next;
+          source = next.reader();
+          position = next.offset;
+        }
+      }
     }
   }
 }
@@ -0,0 +1,47 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.qlog;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A cursor over the entries of a {@link QLogManager}, from a given position.
+ * <p>
+ * Entries are read-only views of the log and are not copied. A reader which has reached the end
+ * of the log returns {@code null}, and continues with entries written after that on the next
+ * call.
+ */
+public interface QLogReader {
+
+  /**
+   * The position of the entry which will be read next.
+   * <p>
+   * This is what a consumer updates its position to, once it is done with the entries read.
+   */
+  long position();
+
+  /**
+   * Read the next entry.
+   *
+   * @return The next entry, or {@code null} if there are no more entries.
+   */
+  ByteBuffer next();
+}
@@ -0,0 +1,149 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.qlog;
+
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.output.Spool;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A spool which keeps metrics in a {@link QLogManager}.
+ * <p>
+ * Metrics are written as entries of at most {@link #METRICS_PER_ENTRY} metrics. The replay
+ * position is committed as the offset of the {@link #CONSUMER} consumer, and segments which have
+ * been replayed are trimmed.
+ * <p>
+ * Reads continue from a cursor kept between them, which is only moved back to the replay position
+ * when the previous read was not committed. Trimming never removes the segment of the cursor,
+ * since the cursor is never behind the replay position.
+ */
+@Slf4j
+public class QLogSpool implements Spool {
+
+  static final String CONSUMER = "replay";
+  static final int METRICS_PER_ENTRY = 1000;
+
+  private final String id;
+  private final Path path;
+  private final AsyncFramework async;
+  private final QLogManager qlog;
+
+  /**
+   * Positioned after the entries which were last read, all access has to be synchronized on this
+   * spool.
+   */
+  private QLogReader cursor = null;
+
+  /**
+   * Set if entries were read since the last commit, the next read then starts over from the
+   * replay position.
+   */
+  private boolean uncommitted = false;
+
+  public QLogSpool(
+      final String id, final Path path, final AsyncFramework async, final QLogManager qlog
+  ) {
+    this.id = id;
+    this.path = path;
+    this.async = async;
+    this.qlog = qlog;
+  }
+
+  @Override
+  public AsyncFuture<Void> start() {
+    return async.call(() -> {
+      Files.createDirectories(path);
+      return null;
+    }).lazyTransform(result -> {
+      log.info("Spooling undelivered metrics of output {} to {}", id, path);
+      return qlog.start();
+    });
+  }
+
+  @Override
+  public AsyncFuture<Void> stop() {
+    synchronized (this) {
+      cursor = null;
+    }
+
+    return qlog.stop();
+  }
+
+  @Override
+  public void write(final Collection<Metric> metrics) throws IOException {
+    final List<Metric> all = new ArrayList<>(metrics);
+
+    for (int i = 0; i < all.size(); i += METRICS_PER_ENTRY) {
+      final List<Metric> chunk = all.subList(i, Math.min(all.size(), i + METRICS_PER_ENTRY));
+      qlog.write(SpoolFormat.encode(chunk));
+    }
+  }
+
+  @Override
+  public synchronized Entries read(final int max) throws IOException {
+    if (cursor == null || uncommitted) {
+      cursor = qlog.reader(qlog.offset(CONSUMER));
+    }
+
+    final QLogReader reader = cursor;
+    final long start = reader.position();
+    final List<Metric> metrics = new ArrayList<>();
+    int dropped = 0;
+
+    while (metrics.size() < max) {
+      final ByteBuffer entry = reader.next();
+
+      if (entry == null) {
+        break;
+      }
+
+      try {
+        metrics.addAll(SpoolFormat.decode(entry));
+      } catch (final IOException | RuntimeException e) {
+        // skip the entry, it would otherwise block everything spooled after it.
+        log.error("{}: Skipping spool entry which can not be decoded", id, e);
+        dropped += Math.max(1, Math.min(SpoolFormat.size(entry), METRICS_PER_ENTRY));
+      }
+    }
+
+    uncommitted = reader.position() != start;
+    return new Entries(metrics, dropped, reader.position());
+  }
+
+  @Override
+  public synchronized void commit(final Entries entries) {
+    qlog.update(CONSUMER, entries.getNext());
+    qlog.trim();
+
+    if (cursor != null && cursor.position() == entries.getNext()) {
+      uncommitted = false;
+    }
+  }
+}
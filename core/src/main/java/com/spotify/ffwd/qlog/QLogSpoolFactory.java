@@ -0,0 +1,63 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.qlog;
+
+import com.google.inject.Inject;
+import com.spotify.ffwd.module.Spooling;
+import com.spotify.ffwd.output.Spool;
+import com.spotify.ffwd.output.SpoolFactory;
+import eu.toolchain.async.AsyncFramework;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates spools which are backed by a {@link QLogManagerImpl}, one directory per output.
+ * <p>
+ * A directory which is already used by the spool of another output is rejected, since outputs
+ * sharing a directory would share their log and the replay position in its index.
+ */
+public class QLogSpoolFactory implements SpoolFactory {
+
+  @Inject
+  private AsyncFramework async;
+
+  /**
+   * Directories of the created spools, and the output each belongs to.
+   */
+  private final Map<Path, String> owners = new HashMap<>();
+
+  @Override
+  public synchronized Spool newSpool(final String id, final Spooling spooling) {
+    final Path path = Paths.get(spooling.getPath()).toAbsolutePath().normalize();
+    final String owner = owners.putIfAbsent(path, id);
+
+    if (owner != null && !owner.equals(id)) {
+      throw new IllegalArgumentException(
+          "spool: path " + path + " of output " + id + " is already used by output " + owner);
+    }
+
+    return new QLogSpool(id, path, async,
+        new QLogManagerImpl(path, async, spooling.getMaxSegmentSize(), spooling.getSync(),
+            spooling.getSyncInterval()));
+  }
+}
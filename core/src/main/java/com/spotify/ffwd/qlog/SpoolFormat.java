@@ -0,0 +1,206 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.qlog;
+
+import com.google.protobuf.ByteString;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.model.v2.Value;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The binary format of spool entries.
+ * <p>
+ * An entry is the number of metrics it contains, followed by the metrics. Every metric is its
+ * key, timestamp, value, tags and resource. Strings are their length followed by their UTF-8
+ * encoded bytes, with a length of {@code -1} for {@code null}. The value is preceded by a byte
+ * indicating its type.
+ */
+final class SpoolFormat {
+
+  /**
+   * Length written in place of a null string.
+   */
+  private static final int NULL_LENGTH = -1;
+
+  private static final byte DOUBLE_VALUE = 1;
+  private static final byte DISTRIBUTION_VALUE = 2;
+
+  private SpoolFormat() {
+  }
+
+  static ByteBuffer encode(final List<Metric> metrics) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+
+    out.writeInt(metrics.size());
+
+    for (final Metric metric : metrics) {
+      writeMetric(out, metric);
+    }
+
+    out.flush();
+    return ByteBuffer.wrap(bytes.toByteArray());
+  }
+
+  /**
+   * The number of metrics an entry says it contains, without decoding them.
+   */
+  static int size(final ByteBuffer entry) {
+    return entry.remaining() < 4 ? 0 : entry.getInt(entry.position());
+  }
+
+  static List<Metric> decode(final ByteBuffer entry) throws IOException {
+    final byte[] bytes = new byte[entry.remaining()];
+    entry.duplicate().get(bytes);
+
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    final int size = readLength(in);
+    final List<Metric> metrics = new ArrayList<>(size);
+
+    for (int i = 0; i < size; i++) {
+      metrics.add(readMetric(in));
+    }
+
+    return metrics;
+  }
+
+  private static void writeMetric(final DataOutput out, final Metric metric) throws IOException {
+    writeString(out, metric.getKey());
+    out.writeLong(metric.getTimestamp());
+
+    final Value value = metric.getValue();
+
+    if (value instanceof Value.DoubleValue) {
+      out.writeByte(DOUBLE_VALUE);
+      out.writeDouble(((Value.DoubleValue) value).getValue());
+    } else if (value instanceof Value.DistributionValue) {
+      final byte[] distribution = ((Value.DistributionValue) value).getValue().toByteArray();
+      out.writeByte(DISTRIBUTION_VALUE);
+      out.writeInt(distribution.length);
+      out.write(distribution);
+    } else {
+      throw new IOException("Unsupported value: " + value);
+    }
+
+    writeMap(out, metric.getTags());
+    writeMap(out, metric.getResource());
+  }
+
+  private static Metric readMetric(final DataInputStream in) throws IOException {
+    final String key = readString(in);
+    final long timestamp = in.readLong();
+    final Value value;
+
+    final byte type = in.readByte();
+
+    switch (type) {
+      case DOUBLE_VALUE:
+        value = Value.DoubleValue.create(in.readDouble());
+        break;
+      case DISTRIBUTION_VALUE:
+        final byte[] distribution = new byte[readLength(in)];
+        in.readFully(distribution);
+        value = Value.DistributionValue.create(ByteString.copyFrom(distribution));
+        break;
+      default:
+        throw new IOException("Corrupt spool entry, unknown value type: " + type);
+    }
+
+    final Map<String, String> tags = readMap(in);
+    final Map<String, String> resource = readMap(in);
+    return new Metric(key, value, timestamp, tags, resource);
+  }
+
+  private static void writeMap(final DataOutput out, final Map<String, String> map)
+      throws IOException {
+    out.writeInt(map.size());
+
+    for (final Map.Entry<String, String> e : map.entrySet()) {
+      writeString(out, e.getKey());
+      writeString(out, e.getValue());
+    }
+  }
+
+  private static Map<String, String> readMap(final DataInputStream in) throws IOException {
+    final int size = readLength(in);
+    final Map<String, String> map = new HashMap<>(size * 2);
+
+    for (int i = 0; i < size; i++) {
+      map.put(readString(in), readString(in));
+    }
+
+    return map;
+  }
+
+  /**
+   * Write a string as its length followed by its UTF-8 encoded bytes, unlike {@link
+   * DataOutput#writeUTF(String)} this is not limited to 64KB and permits null.
+   */
+  private static void writeString(final DataOutput out, final String value) throws IOException {
+    if (value == null) {
+      out.writeInt(NULL_LENGTH);
+      return;
+    }
+
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(final DataInputStream in) throws IOException {
+    final int length = in.readInt();
+
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+
+    final byte[] bytes = new byte[checkLength(in, length)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int readLength(final DataInputStream in) throws IOException {
+    return checkLength(in, in.readInt());
+  }
+
+  /**
+   * Check a length read from an entry against what is left of it, so that a corrupt entry fails
+   * to decode instead of allocating whatever its length says.
+   */
+  private static int checkLength(final DataInputStream in, final int length) throws IOException {
+    if (length < 0 || length > in.available()) {
+      throw new IOException("Corrupt spool entry, invalid length: " + length);
+    }
+
+    return length;
+  }
+}
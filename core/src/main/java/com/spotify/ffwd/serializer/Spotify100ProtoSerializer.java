@@ -54,6 +54,11 @@ public class Spotify100ProtoSerializer implements Serializer {
     return Snappy.compress(batch.build().toByteArray());
   }
 
+  @Override
+  public boolean compressesBatches() {
+    return true;
+  }
+
   private Spotify100.Metric serializeMetric(final Metric metric) {
     return convertToSpotify100Metric(metric);
   }
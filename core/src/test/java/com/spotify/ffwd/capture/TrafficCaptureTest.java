@@ -0,0 +1,86 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.capture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.spotify.ffwd.protocol.ProtocolType;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TrafficCaptureTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testCaptureRoundTrip() throws Exception {
+    final Path path = folder.getRoot().toPath().resolve("input.capture");
+    final TrafficCapture capture = new TrafficCapture(path, 1024);
+    capture.start();
+
+    final EmbeddedChannel channel =
+        new EmbeddedChannel(capture.handler(ProtocolType.TCP, "0.0.0.0", 19000, "json"));
+
+    channel.writeInbound(Unpooled.copiedBuffer("{\"key\": \"a\"}\n", StandardCharsets.UTF_8));
+    channel.writeInbound(Unpooled.copiedBuffer("{\"key\": \"b\"}\n", StandardCharsets.UTF_8));
+    channel.close();
+
+    capture.stop();
+
+    // the handler passes everything on untouched.
+    assertEquals(2, channel.inboundMessages().size());
+
+    try (final CaptureReader reader = new CaptureReader(path)) {
+      final CaptureRecord input = reader.next();
+      assertEquals(CaptureRecord.Kind.INPUT, input.getKind());
+      assertEquals(new CaptureRecord.Input(ProtocolType.TCP, "0.0.0.0", 19000, "json"),
+          input.getDeclared());
+
+      final CaptureRecord open = reader.next();
+      assertEquals(CaptureRecord.Kind.OPEN, open.getKind());
+      assertEquals(input.getInput(), open.getInput());
+
+      final CaptureRecord first = reader.next();
+      assertEquals(CaptureRecord.Kind.DATA, first.getKind());
+      assertEquals(open.getConnection(), first.getConnection());
+      assertArrayEquals("{\"key\": \"a\"}\n".getBytes(StandardCharsets.UTF_8), first.getData());
+
+      final CaptureRecord second = reader.next();
+      assertArrayEquals("{\"key\": \"b\"}\n".getBytes(StandardCharsets.UTF_8), second.getData());
+      assertTrue(second.getOffsetNanos() >= first.getOffsetNanos());
+
+      final CaptureRecord close = reader.next();
+      assertEquals(CaptureRecord.Kind.CLOSE, close.getKind());
+      assertEquals(open.getConnection(), close.getConnection());
+
+      assertNull(reader.next());
+    }
+  }
+}
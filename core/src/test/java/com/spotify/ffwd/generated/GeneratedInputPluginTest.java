@@ -0,0 +1,130 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2016 - 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.generated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.spotify.ffwd.input.InputPlugin;
+import java.util.concurrent.Callable;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GeneratedInputPluginTest {
+
+  ObjectMapper mapper;
+
+  @Before
+  public void setup() {
+    mapper = new ObjectMapper();
+    mapper.registerModule(new Jdk8Module());
+    mapper.registerSubtypes(new NamedType(GeneratedInputPlugin.class, "generated"));
+  }
+
+  @Test
+  public void testBurst() throws Exception {
+    final Burst burst =
+        mapper.readValue("{\"factor\": 5, \"period\": 1000, \"duration\": 200}", Burst.class);
+
+    assertEquals(5.0, burst.getFactor(), 0.0);
+    assertEquals(1000L, burst.getPeriod());
+    assertEquals(200L, burst.getDuration());
+  }
+
+  @Test
+  public void testBurstDefaults() throws Exception {
+    final Burst burst = mapper.readValue("{}", Burst.class);
+
+    assertEquals(Burst.DEFAULT_FACTOR, burst.getFactor(), 0.0);
+    assertEquals(Burst.DEFAULT_PERIOD, burst.getPeriod());
+    assertEquals(Burst.DEFAULT_DURATION, burst.getDuration());
+  }
+
+  @Test
+  public void testBurstDurationLimitedToPeriod() throws Exception {
+    final Burst burst = mapper.readValue("{\"period\": 1000, \"duration\": 5000}", Burst.class);
+
+    assertEquals(1000L, burst.getDuration());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBurstRejectsZeroFactor() throws Exception {
+    burst("{\"factor\": 0}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBurstRejectsNegativeFactor() throws Exception {
+    burst("{\"factor\": -2}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBurstRejectsZeroPeriod() throws Exception {
+    burst("{\"period\": 0}");
+  }
+
+  @Test
+  public void testPlugin() throws Exception {
+    assertTrue(plugin("{\"type\": \"generated\", \"rate\": 1000, \"threads\": 2, "
+        + "\"count\": 10, \"burst\": {\"factor\": 2}}") instanceof GeneratedInputPlugin);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPluginRejectsFewerSeriesThanThreads() throws Exception {
+    plugin("{\"type\": \"generated\", \"threads\": 4, \"count\": 2}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPluginRejectsZeroRate() throws Exception {
+    plugin("{\"type\": \"generated\", \"rate\": 0}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPluginRejectsZeroBurstFactor() throws Exception {
+    plugin("{\"type\": \"generated\", \"burst\": {\"factor\": 0}}");
+  }
+
+  private Burst burst(final String json) throws Exception {
+    return unwrap(() -> mapper.readValue(json, Burst.class));
+  }
+
+  private InputPlugin plugin(final String json) throws Exception {
+    return unwrap(() -> mapper.readValue(json, InputPlugin.class));
+  }
+
+  /**
+   * Rethrow the validation error of a constructor which was called while parsing.
+   */
+  private static <T> T unwrap(final Callable<T> parse) throws Exception {
+    try {
+      return parse.call();
+    } catch (final JsonMappingException e) {
+      if (e.getCause() instanceof IllegalArgumentException) {
+        throw (IllegalArgumentException) e.getCause();
+      }
+
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2016 - 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.generated;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class LoadProfileTest {
+
+  @Test
+  public void testDueIsSplitOverThreads() {
+    final LoadProfile profile = profile(1000, 2, Optional.empty());
+
+    assertEquals(0, profile.due(0));
+    assertEquals(250, profile.due(millis(500)));
+    assertEquals(500, profile.due(millis(1000)));
+    assertEquals(5000, profile.due(millis(10000)));
+  }
+
+  @Test
+  public void testDueWithBurst() {
+    // 3 times the rate for the first 100 milliseconds of every second.
+    final Burst burst = new Burst(Optional.of(3.0), Optional.of(1000L), Optional.of(100L));
+    final LoadProfile profile = profile(1000, 1, Optional.of(burst));
+
+    assertEquals(150, profile.due(millis(50)));
+    assertEquals(300, profile.due(millis(100)));
+    assertEquals(1200, profile.due(millis(1000)));
+    assertEquals(1500, profile.due(millis(1100)));
+    assertEquals(3100, profile.due(millis(2500)));
+  }
+
+  @Test
+  public void testDueWithDip() {
+    // half the rate for the first 500 milliseconds of every second.
+    final Burst burst = new Burst(Optional.of(0.5), Optional.of(1000L), Optional.of(500L));
+    final LoadProfile profile = profile(1000, 1, Optional.of(burst));
+
+    assertEquals(250, profile.due(millis(500)));
+    assertEquals(750, profile.due(millis(1000)));
+  }
+
+  @Test
+  public void testBurstMillis() {
+    final Burst burst = new Burst(Optional.of(2.0), Optional.of(1000L), Optional.of(100L));
+
+    assertEquals(50.0, burst.burstMillis(50), 0.0);
+    assertEquals(100.0, burst.burstMillis(900), 0.0);
+    assertEquals(150.0, burst.burstMillis(1050), 0.0);
+    assertEquals(300.0, burst.burstMillis(2500), 0.0);
+  }
+
+  private static LoadProfile profile(
+      final double rate, final int threads, final Optional<Burst> burst
+  ) {
+    return new LoadProfile(rate, threads, 100, 0, 0, 0, 0, 0, burst);
+  }
+
+  private static long millis(final long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+}
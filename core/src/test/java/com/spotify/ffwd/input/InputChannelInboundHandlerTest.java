@@ -0,0 +1,174 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.name.Names;
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.model.v2.Value;
+import com.spotify.ffwd.statistics.InputPluginStatistics;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InputChannelInboundHandlerTest {
+
+  private static final int BURST_SIZE = 3;
+
+  @Mock
+  private InputManager input;
+
+  @Mock
+  private InputPluginStatistics statistics;
+
+  /**
+   * Copies of the lists of metrics received together, the handler reuses the lists.
+   */
+  private final List<List<Metric>> bursts = new ArrayList<>();
+
+  private final Metric m1 = metric("m1");
+  private final Metric m2 = metric("m2");
+  private final Metric m3 = metric("m3");
+  private final Metric m4 = metric("m4");
+
+  @Before
+  public void setup() {
+    doAnswer(invocation -> {
+      @SuppressWarnings("unchecked")
+      final List<Metric> metrics = (List<Metric>) invocation.getArguments()[0];
+      bursts.add(new ArrayList<>(metrics));
+      return null;
+    }).when(input).receiveMetrics(any());
+  }
+
+  @Test
+  public void testReceivesMetricsReadTogether() {
+    final EmbeddedChannel channel = newChannel(BURST_SIZE);
+
+    channel.writeInbound(m1, m2);
+    channel.writeInbound(m3);
+
+    assertEquals(ImmutableList.of(ImmutableList.of(m1, m2), ImmutableList.of(m3)), bursts);
+    verify(input, never()).receiveMetric(any(Metric.class));
+  }
+
+  @Test
+  public void testBurstSize() {
+    final EmbeddedChannel channel = newChannel(BURST_SIZE);
+
+    channel.writeInbound(m1, m2, m3, m4);
+
+    assertEquals(ImmutableList.of(ImmutableList.of(m1, m2, m3), ImmutableList.of(m4)), bursts);
+  }
+
+  @Test
+  public void testBatchKeepsOrder() {
+    final EmbeddedChannel channel = newChannel(BURST_SIZE);
+    final Batch batch = new Batch(ImmutableMap.of(), ImmutableMap.of(), ImmutableList.of());
+
+    channel.writeInbound(m1, batch, m2);
+
+    final InOrder order = Mockito.inOrder(input);
+    order.verify(input).receiveMetrics(any());
+    order.verify(input).receiveBatch(batch);
+    order.verify(input).receiveMetrics(any());
+    assertEquals(ImmutableList.of(ImmutableList.of(m1), ImmutableList.of(m2)), bursts);
+  }
+
+  @Test
+  public void testBurstsDisabled() {
+    final EmbeddedChannel channel = newChannel(1);
+
+    channel.writeInbound(m1, m2);
+
+    final InOrder order = Mockito.inOrder(input);
+    order.verify(input).receiveMetric(m1);
+    order.verify(input).receiveMetric(m2);
+    assertEquals(0, bursts.size());
+  }
+
+  @Test
+  public void testStampsSampledMetrics() {
+    final EmbeddedChannel channel = newChannel(BURST_SIZE, 1);
+    final Batch batch = new Batch(ImmutableMap.of(), ImmutableMap.of(), ImmutableList.of());
+
+    channel.writeInbound(m1, batch);
+
+    assertSame(statistics, m1.getReceived().getInput());
+    assertSame(statistics, batch.getReceived().getInput());
+  }
+
+  @Test
+  public void testLatencySamplingDisabled() {
+    final EmbeddedChannel channel = newChannel(BURST_SIZE);
+    final Batch batch = new Batch(ImmutableMap.of(), ImmutableMap.of(), ImmutableList.of());
+
+    channel.writeInbound(m1, batch);
+
+    assertNull(m1.getReceived());
+    assertNull(batch.getReceived());
+  }
+
+  private EmbeddedChannel newChannel(final int burstSize) {
+    return newChannel(burstSize, 0);
+  }
+
+  private EmbeddedChannel newChannel(final int burstSize, final int latencySampling) {
+    final InputChannelInboundHandler handler = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(InputManager.class).toInstance(input);
+        bind(InputPluginStatistics.class).toInstance(statistics);
+        bind(Integer.class)
+            .annotatedWith(Names.named("latencySampling"))
+            .toInstance(latencySampling);
+        bind(Integer.class).annotatedWith(Names.named("burstSize")).toInstance(burstSize);
+      }
+    }).getInstance(InputChannelInboundHandler.class);
+
+    return new EmbeddedChannel(handler);
+  }
+
+  private static Metric metric(final String key) {
+    return new Metric(key, Value.DoubleValue.create(1.0), 0, ImmutableMap.of(),
+        ImmutableMap.of());
+  }
+}
@@ -0,0 +1,118 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.PrivateModule;
+import com.spotify.ffwd.debug.DebugServer;
+import com.spotify.ffwd.output.OutputManager;
+import com.spotify.ffwd.statistics.CoreStatistics;
+import com.spotify.ffwd.statistics.InputManagerStatistics;
+import com.spotify.ffwd.statistics.InputPluginStatistics;
+import eu.toolchain.async.AsyncFramework;
+import io.netty.channel.ChannelInboundHandler;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class InputManagerModuleTest {
+
+  private final Map<String, InputPluginStatistics> statistics = new HashMap<>();
+  private final Map<String, ChannelInboundHandler> handlers = new HashMap<>();
+
+  /**
+   * Every input plugin is handed its own statistics, and a channel handler to sample with.
+   */
+  @Test
+  public void testStatisticsPerPlugin() {
+    final CoreStatistics core = mock(CoreStatistics.class);
+    final InputPluginStatistics first = mock(InputPluginStatistics.class);
+    final InputPluginStatistics second = mock(InputPluginStatistics.class);
+
+    when(core.newInputManager()).thenReturn(mock(InputManagerStatistics.class));
+    when(core.newInputPlugin("1")).thenReturn(first);
+    when(core.newInputPlugin("2")).thenReturn(second);
+
+    final InputManagerModule input = new InputManagerModule(
+        ImmutableList.of(new RecordingPlugin(), new RecordingPlugin()), null, null, null);
+
+    final Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(CoreStatistics.class).toInstance(core);
+        bind(AsyncFramework.class).toInstance(mock(AsyncFramework.class));
+        bind(OutputManager.class).toInstance(mock(OutputManager.class));
+        bind(DebugServer.class).toInstance(mock(DebugServer.class));
+      }
+    }, input.module());
+
+    injector.getInstance(InputManager.class);
+
+    assertEquals(2, statistics.size());
+    assertSame(first, statistics.get("1"));
+    assertSame(second, statistics.get("2"));
+
+    assertTrue(handlers.get("1") instanceof InputChannelInboundHandler);
+    assertTrue(handlers.get("2") instanceof InputChannelInboundHandler);
+  }
+
+  /**
+   * Records what the module of an input plugin is injected with.
+   */
+  private class RecordingPlugin implements InputPlugin {
+
+    @Override
+    public Module module(final Key<PluginSource> key, final String id) {
+      return new PrivateModule() {
+        @Override
+        protected void configure() {
+          bind(key).toInstance(mock(PluginSource.class));
+
+          // injected while the injector is created, unlike the fields of a provider instance,
+          // which might still be unset when another binding already asks for the source.
+          requestInjection(new Object() {
+            @Inject
+            void record(
+                final InputPluginStatistics pluginStatistics, final ChannelInboundHandler handler
+            ) {
+              statistics.put(id, pluginStatistics);
+              handlers.put(id, handler);
+            }
+          });
+
+          expose(key);
+        }
+      };
+    }
+  }
+}
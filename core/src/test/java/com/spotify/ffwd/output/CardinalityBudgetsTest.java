@@ -0,0 +1,140 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.spotify.ffwd.statistics.OutputManagerStatistics;
+import com.spotify.ffwd.util.SeriesHash;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class CardinalityBudgetsTest {
+
+  private static final long WINDOW_MS = 4000;
+
+  private final Map<String, Map<String, Long>> reported = new HashMap<>();
+
+  private final OutputManagerStatistics statistics = new OutputManagerStatistics() {
+    @Override
+    public void reportCardinalityBudget(final String budget, final Map<String, Long> top) {
+      reported.put(budget, top);
+    }
+  };
+
+  @Test
+  public void testEmpty() {
+    assertTrue(new CardinalityBudgets(null, ImmutableMap.of(), WINDOW_MS, 0).isEmpty());
+    assertTrue(new CardinalityBudgets(0L, ImmutableMap.of("what", 0L), WINDOW_MS, 0).isEmpty());
+  }
+
+  @Test
+  public void testKeyBudget() {
+    final CardinalityBudgets budgets = new CardinalityBudgets(10L, ImmutableMap.of(), WINDOW_MS, 0);
+
+    for (int i = 0; i < 30; i++) {
+      assertTrue(add(budgets, "bad-key", ImmutableMap.of(), i));
+    }
+
+    assertTrue(add(budgets, "good-key", ImmutableMap.of(), 0));
+
+    budgets.refresh(0, statistics);
+
+    assertFalse(add(budgets, "bad-key", ImmutableMap.of(), 0));
+    assertTrue(add(budgets, "good-key", ImmutableMap.of(), 1));
+    assertTrue(add(budgets, null, ImmutableMap.of(), 0));
+  }
+
+  @Test
+  public void testTagBudget() {
+    final CardinalityBudgets budgets =
+        new CardinalityBudgets(null, ImmutableMap.of("what", 10L), WINDOW_MS, 0);
+    final Map<String, String> badCommon = ImmutableMap.of("what", "bad");
+
+    for (int i = 0; i < 30; i++) {
+      add(budgets, "key", badCommon, i);
+    }
+
+    budgets.refresh(0, statistics);
+
+    // the tags of the series override the common tags
+    assertFalse(add(budgets, "key", badCommon, 0));
+    assertTrue(add(budgets, "key", ImmutableMap.of("what", "good"), 0));
+    assertTrue(add(budgets, "key", ImmutableMap.of(), 0));
+    assertEquals(Collections.singleton("bad"), reported.get("what").keySet());
+  }
+
+  @Test
+  public void testTopBuckets() {
+    final CardinalityBudgets budgets =
+        new CardinalityBudgets(1000L, ImmutableMap.of(), WINDOW_MS, 0);
+
+    for (int k = 1; k <= 12; k++) {
+      for (int i = 0; i < k * 50; i++) {
+        add(budgets, "key-" + k, ImmutableMap.of(), i);
+      }
+    }
+
+    budgets.refresh(0, statistics);
+
+    final Map<String, Long> top = reported.get(CardinalityBudgets.KEY_BUDGET);
+    assertEquals(CardinalityBudgets.TOP_BUCKETS, top.size());
+    assertFalse(top.containsKey("key-1"));
+    assertFalse(top.containsKey("key-2"));
+
+    final List<Long> cardinalities = new ArrayList<>(top.values());
+    final List<Long> sorted = new ArrayList<>(cardinalities);
+    sorted.sort(Collections.reverseOrder());
+    assertEquals(sorted, cardinalities);
+  }
+
+  @Test
+  public void testExpiry() {
+    final CardinalityBudgets budgets = new CardinalityBudgets(10L, ImmutableMap.of(), WINDOW_MS, 0);
+
+    for (int i = 0; i < 30; i++) {
+      add(budgets, "key", ImmutableMap.of(), i);
+    }
+
+    budgets.refresh(WINDOW_MS / 2, statistics);
+    assertFalse(add(budgets, "key", ImmutableMap.of(), 0));
+
+    // no new series for a whole window, the bucket is forgotten
+    budgets.refresh(WINDOW_MS * 2, statistics);
+    assertTrue(reported.get(CardinalityBudgets.KEY_BUDGET).isEmpty());
+    assertTrue(add(budgets, "key", ImmutableMap.of(), 0));
+  }
+
+  private static boolean add(
+      final CardinalityBudgets budgets, final String key, final Map<String, String> commonTags,
+      final int series
+  ) {
+    final Map<String, String> tags = Collections.singletonMap("series", "s" + series);
+    return budgets.add(key, commonTags, tags, SeriesHash.hash(key, commonTags, tags));
+  }
+}
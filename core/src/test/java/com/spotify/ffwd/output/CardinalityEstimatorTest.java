@@ -0,0 +1,101 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import static org.junit.Assert.assertEquals;
+
+import com.spotify.ffwd.util.SeriesHash;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class CardinalityEstimatorTest {
+
+  private static final long WINDOW_MS = 4000;
+
+  @Test
+  public void testEmpty() {
+    assertEquals(0, new CardinalityEstimator(WINDOW_MS, 1, 0).estimate(0));
+  }
+
+  @Test
+  public void testEstimate() {
+    final CardinalityEstimator estimator = new CardinalityEstimator(WINDOW_MS, 1, 0);
+
+    add(estimator, 0, 100_000);
+    // adding the same series again does not change the estimate
+    add(estimator, 0, 100_000);
+
+    assertEquals(100_000, estimator.estimate(0), 2_000);
+  }
+
+  @Test
+  public void testSlidingWindow() {
+    final CardinalityEstimator estimator = new CardinalityEstimator(WINDOW_MS, 1, 0);
+
+    add(estimator, 0, 1000);
+    assertEquals(1000, estimator.estimate(1000), 20);
+
+    add(estimator, 1000, 2000);
+    assertEquals(2000, estimator.estimate(2000), 40);
+
+    // the first sub-window has expired, the second one is still counted
+    assertEquals(1000, estimator.estimate(WINDOW_MS), 20);
+    assertEquals(0, estimator.estimate(WINDOW_MS + 1000));
+  }
+
+  @Test
+  public void testIdleLongerThanWindow() {
+    final CardinalityEstimator estimator = new CardinalityEstimator(WINDOW_MS, 1, 0);
+
+    add(estimator, 0, 1000);
+
+    assertEquals(0, estimator.estimate(10 * WINDOW_MS));
+  }
+
+  @Test
+  public void testStripesAreMerged() throws InterruptedException {
+    final CardinalityEstimator estimator = new CardinalityEstimator(WINDOW_MS, 4, 0);
+    final List<Thread> threads = new ArrayList<>();
+
+    for (int i = 0; i < 8; i++) {
+      final int start = i * 1000;
+      threads.add(new Thread(() -> add(estimator, start, start + 1000)));
+    }
+
+    for (final Thread thread : threads) {
+      thread.start();
+    }
+
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(8000, estimator.estimate(0), 160);
+  }
+
+  private static void add(final CardinalityEstimator estimator, final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      estimator.add(SeriesHash.hash("key", Collections.singletonMap("series", "s" + i)));
+    }
+  }
+}
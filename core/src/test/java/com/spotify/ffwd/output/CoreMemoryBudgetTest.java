@@ -0,0 +1,111 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.spotify.ffwd.module.MemoryLimits;
+import com.spotify.ffwd.statistics.MemoryBudgetStatistics;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import org.junit.Test;
+
+public class CoreMemoryBudgetTest {
+
+  private final Map<String, LongSupplier> components = new HashMap<>();
+  private final Map<String, Long> refused = new HashMap<>();
+
+  private final MemoryBudgetStatistics statistics = new MemoryBudgetStatistics() {
+    @Override
+    public void registerComponent(final String component, final LongSupplier reserved) {
+      components.put(component, reserved);
+    }
+
+    @Override
+    public void reportRefused(final String component, final long bytes) {
+      refused.merge(component, bytes, Long::sum);
+    }
+  };
+
+  private final CoreMemoryBudget budget =
+      new CoreMemoryBudget(new MemoryLimits(Optional.of(600L), 1000L), statistics);
+
+  @Test
+  public void testShedsByPriority() {
+    final MemoryBudget.Account low = budget.register("retry", MemoryBudget.Priority.LOW);
+    final MemoryBudget.Account normal = budget.register("batching", MemoryBudget.Priority.NORMAL);
+    final MemoryBudget.Account high = budget.register("client", MemoryBudget.Priority.HIGH);
+
+    assertTrue(normal.reserve(600));
+    // over the soft limit, low priority is refused first
+    assertFalse(low.reserve(1));
+    assertTrue(normal.reserve(200));
+    assertFalse(normal.reserve(1));
+    assertTrue(high.reserve(200));
+    // and nothing fits over the hard limit
+    assertFalse(high.reserve(1));
+
+    assertEquals(1000, budget.reserved());
+    assertEquals(800L, components.get("batching").getAsLong());
+    assertEquals(200L, components.get("client").getAsLong());
+    assertEquals(0L, components.get("retry").getAsLong());
+    assertEquals(Long.valueOf(1), refused.get("retry"));
+    assertEquals(Long.valueOf(1), refused.get("client"));
+  }
+
+  @Test
+  public void testRelease() {
+    final MemoryBudget.Account low = budget.register("retry", MemoryBudget.Priority.LOW);
+
+    assertTrue(low.reserve(600));
+    assertFalse(low.reserve(1));
+
+    low.release(100);
+
+    assertTrue(low.reserve(100));
+    assertEquals(600, budget.reserved());
+  }
+
+  @Test
+  public void testSameNameSharesAccount() {
+    final MemoryBudget.Account a = budget.register("batching", MemoryBudget.Priority.NORMAL);
+
+    assertSame(a, budget.register("batching", MemoryBudget.Priority.NORMAL));
+    assertEquals(1, components.size());
+  }
+
+  @Test
+  public void testDefaultSoftLimit() {
+    final MemoryLimits limits = new MemoryLimits(Optional.empty(), 1000L);
+
+    assertEquals(800, limits.getSoftLimit());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSoftLimitOverHardLimit() {
+    new MemoryLimits(Optional.of(2000L), 1000L);
+  }
+}
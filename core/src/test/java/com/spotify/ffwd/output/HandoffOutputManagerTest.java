@@ -0,0 +1,274 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.model.v2.Value;
+import com.spotify.ffwd.statistics.CoreStatistics;
+import com.spotify.ffwd.statistics.HandoffStatistics;
+import com.spotify.ffwd.statistics.NoopCoreStatistics;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.TinyAsync;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HandoffOutputManagerTest {
+
+  private static final int SERIES = 16;
+  private static final int POINTS = 1000;
+
+  @Mock
+  private CoreOutputManager delegate;
+
+  private ExecutorService executor;
+  private AsyncFramework async;
+
+  /**
+   * Points received by the delegate, per series, and the thread they were processed on.
+   */
+  private final Map<String, List<Long>> received = new ConcurrentHashMap<>();
+  private final Map<String, String> threads = new ConcurrentHashMap<>();
+  private final AtomicInteger batches = new AtomicInteger();
+  private final AtomicInteger bursts = new AtomicInteger();
+
+  @Before
+  public void setup() {
+    executor = Executors.newSingleThreadExecutor();
+    async = TinyAsync.builder().executor(executor).build();
+
+    doReturn(async.resolved()).when(delegate).start();
+    doReturn(async.resolved()).when(delegate).stop();
+
+    doAnswer(invocation -> {
+      final Metric metric = (Metric) invocation.getArguments()[0];
+      received(metric.getTags().get("series"), metric);
+      return null;
+    }).when(delegate).sendMetric(any(Metric.class));
+
+    doAnswer(invocation -> {
+      final Batch batch = (Batch) invocation.getArguments()[0];
+      batches.incrementAndGet();
+
+      for (final Metric point : batch.getPoints()) {
+        received(point.getTags().getOrDefault("series", batch.getCommonTags().get("series")),
+            point);
+      }
+
+      return null;
+    }).when(delegate).sendBatch(any(Batch.class));
+
+    doAnswer(invocation -> {
+      @SuppressWarnings("unchecked")
+      final List<Metric> metrics = (List<Metric>) invocation.getArguments()[0];
+      bursts.incrementAndGet();
+
+      for (final Metric metric : metrics) {
+        received(metric.getTags().get("series"), metric);
+      }
+
+      return null;
+    }).when(delegate).sendMetrics(any());
+  }
+
+  private void received(final String series, final Metric metric) {
+    received.computeIfAbsent(series, s -> new ArrayList<>()).add(metric.getTimestamp());
+    threads.merge(series, Thread.currentThread().getName(),
+        (a, b) -> a.equals(b) ? a : "different threads");
+  }
+
+  @After
+  public void teardown() {
+    executor.shutdownNow();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoThreads() {
+    newManager(0);
+  }
+
+  @Test
+  public void testSeriesKeepTheirOrderAndThread() throws Exception {
+    final HandoffOutputManager manager = newManager(4);
+    manager.start().get();
+
+    for (int i = 0; i < POINTS; i++) {
+      for (int s = 0; s < SERIES; s++) {
+        manager.sendMetric(metric(s, i));
+      }
+    }
+
+    manager.sendBatch(new Batch(ImmutableMap.of(), ImmutableMap.of(), ImmutableList.of()));
+
+    // stopping processes what has already been handed off.
+    manager.stop().get();
+    verify(delegate).stop();
+
+    assertEquals(SERIES, received.size());
+    assertEquals(1, batches.get());
+
+    for (int s = 0; s < SERIES; s++) {
+      final List<Long> points = received.get(String.valueOf(s));
+      assertEquals(POINTS, points.size());
+
+      for (int i = 0; i < POINTS; i++) {
+        assertEquals(Long.valueOf(i), points.get(i));
+      }
+
+      assertTrue(threads.get(String.valueOf(s)).startsWith("ffwd-handoff-"));
+    }
+  }
+
+  @Test
+  public void testBatchesAreShardedBySeries() throws Exception {
+    final int rounds = 300;
+    final HandoffOutputManager manager = newManager(4);
+    manager.start().get();
+
+    for (int i = 0; i < rounds * 3; i += 3) {
+      final List<Metric> points = new ArrayList<>();
+
+      for (int s = 0; s < SERIES; s++) {
+        manager.sendMetric(metric(s, i));
+        // the same series, with its tags in the common tags of a batch.
+        final Metric point = new Metric("key", Value.DoubleValue.create(1.0), i + 1,
+            ImmutableMap.of(), ImmutableMap.of());
+        manager.sendBatch(new Batch(ImmutableMap.of("series", String.valueOf(s)),
+            ImmutableMap.of(), ImmutableList.of(point)));
+        points.add(metric(s, i + 2));
+      }
+
+      // points of every series in one batch.
+      manager.sendBatch(new Batch(ImmutableMap.of(), ImmutableMap.of(), points));
+    }
+
+    manager.stop().get();
+
+    assertEquals(SERIES, received.size());
+
+    for (int s = 0; s < SERIES; s++) {
+      final List<Long> series = received.get(String.valueOf(s));
+      assertEquals(rounds * 3, series.size());
+
+      for (int i = 0; i < rounds * 3; i++) {
+        assertEquals(Long.valueOf(i), series.get(i));
+      }
+
+      assertTrue(threads.get(String.valueOf(s)).startsWith("ffwd-handoff-"));
+    }
+  }
+
+  @Test
+  public void testBurstsAreShardedBySeries() throws Exception {
+    final HandoffOutputManager manager = newManager(4);
+    manager.start().get();
+
+    final List<Metric> burst = new ArrayList<>();
+
+    for (int i = 0; i < POINTS; i++) {
+      for (int s = 0; s < SERIES; s++) {
+        burst.add(metric(s, i));
+      }
+
+      manager.sendMetrics(burst);
+      // the caller reuses the list.
+      burst.clear();
+    }
+
+    manager.sendMetrics(burst);
+    manager.stop().get();
+
+    verify(delegate, never()).sendMetric(any(Metric.class));
+    // one entry per shard and burst, at most.
+    assertTrue(bursts.get() <= POINTS * 4);
+    assertEquals(SERIES, received.size());
+
+    for (int s = 0; s < SERIES; s++) {
+      final List<Long> points = received.get(String.valueOf(s));
+      assertEquals(POINTS, points.size());
+
+      for (int i = 0; i < POINTS; i++) {
+        assertEquals(Long.valueOf(i), points.get(i));
+      }
+
+      assertTrue(threads.get(String.valueOf(s)).startsWith("ffwd-handoff-"));
+    }
+  }
+
+  @Test
+  public void testDropsAfterStop() throws Exception {
+    final CoreStatistics statistics = mock(CoreStatistics.class);
+    final HandoffStatistics handoff = mock(HandoffStatistics.class);
+    when(statistics.newHandoff(anyString())).thenReturn(handoff);
+
+    final HandoffOutputManager manager =
+        new HandoffOutputManager(delegate, async, statistics, 2, 64);
+    manager.start().get();
+    manager.stop().get();
+
+    manager.sendMetric(metric(0, 0));
+    manager.sendBatch(new Batch(ImmutableMap.of(), ImmutableMap.of(),
+        ImmutableList.of(metric(1, 0), metric(1, 1))));
+    manager.sendMetrics(ImmutableList.of(metric(2, 0), metric(2, 1), metric(2, 2)));
+
+    verify(handoff).reportDropped(1);
+    verify(handoff).reportDropped(2);
+    verify(handoff).reportDropped(3);
+    verify(delegate, never()).sendMetric(any(Metric.class));
+  }
+
+  private HandoffOutputManager newManager(final int threads) {
+    // a small ring, so that input threads have to wait for the processing threads.
+    return new HandoffOutputManager(delegate, async, NoopCoreStatistics.get(), threads, 64);
+  }
+
+  private static Metric metric(final int series, final long timestamp) {
+    final Map<String, String> tags = new HashMap<>();
+    tags.put("series", String.valueOf(series));
+    return new Metric("key", Value.DoubleValue.create(1.0), timestamp, tags, ImmutableMap.of());
+  }
+}
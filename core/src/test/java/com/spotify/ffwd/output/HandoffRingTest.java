@@ -0,0 +1,103 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class HandoffRingTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCapacityMustBePowerOfTwo() {
+    new HandoffRing(100);
+  }
+
+  @Test
+  public void testFull() {
+    final HandoffRing ring = new HandoffRing(4);
+
+    for (int i = 0; i < 4; i++) {
+      assertTrue(ring.offer(i));
+    }
+
+    assertFalse(ring.offer(4));
+    assertEquals(4, ring.size());
+
+    assertEquals(0, ring.poll());
+    assertTrue(ring.offer(4));
+
+    for (int i = 1; i <= 4; i++) {
+      assertEquals(i, ring.poll());
+    }
+
+    assertNull(ring.poll());
+    assertEquals(0, ring.size());
+  }
+
+  @Test
+  public void testProducersKeepTheirOrder() throws InterruptedException {
+    final HandoffRing ring = new HandoffRing(64);
+    final int producers = 4;
+    final int count = 10_000;
+    final List<Thread> threads = new ArrayList<>();
+
+    for (int p = 0; p < producers; p++) {
+      final int producer = p;
+
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < count; i++) {
+          while (!ring.offer(new int[]{producer, i})) {
+            Thread.yield();
+          }
+        }
+      }));
+    }
+
+    threads.forEach(Thread::start);
+
+    final int[] next = new int[producers];
+    int received = 0;
+
+    while (received < producers * count) {
+      final int[] entry = (int[]) ring.poll();
+
+      if (entry == null) {
+        ring.await(1_000_000);
+        continue;
+      }
+
+      assertEquals(next[entry[0]]++, entry[1]);
+      received++;
+    }
+
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+
+    assertNull(ring.poll());
+  }
+}
@@ -21,8 +21,15 @@
 package com.spotify.ffwd.output;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -44,7 +51,9 @@ import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
 import com.spotify.ffwd.model.v2.Value;
+import com.spotify.ffwd.statistics.InputPluginStatistics;
 import com.spotify.ffwd.statistics.OutputManagerStatistics;
+import com.spotify.ffwd.statistics.ReceiveStamp;
 import eu.toolchain.async.AsyncFramework;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -84,6 +93,8 @@ public class OutputManagerTest {
   private Integer rateLimit = null;
   private Long cardinalityLimit = null;
   private Long hyperLogLogPlusSwapPeriodMS = null;
+  private Long cardinalityKeyLimit = null;
+  private Map<String, Long> cardinalityTagLimits = ImmutableMap.of();
 
   @Mock
   private DebugServer debugServer;
@@ -148,12 +159,20 @@ public class OutputManagerTest {
         bind(Long.class).annotatedWith(Names.named("hyperLogLogPlusSwapPeriodMS"))
             .toProvider(Providers.of(
                 hyperLogLogPlusSwapPeriodMS));
+        bind(Long.class).annotatedWith(Names.named("cardinalityKeyLimit"))
+            .toProvider(Providers.of(cardinalityKeyLimit));
+        bind(new TypeLiteral<Map<String, Long>>() {
+        }).annotatedWith(Names.named("cardinalityTagLimits")).toInstance(cardinalityTagLimits);
       }
     });
 
     final Injector injector = Guice.createInjector(modules);
 
-    return injector.getInstance(OutputManager.class);
+    final CoreOutputManager outputManager =
+        (CoreOutputManager) injector.getInstance(OutputManager.class);
+    // estimate the cardinality on every call, so that limits apply right away
+    outputManager.setCardinalityEstimateInterval(0);
+    return outputManager;
   }
 
   @Test
@@ -169,6 +188,53 @@ public class OutputManagerTest {
             m1.getResource()), sendAndCaptureMetric(m1));
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSendMetrics() {
+    automaticHostTag = false;
+    final OutputManager outputManager = createOutputManager();
+    final ArgumentCaptor<List<Metric>> captor = ArgumentCaptor.forClass((Class) List.class);
+
+    outputManager.sendMetrics(Lists.newArrayList(m1, m1));
+
+    verify(sink, times(1)).sendMetricBurst(captor.capture());
+    verify(sink, never()).sendMetric(any(Metric.class));
+    verify(statistics).reportSentMetrics(2);
+
+    final Map<String, String> expectedTags = new HashMap<>(m1.getTags());
+    expectedTags.putAll(tags);
+    final Metric expected =
+        new Metric(m1.getKey(), m1.getValue(), m1.getTimestamp(), expectedTags, m1.getResource());
+
+    assertEquals(ImmutableList.of(expected, expected), captor.getValue());
+  }
+
+  @Test
+  public void testReportsHandoffLatency() {
+    final InputPluginStatistics input = Mockito.mock(InputPluginStatistics.class);
+    final ReceiveStamp received = ReceiveStamp.now(input);
+    m1.setReceived(received);
+
+    final Metric sent = sendAndCaptureMetric(m1);
+
+    verify(input).reportHandoffLatency(anyLong());
+    // the stamp is carried on to the outputs, to report their own latencies.
+    assertSame(received, sent.getReceived());
+  }
+
+  @Test
+  public void testReportsHandoffLatencyForBatches() {
+    final InputPluginStatistics input = Mockito.mock(InputPluginStatistics.class);
+    final ReceiveStamp received = ReceiveStamp.now(input);
+    final Batch batch = new Batch(Maps.newHashMap(), Maps.newHashMap(), Lists.newArrayList(m1));
+    batch.setReceived(received);
+
+    final Batch sent = sendAndCaptureBatch(batch);
+
+    verify(input).reportHandoffLatency(anyLong());
+    assertSame(received, sent.getReceived());
+  }
+
   @Test
   public void testAutomaticHostDisabled() {
     automaticHostTag = false;
@@ -220,6 +286,31 @@ public class OutputManagerTest {
     assertEquals(expected, sendAndCaptureBatch(batch).getPoints().get(0));
   }
 
+  @Test
+  public void testTagsToResourceFromGlobalTags() {
+    tags.put("foo", "globalval");
+    resource.put("bar", "existing");
+
+    final Metric metric = sendAndCaptureMetric(m1);
+
+    assertEquals(ImmutableMap.of("tag1", "value1", "role", "abc", "host", HOST),
+        metric.getTags());
+    assertEquals(ImmutableMap.of("gke_pod", "123", "bar", "existing"), metric.getResource());
+  }
+
+  @Test
+  public void testCommonTagsForBatches() {
+    final Batch batch = new Batch(ImmutableMap.of("role", "def", "foo", "fooval"),
+        ImmutableMap.of(), Collections.singletonList(m1));
+
+    final Batch filtered = sendAndCaptureBatch(batch);
+
+    assertEquals(ImmutableMap.of("role", "def"), filtered.getCommonTags());
+    assertEquals(ImmutableMap.of("gke_pod", "123", "bar", "fooval"),
+        filtered.getCommonResource());
+    assertEquals(m1.getTags(), filtered.getPoints().get(0).getTags());
+  }
+
   @Test
   public void testAcceptedRateLimiting() {
     rateLimit = 1000;
@@ -314,6 +405,24 @@ public class OutputManagerTest {
     verify(sink, times(sendNum - 1)).sendMetric(captor.capture());
   }
 
+  @Test
+  public void testCardinalityEstimatedPeriodically() {
+    cardinalityLimit = 19L;
+    int sendNum = 20;
+    CoreOutputManager outputManager = (CoreOutputManager) createOutputManager();
+    outputManager.setCardinalityEstimateInterval(60_000L);
+
+    for (int i = 0; i < sendNum; i++) {
+      outputManager.sendMetric(new Metric("main-key" + i, Value.DoubleValue.create(42.0),
+          System.currentTimeMillis(), Collections.singletonMap("key" + i, "value" + i),
+          ImmutableMap.of()));
+    }
+
+    // only the first metric is estimated, the limit is not reached until the next estimate
+    verify(sink, times(sendNum)).sendMetric(any(Metric.class));
+    verify(statistics, times(1)).reportMetricsCardinality(anyLong());
+  }
+
   @Test
   public void testMetricCardinalityDroppingWithSwap() {
     cardinalityLimit = 20L;
@@ -334,21 +443,21 @@ public class OutputManagerTest {
         System.currentTimeMillis(), ImmutableMap.of(), ImmutableMap.of());
     outputManager.sendMetric(mKey);
 
-    // This should give enough time to reset HLL++ in the next .sendMetric(..)
+    // This is longer than the cardinality window
     try {
       Thread.sleep(2500);
     } catch (InterruptedException e) {
       System.out.println(e);
     }
 
-    // This should allow most of the metrics to be sent even though the cardinality is high
+    // The series of the first burst have expired, so the same metrics are sent again
     for (int i = 0; i < sendNum; i++) {
       outputManager.sendMetric(new Metric("main-key" + i, Value.DoubleValue.create(42.0),
           System.currentTimeMillis(), Collections.singletonMap("key" + i, "value" + i),
           ImmutableMap.of()));
     }
 
-    verify(sink, times(39)).sendMetric(captor.capture());
+    verify(sink, times(40)).sendMetric(captor.capture());
   }
 
 
@@ -412,21 +521,86 @@ public class OutputManagerTest {
         System.currentTimeMillis(), ImmutableMap.of(), ImmutableMap.of());
     outputManager.sendMetric(mKey);
 
-    // This should give enough time to reset HLL++ in the next .sendMetric(..)
+    // This is longer than the cardinality window
     try {
       Thread.sleep(2500);
     } catch (InterruptedException e) {
       System.out.println(e);
     }
 
-    // This should allow most of the metrics to be sent even though the cardinality is high
+    // The series of the batch have expired, so all of these are sent
     for (int i = 0; i < sendNum; i++) {
       outputManager.sendMetric(
           new Metric("main-key" + i, Value.DoubleValue.create(42.0), System.currentTimeMillis(),
               Collections.singletonMap("key" + i, "value" + i), ImmutableMap.of()));
     }
 
-    verify(sink, times(20)).sendMetric(captor.capture());
+    verify(sink, times(21)).sendMetric(captor.capture());
+  }
+
+  @Test
+  public void testCardinalityKeyBudget() {
+    cardinalityKeyLimit = 10L;
+    OutputManager outputManager = createOutputManager();
+    ArgumentCaptor<Metric> captor = ArgumentCaptor.forClass(Metric.class);
+
+    for (int i = 0; i < 30; i++) {
+      outputManager.sendMetric(new Metric("bad-key", Value.DoubleValue.create(42.0),
+          System.currentTimeMillis(), Collections.singletonMap("series", "s" + i),
+          ImmutableMap.of()));
+    }
+
+    for (int i = 0; i < 5; i++) {
+      outputManager.sendMetric(new Metric("good-key", Value.DoubleValue.create(42.0),
+          System.currentTimeMillis(), Collections.singletonMap("series", "s" + i),
+          ImmutableMap.of()));
+    }
+
+    verify(sink, Mockito.atLeast(5)).sendMetric(captor.capture());
+
+    final long bad = captor.getAllValues().stream()
+        .filter(m -> m.getKey().equals("bad-key")).count();
+    final long good = captor.getAllValues().stream()
+        .filter(m -> m.getKey().equals("good-key")).count();
+
+    // only the key over its budget is throttled
+    assertTrue("sent " + bad + " bad metrics", bad >= 8 && bad <= 12);
+    assertEquals(5, good);
+    verify(statistics, times(30 - (int) bad)).reportMetricsDroppedByCardinalityBudget(1);
+    verify(statistics, atLeastOnce())
+        .reportCardinalityBudget(eq(CardinalityBudgets.KEY_BUDGET),
+            anyMapOf(String.class, Long.class));
+  }
+
+  @Test
+  public void testCardinalityTagBudgetInBatch() {
+    cardinalityTagLimits = ImmutableMap.of("what", 10L);
+    OutputManager outputManager = createOutputManager();
+    ArgumentCaptor<Batch> captor = ArgumentCaptor.forClass(Batch.class);
+
+    final List<Metric> points = new ArrayList<>();
+
+    for (int i = 0; i < 30; i++) {
+      points.add(new Metric(KEY, Value.DoubleValue.create(42.0), m1.getTimestamp(),
+          ImmutableMap.of("what", "bad", "series", "s" + i), ImmutableMap.of()));
+    }
+
+    for (int i = 0; i < 5; i++) {
+      points.add(new Metric(KEY, Value.DoubleValue.create(42.0), m1.getTimestamp(),
+          ImmutableMap.of("series", "s" + i), ImmutableMap.of()));
+    }
+
+    final Batch batch =
+        new Batch(ImmutableMap.of("what", "good"), Maps.newHashMap(), points);
+
+    // budgets are only checked against the last estimate, the first batch is sent as a whole
+    outputManager.sendBatch(batch);
+    outputManager.sendBatch(batch);
+
+    verify(sink, times(2)).sendBatch(captor.capture());
+    assertEquals(35, captor.getAllValues().get(0).getPoints().size());
+    assertEquals(points.subList(30, 35), captor.getAllValues().get(1).getPoints());
+    verify(statistics).reportMetricsDroppedByCardinalityBudget(30);
   }
 
   private Metric sendAndCaptureMetric(Metric metric) {
@@ -0,0 +1,84 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class OverlayMapTest {
+
+  private final Map<String, String> base = ImmutableMap.of("a", "1", "b", "2", "c", "3");
+
+  @Test
+  public void testOverlay() {
+    final Map<String, String> overlay = new HashMap<>();
+    overlay.put("b", "20");
+    overlay.put("d", "40");
+
+    final Map<String, String> expected = new HashMap<>(base);
+    expected.putAll(overlay);
+
+    final Map<String, String> map = OverlayMap.of(base, overlay);
+
+    assertEquals(expected, map);
+    assertEquals(map, expected);
+    assertEquals(expected.hashCode(), map.hashCode());
+    assertEquals(expected.size(), map.size());
+    assertEquals(expected.entrySet(), map.entrySet());
+    assertEquals("20", map.get("b"));
+    assertTrue(map.containsKey("a"));
+    assertFalse(map.containsKey("e"));
+    assertNull(map.get("e"));
+  }
+
+  @Test
+  public void testNullValueShadowsBase() {
+    final Map<String, String> overlay = new HashMap<>();
+    overlay.put("a", null);
+
+    final Map<String, String> map = OverlayMap.of(base, overlay);
+
+    assertNull(map.get("a"));
+    assertTrue(map.containsKey("a"));
+    assertEquals(3, map.size());
+  }
+
+  @Test
+  public void testEmpty() {
+    final Map<String, String> empty = ImmutableMap.of();
+
+    assertSame(base, OverlayMap.of(base, empty));
+    assertSame(base, OverlayMap.of(empty, base));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testReadOnly() {
+    OverlayMap.of(base, ImmutableMap.of("d", "4")).put("e", "5");
+  }
+}
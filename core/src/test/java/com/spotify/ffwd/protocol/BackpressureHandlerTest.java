@@ -0,0 +1,106 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+
+import com.spotify.ffwd.output.OutputPressure;
+import com.spotify.ffwd.statistics.BackpressureStatistics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BackpressureHandlerTest {
+
+  @Mock
+  private BackpressureStatistics statistics;
+
+  private OutputPressure pressure;
+  private OutputPressure.Output first;
+  private OutputPressure.Output second;
+
+  @Before
+  public void setup() {
+    pressure = new OutputPressure(0.5, statistics);
+    first = pressure.register("first");
+    second = pressure.register("second");
+  }
+
+  @Test
+  public void testPausesStreamChannels() {
+    final EmbeddedChannel channel = new EmbeddedChannel(new BackpressureHandler(pressure, false));
+    assertTrue(channel.config().isAutoRead());
+
+    first.saturated(true);
+    assertFalse(channel.config().isAutoRead());
+
+    second.saturated(true);
+    first.saturated(false);
+    assertFalse(channel.config().isAutoRead());
+
+    second.saturated(false);
+    assertTrue(channel.config().isAutoRead());
+  }
+
+  @Test
+  public void testNewStreamChannelsStartPaused() {
+    final BackpressureHandler handler = new BackpressureHandler(pressure, false);
+
+    first.saturated(true);
+
+    final EmbeddedChannel channel = new EmbeddedChannel(handler);
+    assertFalse(channel.config().isAutoRead());
+
+    first.saturated(false);
+    assertTrue(channel.config().isAutoRead());
+  }
+
+  @Test
+  public void testShedsDatagrams() {
+    final EmbeddedChannel channel = new EmbeddedChannel(new BackpressureHandler(pressure, true));
+
+    first.saturated(true);
+
+    final ByteBuf shed = Unpooled.copiedBuffer(new byte[]{1});
+    channel.writeInbound(shed);
+    assertNull(channel.readInbound());
+    assertEquals(0, shed.refCnt());
+    assertTrue(channel.config().isAutoRead());
+    verify(statistics).reportShedDatagrams(1);
+
+    first.saturated(false);
+
+    final ByteBuf passed = Unpooled.copiedBuffer(new byte[]{2});
+    channel.writeInbound(passed);
+    assertEquals(passed, channel.readInbound());
+    passed.release();
+  }
+}
@@ -0,0 +1,103 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.protocol;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.collect.ImmutableList;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.TinyAsync;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MultiProtocolConnectionTest {
+
+  @Mock
+  private ProtocolConnection first;
+
+  @Mock
+  private ProtocolConnection second;
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final AsyncFramework async = TinyAsync.builder().executor(executor).build();
+
+  private MultiProtocolConnection connection;
+
+  @Before
+  public void setup() {
+    connection = new MultiProtocolConnection(async, ImmutableList.of(first, second));
+  }
+
+  @After
+  public void teardown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testSendsThroughFirst() {
+    final Object message = new Object();
+
+    connection.send(message);
+    connection.sendAll(Collections.singletonList(message));
+
+    verify(first).send(message);
+    verify(first).sendAll(Collections.singletonList(message));
+    verify(second, never()).send(message);
+  }
+
+  @Test
+  public void testStopsAll() throws Exception {
+    doReturn(async.resolved()).when(first).stop();
+    doReturn(async.resolved()).when(second).stop();
+
+    connection.stop().get();
+
+    verify(first).stop();
+    verify(second).stop();
+  }
+
+  @Test
+  public void testConnectedIfAllAre() {
+    doReturn(true).when(first).isConnected();
+    doReturn(false).when(second).isConnected();
+    assertFalse(connection.isConnected());
+
+    doReturn(true).when(second).isConnected();
+    assertTrue(connection.isConnected());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsNoConnections() {
+    new MultiProtocolConnection(async, Collections.emptyList());
+  }
+}
@@ -0,0 +1,118 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.protocol;
+
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+import com.spotify.ffwd.capture.TrafficCapture;
+import com.spotify.ffwd.output.OutputPressure;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.TinyAsync;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import java.net.InetSocketAddress;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.slf4j.Logger;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProtocolServersImplTest {
+
+  @Mock
+  private Logger log;
+
+  @Mock
+  private ProtocolServer server;
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final AsyncFramework async = TinyAsync.builder().executor(executor).build();
+  private EventLoopGroup group;
+  private Timer timer;
+  private ProtocolServers servers;
+
+  @Before
+  public void setup() {
+    group = new NioEventLoopGroup(1);
+    timer = new HashedWheelTimer();
+
+    doReturn(new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(final Channel ch) {
+      }
+    }).when(server).initializer();
+
+    servers = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(AsyncFramework.class).toInstance(async);
+        bind(EventLoopGroup.class).annotatedWith(Names.named("boss")).toInstance(group);
+        bind(EventLoopGroup.class).annotatedWith(Names.named("worker")).toInstance(group);
+        bind(Timer.class).toInstance(timer);
+        bind(Transport.class).toInstance(Transport.select(false));
+        bind(new TypeLiteral<Optional<TrafficCapture>>() {
+        }).annotatedWith(Names.named("capture")).toInstance(Optional.empty());
+        bind(OutputPressure.class).toInstance(OutputPressure.disabled());
+      }
+    }).getInstance(ProtocolServersImpl.class);
+  }
+
+  @After
+  public void teardown() {
+    timer.stop();
+    group.shutdownGracefully();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testSingleSocketWithoutEpoll() throws Exception {
+    final Protocol protocol = new Protocol(ProtocolType.UDP,
+        new InetSocketAddress("127.0.0.1", 0), null, null, ProtocolFactory.DEFAULT_BACKLOG,
+        ProtocolFactory.DEFAULT_KEEP_ALIVE, 4);
+
+    final ProtocolConnection connection =
+        servers.bind(log, protocol, server, new RetryPolicy.Constant(100L)).get();
+
+    verify(log).warn(anyString(), eq(protocol), eq(4));
+    assertFalse(connection instanceof MultiProtocolConnection);
+
+    connection.stop().get();
+  }
+}
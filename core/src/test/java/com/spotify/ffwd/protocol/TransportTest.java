@@ -0,0 +1,54 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.Test;
+
+public class TransportTest {
+
+  @Test
+  public void testSelectNio() {
+    final Transport transport = Transport.select(false);
+
+    assertFalse(transport.isEpoll());
+    assertEquals(NioServerSocketChannel.class, transport.serverChannel());
+    assertEquals(NioSocketChannel.class, transport.socketChannel());
+    assertEquals(NioDatagramChannel.class, transport.datagramChannel());
+  }
+
+  @Test
+  public void testSelectNative() {
+    final Transport transport = Transport.select(true);
+
+    // falls back to NIO where epoll is not available.
+    assertEquals(Epoll.isAvailable(), transport.isEpoll());
+    assertEquals(Epoll.isAvailable() ? EpollDatagramChannel.class : NioDatagramChannel.class,
+        transport.datagramChannel());
+  }
+}
@@ -0,0 +1,51 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.qlog;
+
+import static org.junit.Assert.assertNotNull;
+
+import com.spotify.ffwd.module.Spooling;
+import java.util.Optional;
+import org.junit.Test;
+
+public class QLogSpoolFactoryTest {
+
+  private final QLogSpoolFactory factory = new QLogSpoolFactory();
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsSharedPath() {
+    factory.newSpool("1", spooling("/var/spool/ffwd"));
+    factory.newSpool("2", spooling("/var/spool/ffwd/../ffwd"));
+  }
+
+  @Test
+  public void testSeparatePaths() {
+    assertNotNull(factory.newSpool("1", spooling("/var/spool/ffwd/a")));
+    assertNotNull(factory.newSpool("2", spooling("/var/spool/ffwd/b")));
+    // the same output may ask for its spool again.
+    assertNotNull(factory.newSpool("1", spooling("/var/spool/ffwd/a")));
+  }
+
+  private static Spooling spooling(final String path) {
+    return new Spooling(path, Optional.empty(), Optional.empty(), Optional.empty(),
+        Optional.empty());
+  }
+}
@@ -0,0 +1,217 @@
+/*-
+ * -\-\-
+ * FastForward Core
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.qlog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.ByteString;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.model.v2.Value;
+import com.spotify.ffwd.output.Spool;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.TinyAsync;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class QLogSpoolTest {
+
+  private static final int MAX_LOG_SIZE = 1024 * 1024;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private ExecutorService executor;
+  private AsyncFramework async;
+  private Path path;
+
+  @Before
+  public void setup() {
+    executor = Executors.newSingleThreadExecutor();
+    async = TinyAsync.builder().executor(executor).build();
+    path = folder.getRoot().toPath().resolve("spool");
+  }
+
+  @After
+  public void teardown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testReplayAndCommit() throws Exception {
+    final QLogSpool spool = newSpool();
+    spool.start().get();
+
+    spool.write(metrics(2500));
+
+    // reads whole entries, until at least the requested number of metrics has been read.
+    final Spool.Entries first = spool.read(1500);
+    assertEquals(2000, first.getMetrics().size());
+
+    // nothing is consumed until committed.
+    assertEquals(2000, spool.read(1500).getMetrics().size());
+
+    spool.commit(first);
+
+    final Spool.Entries second = spool.read(10000);
+    assertEquals(500, second.getMetrics().size());
+    assertEquals("key-2000", second.getMetrics().get(0).getKey());
+
+    spool.commit(second);
+
+    assertTrue(spool.read(10000).getMetrics().isEmpty());
+
+    spool.stop().get();
+  }
+
+  @Test
+  public void testSurvivesRestart() throws Exception {
+    final List<Metric> written = metrics(10);
+    written.add(new Metric("distribution", Value.DistributionValue.create(
+        ByteString.copyFromUtf8("sketch")), 42L, ImmutableMap.of("what", "latency"),
+        ImmutableMap.of("pod", "a")));
+
+    final QLogSpool before = newSpool();
+    before.start().get();
+    before.write(written);
+    before.stop().get();
+
+    final QLogSpool after = newSpool();
+    after.start().get();
+
+    final List<Metric> read = after.read(100).getMetrics();
+    assertEquals(written.size(), read.size());
+
+    for (int i = 0; i < written.size(); i++) {
+      final Metric expected = written.get(i);
+      final Metric actual = read.get(i);
+      assertEquals(expected, actual);
+      assertEquals(expected.getValue(), actual.getValue());
+      assertEquals(expected.getTimestamp(), actual.getTimestamp());
+      assertEquals(expected.getResource(), actual.getResource());
+    }
+
+    after.stop().get();
+  }
+
+  @Test
+  public void testLongAndNullStrings() throws Exception {
+    final Map<String, String> tags = new HashMap<>();
+    tags.put("long", Strings.repeat("x", 100000));
+    tags.put("missing", null);
+
+    final Metric metric =
+        new Metric(null, Value.DoubleValue.create(1.0), 1000L, tags, ImmutableMap.of());
+
+    final QLogSpool spool = newSpool();
+    spool.start().get();
+    spool.write(Collections.singletonList(metric));
+
+    final Metric read = spool.read(100).getMetrics().get(0);
+    assertNull(read.getKey());
+    assertEquals(tags, read.getTags());
+
+    spool.stop().get();
+  }
+
+  @Test
+  public void testSkipsCorruptEntries() throws Exception {
+    final QLogManagerImpl qlog = new QLogManagerImpl(path, async, MAX_LOG_SIZE);
+    final QLogSpool spool = new QLogSpool("1", path, async, qlog);
+    spool.start().get();
+
+    final ByteBuffer corrupt = ByteBuffer.allocate(8);
+    corrupt.putInt(10);
+    corrupt.putInt(Integer.MAX_VALUE);
+    corrupt.flip();
+
+    qlog.write(corrupt);
+    spool.write(metrics(10));
+
+    final Spool.Entries entries = spool.read(100);
+    assertEquals(10, entries.getMetrics().size());
+    assertEquals(10, entries.getDropped());
+
+    spool.commit(entries);
+    assertTrue(spool.read(100).getMetrics().isEmpty());
+
+    spool.stop().get();
+  }
+
+  @Test
+  public void testKeepsCursorBetweenReads() throws Exception {
+    final QLogManagerImpl qlog = spy(new QLogManagerImpl(path, async, MAX_LOG_SIZE));
+    final QLogSpool spool = new QLogSpool("1", path, async, qlog);
+    spool.start().get();
+
+    spool.write(metrics(3000));
+
+    for (int i = 0; i < 3; i++) {
+      final Spool.Entries entries = spool.read(1000);
+      assertEquals("key-" + i * 1000, entries.getMetrics().get(0).getKey());
+      spool.commit(entries);
+    }
+
+    verify(qlog, times(1)).reader(anyLong());
+
+    // a read which was not committed is read again.
+    spool.write(metrics(1));
+    spool.read(1000);
+    assertEquals("key-0", spool.read(1000).getMetrics().get(0).getKey());
+    verify(qlog, times(2)).reader(anyLong());
+
+    spool.stop().get();
+  }
+
+  private QLogSpool newSpool() {
+    return new QLogSpool("1", path, async, new QLogManagerImpl(path, async, MAX_LOG_SIZE));
+  }
+
+  private List<Metric> metrics(final int count) {
+    final List<Metric> metrics = new ArrayList<>();
+
+    for (int i = 0; i < count; i++) {
+      metrics.add(new Metric("key-" + i, Value.DoubleValue.create(i), 1000L + i,
+          ImmutableMap.of("what", "test", "index", String.valueOf(i)), ImmutableMap.of()));
+    }
+
+    return metrics;
+  }
+}
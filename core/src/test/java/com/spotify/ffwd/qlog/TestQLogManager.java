@@ -20,19 +20,31 @@
 
 package com.spotify.ffwd.qlog;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import com.spotify.ffwd.module.SyncPolicy;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.TinyAsync;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class TestQLogManager {
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   @Test
   @Ignore
   public void testBasic() throws InterruptedException, ExecutionException, IOException {
@@ -65,4 +77,93 @@ public class TestQLogManager {
 
     executor.shutdown();
   }
+
+  @Test
+  public void testReaderAcrossSegments() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(1);
+    final AsyncFramework async = TinyAsync.builder().executor(executor).build();
+    final Path path = folder.getRoot().toPath();
+
+    final QLogManager log =
+        new QLogManagerImpl(path, async, 10000, SyncPolicy.ALWAYS, 0);
+    log.start().get();
+
+    // ten entries per segment.
+    for (int i = 0; i < 100; i++) {
+      log.write(entry(i, 990));
+    }
+
+    assertEquals(100, log.position());
+
+    final QLogReader all = log.reader(0);
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, all.position());
+      assertEquals(i, all.next().get(0));
+    }
+
+    assertNull(all.next());
+
+    // the reader picks up entries written after it reached the end.
+    log.write(entry(100, 990));
+    assertEquals(100, all.next().get(0));
+    assertEquals(101, all.position());
+
+    final QLogReader middle = log.reader(55);
+    assertEquals(55, middle.position());
+    assertEquals(55, middle.next().get(0));
+
+    log.update("consumer", 55);
+    log.trim();
+
+    assertEquals(55, log.reader(55).next().get(0));
+
+    try (final java.util.stream.Stream<Path> files = Files.list(path)) {
+      // segments starting at 50, 60, ..., 100, and the index.
+      assertEquals(7, files.count());
+    }
+
+    log.stop().get();
+
+    final QLogManager reopened =
+        new QLogManagerImpl(path, async, 10000, SyncPolicy.ALWAYS, 0);
+    reopened.start().get();
+
+    assertEquals(101, reopened.position());
+    assertEquals(55, reopened.offset("consumer"));
+    assertEquals(99, reopened.reader(99).next().get(0));
+
+    reopened.stop().get();
+    executor.shutdown();
+  }
+
+  @Test
+  public void testSyncsAtInterval() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(1);
+    final AsyncFramework async = TinyAsync.builder().executor(executor).build();
+
+    final QLogManagerImpl log = new QLogManagerImpl(folder.getRoot().toPath(), async, 10000,
+        SyncPolicy.INTERVAL, 10);
+    log.start().get();
+
+    log.write(entry(0, 100));
+
+    // forced without any further writes.
+    final long deadline = System.currentTimeMillis() + 5000;
+
+    while (log.isDirty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertFalse(log.isDirty());
+
+    log.stop().get();
+    executor.shutdown();
+  }
+
+  private ByteBuffer entry(final int index, final int size) {
+    final ByteBuffer buf = ByteBuffer.allocate(size);
+    buf.put(0, (byte) index);
+    return buf;
+  }
 }
@@ -23,23 +23,46 @@ package com.spotify.ffwd.carbon;
 import com.google.common.collect.ImmutableMap;
 import com.spotify.ffwd.model.v2.Metric;
 import com.spotify.ffwd.model.v2.Value;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.handler.codec.MessageToMessageDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringEscapeUtils;
 
+/**
+ * Decodes framed carbon lines, {@code <path> <value> <timestamp>}, straight out of the buffer.
+ * <p>
+ * The path is put in the {@code what} tag. Graphite 1.1 tagged paths, {@code
+ * <path>;<tag>=<value>;...}, additionally have their tags mapped into the tags of the metric.
+ */
 @Sharable
-public class CarbonDecoder extends MessageToMessageDecoder<String> {
+public class CarbonDecoder extends MessageToMessageDecoder<ByteBuf> {
 
   private static final Map<String, String> EMPTY_RESOURCE = ImmutableMap.of();
-  private static final Pattern WHITE_SPACE_PATTERN = Pattern.compile("\\s+");
+
+  private static final String WHAT = "what";
+  private static final int STRING_CACHE_SIZE = 1 << 14;
+
+  /**
+   * Powers of ten which are exactly representable as doubles.
+   */
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+      1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+  };
+
+  /**
+   * Mantissas up to this can take another digit and still be exactly representable as a double.
+   */
+  private static final long MAX_FAST_MANTISSA = ((1L << 53) - 9) / 10;
 
   private final String key;
+  private final StringCache strings = new StringCache(STRING_CACHE_SIZE);
 
   public CarbonDecoder(final String key) {
     this.key = key;
@@ -47,36 +70,221 @@ public class CarbonDecoder extends MessageToMessageDecoder<String> {
 
   @Override
   protected void decode(
-      final ChannelHandlerContext arg0, final String in, final List<Object> out
+      final ChannelHandlerContext ctx, final ByteBuf in, final List<Object> out
   ) throws Exception {
+    final int end = trimEnd(in, in.readerIndex(), in.writerIndex());
 
-    final String[] tokens = WHITE_SPACE_PATTERN.split(in);
+    final int pathStart = skipWhitespace(in, in.readerIndex(), end);
+    final int pathEnd = skipToken(in, pathStart, end);
+    final int valueStart = skipWhitespace(in, pathEnd, end);
+    final int valueEnd = skipToken(in, valueStart, end);
+    final int timestampStart = skipWhitespace(in, valueEnd, end);
+    final int timestampEnd = skipToken(in, timestampStart, end);
 
-    if (tokens.length != 3) {
-      throw new CorruptedFrameException(String.format("malformed carbon frame (%s)", in));
+    if (pathStart == pathEnd || valueStart == valueEnd || timestampStart == timestampEnd
+        || timestampEnd != end) {
+      throw new CorruptedFrameException(String.format("malformed carbon frame (%s)", line(in)));
     }
 
     final double value;
-    try {
-      value = Double.valueOf(tokens[1]);
-    } catch (final NumberFormatException e) {
-      throw new CorruptedFrameException(
-          String.format("malformed carbon frame (%s), (%s) is an invalid value", in,
-              StringEscapeUtils.escapeJava(tokens[1])));
-    }
 
-    final long timestamp;
     try {
-      timestamp = Long.valueOf(tokens[2]);
+      value = parseValue(in, valueStart, valueEnd);
     } catch (final NumberFormatException e) {
-      throw new CorruptedFrameException(
-          String.format("malformed carbon frame (%s), (%s) is an invalid timestamp", in,
-              StringEscapeUtils.escapeJava(tokens[2])));
+      throw invalid(in, valueStart, valueEnd, "value");
     }
 
+    final long timestamp = parseTimestamp(in, timestampStart, timestampEnd);
+
     final Map<String, String> tags = new HashMap<>();
-    tags.put("what", tokens[0]);
+    final int nameEnd = parseTags(in, pathStart, pathEnd, tags);
+    tags.put(WHAT, strings.get(in, pathStart, nameEnd - pathStart));
 
     out.add(new Metric(key, Value.DoubleValue.create(value), timestamp, tags, EMPTY_RESOURCE));
   }
+
+  /**
+   * Parse the tags of a Graphite 1.1 tagged path into the given map.
+   *
+   * @return The end of the name part of the path.
+   */
+  private int parseTags(
+      final ByteBuf in, final int start, final int end, final Map<String, String> tags
+  ) {
+    int tagStart = indexOf(in, start, end, (byte) ';');
+    final int nameEnd = tagStart;
+
+    if (nameEnd == start) {
+      throw invalid(in, start, end, "path");
+    }
+
+    while (tagStart < end) {
+      // skip the separator
+      tagStart++;
+
+      final int tagEnd = indexOf(in, tagStart, end, (byte) ';');
+      final int equals = indexOf(in, tagStart, tagEnd, (byte) '=');
+
+      if (equals == tagStart || equals >= tagEnd - 1) {
+        throw invalid(in, tagStart, tagEnd, "tag");
+      }
+
+      tags.put(strings.get(in, tagStart, equals - tagStart),
+          strings.get(in, equals + 1, tagEnd - equals - 1));
+      tagStart = tagEnd;
+    }
+
+    return nameEnd;
+  }
+
+  /**
+   * Parse a double.
+   * <p>
+   * Plain decimals with a mantissa and a power of ten that are both exactly representable as
+   * doubles are computed with a single, correctly rounded, division. Everything else (exponents,
+   * NaN, Infinity, many significant digits) goes through {@link Double#parseDouble(String)}.
+   */
+  static double parseValue(final ByteBuf in, final int start, final int end) {
+    int i = start;
+    boolean negative = false;
+
+    final byte sign = in.getByte(i);
+
+    if (sign == '-' || sign == '+') {
+      negative = sign == '-';
+      i++;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean fraction = false;
+
+    for (; i < end; i++) {
+      final byte b = in.getByte(i);
+
+      if (b >= '0' && b <= '9') {
+        if (mantissa > MAX_FAST_MANTISSA) {
+          return parseValueSlow(in, start, end);
+        }
+
+        mantissa = mantissa * 10 + (b - '0');
+        digits++;
+
+        if (fraction) {
+          scale++;
+        }
+
+        continue;
+      }
+
+      if (b == '.' && !fraction) {
+        fraction = true;
+        continue;
+      }
+
+      return parseValueSlow(in, start, end);
+    }
+
+    if (digits == 0 || scale >= POWERS_OF_TEN.length) {
+      return parseValueSlow(in, start, end);
+    }
+
+    final double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+    return negative ? -value : value;
+  }
+
+  private static double parseValueSlow(final ByteBuf in, final int start, final int end) {
+    return Double.parseDouble(in.toString(start, end - start, StandardCharsets.US_ASCII));
+  }
+
+  private static long parseTimestamp(final ByteBuf in, final int start, final int end) {
+    int i = start;
+    boolean negative = false;
+
+    final byte sign = in.getByte(i);
+
+    if (sign == '-' || sign == '+') {
+      negative = sign == '-';
+      i++;
+    }
+
+    if (i == end) {
+      throw invalid(in, start, end, "timestamp");
+    }
+
+    long timestamp = 0;
+
+    for (; i < end; i++) {
+      final int digit = in.getByte(i) - '0';
+
+      if (digit < 0 || digit > 9 || timestamp > (Long.MAX_VALUE - digit) / 10) {
+        throw invalid(in, start, end, "timestamp");
+      }
+
+      timestamp = timestamp * 10 + digit;
+    }
+
+    return negative ? -timestamp : timestamp;
+  }
+
+  private static int trimEnd(final ByteBuf in, final int start, final int end) {
+    int i = end;
+
+    while (i > start && isWhitespace(in.getByte(i - 1))) {
+      i--;
+    }
+
+    return i;
+  }
+
+  private static int skipWhitespace(final ByteBuf in, final int start, final int end) {
+    int i = start;
+
+    while (i < end && isWhitespace(in.getByte(i))) {
+      i++;
+    }
+
+    return i;
+  }
+
+  private static int skipToken(final ByteBuf in, final int start, final int end) {
+    int i = start;
+
+    while (i < end && !isWhitespace(in.getByte(i))) {
+      i++;
+    }
+
+    return i;
+  }
+
+  private static int indexOf(final ByteBuf in, final int start, final int end, final byte value) {
+    int i = start;
+
+    while (i < end && in.getByte(i) != value) {
+      i++;
+    }
+
+    return i;
+  }
+
+  /**
+   * The same characters as {@code \s} in a regular expression.
+   */
+  private static boolean isWhitespace(final byte b) {
+    return b == ' ' || b == '\t' || b == '\n' || b == 0x0b || b == '\f' || b == '\r';
+  }
+
+  private static String line(final ByteBuf in) {
+    return in.toString(StandardCharsets.UTF_8);
+  }
+
+  private static CorruptedFrameException invalid(
+      final ByteBuf in, final int start, final int end, final String what
+  ) {
+    final String token = in.toString(start, end - start, StandardCharsets.UTF_8);
+    return new CorruptedFrameException(
+        String.format("malformed carbon frame (%s), (%s) is an invalid %s", line(in),
+            StringEscapeUtils.escapeJava(token), what));
+  }
 }
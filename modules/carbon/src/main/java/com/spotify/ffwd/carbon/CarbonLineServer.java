@@ -26,8 +26,6 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelInboundHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.handler.codec.LineBasedFrameDecoder;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.util.CharsetUtil;
 
 public class CarbonLineServer implements ProtocolServer {
 
@@ -45,7 +43,6 @@ public class CarbonLineServer implements ProtocolServer {
       @Override
       protected void initChannel(final Channel ch) throws Exception {
         ch.pipeline().addLast(new LineBasedFrameDecoder(MAX_LINE));
-        ch.pipeline().addLast(new StringDecoder(CharsetUtil.UTF_8));
         ch.pipeline().addLast(decoder, handler);
       }
     };
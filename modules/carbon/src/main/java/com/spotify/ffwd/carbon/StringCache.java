@@ -0,0 +1,100 @@
+/*-
+ * -\-\-
+ * FastForward Carbon Module
+ * --
+ * Copyright (C) 2016 - 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.carbon;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A lossy cache of strings decoded from bytes.
+ * <p>
+ * Metric names and tags repeat on every line sent for a series, so looking them up here avoids
+ * decoding a new string for each of them. Slots are overwritten on collision and accessed without
+ * synchronization, which is safe since strings are immutable: a racing reader at worst misses.
+ */
+class StringCache {
+
+  /**
+   * Longer strings are always decoded, comparing them costs about as much as decoding them.
+   */
+  static final int MAX_LENGTH = 256;
+
+  private final String[] slots;
+  private final int mask;
+
+  StringCache(final int size) {
+    if (Integer.bitCount(size) != 1) {
+      throw new IllegalArgumentException("size must be a power of two: " + size);
+    }
+
+    this.slots = new String[size];
+    this.mask = size - 1;
+  }
+
+  /**
+   * Get the string of the given region of the buffer.
+   */
+  String get(final ByteBuf buf, final int index, final int length) {
+    if (length > MAX_LENGTH) {
+      return buf.toString(index, length, StandardCharsets.UTF_8);
+    }
+
+    int hash = 0;
+
+    for (int i = index; i < index + length; i++) {
+      final byte b = buf.getByte(i);
+
+      // only ascii maps byte for char, decode anything else.
+      if (b < 0) {
+        return buf.toString(index, length, StandardCharsets.UTF_8);
+      }
+
+      hash = 31 * hash + b;
+    }
+
+    final int slot = (hash ^ (hash >>> 16)) & mask;
+    final String cached = slots[slot];
+
+    if (cached != null && matches(cached, buf, index, length)) {
+      return cached;
+    }
+
+    final String value = buf.toString(index, length, StandardCharsets.US_ASCII);
+    slots[slot] = value;
+    return value;
+  }
+
+  private static boolean matches(
+      final String cached, final ByteBuf buf, final int index, final int length
+  ) {
+    if (cached.length() != length) {
+      return false;
+    }
+
+    for (int i = 0; i < length; i++) {
+      if (cached.charAt(i) != buf.getByte(index + i)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,127 @@
+/*-
+ * -\-\-
+ * FastForward Carbon Module
+ * --
+ * Copyright (C) 2021 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.ffwd.carbon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableMap;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.model.v2.Value;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class CarbonDecoderTest {
+
+  private final CarbonDecoder decoder = new CarbonDecoder("carbon");
+
+  @Test
+  public void testDecode() throws Exception {
+    final Metric m = decode("foo.bar.baz 42.5 1600000000");
+
+    assertEquals("carbon", m.getKey());
+    assertEquals(Value.DoubleValue.create(42.5), m.getValue());
+    assertEquals(1600000000L, m.getTimestamp());
+    assertEquals(ImmutableMap.of("what", "foo.bar.baz"), m.getTags());
+  }
+
+  @Test
+  public void testDecodeWhitespace() throws Exception {
+    final Metric m = decode("foo.bar\t 1  \t1600000000 \r");
+
+    assertEquals(Value.DoubleValue.create(1D), m.getValue());
+    assertEquals(ImmutableMap.of("what", "foo.bar"), m.getTags());
+  }
+
+  @Test
+  public void testDecodeTagged() throws Exception {
+    final Metric m = decode("foo.bar;host=a.example.net;what=ignored;site=lon 1 1600000000");
+
+    assertEquals(ImmutableMap.of("what", "foo.bar", "host", "a.example.net", "site", "lon"),
+        m.getTags());
+  }
+
+  @Test
+  public void testNamesAreCached() throws Exception {
+    final Metric a = decode("foo.bar;site=lon 1 1600000000");
+    final Metric b = decode("foo.bar;site=lon 2 1600000001");
+
+    assertSame(a.getTags().get("what"), b.getTags().get("what"));
+    assertSame(a.getTags().get("site"), b.getTags().get("site"));
+  }
+
+  @Test
+  public void testValuesMatchParseDouble() throws Exception {
+    final String[] values = {
+        "0", "-0", "1", "+1", "-1", "0.1", "-0.1", "3.14159", "1.", ".5", "123456789.123456789",
+        "9007199254740993", "0.30000000000000004", "1e3", "-2.5E-7", "NaN", "Infinity",
+        "-Infinity", "0.0000000000000000000001", "0.00000000000000000000001", "1234.5678",
+    };
+
+    for (final String value : values) {
+      final ByteBuf buf = Unpooled.copiedBuffer(value, StandardCharsets.US_ASCII);
+      assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)),
+          Double.doubleToLongBits(CarbonDecoder.parseValue(buf, 0, buf.writerIndex())));
+    }
+  }
+
+  @Test(expected = CorruptedFrameException.class)
+  public void testTooFewTokens() throws Exception {
+    decode("foo.bar 1");
+  }
+
+  @Test(expected = CorruptedFrameException.class)
+  public void testTooManyTokens() throws Exception {
+    decode("foo.bar 1 1600000000 extra");
+  }
+
+  @Test(expected = CorruptedFrameException.class)
+  public void testInvalidValue() throws Exception {
+    decode("foo.bar one 1600000000");
+  }
+
+  @Test(expected = CorruptedFrameException.class)
+  public void testInvalidTimestamp() throws Exception {
+    decode("foo.bar 1 1600000000.5");
+  }
+
+  @Test(expected = CorruptedFrameException.class)
+  public void testInvalidTag() throws Exception {
+    decode("foo.bar;host 1 1600000000");
+  }
+
+  @Test(expected = CorruptedFrameException.class)
+  public void testEmptyTagValue() throws Exception {
+    decode("foo.bar;host= 1 1600000000");
+  }
+
+  private Metric decode(final String line) throws Exception {
+    final List<Object> out = new ArrayList<>();
+    decoder.decode(null, Unpooled.copiedBuffer(line, StandardCharsets.UTF_8), out);
+    assertEquals(1, out.size());
+    return (Metric) out.get(0);
+  }
+}
@@ -23,8 +23,10 @@ package com.spotify.ffwd.http;
 import static io.netty.handler.codec.http.HttpMethod.GET;
 import static io.netty.handler.codec.http.HttpMethod.POST;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.spotify.ffwd.model.v2.Batch;
+import com.spotify.ffwd.model.v2.JsonMetrics;
 import com.spotify.ffwd.model.v2.Metric;
 import com.spotify.ffwd.model.v2.Value;
 import io.netty.buffer.ByteBuf;
@@ -104,10 +106,12 @@ public class HttpDecoder extends MessageToMessageDecoder<FullHttpRequest> {
 
   private Object convertToBatch(final FullHttpRequest in) {
     final String endPoint = in.uri();
-    try (final InputStream inputStream = new ByteBufInputStream(in.content())) {
+    try {
       if ("/v2/batch".equals(endPoint)) {
-        return mapper.readValue(inputStream, Batch.class);
-      } else {
+        return readBatch(in.content());
+      }
+
+      try (final InputStream inputStream = new ByteBufInputStream(in.content())) {
         com.spotify.ffwd.model.Batch batch =
             mapper.readValue(inputStream, com.spotify.ffwd.model.Batch.class);
         return convert(batch);
@@ -119,6 +123,13 @@ public class HttpDecoder extends MessageToMessageDecoder<FullHttpRequest> {
     }
   }
 
+  private Batch readBatch(final ByteBuf content) throws IOException {
+    try (final JsonParser p = JsonMetrics.parser(mapper.getFactory(), content)) {
+      p.nextToken();
+      return JsonMetrics.readBatch(p);
+    }
+  }
+
   private Batch convert(final com.spotify.ffwd.model.Batch batch) {
     List<com.spotify.ffwd.model.Batch.Point> v1Point = batch.getPoints();
     final List<Metric> v2Point = v1Point
@@ -34,6 +34,7 @@ import com.netflix.loadbalancer.ILoadBalancer;
 import com.netflix.loadbalancer.LoadBalancerBuilder;
 import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.module.Batching;
+import com.spotify.ffwd.module.Queueing;
 import com.spotify.ffwd.output.OutputPlugin;
 import com.spotify.ffwd.output.OutputPluginModule;
 import com.spotify.ffwd.output.PluginSink;
@@ -52,11 +53,12 @@ public class HttpOutputPlugin extends OutputPlugin {
       @JsonProperty("id") String id,
       @JsonProperty("flushInterval") Optional<Long> flushInterval,
       @JsonProperty("batching") Optional<Batching> batching,
+      @JsonProperty("queue") Optional<Queueing> queue,
       @JsonProperty("discovery") HttpDiscovery discovery,
       @JsonProperty("filter") Optional<Filter> filter
 
   ) {
-    super(filter, Batching.from(flushInterval.orElse(DEFAULT_FLUSH_INTERVAL), batching));
+    super(filter, Batching.from(flushInterval.orElse(DEFAULT_FLUSH_INTERVAL), batching), queue);
     this.discovery = Optional.ofNullable(discovery).orElseGet(HttpDiscovery::supplyDefault);
   }
 
@@ -105,17 +105,49 @@ public class HttpPluginSink implements BatchablePluginSink {
     final List<Callable<AsyncFuture<Void>>> callables = new ArrayList<>();
 
     for (final Batch b : batches) {
+      callables.add(() -> send(b));
+    }
+
+    return async.eventuallyCollect(callables, VOID_COLLECTOR, PARALLELISM);
+  }
+
+  /**
+   * Each batch is sent in a request of its own, report the outcome of each request.
+   */
+  @Override
+  public List<AsyncFuture<Void>> sendEachBatch(final List<Batch> batches) {
+    final List<AsyncFuture<Void>> sent = new ArrayList<>();
+    final List<Callable<AsyncFuture<Void>>> callables = new ArrayList<>();
+
+    for (final Batch b : batches) {
+      final ResolvableFuture<Void> future = async.future();
+      sent.add(future);
+
       callables.add(() -> {
-        final Observable<Void> observable = LoadBalancerCommand.<Void>builder()
-            .withLoadBalancer(loadBalancer)
-            .build()
-            .submit(server -> toObservable(clientFactory.newClient(server).sendBatch(b)));
+        try {
+          send(b)
+              .onResolved(future::resolve)
+              .onFailed(future::fail)
+              .onCancelled(future::cancel);
+        } catch (final Exception e) {
+          future.fail(e);
+        }
 
-        return fromObservable(observable);
+        return future;
       });
     }
 
-    return async.eventuallyCollect(callables, VOID_COLLECTOR, PARALLELISM);
+    async.eventuallyCollect(callables, VOID_COLLECTOR, PARALLELISM);
+    return sent;
+  }
+
+  private AsyncFuture<Void> send(final Batch b) {
+    final Observable<Void> observable = LoadBalancerCommand.<Void>builder()
+        .withLoadBalancer(loadBalancer)
+        .build()
+        .submit(server -> toObservable(clientFactory.newClient(server).sendBatch(b)));
+
+    return fromObservable(observable);
   }
 
 
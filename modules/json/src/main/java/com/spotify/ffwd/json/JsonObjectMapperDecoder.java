@@ -20,42 +20,40 @@
 
 package com.spotify.ffwd.json;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.JsonNodeType;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import com.spotify.ffwd.model.v2.JsonMetrics;
 import com.spotify.ffwd.model.v2.Metric;
 import com.spotify.ffwd.model.v2.Value;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufInputStream;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageDecoder;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Decodes json metrics from frames, streaming over the tokens without building a tree.
+ * <p>
+ * A frame can hold several metrics separated by whitespace, typically newlines. If a metric is
+ * invalid, it and the rest of the frame are discarded.
+ */
 @Sharable
 public class JsonObjectMapperDecoder extends MessageToMessageDecoder<ByteBuf> {
 
   private static final Logger log = LoggerFactory.getLogger(JsonObjectMapperDecoder.class);
   private static final String HOST = "host";
-  public static final Set<String> EMPTY_TAGS = Sets.newHashSet();
   public static final Map<String, String> EMPTY_ATTRIBUTES = new HashMap<>();
   public static final Map<String, String> EMPTY_RESOURCES = new HashMap<>();
 
-
   @Inject
   @Named("application/json")
   private ObjectMapper mapper;
@@ -69,148 +67,114 @@ public class JsonObjectMapperDecoder extends MessageToMessageDecoder<ByteBuf> {
       return;
     }
 
-    final Object frame;
-
-    try {
-      frame = decode0(in, out);
+    try (final JsonParser p = JsonMetrics.parser(mapper.getFactory(), in)) {
+      while (p.nextToken() != null) {
+        out.add(decodeMetric(p));
+      }
     } catch (Exception e) {
       log.error("Discarding invalid frame", e);
-      return;
     }
-
-    out.add(frame);
   }
 
-  private Object decode0(ByteBuf in, List<Object> out) throws IOException {
-    final JsonNode tree;
-
-    try (final InputStream input = new ByteBufInputStream(in)) {
-      tree = mapper.readTree(input);
-    }
-
-    final JsonNode typeNode = tree.get("type");
-
-    if (typeNode == null) {
+  Metric decodeMetric(final JsonParser p) throws IOException {
+    if (p.currentToken() != JsonToken.START_OBJECT) {
+      throw new JsonParseException(p, "Expected an object");
+    }
+
+    String type = null;
+    String key = null;
+    double value = Double.NaN;
+    long time = 0;
+    String host = null;
+    Map<String, String> tags = EMPTY_ATTRIBUTES;
+    Map<String, String> resource = EMPTY_RESOURCES;
+
+    String field;
+
+    while ((field = p.nextFieldName()) != null) {
+      final JsonToken token = p.nextToken();
+
+      switch (field) {
+        case "type":
+          type = p.getValueAsString();
+          p.skipChildren();
+          break;
+        case "key":
+          key = decodeString(p, token);
+          break;
+        case "value":
+          value = p.getValueAsDouble();
+          p.skipChildren();
+          break;
+        case "time":
+          time = p.getValueAsLong();
+          p.skipChildren();
+          break;
+        case HOST:
+          host = decodeString(p, token);
+          break;
+        case "attributes":
+          tags = decodeMap(p, token, EMPTY_ATTRIBUTES);
+          break;
+        case "resource":
+          resource = decodeMap(p, token, EMPTY_RESOURCES);
+          break;
+        default:
+          p.skipChildren();
+          break;
+      }
+    }
+
+    if (type == null) {
       throw new IllegalArgumentException("Missing field 'type'");
     }
 
-    final String type = typeNode.asText();
-
-    if ("metric".equals(type)) {
-      return decodeMetric(tree, out);
-    }
-
-    throw new IllegalArgumentException("Invalid metric type '" + type + "'");
-  }
-
-  private Object decodeMetric(JsonNode tree, List<Object> out) {
-    final String key = decodeString(tree, "key");
-    final double value = decodeDouble(tree, "value");
-    final long time = decodeTime(tree, "time");
-    final Optional<String> host = Optional.ofNullable(decodeString(tree, HOST));
-    final Map<String, String> tags = decodeAttributes(tree, "attributes");
-    final Map<String, String> resource = decodeResources(tree, "resource");
-
-    host.ifPresent(h -> tags.put(HOST, h));
-
-    return new Metric(key, Value.DoubleValue.create(value), time, tags, resource);
-  }
-
-  private long decodeTime(JsonNode tree, String name) {
-    final JsonNode n = tree.get(name);
-
-    if (n == null) {
-      return 0;
+    if (!"metric".equals(type)) {
+      throw new IllegalArgumentException("Invalid metric type '" + type + "'");
     }
 
-    return n.asLong();
-  }
-
-  private double decodeDouble(JsonNode tree, String name) {
-    final JsonNode n = tree.get(name);
+    if (host != null) {
+      if (tags == EMPTY_ATTRIBUTES) {
+        tags = new HashMap<>();
+      }
 
-    if (n == null) {
-      return Double.NaN;
+      tags.put(HOST, host);
     }
 
-    return n.asDouble();
+    return new Metric(key, Value.DoubleValue.create(value), time, tags, resource);
   }
 
-  String decodeString(JsonNode tree, String name) {
-    final JsonNode n = tree.get(name);
-
-    if (n == null || n.isNull()) {
+  private String decodeString(final JsonParser p, final JsonToken token) throws IOException {
+    if (token == JsonToken.VALUE_NULL) {
       return null;
     }
 
-    return n.asText();
-  }
-
-  private Map<String, String> decodeAttributes(JsonNode tree, String name) {
-    final JsonNode n = tree.get(name);
-
-    if (n == null) {
-      return EMPTY_ATTRIBUTES;
-    }
-
-    if (n.getNodeType() != JsonNodeType.OBJECT) {
-      return EMPTY_ATTRIBUTES;
-    }
-
-    final Map<String, String> attributes = Maps.newHashMap();
-
-    final Iterator<Map.Entry<String, JsonNode>> iter = n.fields();
-
-    while (iter.hasNext()) {
-      final Map.Entry<String, JsonNode> e = iter.next();
-      attributes.put(e.getKey(), e.getValue().asText());
+    if (!token.isScalarValue()) {
+      p.skipChildren();
+      return "";
     }
 
-    return attributes;
+    return p.getText();
   }
 
-  private Map<String, String> decodeResources(JsonNode tree, String name) {
-    final JsonNode n = tree.get(name);
-
-    if (n == null) {
-      return EMPTY_RESOURCES;
-    }
-
-    if (n.getNodeType() != JsonNodeType.OBJECT) {
-      return EMPTY_RESOURCES;
-    }
-
-    final Map<String, String> resources = Maps.newHashMap();
-
-    final Iterator<Map.Entry<String, JsonNode>> iter = n.fields();
-
-    while (iter.hasNext()) {
-      final Map.Entry<String, JsonNode> e = iter.next();
-      resources.put(e.getKey(), e.getValue().asText());
-    }
-
-    return resources;
-  }
-
-  private Set<String> decodeTags(JsonNode tree, String name) {
-    final JsonNode n = tree.get(name);
-
-    if (n == null) {
-      return EMPTY_TAGS;
-    }
-
-    if (n.getNodeType() != JsonNodeType.ARRAY) {
-      return EMPTY_TAGS;
+  private Map<String, String> decodeMap(
+      final JsonParser p, final JsonToken token, final Map<String, String> empty
+  ) throws IOException {
+    if (token != JsonToken.START_OBJECT) {
+      p.skipChildren();
+      return empty;
     }
 
-    final List<String> tags = Lists.newArrayList();
+    final Map<String, String> map = new HashMap<>();
 
-    final Iterator<JsonNode> iter = n.elements();
+    String field;
 
-    while (iter.hasNext()) {
-      tags.add(iter.next().asText());
+    while ((field = p.nextFieldName()) != null) {
+      final JsonToken value = p.nextToken();
+      map.put(field, value.isScalarValue() ? p.getText() : "");
+      p.skipChildren();
     }
 
-    return Sets.newHashSet(tags);
+    return map;
   }
 }
@@ -21,38 +21,110 @@
 package com.spotify.ffwd.json;
 
 import static junit.framework.TestCase.assertNull;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.name.Names;
+import com.spotify.ffwd.Mappers;
+import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.model.v2.Value;
+import io.netty.buffer.Unpooled;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 
 public class JsonObjectMapperDecoderTest {
 
-  private final ObjectMapper mapper = new ObjectMapper();
+  private final ObjectMapper mapper = Mappers.setupApplicationJson();
 
   private JsonObjectMapperDecoder j;
 
   @Before
   public void setup() {
     j = new JsonObjectMapperDecoder();
+
+    Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(ObjectMapper.class).annotatedWith(Names.named("application/json")).toInstance(mapper);
+      }
+    }).injectMembers(j);
   }
 
   @Test
   public void nullKey() throws IOException {
-    final JsonNode json = mapper.readTree("{\"key\": null}");
-    final String key = j.decodeString(json, "key");
+    final Metric metric = decodeMetric("{\"type\": \"metric\", \"key\": null}");
 
-    assertNull(key);
+    assertNull(metric.getKey());
   }
 
   @Test
   public void noHostInJson() throws IOException {
-    final JsonNode json = mapper.readTree("{\"key\": null}");
-    final String host = j.decodeString(json, "host");
+    final Metric metric = decodeMetric("{\"type\": \"metric\", \"key\": null}");
+
+    assertNull(metric.getTags().get("host"));
+  }
+
+  @Test
+  public void decodeMetric() throws IOException {
+    final Metric metric = decodeMetric("{\"type\": \"metric\", \"key\": \"foo\", "
+        + "\"value\": 42.5, \"time\": 1600000000000, \"host\": \"a.example.net\", "
+        + "\"attributes\": {\"what\": \"bar\", \"nested\": {\"a\": 1}}, "
+        + "\"ignored\": [1, {\"b\": 2}], \"resource\": {\"pod\": \"pod-a\"}}");
+
+    assertEquals("foo", metric.getKey());
+    assertEquals(Value.DoubleValue.create(42.5), metric.getValue());
+    assertEquals(1600000000000L, metric.getTimestamp());
+    assertEquals(ImmutableMap.of("what", "bar", "nested", "", "host", "a.example.net"),
+        metric.getTags());
+    assertEquals(ImmutableMap.of("pod", "pod-a"), metric.getResource());
+  }
+
+  @Test
+  public void decodeNewlineDelimited() {
+    final List<Object> out = decode("{\"type\": \"metric\", \"key\": \"a\"}\n"
+        + "{\"type\": \"metric\", \"key\": \"b\"}\n");
+
+    assertEquals(2, out.size());
+    assertEquals("a", ((Metric) out.get(0)).getKey());
+    assertEquals("b", ((Metric) out.get(1)).getKey());
+  }
+
+  @Test
+  public void decodeDiscardsRestOfFrameOnError() {
+    final List<Object> out = decode("{\"type\": \"metric\", \"key\": \"a\"}\n"
+        + "{\"type\": \"event\", \"key\": \"b\"}\n"
+        + "{\"type\": \"metric\", \"key\": \"c\"}\n");
+
+    assertEquals(1, out.size());
+    assertEquals("a", ((Metric) out.get(0)).getKey());
+  }
 
-    assertNull(host);
+  @Test
+  public void hostDoesNotLeakIntoOtherMetrics() {
+    decode("{\"type\": \"metric\", \"host\": \"a.example.net\"}");
+
+    assertFalse(JsonObjectMapperDecoder.EMPTY_ATTRIBUTES.containsKey("host"));
   }
 
+  private Metric decodeMetric(final String json) throws IOException {
+    try (final JsonParser p = mapper.getFactory().createParser(json)) {
+      p.nextToken();
+      return j.decodeMetric(p);
+    }
+  }
+
+  private List<Object> decode(final String frame) {
+    final List<Object> out = new ArrayList<>();
+    j.decode(null, Unpooled.copiedBuffer(frame, StandardCharsets.UTF_8), out);
+    return out;
+  }
 }
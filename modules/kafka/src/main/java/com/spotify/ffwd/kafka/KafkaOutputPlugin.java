@@ -29,6 +29,7 @@ import com.google.inject.Singleton;
 import com.google.inject.name.Names;
 import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.module.Batching;
+import com.spotify.ffwd.module.Queueing;
 import com.spotify.ffwd.output.OutputPlugin;
 import com.spotify.ffwd.output.OutputPluginModule;
 import com.spotify.ffwd.output.PluginSink;
@@ -58,6 +59,7 @@ public class KafkaOutputPlugin extends OutputPlugin {
       @JsonProperty("producer") Map<String, String> properties,
       @JsonProperty("flushInterval") @Nullable Long flushInterval,
       @JsonProperty("batching") Optional<Batching> batching,
+      @JsonProperty("queue") Optional<Queueing> queue,
       @JsonProperty("router") KafkaRouter router,
       @JsonProperty("partitioner") KafkaPartitioner partitioner,
       @JsonProperty("serializer") Serializer serializer,
@@ -65,7 +67,7 @@ public class KafkaOutputPlugin extends OutputPlugin {
       @JsonProperty("compression") Boolean compression,
       @JsonProperty("filter") Optional<Filter> filter
   ) {
-    super(filter, Batching.from(flushInterval, batching));
+    super(filter, Batching.from(flushInterval, batching), queue);
     this.router = Optional.ofNullable(router).orElseGet(KafkaRouter.Tag.supplier());
     this.partitioner = Optional.ofNullable(partitioner).orElseGet(KafkaPartitioner.Host::new);
     this.properties = Optional.ofNullable(properties).orElseGet(HashMap::new);
@@ -27,7 +27,9 @@ import com.google.inject.Inject;
 import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
 import com.spotify.ffwd.output.BatchablePluginSink;
+import com.spotify.ffwd.output.MemoryBudget;
 import com.spotify.ffwd.serializer.Serializer;
+import com.spotify.ffwd.util.EncodedSize;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import java.util.ArrayList;
@@ -41,6 +43,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import javax.inject.Named;
 import kafka.javaapi.producer.Producer;
 import kafka.producer.KeyedMessage;
@@ -70,6 +73,19 @@ public class KafkaPluginSink implements BatchablePluginSink {
   @Named("host")
   private String host;
 
+  /**
+   * Memory shared by all buffering outputs, if configured. Metrics are held on to while they are
+   * waiting for and being sent by the executor.
+   */
+  @Inject(optional = true)
+  private MemoryBudget memory = null;
+
+  @Inject(optional = true)
+  @Named("pluginId")
+  private String pluginId = "kafka";
+
+  private MemoryBudget.Account sending = null;
+
   private final int batchSize;
 
   private final ExecutorService executorService = Executors.newCachedThreadPool(
@@ -133,7 +149,17 @@ public class KafkaPluginSink implements BatchablePluginSink {
 
   @Override
   public AsyncFuture<Void> sendMetrics(final Collection<Metric> metrics) {
-    return send(toBatches(iteratorFor(metrics, metricConverter)));
+    if (sending == null) {
+      return send(toBatches(iteratorFor(metrics, metricConverter)));
+    }
+
+    long bytes = 0;
+
+    for (final Metric metric : metrics) {
+      bytes += EncodedSize.of(metric);
+    }
+
+    return reserved(bytes, () -> send(toBatches(iteratorFor(metrics, metricConverter))));
   }
 
   @Override
@@ -142,11 +168,40 @@ public class KafkaPluginSink implements BatchablePluginSink {
     batches.forEach(batch -> iterators.add(
         iteratorFor(batch.getPoints(), metric -> convertBatchMetric(batch, metric))));
 
-    return send(toBatches(Iterators.concat(iterators.iterator())));
+    if (sending == null) {
+      return send(toBatches(Iterators.concat(iterators.iterator())));
+    }
+
+    long bytes = 0;
+
+    for (final Batch batch : batches) {
+      bytes += EncodedSize.flattened(batch);
+    }
+
+    return reserved(bytes, () -> send(toBatches(Iterators.concat(iterators.iterator()))));
+  }
+
+  /**
+   * Send with memory reserved until the send has finished, failing if the reservation is
+   * refused.
+   */
+  private AsyncFuture<Void> reserved(
+      final long bytes, final Supplier<AsyncFuture<Void>> send
+  ) {
+    if (!sending.reserve(bytes)) {
+      return async.failed(
+          new IllegalStateException("Memory budget refused " + bytes + " byte(s)"));
+    }
+
+    return send.get().onFinished(() -> sending.release(bytes));
   }
 
   @Override
   public AsyncFuture<Void> start() {
+    if (memory != null) {
+      sending = memory.register("kafka-" + pluginId, MemoryBudget.Priority.HIGH);
+    }
+
     return async.resolved(null);
   }
 
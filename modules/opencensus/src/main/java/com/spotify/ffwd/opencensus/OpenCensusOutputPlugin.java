@@ -27,6 +27,7 @@ import com.google.inject.Module;
 import com.google.inject.PrivateModule;
 import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.module.Batching;
+import com.spotify.ffwd.module.Queueing;
 import com.spotify.ffwd.output.OutputPlugin;
 import com.spotify.ffwd.output.PluginSink;
 import com.spotify.ffwd.protocol.RetryPolicy;
@@ -48,11 +49,12 @@ public class OpenCensusOutputPlugin extends OutputPlugin {
       @JsonProperty("filter") Optional<Filter> filter,
       @JsonProperty("flushInterval") @Nullable Long flushInterval,
       @JsonProperty("batching") Optional<Batching> batching,
+      @JsonProperty("queue") Optional<Queueing> queue,
       @JsonProperty("gcpProject") Optional<String> gcpProject,
       @JsonProperty("maxViews") Optional<Integer> maxViews,
       @JsonProperty("outputMetricNamePattern") Optional<String> outputMetricNamePattern
   ) {
-    super(filter, Batching.from(flushInterval, batching));
+    super(filter, Batching.from(flushInterval, batching), queue);
     this.retry = Optional.ofNullable(retry).orElseGet(RetryPolicy.Exponential::new);
     this.gcpProject = gcpProject;
     this.maxViews = maxViews;
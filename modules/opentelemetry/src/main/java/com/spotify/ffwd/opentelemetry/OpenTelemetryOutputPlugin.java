@@ -27,6 +27,7 @@ import com.google.inject.Module;
 import com.google.inject.PrivateModule;
 import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.module.Batching;
+import com.spotify.ffwd.module.Queueing;
 import com.spotify.ffwd.output.OutputPlugin;
 import com.spotify.ffwd.output.PluginSink;
 import java.util.HashMap;
@@ -42,20 +43,24 @@ public class OpenTelemetryOutputPlugin extends OutputPlugin {
   private final Map<String, String> headers;
   private final String endpoint;
   private final String compression;
+  private final boolean plaintext;
 
   @JsonCreator
   public OpenTelemetryOutputPlugin(
       @JsonProperty("filter") Optional<Filter> filter,
       @JsonProperty("flushInterval") @Nullable Long flushInterval,
       @JsonProperty("batching") Optional<Batching> batching,
+      @JsonProperty("queue") Optional<Queueing> queue,
       @JsonProperty("headers") Optional<Map<String, String>> headers,
       @JsonProperty("endpoint") @Nullable String endpoint,
-      @JsonProperty("compression") @Nullable String compression
+      @JsonProperty("compression") @Nullable String compression,
+      @JsonProperty("plaintext") Optional<Boolean> plaintext
   ) {
-    super(filter, Batching.from(flushInterval, batching));
+    super(filter, Batching.from(flushInterval, batching), queue);
     this.headers = headers.orElse(new HashMap<>());
     this.endpoint = Objects.requireNonNull(endpoint, "endpoint must be set");
     this.compression = compression;
+    this.plaintext = plaintext.orElse(false);
   }
 
   @Override
@@ -65,7 +70,7 @@ public class OpenTelemetryOutputPlugin extends OutputPlugin {
       protected void configure() {
         bind(Logger.class).toInstance(LoggerFactory.getLogger(id));
         bind(key).toInstance(
-            new OpenTelemetryPluginSink(endpoint, headers, compression));
+            new OpenTelemetryPluginSink(endpoint, headers, compression, plaintext));
         expose(key);
       }
     };
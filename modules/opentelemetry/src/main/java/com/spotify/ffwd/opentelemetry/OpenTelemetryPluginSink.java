@@ -57,15 +57,18 @@ public class OpenTelemetryPluginSink implements PluginSink {
   private ManagedChannel channel;
   private MetricsServiceGrpc.MetricsServiceBlockingStub stub;
   @Nullable private String compression;
+  private boolean plaintext;
 
   OpenTelemetryPluginSink(
       String endpoint,
       Map<String, String> headers,
-      @Nullable String compression
+      @Nullable String compression,
+      boolean plaintext
   ) {
     this.endpoint = endpoint;
     this.headers = headers;
     this.compression = compression;
+    this.plaintext = plaintext;
   }
 
 
@@ -119,9 +122,15 @@ public class OpenTelemetryPluginSink implements PluginSink {
 
   @Override
   public AsyncFuture<Void> start() {
-    channel = ManagedChannelBuilder.forTarget(this.endpoint)
-        .useTransportSecurity()
-        .build();
+    final ManagedChannelBuilder<?> builder = ManagedChannelBuilder.forTarget(this.endpoint);
+
+    if (plaintext) {
+      builder.usePlaintext();
+    } else {
+      builder.useTransportSecurity();
+    }
+
+    channel = builder.build();
 
     MetricsServiceGrpc.MetricsServiceBlockingStub stub =
         MetricsServiceGrpc.newBlockingStub(channel);
@@ -47,6 +47,7 @@ import com.spotify.ffwd.cache.NoopCache;
 import com.spotify.ffwd.cache.WriteCache;
 import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.module.Batching;
+import com.spotify.ffwd.module.Queueing;
 import com.spotify.ffwd.output.OutputPlugin;
 import com.spotify.ffwd.output.OutputPluginModule;
 import com.spotify.ffwd.output.PluginSink;
@@ -84,6 +85,7 @@ public class PubsubOutputPlugin extends OutputPlugin {
       @JsonProperty("filter") Optional<Filter> filter,
       @JsonProperty("flushInterval") @Nullable Long flushInterval,
       @JsonProperty("batching") Optional<Batching> batching,
+      @JsonProperty("queue") Optional<Queueing> queue,
       @JsonProperty("serializer") Serializer serializer,
 
       @JsonProperty("project") String project,
@@ -96,7 +98,7 @@ public class PubsubOutputPlugin extends OutputPlugin {
       @JsonProperty("messageCountBatchSize") Long messageCountBatchSize,
       @JsonProperty("publishDelayThresholdMs") Long publishDelayThresholdMs
   ) {
-    super(filter, Batching.from(flushInterval, batching));
+    super(filter, Batching.from(flushInterval, batching), queue);
     this.serializer = ofNullable(serializer);
 
     this.project = ofNullable(project);
@@ -37,10 +37,12 @@ import com.spotify.ffwd.cache.WriteCache;
 import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
 import com.spotify.ffwd.output.BatchablePluginSink;
+import com.spotify.ffwd.output.MemoryBudget;
 import com.spotify.ffwd.serializer.Serializer;
 import com.spotify.ffwd.statistics.OutputPluginStatistics;
 import com.spotify.ffwd.statistics.SemanticCacheStatistics;
 import com.spotify.ffwd.util.BatchMetricConverter;
+import com.spotify.ffwd.util.EncodedSize;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import java.io.IOException;
@@ -62,7 +64,7 @@ import org.slf4j.Logger;
 public class PubsubPluginSink implements BatchablePluginSink {
 
   // Pubsub publish request limit is 10MB
-  private final static double MAX_BATCH_SIZE_BYTES = 10_000_000.0;
+  private final static long MAX_BATCH_SIZE_BYTES = 10_000_000L;
 
   private final Executor executorService = MoreExecutors.directExecutor();
   @Inject
@@ -88,6 +90,18 @@ public class PubsubPluginSink implements BatchablePluginSink {
   @Named("maxInputMetrics")
   int maxInputMetrics;
 
+  /**
+   * Memory shared by all buffering outputs, if configured. Publishes are buffered by the
+   * publisher until they have been sent.
+   */
+  @Inject(optional = true)
+  MemoryBudget memory = null;
+  @Inject(optional = true)
+  @Named("pluginId")
+  String pluginId = "pubsub";
+
+  MemoryBudget.Account published = null;
+
   @Override
   public boolean isReady() {
     return true;
@@ -97,25 +111,40 @@ public class PubsubPluginSink implements BatchablePluginSink {
   public void init() {
   }
 
-  private void publishPubSub(final ByteString bytes) {
+  private void publishPubSub(final ByteString bytes, final int metrics) {
     // don't publish "\000" - indicates all the metrics are in the writeCache
     if (bytes.size() <= 1) {
       return;
     }
 
+    final MemoryBudget.Account account = published;
+
+    if (account != null && !account.reserve(bytes.size())) {
+      logger.warn("Memory budget exhausted, dropping {} metric(s)", metrics);
+      statistics.reportDropped(metrics);
+      return;
+    }
+
     final ApiFuture<String> publish =
         publisher.publish(PubsubMessage.newBuilder().setData(bytes).build());
 
     ApiFutures.addCallback(publish, new ApiFutureCallback<String>() {
       @Override
       public void onFailure(Throwable t) {
+        release();
         logger.error("Failed sending metrics {}", t.getMessage());
       }
 
       @Override
       public void onSuccess(String messageId) {
+        release();
       }
 
+      private void release() {
+        if (account != null) {
+          account.release(bytes.size());
+        }
+      }
     }, executorService);
   }
 
@@ -125,27 +154,19 @@ public class PubsubPluginSink implements BatchablePluginSink {
     logger.debug("Sending {} metrics", metrics.size());
 
     if (metrics.size() < maxInputMetrics) {
-      try {
-        final ByteString m = ByteString.copyFrom(serializer.serialize(metrics, writeCache));
-        if (m.size() > MAX_BATCH_SIZE_BYTES) {
-          logger.info("Above byte limit {}, size was {}; resizing batch", MAX_BATCH_SIZE_BYTES,
-              m.size());
-          int times = (int) Math.ceil(m.size() / MAX_BATCH_SIZE_BYTES);
-          List<List<Metric>> collections =
-              Lists.partition(new ArrayList<>(metrics), metrics.size() / times);
-          for (List<Metric> l : collections) {
-            try {
-              final ByteString mResize = ByteString.copyFrom(serializer.serialize(l, writeCache));
-              publishPubSub(mResize);
-            } catch (Exception e) {
-              logger.error("Failed to serialize batch of metrics: ", e);
-            }
-          }
-        } else {
-          publishPubSub(m);
-        }
-      } catch (Exception e) {
-        logger.error("Failed to serialize batch of metrics: ", e);
+      final List<Metric> list =
+          metrics instanceof List ? (List<Metric>) metrics : new ArrayList<>(metrics);
+
+      if (serializer.compressesBatches()) {
+        // the limit applies to the compressed size, which is only known once serialized
+        publishMetrics(list);
+        return async.resolved();
+      }
+
+      // cut at the estimated size first, so that metrics are serialized once
+      for (final List<Metric> part : EncodedSize.partition(list, EncodedSize::of,
+          MAX_BATCH_SIZE_BYTES)) {
+        publishMetrics(part);
       }
     } else {
       logger.info("Above input metric limit {}, size was {}, sample key: {}, sample tags: {}; "
@@ -158,6 +179,32 @@ public class PubsubPluginSink implements BatchablePluginSink {
     return async.resolved();
   }
 
+  private void publishMetrics(final List<Metric> metrics) {
+    try {
+      final ByteString m = ByteString.copyFrom(serializer.serialize(metrics, writeCache));
+      if (m.size() > MAX_BATCH_SIZE_BYTES) {
+        // the estimate was too low, serialize again in smaller parts
+        logger.info("Above byte limit {}, size was {}; resizing batch", MAX_BATCH_SIZE_BYTES,
+            m.size());
+        int times = (int) Math.ceil((double) m.size() / MAX_BATCH_SIZE_BYTES);
+        List<List<Metric>> collections =
+            Lists.partition(metrics, Math.max(1, metrics.size() / times));
+        for (List<Metric> l : collections) {
+          try {
+            final ByteString mResize = ByteString.copyFrom(serializer.serialize(l, writeCache));
+            publishPubSub(mResize, l.size());
+          } catch (Exception e) {
+            logger.error("Failed to serialize batch of metrics: ", e);
+          }
+        }
+      } else {
+        publishPubSub(m, metrics.size());
+      }
+    } catch (Exception e) {
+      logger.error("Failed to serialize batch of metrics: ", e);
+    }
+  }
+
   @Override
   public AsyncFuture<Void> sendBatches(Collection<Batch> batches) {
     final List<Metric> metrics = BatchMetricConverter.convertBatchesToMetrics(batches);
@@ -190,6 +237,10 @@ public class PubsubPluginSink implements BatchablePluginSink {
       logger.warn("Topic {} not found or permission issues", topicName);
     }
 
+    if (memory != null) {
+      published = memory.register("pubsub-" + pluginId, MemoryBudget.Priority.HIGH);
+    }
+
     cache.ifPresent(c -> {
       final SemanticCacheStatistics stats = new SemanticCacheStatistics(c);
       statistics.registerCacheStats(stats);
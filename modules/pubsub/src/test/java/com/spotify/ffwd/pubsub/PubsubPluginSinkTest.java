@@ -22,20 +22,29 @@ package com.spotify.ffwd.pubsub;
 
 import static com.spotify.ffwd.pubsub.Utils.makeMetric;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.api.core.ApiFutures;
 import com.google.cloud.pubsub.v1.Publisher;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.pubsub.v1.PubsubMessage;
 import com.spotify.ffwd.cache.NoopCache;
+import com.spotify.ffwd.cache.WriteCache;
 import com.spotify.ffwd.model.v2.Batch;
 import com.spotify.ffwd.model.v2.Metric;
+import com.spotify.ffwd.model.v2.Value;
+import com.spotify.ffwd.serializer.Serializer;
 import com.spotify.ffwd.serializer.Spotify100ProtoSerializer;
 import eu.toolchain.async.AsyncFramework;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -99,4 +108,44 @@ public class PubsubPluginSinkTest {
     verify(publisher).publish(isA(PubsubMessage.class));
   }
 
+  @Test
+  public void testSendMetricsCutAtByteLimit() {
+    // a serializer which does not compress.
+    sink.serializer = new Serializer() {
+      @Override
+      public byte[] serialize(final Metric metric) {
+        return metric.toString().getBytes(StandardCharsets.UTF_8);
+      }
+
+      @Override
+      public byte[] serialize(final Collection<Metric> metrics, final WriteCache writeCache) {
+        return metrics.toString().getBytes(StandardCharsets.UTF_8);
+      }
+    };
+
+    when(publisher.publish(Mockito.any())).thenReturn(ApiFutures.immediateFuture("Sent"));
+    sink.sendMetrics(largeMetrics());
+    verify(publisher, times(2)).publish(isA(PubsubMessage.class));
+  }
+
+  @Test
+  public void testCompressedMetricsCutAfterSerializing() {
+    when(publisher.publish(Mockito.any())).thenReturn(ApiFutures.immediateFuture("Sent"));
+    // far over the limit uncompressed, but not once compressed.
+    sink.sendMetrics(largeMetrics());
+    verify(publisher).publish(isA(PubsubMessage.class));
+  }
+
+  private static List<Metric> largeMetrics() {
+    final String value = Strings.repeat("x", 4_000_000);
+    final List<Metric> metrics = new ArrayList<>();
+
+    for (int i = 0; i < 3; i++) {
+      metrics.add(new Metric("key" + i, Value.DoubleValue.create(i), System.currentTimeMillis(),
+          ImmutableMap.of("what", value), ImmutableMap.of()));
+    }
+
+    return metrics;
+  }
+
 }
@@ -40,6 +40,7 @@ import com.signalfx.shaded.apache.http.config.SocketConfig;
 import com.signalfx.shaded.apache.http.impl.conn.BasicHttpClientConnectionManager;
 import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.module.Batching;
+import com.spotify.ffwd.module.Queueing;
 import com.spotify.ffwd.output.OutputPlugin;
 import com.spotify.ffwd.output.OutputPluginModule;
 import com.spotify.ffwd.output.PluginSink;
@@ -65,9 +66,10 @@ public class SignalFxOutputPlugin extends OutputPlugin {
       @JsonProperty("authToken") String authToken,
       @JsonProperty("flushInterval") Optional<Long> flushInterval,
       @JsonProperty("batching") Optional<Batching> batching,
+      @JsonProperty("queue") Optional<Queueing> queue,
       @JsonProperty("soTimeout") Integer soTimeout,
       @JsonProperty("filter") Optional<Filter> filter) {
-    super(filter, Batching.from(flushInterval.orElse(DEFAULT_FLUSH_INTERVAL), batching));
+    super(filter, Batching.from(flushInterval.orElse(DEFAULT_FLUSH_INTERVAL), batching), queue);
     this.sourceName = Optional.ofNullable(sourceName).orElse(DEFAULT_SOURCE_NAME);
     this.authToken = Optional
         .ofNullable(authToken)
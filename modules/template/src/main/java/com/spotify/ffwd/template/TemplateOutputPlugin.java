@@ -27,6 +27,7 @@ import com.google.inject.Module;
 import com.google.inject.PrivateModule;
 import com.spotify.ffwd.filter.Filter;
 import com.spotify.ffwd.module.Batching;
+import com.spotify.ffwd.module.Queueing;
 import com.spotify.ffwd.output.OutputPlugin;
 import com.spotify.ffwd.output.PluginSink;
 import com.spotify.ffwd.protocol.Protocol;
@@ -54,9 +55,10 @@ public class TemplateOutputPlugin extends OutputPlugin {
       @JsonProperty("retry") final RetryPolicy retry,
       @JsonProperty("filter") Optional<Filter> filter,
       @JsonProperty("flushInterval") @Nullable Long flushInterval,
-      @JsonProperty("batching") Optional<Batching> batching
+      @JsonProperty("batching") Optional<Batching> batching,
+      @JsonProperty("queue") Optional<Queueing> queue
   ) {
-    super(filter, Batching.from(flushInterval, batching));
+    super(filter, Batching.from(flushInterval, batching), queue);
     this.protocol = Optional
         .ofNullable(protocol)
         .orElseGet(ProtocolFactory.defaultFor())